@@ -0,0 +1,84 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Truck;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LotManager#parkAll(List)}/{@link LotManager#unParkAll(java.util.Collection)} of a burst of vehicles against
+ * parking and unParking the same vehicles one call at a time, with the lots already filled to {@code fillPercent}.
+ * Scores are per burst.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchApiBenchmark {
+
+    @Param({"10000"})
+    public int lotsPerSize;
+
+    @Param({"0", "95"})
+    public int fillPercent;
+
+    @Param({"16", "256"})
+    public int batchSize;
+
+    @Param({"single", "concurrent", "sharded"})
+    public String tracker;
+
+    private LotManager lotManager;
+    private List<Vehicle> vehicles;
+    private Ticket[] tickets;
+
+    @Setup
+    public void setUp() {
+        lotManager = new LotManager(lotsPerSize, lotsPerSize, lotsPerSize, LotManagerBenchmark.trackerFactory(tracker));
+        for (int i = 0; i < (int) ((long) lotsPerSize * fillPercent / 100); i++) {
+            lotManager.parkPacked(new Bike("filler-bike-" + i));
+            lotManager.parkPacked(new Car("filler-car-" + i));
+            lotManager.parkPacked(new Truck("filler-truck-" + i));
+        }
+        vehicles = Arrays.asList(BenchmarkVehicles.create(batchSize, "mixed", "vehicle-", 7));
+        tickets = new Ticket[batchSize];
+    }
+
+    @Benchmark
+    public boolean[] batch() {
+        return lotManager.unParkAll(lotManager.parkAll(vehicles));
+    }
+
+    @Benchmark
+    public int loop() {
+        for (int i = 0; i < tickets.length; i++) {
+            tickets[i] = lotManager.park(vehicles.get(i));
+        }
+        int released = 0;
+        for (Ticket ticket : tickets) {
+            if (lotManager.unPark(ticket)) {
+                released++;
+            }
+        }
+        return released;
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Truck;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.util.SplittableRandom;
+
+/**
+ * Pre-built vehicles for the benchmarks, so that creating vehicles is not part of what is measured.
+ */
+final class BenchmarkVehicles {
+
+    private BenchmarkVehicles() {}
+
+    /**
+     * @param count  number of vehicles
+     * @param sizeMix "car" for cars only, "mixed" for 30% bikes, 60% cars and 10% trucks
+     * @param prefix of the vehicle IDs, keeps IDs unique across threads
+     * @param seed   of the random mix
+     */
+    static Vehicle[] create(int count, String sizeMix, String prefix, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Vehicle[] vehicles = new Vehicle[count];
+        for (int i = 0; i < count; i++) {
+            String id = prefix + i;
+            if ("car".equals(sizeMix)) {
+                vehicles[i] = new Car(id);
+                continue;
+            }
+            int roll = random.nextInt(100);
+            vehicles[i] = roll < 30 ? new Bike(id) : roll < 90 ? new Car(id) : new Truck(id);
+        }
+        return vehicles;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.booking.Booking;
+import org.example.parkinglot.booking.BookingCalendar;
+import org.example.parkinglot.index.HierarchicalFreeLotIndex;
+import org.example.parkinglot.models.Size;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Availability queries and booking plus cancelling a window, on a calendar holding two weeks of bookings, about one
+ * per bay and day. The cost should grow with the logarithm of the number of bays and bookings only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingCalendarBenchmark {
+
+    private static final long HOUR = 3600_000L;
+    private static final int DAYS = 14;
+    private static final int WINDOWS = 1 << 16;
+
+    @Param({"1000", "100000"})
+    public int numberOfLots;
+
+    private BookingCalendar calendar;
+    private long[] starts;
+    private long[] ends;
+    private int window;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        calendar = new BookingCalendar(Size.MEDIUM, numberOfLots, new HierarchicalFreeLotIndex(numberOfLots),
+                lotId -> { }, Clock.fixed(Instant.EPOCH, ZoneOffset.UTC), Duration.ofHours(1));
+        Random random = new Random(42);
+        for (long i = 0; i < (long) numberOfLots * DAYS; i++) {
+            long start = HOUR + (long) random.nextInt(DAYS * 24) * HOUR;
+            calendar.book(start, start + (1 + random.nextInt(8)) * HOUR);
+        }
+        starts = new long[WINDOWS];
+        ends = new long[WINDOWS];
+        for (int i = 0; i < WINDOWS; i++) {
+            starts[i] = HOUR + (long) random.nextInt(DAYS * 24 * 60) * 60_000L;
+            ends[i] = starts[i] + (1 + random.nextInt(8 * 60)) * 60_000L;
+        }
+    }
+
+    @Benchmark
+    public boolean isAvailable() {
+        int i = window++ & (WINDOWS - 1);
+        return calendar.isAvailable(starts[i], ends[i]);
+    }
+
+    @Benchmark
+    public boolean bookAndCancel() {
+        int i = window++ & (WINDOWS - 1);
+        Booking booking = calendar.book(starts[i], ends[i]);
+        return booking != null && calendar.cancel(booking);
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.ShardedLotTracker;
+import org.example.parkinglot.models.LotTrackerFactory;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Park/unPark throughput of one shared tracker as the number of gate threads grows. Run with a range of thread
+ * counts to get the scaling curve, e.g. {@code -t 1}, {@code -t 8}, {@code -t 32}. The sharded tracker has a fixed
+ * number of stripes, so that results taken on different hosts compare.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentTrackerScalingBenchmark {
+
+    @Param({"100000"})
+    public int numberOfLots;
+
+    @Param({"concurrent", "sharded"})
+    public String tracker;
+
+    @Param({"32"})
+    public int stripes;
+
+    private LotTracker lotTracker;
+
+    @State(Scope.Thread)
+    public static class Gate {
+        Vehicle vehicle;
+
+        @Setup
+        public void setUp() {
+            vehicle = new Car("gate-" + Thread.currentThread().getId());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        LotTrackerFactory factory = "sharded".equals(tracker)
+                ? ShardedLotTracker.Factory.withStripes(stripes)
+                : ConcurrentLotTracker.Factory.INSTANCE;
+        lotTracker = factory.createLotTracker(numberOfLots, Size.MEDIUM);
+    }
+
+    @Benchmark
+    public boolean parkAndUnPark(Gate gate) {
+        Ticket ticket = lotTracker.reserveLot(gate.vehicle).get();
+        return lotTracker.releaseLot(ticket);
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.index.FreeLotIndex;
+
+/**
+ * Reference {@link FreeLotIndex} reproducing the original linear scan for the first available lot. Only used by the
+ * benchmarks as a baseline for the real indexes.
+ */
+public class LinearScanFreeLotIndex implements FreeLotIndex {
+
+    public static final FreeLotIndex.Factory FACTORY = (numberOfLots, size) -> new LinearScanFreeLotIndex(numberOfLots);
+
+    private final boolean[] free;
+
+    public LinearScanFreeLotIndex(int capacity) {
+        this.free = new boolean[capacity];
+        java.util.Arrays.fill(free, true);
+    }
+
+    @Override
+    public int acquire() {
+        for (int i = 0; i < free.length; i++) {
+            if (free[i]) {
+                free[i] = false;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean claim(int lotId) {
+        boolean wasFree = free[lotId];
+        free[lotId] = false;
+        return wasFree;
+    }
+
+    @Override
+    public void release(int lotId) {
+        free[lotId] = true;
+    }
+
+    @Override
+    public boolean isFree(int lotId) {
+        return free[lotId];
+    }
+
+    @Override
+    public int capacity() {
+        return free.length;
+    }
+}
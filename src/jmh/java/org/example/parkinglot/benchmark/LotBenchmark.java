@@ -0,0 +1,49 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Lot#reserve(Vehicle)} followed by {@link Lot#release(Ticket)} on a single lot, i.e. everything a
+ * park/unPark does besides finding the lot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LotBenchmark {
+
+    private Lot lot;
+    private Vehicle vehicle;
+    private Ticket ticket;
+
+    @Setup
+    public void setUp() {
+        lot = new Lot(0, Size.MEDIUM);
+        vehicle = new Car("benchmark");
+    }
+
+    @Benchmark
+    public boolean reserveAndRelease() {
+        lot.reserve(vehicle);
+        ticket = new Ticket(lot.getId(), vehicle.id(), vehicle.getSize());
+        return lot.release(ticket);
+    }
+}
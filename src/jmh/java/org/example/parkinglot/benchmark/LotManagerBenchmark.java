@@ -0,0 +1,181 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.ShardedLotTracker;
+import org.example.parkinglot.models.LotTrackerFactory;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Truck;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LotManager#park(Vehicle)} and {@link LotManager#unPark(Ticket)} on a manager kept at a constant fill ratio.
+ *
+ * Every invocation of {@link #churn(Gate)} unParks one previously parked vehicle and parks another one. The leaving
+ * vehicle is picked according to the churn pattern: "fifo" (longest parked leaves first), "lifo" (latest arrival leaves first) or
+ * "random". The thread count is set with {@code -t}; "single" trackers are only valid with one thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LotManagerBenchmark {
+
+    /**
+     * Number of tickets each gate keeps in hand, the fill ratio is built up in addition to these.
+     */
+    private static final int TICKETS_PER_GATE = 64;
+
+    @Param({"1000", "100000"})
+    public int lotsPerSize;
+
+    @Param({"0.0", "0.5", "0.99"})
+    public double fillRatio;
+
+    @Param({"car", "mixed"})
+    public String sizeMix;
+
+    @Param({"fifo", "lifo", "random"})
+    public String churn;
+
+    @Param({"single", "concurrent", "sharded"})
+    public String tracker;
+
+    private LotManager lotManager;
+
+    @Setup(Level.Iteration)
+    public void setUp(BenchmarkParams params) {
+        if ("single".equals(tracker) && params.getThreads() > 1) {
+            throw new IllegalStateException("single trackers are not ThreadSafe, use concurrent or sharded");
+        }
+        lotManager = new LotManager(lotsPerSize, lotsPerSize, lotsPerSize, trackerFactory(tracker));
+        int parked = Math.max(0, (int) (lotsPerSize * fillRatio) - TICKETS_PER_GATE * params.getThreads());
+        for (int i = 0; i < parked; i++) {
+            lotManager.park(new Bike("filler-bike-" + i));
+            lotManager.park(new Car("filler-car-" + i));
+            lotManager.park(new Truck("filler-truck-" + i));
+        }
+    }
+
+    static LotTrackerFactory trackerFactory(String tracker) {
+        switch (tracker) {
+            case "single":
+                return LotTracker.Factory.INSTANCE;
+            case "concurrent":
+                return ConcurrentLotTracker.Factory.INSTANCE;
+            case "sharded":
+                return ShardedLotTracker.Factory.withStripes(Runtime.getRuntime().availableProcessors());
+            default:
+                throw new IllegalArgumentException(tracker);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+        Vehicle[] idleVehicles;
+        int idle;
+        Ticket[] tickets;
+        Vehicle[] parkedVehicles;
+        int head;
+        int tail;
+        SplittableRandom random;
+
+        @Setup(Level.Iteration)
+        public void setUp(LotManagerBenchmark benchmark) {
+            long gateId = Thread.currentThread().getId();
+            idleVehicles = BenchmarkVehicles.create(2 * TICKETS_PER_GATE, benchmark.sizeMix, "gate-" + gateId + "-", gateId);
+            idle = idleVehicles.length;
+            tickets = new Ticket[TICKETS_PER_GATE];
+            parkedVehicles = new Vehicle[TICKETS_PER_GATE];
+            random = new SplittableRandom(gateId);
+            head = 0;
+            tail = 0;
+            for (int i = 0; i < TICKETS_PER_GATE; i++) {
+                park(benchmark.lotManager);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown(LotManagerBenchmark benchmark) {
+            while (head < tail) {
+                unPark(benchmark.lotManager, "fifo");
+            }
+        }
+
+        boolean park(LotManager lotManager) {
+            if (tail - head == TICKETS_PER_GATE) {
+                return false;
+            }
+            Vehicle vehicle = idleVehicles[--idle];
+            Ticket ticket = lotManager.park(vehicle);
+            if (ticket == null) {
+                idleVehicles[idle++] = vehicle;
+                return false;
+            }
+            tickets[tail % TICKETS_PER_GATE] = ticket;
+            parkedVehicles[tail % TICKETS_PER_GATE] = vehicle;
+            tail++;
+            return true;
+        }
+
+        /**
+         * UnParks the vehicle leaving next, according to the churn pattern.
+         */
+        boolean unPark(LotManager lotManager, String churn) {
+            if (head == tail) {
+                return false;
+            }
+            int slot;
+            switch (churn) {
+                case "fifo":
+                    slot = head++ % TICKETS_PER_GATE;
+                    break;
+                case "lifo":
+                    slot = --tail % TICKETS_PER_GATE;
+                    break;
+                default:
+                    slot = (head + random.nextInt(tail - head)) % TICKETS_PER_GATE;
+                    swap(slot, head % TICKETS_PER_GATE);
+                    slot = head++ % TICKETS_PER_GATE;
+            }
+            idleVehicles[idle++] = parkedVehicles[slot];
+            return lotManager.unPark(tickets[slot]);
+        }
+
+        private void swap(int i, int j) {
+            Ticket ticket = tickets[i];
+            tickets[i] = tickets[j];
+            tickets[j] = ticket;
+            Vehicle vehicle = parkedVehicles[i];
+            parkedVehicles[i] = parkedVehicles[j];
+            parkedVehicles[j] = vehicle;
+        }
+    }
+
+    @Benchmark
+    public boolean churn(Gate gate) {
+        return gate.unPark(lotManager, churn) & gate.park(lotManager);
+    }
+}
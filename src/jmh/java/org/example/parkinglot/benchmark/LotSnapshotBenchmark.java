@@ -0,0 +1,90 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.persistence.FsyncPolicy;
+import org.example.parkinglot.persistence.LotSnapshot;
+import org.example.parkinglot.persistence.WriteAheadLog;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start from a {@link LotSnapshot}: creating the {@link LotManager} and loading a snapshot of {@code bays} lots,
+ * a third per size, of which {@code fillPercent} are occupied. {@link #write()} measures taking the snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LotSnapshotBenchmark {
+
+    @Param({"1000000"})
+    public int bays;
+
+    @Param({"50"})
+    public int fillPercent;
+
+    @Param({"concurrent"})
+    public String tracker;
+
+    private Path directory;
+    private Path snapshot;
+    private LotManager lotManager;
+    private WriteAheadLog log;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        snapshot = directory.resolve("lots.snapshot");
+        int lotsPerSize = bays / 3;
+        lotManager = new LotManager(lotsPerSize, lotsPerSize, lotsPerSize, LotManagerBenchmark.trackerFactory(tracker));
+        log = WriteAheadLog.recover(directory.resolve("lots.wal"), lotManager, FsyncPolicy.NEVER,
+                Duration.ofMillis(10));
+        Vehicle[] vehicles = BenchmarkVehicles.create((int) ((long) bays * fillPercent / 100), "mixed", "vehicle-", 7);
+        for (Vehicle vehicle : vehicles) {
+            lotManager.parkPacked(vehicle);
+        }
+        LotSnapshot.write(snapshot, lotManager, log);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(directory.resolve("lots.wal"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public LotManager coldStart() throws IOException {
+        int lotsPerSize = bays / 3;
+        LotManager started = new LotManager(lotsPerSize, lotsPerSize, lotsPerSize,
+                LotManagerBenchmark.trackerFactory(tracker));
+        LotSnapshot.load(snapshot, started);
+        return started;
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        return LotSnapshot.write(snapshot, lotManager, log);
+    }
+}
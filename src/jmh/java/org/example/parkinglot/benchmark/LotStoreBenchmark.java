@@ -0,0 +1,77 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.example.parkinglot.store.BufferLotStore;
+import org.example.parkinglot.store.LotStore;
+import org.example.parkinglot.store.ObjectLotStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserve/release of random lots across a large {@link LotStore}, where every access is likely a cache miss.
+ * Run with {@code -prof perfnorm} on Linux to get the cache misses per operation of each layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class LotStoreBenchmark {
+
+    @Param({"1000000"})
+    public int numberOfLots;
+
+    @Param({"object", "heap", "offHeap"})
+    public String store;
+
+    private LotStore lotStore;
+    private Vehicle vehicle;
+    private int[] lotIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lotStore = storeFactory(store).create(numberOfLots, Size.MEDIUM);
+        vehicle = new Car("benchmark");
+        SplittableRandom random = new SplittableRandom(11);
+        lotIds = new int[1 << 16];
+        for (int i = 0; i < lotIds.length; i++) {
+            lotIds[i] = random.nextInt(numberOfLots);
+        }
+    }
+
+    static LotStore.Factory storeFactory(String store) {
+        switch (store) {
+            case "object":
+                return ObjectLotStore.FACTORY;
+            case "heap":
+                return BufferLotStore.HEAP;
+            case "offHeap":
+                return BufferLotStore.OFF_HEAP;
+            default:
+                throw new IllegalArgumentException(store);
+        }
+    }
+
+    @Benchmark
+    public boolean reserveAndRelease() {
+        int lotId = lotIds[next++ & (lotIds.length - 1)];
+        lotStore.reserve(lotId, vehicle);
+        return lotStore.release(lotId, lotStore.getGeneration(lotId));
+    }
+}
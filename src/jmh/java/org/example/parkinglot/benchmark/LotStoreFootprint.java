@@ -0,0 +1,53 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.store.BufferLotStore;
+import org.example.parkinglot.store.LotStore;
+import org.example.parkinglot.store.ObjectLotStore;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Prints the memory taken per lot by a full {@link LotTracker} for each {@link LotStore}, measured as the growth of
+ * the used heap (and of direct buffers for off-heap stores) after a full GC.
+ *
+ * Usage: java -cp ... LotStoreFootprint [numberOfLots]
+ */
+public class LotStoreFootprint {
+
+    public static void main(String[] args) {
+        int numberOfLots = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Car vehicle = new Car("footprint");
+        measure("object", ObjectLotStore.FACTORY, numberOfLots, vehicle);
+        measure("heap", BufferLotStore.HEAP, numberOfLots, vehicle);
+        measure("offHeap", BufferLotStore.OFF_HEAP, numberOfLots, vehicle);
+    }
+
+    private static void measure(String name, LotStore.Factory storeFactory, int numberOfLots, Car vehicle) {
+        long before = usedMemory();
+        LotTracker tracker = LotTracker.Factory.INSTANCE.withStore(storeFactory).createLotTracker(numberOfLots, Size.MEDIUM);
+        while (tracker.reserveLotPacked(vehicle) >= 0) {
+            // fill every lot, occupied lots reference their vehicle
+        }
+        long after = usedMemory();
+        System.out.printf("%-8s %,12d lots %8.1f bytes/lot%n", name, numberOfLots, (after - before) / (double) numberOfLots);
+        if (tracker.getNumberOfLotsOccupied() != numberOfLots) {
+            throw new IllegalStateException("tracker not full");
+        }
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            used += pool.getMemoryUsed();
+        }
+        return used;
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.index.FreeListLotIndex;
+import org.example.parkinglot.index.FreeLotIndex;
+import org.example.parkinglot.index.HierarchicalFreeLotIndex;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parking and unParking one vehicle in a tracker that is kept at a constant fill ratio, for each
+ * {@link FreeLotIndex}. The linear index reproduces the original stream scan and shows how it degrades as the
+ * tracker fills up, while the real indexes stay flat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LotTrackerReserveBenchmark {
+
+    @Param({"10000", "100000"})
+    public int numberOfLots;
+
+    @Param({"0.0", "0.99"})
+    public double fillRatio;
+
+    @Param({"hierarchical", "freeList", "linear"})
+    public String index;
+
+    private LotTracker tracker;
+    private Vehicle vehicle;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        tracker = LotTracker.Factory.INSTANCE.withIndex(indexFactory(index)).createLotTracker(numberOfLots, Size.MEDIUM);
+        vehicle = new Car("benchmark");
+        int occupied = (int) (numberOfLots * fillRatio);
+        for (int i = 0; i < occupied; i++) {
+            tracker.reserveLot(new Car("parked-" + i));
+        }
+    }
+
+    static FreeLotIndex.Factory indexFactory(String index) {
+        switch (index) {
+            case "hierarchical":
+                return HierarchicalFreeLotIndex.FACTORY;
+            case "freeList":
+                return FreeListLotIndex.FACTORY;
+            case "linear":
+                return LinearScanFreeLotIndex.FACTORY;
+            default:
+                throw new IllegalArgumentException(index);
+        }
+    }
+
+    @Benchmark
+    public boolean reserveAndRelease() {
+        Ticket ticket = tracker.reserveLot(vehicle).get();
+        return tracker.releaseLot(ticket);
+    }
+}
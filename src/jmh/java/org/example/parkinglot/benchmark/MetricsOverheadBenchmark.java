@@ -0,0 +1,57 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.allocation.StrictAllocationPolicy;
+import org.example.parkinglot.metrics.LotMetrics;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packed park/unPark without {@link LotMetrics} (sampleInterval 0), with the default sample interval and with every
+ * call timed. The difference is the cost of recording two calls. The gc.alloc.rate.norm is expected to stay 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"10000"})
+    public int lotsPerSize;
+
+    @Param({"single", "concurrent"})
+    public String tracker;
+
+    @Param({"0", "64", "1"})
+    public int sampleInterval;
+
+    private LotManager lotManager;
+    private Vehicle[] vehicles;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lotManager = new LotManager(lotsPerSize, lotsPerSize, lotsPerSize, LotManagerBenchmark.trackerFactory(tracker),
+                StrictAllocationPolicy.INSTANCE, sampleInterval == 0 ? null : new LotMetrics(sampleInterval));
+        vehicles = BenchmarkVehicles.create(1024, "mixed", "vehicle-", 7);
+    }
+
+    @Benchmark
+    public boolean parkAndUnPark() {
+        return lotManager.unParkPacked(lotManager.parkPacked(vehicles[next++ & (vehicles.length - 1)]));
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.index.FreeLotIndex;
+import org.example.parkinglot.index.HierarchicalFreeLotIndex;
+import org.example.parkinglot.index.NearestBayLotIndex;
+import org.example.parkinglot.layout.BayLayout;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one departure plus one arrival at a random entry gate, in a multi-storey site kept at a constant fill ratio.
+ * The nearest bay index is compared with the flat hierarchical index, which ignores gates and always hands out the
+ * lowest free lot ID.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearestBayBenchmark {
+
+    private static final int LEVELS = 5;
+    private static final int OPERATIONS = 1 << 16;
+
+    @Param({"100000"})
+    public int numberOfLots;
+
+    @Param({"50"})
+    public int gates;
+
+    @Param({"0.0", "0.5", "0.95"})
+    public double fillRatio;
+
+    @Param({"nearest", "hierarchical"})
+    public String index;
+
+    private LotTracker tracker;
+    private final Vehicle vehicle = new Car("benchmark");
+    private long[] parked;
+    private int[] slots;
+    private int[] gateIds;
+    private int operation;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Random random = new Random(42);
+        BayLayout layout = layout(random);
+        FreeLotIndex.Factory indexFactory = "nearest".equals(index)
+                ? NearestBayLotIndex.factory(layout)
+                : HierarchicalFreeLotIndex.FACTORY;
+        tracker = LotTracker.Factory.INSTANCE.withIndex(indexFactory).createLotTracker(numberOfLots, Size.MEDIUM);
+
+        parked = new long[(int) (numberOfLots * fillRatio) + 1];
+        for (int i = 0; i < parked.length; i++) {
+            parked[i] = tracker.reserveLotPacked(vehicle, random.nextInt(gates));
+        }
+        slots = new int[OPERATIONS];
+        gateIds = new int[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            slots[i] = random.nextInt(parked.length);
+            gateIds[i] = random.nextInt(gates);
+        }
+    }
+
+    /**
+     * Square levels of bays 3 units apart, with the gates at random points along the outer walls of random levels.
+     */
+    private BayLayout layout(Random random) {
+        BayLayout.Builder builder = BayLayout.builder(200);
+        int perLevel = (numberOfLots + LEVELS - 1) / LEVELS;
+        int width = (int) Math.ceil(Math.sqrt(perLevel));
+        for (int gate = 0; gate < gates; gate++) {
+            int along = random.nextInt(width * 3);
+            boolean westEast = random.nextBoolean();
+            int wall = random.nextBoolean() ? 0 : width * 3;
+            builder.addGate(random.nextInt(LEVELS), westEast ? wall : along, westEast ? along : wall);
+        }
+        for (int lotId = 0; lotId < numberOfLots; lotId++) {
+            int onLevel = lotId % perLevel;
+            builder.addBay(Size.MEDIUM, onLevel * 4 / perLevel, lotId / perLevel, (onLevel % width) * 3,
+                    (onLevel / width) * 3);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public long departAndArrive() {
+        int i = operation++ & (OPERATIONS - 1);
+        int slot = slots[i];
+        tracker.releaseLotPacked(parked[slot]);
+        parked[slot] = tracker.reserveLotPacked(vehicle, gateIds[i]);
+        return parked[slot];
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.analytics.OccupancyAnalytics;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packed park/unPark without {@link OccupancyAnalytics} (bucketMillis 0) and with analytics in 1 ms and 5 minute
+ * buckets, the former clearing a bucket for reuse every millisecond. gc.alloc.rate.norm is expected to stay 0 B/op.
+ * {@code window} aggregates all 288 buckets kept, a day of 5 minute buckets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OccupancyAnalyticsBenchmark {
+
+    @Param({"10000"})
+    public int lotsPerSize;
+
+    @Param({"single", "concurrent"})
+    public String tracker;
+
+    @Param({"0", "1", "300000"})
+    public long bucketMillis;
+
+    private LotManager lotManager;
+    private OccupancyAnalytics analytics;
+    private Vehicle[] vehicles;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lotManager = new LotManager(lotsPerSize, lotsPerSize, lotsPerSize, LotManagerBenchmark.trackerFactory(tracker));
+        // without analytics on the hot path, window() queries analytics of an idle lot manager
+        LotManager observed = bucketMillis > 0 ? lotManager : new LotManager(1, 1, 1,
+                LotManagerBenchmark.trackerFactory(tracker));
+        analytics = OccupancyAnalytics.attach(observed, Clock.systemUTC(),
+                Duration.ofMillis(bucketMillis > 0 ? bucketMillis : 300_000), 288);
+        vehicles = BenchmarkVehicles.create(1024, "mixed", "vehicle-", 7);
+    }
+
+    @Benchmark
+    public boolean parkAndUnPark() {
+        return lotManager.unParkPacked(lotManager.parkPacked(vehicles[next++ & (vehicles.length - 1)]));
+    }
+
+    @Benchmark
+    public double window() {
+        Instant now = Instant.now();
+        return analytics.window(Size.MEDIUM, now.minus(Duration.ofDays(1)), now).getAverageOccupancy();
+    }
+}
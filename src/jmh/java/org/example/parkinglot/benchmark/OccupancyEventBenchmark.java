@@ -0,0 +1,63 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.events.Backpressure;
+import org.example.parkinglot.events.OccupancyEventBus;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packed park/unPark without an {@link OccupancyEventBus} (subscribers -1) and with one that has 0, 1 or 16
+ * subscribers, alternately {@link Backpressure#DROP} and {@link Backpressure#COALESCE}. The subscribers are never
+ * polled, publishing is expected to cost the same whatever their number and the gc.alloc.rate.norm to stay 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OccupancyEventBenchmark {
+
+    @Param({"10000"})
+    public int lotsPerSize;
+
+    @Param({"single", "concurrent"})
+    public String tracker;
+
+    @Param({"-1", "0", "1", "16"})
+    public int subscribers;
+
+    private LotManager lotManager;
+    private Vehicle[] vehicles;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lotManager = new LotManager(lotsPerSize, lotsPerSize, lotsPerSize, LotManagerBenchmark.trackerFactory(tracker));
+        if (subscribers >= 0) {
+            OccupancyEventBus bus = OccupancyEventBus.attach(lotManager, 1 << 16);
+            for (int i = 0; i < subscribers; i++) {
+                bus.subscribe(i % 2 == 0 ? Backpressure.DROP : Backpressure.COALESCE);
+            }
+        }
+        vehicles = BenchmarkVehicles.create(1024, "mixed", "vehicle-", 7);
+    }
+
+    @Benchmark
+    public boolean parkAndUnPark() {
+        return lotManager.unParkPacked(lotManager.parkPacked(vehicles[next++ & (vehicles.length - 1)]));
+    }
+}
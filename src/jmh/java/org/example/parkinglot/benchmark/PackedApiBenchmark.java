@@ -0,0 +1,61 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LotManager#parkPacked(Vehicle)}/{@link LotManager#unParkPacked(long)} against the {@link Ticket} based API.
+ * The gc.alloc.rate.norm of the packed benchmark is expected to be 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedApiBenchmark {
+
+    @Param({"10000"})
+    public int lotsPerSize;
+
+    @Param({"single", "concurrent", "sharded"})
+    public String tracker;
+
+    private LotManager lotManager;
+    private Vehicle[] vehicles;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lotManager = new LotManager(lotsPerSize, lotsPerSize, lotsPerSize, LotManagerBenchmark.trackerFactory(tracker));
+        vehicles = BenchmarkVehicles.create(1024, "mixed", "vehicle-", 7);
+    }
+
+    private Vehicle nextVehicle() {
+        return vehicles[next++ & (vehicles.length - 1)];
+    }
+
+    @Benchmark
+    public boolean packed() {
+        return lotManager.unParkPacked(lotManager.parkPacked(nextVehicle()));
+    }
+
+    @Benchmark
+    public boolean ticket() {
+        return lotManager.unPark(lotManager.park(nextVehicle()));
+    }
+}
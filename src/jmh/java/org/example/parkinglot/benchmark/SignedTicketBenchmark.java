@@ -0,0 +1,58 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.PackedTicket;
+import org.example.parkinglot.models.lot.SignedTicketCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and verifying {@link SignedTicketCodec} tickets. gc.alloc.rate.norm is expected to be 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignedTicketBenchmark {
+
+    private final SignedTicketCodec codec = new SignedTicketCodec(new byte[]{
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+            17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32});
+    private final byte[] binary = new byte[SignedTicketCodec.ENCODED_BYTES];
+    private final byte[] text = new byte[SignedTicketCodec.BASE64_CHARS];
+    private long packedTicket;
+
+    @Setup
+    public void setUp() {
+        packedTicket = PackedTicket.pack(Size.MEDIUM, 4711, 42);
+        codec.encode(packedTicket, "vehicle-4711", 1_700_000_000_000L, binary, 0);
+        codec.encodeBase64(packedTicket, "vehicle-4711", 1_700_000_000_000L, text, 0);
+    }
+
+    @Benchmark
+    public int encode() {
+        return codec.encode(packedTicket, "vehicle-4711", 1_700_000_000_000L, binary, 0);
+    }
+
+    @Benchmark
+    public long verify() {
+        return codec.verify(binary, 0);
+    }
+
+    @Benchmark
+    public long verifyBase64() {
+        return codec.verifyBase64(text, 0);
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.billing.Tariff;
+import org.example.parkinglot.models.Size;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pricing exits with a {@link Tariff} of two or three time bands per size, a daily cap and a grace period. Stays are
+ * random, up to {@code maxStayHours} long. Pricing a million exits a second needs a score below 1000 ns/op and
+ * gc.alloc.rate.norm is expected to be 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TariffBenchmark {
+
+    private static final int EXITS = 1 << 12;
+
+    @Param({"3", "720"})
+    public int maxStayHours;
+
+    private Tariff tariff;
+    private final Size[] sizes = new Size[EXITS];
+    private final long[] entries = new long[EXITS];
+    private final long[] exits = new long[EXITS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        tariff = Tariff.builder(Duration.ofMinutes(15), ZoneOffset.ofHours(1))
+                .rate(Size.SMALL, 25)
+                .rate(Size.MEDIUM, LocalTime.of(7, 0), 100)
+                .rate(Size.MEDIUM, LocalTime.of(19, 30), 40)
+                .rate(Size.LARGE, LocalTime.of(6, 0), 300)
+                .rate(Size.LARGE, LocalTime.of(22, 0), 0)
+                .dailyCap(Size.MEDIUM, 2500)
+                .dailyCap(Size.LARGE, 9000)
+                .gracePeriod(Duration.ofMinutes(10))
+                .build();
+        Random random = new Random(23);
+        long maxStayMillis = TimeUnit.HOURS.toMillis(maxStayHours);
+        for (int i = 0; i < EXITS; i++) {
+            sizes[i] = Size.values()[random.nextInt(3)];
+            entries[i] = 1_700_000_000_000L + (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(365));
+            exits[i] = entries[i] + (long) (random.nextDouble() * maxStayMillis);
+        }
+    }
+
+    @Benchmark
+    public long fee() {
+        int i = next++ & (EXITS - 1);
+        return tariff.fee(sizes[i], entries[i], exits[i]);
+    }
+}
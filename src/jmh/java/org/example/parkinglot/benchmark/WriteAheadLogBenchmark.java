@@ -0,0 +1,135 @@
+package org.example.parkinglot.benchmark;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.persistence.FsyncPolicy;
+import org.example.parkinglot.persistence.WriteAheadLog;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * park/unPark throughput with every operation logged to a {@link WriteAheadLog} on local disk, per {@link FsyncPolicy}.
+ * Run with several threads ({@code -t}) to see group commit amortise the fsync of {@link FsyncPolicy#EVERY_COMMIT}.
+ *
+ * {@link #recover(Replay)} measures rebuilding a {@link LotManager} from a log of {@code records} records.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+
+    private static final Duration SYNC_INTERVAL = Duration.ofMillis(10);
+
+    @State(Scope.Benchmark)
+    public static class Logged {
+
+        @Param({"EVERY_COMMIT", "INTERVAL", "NEVER"})
+        public FsyncPolicy fsyncPolicy;
+
+        @Param({"100000"})
+        public int lotsPerSize;
+
+        LotManager lotManager;
+
+        private Path directory;
+        private WriteAheadLog log;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("wal-benchmark");
+            lotManager = new LotManager(lotsPerSize, lotsPerSize, lotsPerSize,
+                    LotManagerBenchmark.trackerFactory("concurrent"));
+            log = WriteAheadLog.recover(directory.resolve("lots.wal"), lotManager, fsyncPolicy, SYNC_INTERVAL);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            log.close();
+            Files.deleteIfExists(directory.resolve("lots.wal"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+        private static final AtomicInteger GATES = new AtomicInteger();
+
+        private Vehicle[] vehicles;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int gate = GATES.incrementAndGet();
+            vehicles = BenchmarkVehicles.create(1024, "mixed", "gate-" + gate + "-vehicle-", gate);
+        }
+
+        Vehicle nextVehicle() {
+            return vehicles[next++ & (vehicles.length - 1)];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Replay {
+
+        @Param({"1000000"})
+        public int records;
+
+        Path path;
+        private Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("wal-replay-benchmark");
+            path = directory.resolve("lots.wal");
+            LotManager lotManager = new LotManager(1024, 1024, 1024, LotManagerBenchmark.trackerFactory("single"));
+            Vehicle[] vehicles = BenchmarkVehicles.create(1024, "mixed", "vehicle-", 7);
+            try (WriteAheadLog log = WriteAheadLog.recover(path, lotManager, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+                for (int i = 0; i < records / 2; i++) {
+                    lotManager.unParkPacked(lotManager.parkPacked(vehicles[i & (vehicles.length - 1)]));
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Benchmark
+    public boolean parkUnPark(Logged logged, Gate gate) {
+        LotManager lotManager = logged.lotManager;
+        return lotManager.unParkPacked(lotManager.parkPacked(gate.nextVehicle()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long recover(Replay replay) throws IOException {
+        LotManager lotManager = new LotManager(1024, 1024, 1024, LotManagerBenchmark.trackerFactory("single"));
+        return WriteAheadLog.restore(replay.path, 0, lotManager);
+    }
+}
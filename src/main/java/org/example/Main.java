@@ -1,7 +1,35 @@
 package org.example;
 
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.server.GateServer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Serves a parking lot to the gates on localhost, see {@link GateServer}.
+ *
+ *     java -cp build/classes/java/main org.example.Main [port] [carLots] [bikeLots] [truckLots]
+ */
 public class Main {
-    public static void main(String[] args) {
-        System.out.println("Hello world!");
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int carLots = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int bikeLots = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int truckLots = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+        LotManager lotManager = new LotManager(carLots, bikeLots, truckLots, ConcurrentLotTracker.Factory.INSTANCE);
+        GateServer server = GateServer.start(lotManager, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (Exception e) {
+                // exiting anyway
+            }
+        }));
+        System.out.println("Gate server listening on " + server.getAddress() + ", virtual threads: "
+                + server.usesVirtualThreads());
+        Thread.currentThread().join();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package org.example.parkinglot;
+
+import org.example.parkinglot.index.AtomicFreeLotIndex;
+import org.example.parkinglot.index.FreeLotIndex;
+import org.example.parkinglot.models.LotTrackerFactory;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.store.LotStore;
+import org.example.parkinglot.store.ObjectLotStore;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ThreadSafe {@link LotTracker} for parking lots with many entry and exit gates.
+ *
+ * There is no global lock. Free lots are claimed from a lock-free {@link FreeLotIndex} with compareAndSet, so a lot
+ * can only be handed out to one vehicle at a time. Every lot additionally has its own CAS based lock, held only while
+ * that lot is being reserved or released, so two gates presenting the same ticket cannot both release it. The locks are
+ * kept in chunks, so that lots are added without moving the locks of the existing ones, see {@link #addLots(int)}.
+ * The count of lots occupied is kept in a {@link LongAdder} to avoid contention on a single counter.
+ */
+public class ConcurrentLotTracker extends LotTracker {
+
+    private static final int UNLOCKED = 0;
+    private static final int LOCKED = 1;
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private volatile AtomicIntegerArray[] lotLocks = new AtomicIntegerArray[0];
+    private final LongAdder numberOfLotsOccupied = new LongAdder();
+
+    public static class Factory implements LotTrackerFactory {
+        public static final Factory INSTANCE = new Factory(AtomicFreeLotIndex.FACTORY, ObjectLotStore.FACTORY);
+
+        private final FreeLotIndex.Factory indexFactory;
+        private final LotStore.Factory storeFactory;
+
+        private Factory(FreeLotIndex.Factory indexFactory, LotStore.Factory storeFactory) {
+            if (indexFactory == null || storeFactory == null) {
+                throw new IllegalArgumentException("indexFactory and storeFactory must not be null");
+            }
+            this.indexFactory = indexFactory;
+            this.storeFactory = storeFactory;
+        }
+
+        /**
+         * @param indexFactory used to create the {@link FreeLotIndex} of every tracker built by this factory, which
+         *                     must create ThreadSafe indexes such as
+         *                     {@link org.example.parkinglot.index.NearestBayLotIndex}
+         * @return A factory building trackers backed by the given kind of {@link FreeLotIndex}
+         */
+        public Factory withIndex(FreeLotIndex.Factory indexFactory) {
+            return new Factory(indexFactory, storeFactory);
+        }
+
+        /**
+         * @param storeFactory used to create the {@link LotStore} of every tracker built by this factory
+         * @return A factory building trackers backed by the given kind of {@link LotStore}
+         */
+        public Factory withStore(LotStore.Factory storeFactory) {
+            return new Factory(indexFactory, storeFactory);
+        }
+
+        public LotTracker createLotTracker(int numberOfLots, Size size) {
+            return new ConcurrentLotTracker(numberOfLots, size, indexFactory, storeFactory);
+        }
+    }
+
+    protected ConcurrentLotTracker(int numberOfLots, Size lotSize, FreeLotIndex.Factory indexFactory,
+                                   LotStore.Factory storeFactory) {
+        super(numberOfLots, lotSize, indexFactory, storeFactory);
+        addLotLocks(numberOfLots);
+    }
+
+    @Override
+    protected int lockLot(int lotId) {
+        AtomicIntegerArray locks = lotLocks[lotId >>> CHUNK_SHIFT];
+        int retries = 0;
+        while (!locks.compareAndSet(lotId & CHUNK_MASK, UNLOCKED, LOCKED)) {
+            retries++;
+            Thread.onSpinWait();
+        }
+        return retries;
+    }
+
+    @Override
+    protected void unlockLot(int lotId) {
+        lotLocks[lotId >>> CHUNK_SHIFT].set(lotId & CHUNK_MASK, UNLOCKED);
+    }
+
+    @Override
+    protected synchronized void addLotLocks(int numberOfLots) {
+        AtomicIntegerArray[] locks = lotLocks;
+        int chunkCount = (int) (((long) numberOfLots + CHUNK_MASK) >>> CHUNK_SHIFT);
+        if (chunkCount > locks.length) {
+            AtomicIntegerArray[] grown = Arrays.copyOf(locks, chunkCount);
+            for (int chunk = locks.length; chunk < chunkCount; chunk++) {
+                grown[chunk] = new AtomicIntegerArray(CHUNK_MASK + 1);
+            }
+            lotLocks = grown;
+        }
+    }
+
+    @Override
+    protected void incrementLotsOccupied(int lotId) {
+        numberOfLotsOccupied.increment();
+    }
+
+    @Override
+    protected void decrementLotsOccupied(int lotId) {
+        numberOfLotsOccupied.decrement();
+    }
+
+    @Override
+    protected void addLotsOccupied(int[] lotIds, int count) {
+        numberOfLotsOccupied.add(count);
+    }
+
+    @Override
+    protected void removeLotsOccupied(int[] lotIds, int count) {
+        numberOfLotsOccupied.add(-count);
+    }
+
+    /**
+     *
+     * @return Number of lots currently occupied by vehicles. Exact when no reserve or release is in flight.
+     */
+    @Override
+    public int getNumberOfLotsOccupied() {
+        return numberOfLotsOccupied.intValue();
+    }
+}
@@ -1,11 +1,35 @@
 package org.example.parkinglot;
 
+import org.example.parkinglot.allocation.AllocationPolicy;
+import org.example.parkinglot.allocation.StrictAllocationPolicy;
+import org.example.parkinglot.billing.MonotonicClock;
+import org.example.parkinglot.billing.Tariff;
+import org.example.parkinglot.booking.Booking;
+import org.example.parkinglot.index.FreeLotIndex;
+import org.example.parkinglot.index.VehicleLocationIndex;
+import org.example.parkinglot.jfr.ParkEvent;
+import org.example.parkinglot.jfr.UnParkEvent;
+import org.example.parkinglot.metrics.LotMetrics;
+import org.example.parkinglot.metrics.Operation;
+import org.example.parkinglot.metrics.Outcome;
 import org.example.parkinglot.models.LotTrackerFactory;
 import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.PackedTicket;
 import org.example.parkinglot.models.lot.Ticket;
 import org.example.parkinglot.models.vehicle.Vehicle;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service class which provides API to park and unPark vehicle.
@@ -13,30 +37,553 @@ import java.util.EnumMap;
  * in {@link LotTracker} and this class simply delegates the reserving/releasing
  * and tracking the number of vehicles to corresponding {@link LotTracker} instances based on the size
  * of incoming or outgoing vehicle.
+ *
+ * Which lot sizes a vehicle may take is decided by an {@link AllocationPolicy}, by default only lots of the vehicle's
+ * own size ({@link StrictAllocationPolicy}). Tickets are handed back to the tracker of the lot size they were issued
+ * for, so a vehicle which overflowed into a larger lot is unParked from there.
+ *
+ * Given {@link LotMetrics}, every park and unPark is counted by size and {@link Outcome}, and a sample of them is
+ * timed, see {@link LotMetrics#getSampleInterval()}. The vehicles and tickets of a batch are counted one by one but
+ * not timed. Without metrics, nothing is recorded or timed.
+ * Single parks and unParks also emit a {@link ParkEvent} or {@link UnParkEvent} while a Flight Recorder recording has
+ * them enabled.
+ *
+ * Lots are added and retired while vehicles keep parking, see {@link #addLots(Size, int)} and
+ * {@link #retireLots(Size, int, int)}.
+ *
+ * Once billing is enabled with a {@link Tariff}, {@link #unParkForFee(Ticket)} unParks a vehicle and returns the
+ * amount due for its stay, priced from the issue time stamped on its ticket. Tickets issued before billing was
+ * enabled carry no issue time and are not billable.
+ *
+ * The map is never modified after construction, so this class is as ThreadSafe as the {@link LotTracker} instances
+ * created by the given {@link LotTrackerFactory}. Use {@link ConcurrentLotTracker.Factory} for many concurrent gates.
  */
 public class LotManager {
 
+    /**
+     * Returned by {@link #unParkForFee(Ticket)} when the ticket was not valid.
+     */
+    public static final long NOT_UNPARKED = -1L;
+
+    private static final Size[] SIZES = Size.values();
+
     private final EnumMap<Size, LotTracker> lotTrackerBySizeMap = new EnumMap<>(Size.class);
 
+    private final VehicleLocationIndex vehicleLocationIndex;
+
+    private final AllocationPolicy allocationPolicy;
+
+    private final LotMetrics metrics;
+
+    private volatile Tariff tariff;
+
+    private volatile MonotonicClock billingClock;
+
+    /**
+     * Working arrays of {@link #parkAll(List)} and {@link #unParkAll(Collection)}, so that only the results and
+     * tickets are allocated per batch.
+     */
+    private final ThreadLocal<BatchScratch> batchScratch = ThreadLocal.withInitial(BatchScratch::new);
+
     public LotManager(int noOfCarLots, int noOfBikeLots, int noOfTruckLots, LotTrackerFactory factory) {
+        this(noOfCarLots, noOfBikeLots, noOfTruckLots, factory, StrictAllocationPolicy.INSTANCE);
+    }
+
+    /**
+     * @param allocationPolicy deciding which lot sizes a vehicle may be parked in
+     */
+    public LotManager(int noOfCarLots, int noOfBikeLots, int noOfTruckLots, LotTrackerFactory factory,
+                      AllocationPolicy allocationPolicy) {
+        this(noOfCarLots, noOfBikeLots, noOfTruckLots, factory, allocationPolicy, null);
+    }
+
+    /**
+     * @param allocationPolicy deciding which lot sizes a vehicle may be parked in
+     * @param metrics          recording every park and unPark, or null to record nothing
+     */
+    public LotManager(int noOfCarLots, int noOfBikeLots, int noOfTruckLots, LotTrackerFactory factory,
+                      AllocationPolicy allocationPolicy, LotMetrics metrics) {
+        if (allocationPolicy == null) {
+            throw new IllegalArgumentException("allocationPolicy must not be null");
+        }
+        this.metrics = metrics;
+        for (Size size : Size.values()) {
+            List<Size> lotSizes = allocationPolicy.lotSizesFor(size);
+            if (lotSizes.isEmpty() || lotSizes.get(0) != size) {
+                throw new IllegalArgumentException("allocationPolicy must offer every vehicle its own size first");
+            }
+            for (Size lotSize : lotSizes) {
+                if (!lotSize.canHold(size)) {
+                    throw new IllegalArgumentException("allocationPolicy offers " + lotSize + " lots to " + size
+                            + " vehicles");
+                }
+            }
+        }
+        this.allocationPolicy = allocationPolicy;
         lotTrackerBySizeMap.put(Size.SMALL, factory.createLotTracker(noOfBikeLots, Size.SMALL));
         lotTrackerBySizeMap.put(Size.MEDIUM, factory.createLotTracker(noOfCarLots, Size.MEDIUM));
         lotTrackerBySizeMap.put(Size.LARGE, factory.createLotTracker(noOfTruckLots, Size.LARGE));
+
+        EnumMap<Size, Integer> numberOfLotsBySize = new EnumMap<>(Size.class);
+        numberOfLotsBySize.put(Size.SMALL, noOfBikeLots);
+        numberOfLotsBySize.put(Size.MEDIUM, noOfCarLots);
+        numberOfLotsBySize.put(Size.LARGE, noOfTruckLots);
+        vehicleLocationIndex = new VehicleLocationIndex(numberOfLotsBySize);
+        addListener(vehicleLocationIndex);
     }
 
     /**
      *
      *
      * @param vehicle to be parked
-     * @return A valid {@link Ticket} if empty slots are available for vehicle size, else null;
+     * @return A valid {@link Ticket} if empty slots the {@link AllocationPolicy} allows are available for vehicle size
+     * and the vehicle is not parked already, else null;
      */
      public Ticket park(Vehicle vehicle) {
+        return park(vehicle, FreeLotIndex.ANY_GATE);
+    }
+
+    /**
+     * Parks a vehicle in the free lot nearest to the entry gate it arrived through, provided the trackers were built
+     * with a gate aware {@link FreeLotIndex} such as {@link org.example.parkinglot.index.NearestBayLotIndex}. Other
+     * indexes ignore the gate.
+     *
+     * @param vehicle to be parked
+     * @param gate    ID of the entry gate in the site's {@link org.example.parkinglot.layout.BayLayout}, or
+     *                {@link FreeLotIndex#ANY_GATE}
+     * @return A valid {@link Ticket}, see {@link #park(Vehicle)}, else null
+     */
+    public Ticket park(Vehicle vehicle, int gate) {
+        long start = startTimer();
+        ParkEvent event = ParkEvent.start();
         if (vehicle == null || vehicle.getSize() == null) {
+            recordPark(vehicle, gate, Outcome.SIZE_MISMATCH, null, -1, start, event);
             return null;
         }
-        return lotTrackerBySizeMap.get(vehicle.getSize())
-                .reserveLot(vehicle)
-                .orElse(null);
+        if (!vehicleLocationIndex.claim(vehicle.id())) {
+            recordPark(vehicle, gate, Outcome.ALREADY_PARKED, null, -1, start, event);
+            return null;
+        }
+        Ticket ticket = null;
+        try {
+            ticket = reserveLot(vehicle, 0, gate);
+        } finally {
+            if (ticket == null) {
+                vehicleLocationIndex.abandon(vehicle.id());
+            }
+        }
+        if (ticket == null) {
+            recordPark(vehicle, gate, Outcome.FULL, null, -1, start, event);
+        } else {
+            recordPark(vehicle, gate, Outcome.SUCCESS, ticket.getLotSize(), ticket.getLotId(), start, event);
+        }
+        return ticket;
+    }
+
+    /**
+     * Tries the lot sizes the {@link AllocationPolicy} offers for the vehicle, from the given one on. Full sizes are
+     * skipped by their trackers' occupied counters before any lot is looked at.
+     *
+     * @param first index of the first lot size to try, sizes before it have been tried already
+     * @param gate  the vehicle arrived through
+     * @return Ticket of the reserved lot, or null
+     */
+    private Ticket reserveLot(Vehicle vehicle, int first, int gate) {
+        List<Size> lotSizes = allocationPolicy.lotSizesFor(vehicle.getSize());
+        for (int i = first; i < lotSizes.size(); i++) {
+            if (i > 0 && !allocationPolicy.admits(vehicle.getSize(), lotSizes.get(i), this)) {
+                continue;
+            }
+            LotTracker lotTracker = lotTrackerBySizeMap.get(lotSizes.get(i));
+            Optional<Ticket> ticket = gate == FreeLotIndex.ANY_GATE
+                    ? lotTracker.reserveLot(vehicle)
+                    : lotTracker.reserveLot(vehicle, gate);
+            if (ticket.isPresent()) {
+                return ticket.get();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parks a vehicle as soon as a lot is available instead of having the caller retry while the lot is full. If no lot
+     * the {@link AllocationPolicy} allows is free, the vehicle joins the waitlist of its own lot size, see
+     * {@link LotTracker#reserveLotWhenAvailable(Vehicle)}, and takes the next lot of that size released.
+     *
+     * The future is completed by the thread which unParked the freed lot, chain slow work with the async methods.
+     * Timeouts share the {@link CompletableFuture} timer thread; timing out or cancelling the future takes the vehicle
+     * out of the waitlist. The vehicle counts as parked while it waits, a second park of it is rejected.
+     *
+     * @param vehicle to be parked
+     * @param timeout after which the future fails with a {@link java.util.concurrent.TimeoutException}
+     * @return Future of a valid {@link Ticket}, or of null right away where {@link #park(Vehicle)} would reject the
+     * vehicle for another reason than a full lot
+     */
+    public CompletableFuture<Ticket> parkWhenAvailable(Vehicle vehicle, Duration timeout) {
+        if (timeout == null || timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must not be null or negative");
+        }
+        if (vehicle == null || vehicle.getSize() == null) {
+            count(Operation.PARK, null, Outcome.SIZE_MISMATCH);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!vehicleLocationIndex.claim(vehicle.id())) {
+            count(Operation.PARK, vehicle.getSize(), Outcome.ALREADY_PARKED);
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Ticket> ticket;
+        try {
+            Ticket reserved = reserveLot(vehicle, 0, FreeLotIndex.ANY_GATE);
+            ticket = reserved != null
+                    ? CompletableFuture.completedFuture(reserved)
+                    : lotTrackerBySizeMap.get(vehicle.getSize()).reserveLotWhenAvailable(vehicle)
+                            .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            vehicleLocationIndex.abandon(vehicle.id());
+            throw e;
+        }
+        ticket.whenComplete((reserved, failure) -> {
+            if (reserved == null) {
+                vehicleLocationIndex.abandon(vehicle.id());
+            }
+            if (reserved == null) {
+                count(Operation.PARK, vehicle.getSize(), Outcome.FULL);
+            } else {
+                count(Operation.PARK, reserved.getLotSize(), Outcome.SUCCESS);
+            }
+        });
+        return ticket;
+    }
+
+    /**
+     * Adds lots of a size while vehicles keep parking, e.g. when an overflow field is opened, see
+     * {@link LotTracker#addLots(int)}.
+     *
+     * @return ID of the first lot added
+     */
+    public int addLots(Size size, int count) {
+        return lotTrackerBySizeMap.get(size).addLots(count);
+    }
+
+    /**
+     * Takes the lots [fromLotId, toLotId) of a size out of service, e.g. a level closed for maintenance. Occupied lots
+     * drain, see {@link LotTracker#retireLots(int, int)}.
+     *
+     * @return Number of lots retired
+     */
+    public int retireLots(Size size, int fromLotId, int toLotId) {
+        return lotTrackerBySizeMap.get(size).retireLots(fromLotId, toLotId);
+    }
+
+    /**
+     * Puts retired lots of a size back into service, see {@link LotTracker#reopenLots(int, int)}.
+     *
+     * @return Number of lots reopened
+     */
+    public int reopenLots(Size size, int fromLotId, int toLotId) {
+        return lotTrackerBySizeMap.get(size).reopenLots(fromLotId, toLotId);
+    }
+
+    /**
+     * Enables pricing stays with a tariff. Tickets are stamped by the given clock from now on, so billing should be
+     * enabled before any vehicle is parked: tickets issued earlier are not billable.
+     *
+     * @param tariff pricing every stay, see {@link #setTariff(Tariff)} to change it later
+     * @param clock  telling the time of entries and exits
+     * @throws IllegalStateException if billing is enabled already
+     */
+    public synchronized void enableBilling(Tariff tariff, Clock clock) {
+        if (tariff == null || clock == null) {
+            throw new IllegalArgumentException("tariff and clock must not be null");
+        }
+        if (billingClock != null) {
+            throw new IllegalStateException("Billing is enabled already");
+        }
+        MonotonicClock issueClock = new MonotonicClock(clock);
+        for (LotTracker lotTracker : lotTrackerBySizeMap.values()) {
+            lotTracker.setIssueClock(issueClock);
+        }
+        this.billingClock = issueClock;
+        this.tariff = tariff;
+    }
+
+    /**
+     * Replaces the tariff, e.g. for new prices or when daylight saving time starts. Vehicles leaving from now on pay
+     * the new tariff for their whole stay.
+     *
+     * @throws IllegalStateException if billing is not enabled
+     */
+    public synchronized void setTariff(Tariff tariff) {
+        if (tariff == null) {
+            throw new IllegalArgumentException("tariff must not be null");
+        }
+        if (billingClock == null) {
+            throw new IllegalStateException("Billing is not enabled");
+        }
+        this.tariff = tariff;
+    }
+
+    /**
+     * Same as {@link #unPark(Ticket)}, pricing the stay once the vehicle is unParked. Vehicles pay the rate of their
+     * own size, also when they overflowed into a larger lot. Takes constant time and allocates nothing on top of
+     * unParking.
+     *
+     * @param ticket for the vehicle to be unParked
+     * @return Amount due in minor currency units, or {@link #NOT_UNPARKED} if the ticket was not valid
+     * @throws IllegalStateException    if billing is not enabled
+     * @throws IllegalArgumentException if the ticket was issued before billing was enabled, so its stay cannot be
+     *                                  priced. The vehicle is left parked, to be unParked with {@link #unPark(Ticket)}.
+     */
+    public long unParkForFee(Ticket ticket) {
+        Tariff tariff = this.tariff;
+        if (tariff == null) {
+            throw new IllegalStateException("Billing is not enabled");
+        }
+        if (ticket != null) {
+            checkStamped(ticket);
+        }
+        if (!unPark(ticket)) {
+            return NOT_UNPARKED;
+        }
+        return tariff.fee(ticket.getVehicleSize(), ticket.getIssuedAtMillis(), billingClock.millis());
+    }
+
+    /**
+     * @param ticket of a parked vehicle
+     * @return Amount the vehicle would pay if it left now, e.g. for a pay station
+     * @throws IllegalStateException    if billing is not enabled
+     * @throws IllegalArgumentException if the ticket was issued before billing was enabled
+     */
+    public long quote(Ticket ticket) {
+        Tariff tariff = this.tariff;
+        if (tariff == null) {
+            throw new IllegalStateException("Billing is not enabled");
+        }
+        if (ticket == null) {
+            throw new IllegalArgumentException("ticket must not be null");
+        }
+        checkStamped(ticket);
+        return tariff.fee(ticket.getVehicleSize(), ticket.getIssuedAtMillis(), billingClock.millis());
+    }
+
+    private static void checkStamped(Ticket ticket) {
+        if (ticket.getIssuedAtMillis() == Ticket.NOT_STAMPED) {
+            throw new IllegalArgumentException("Ticket of " + ticket.getVehicleId()
+                    + " was issued before billing was enabled, its stay cannot be priced");
+        }
+    }
+
+    /**
+     * Enables pre-booking lots of every size for time windows, see {@link LotTracker#enableBookings(Clock, Duration)}.
+     */
+    public void enableBookings(Clock clock, Duration leadTime) {
+        for (LotTracker lotTracker : lotTrackerBySizeMap.values()) {
+            lotTracker.enableBookings(clock, leadTime);
+        }
+    }
+
+    /**
+     * @return true if a lot of the given size is free for the whole window [start, end), see
+     * {@link LotTracker#isAvailable(Instant, Instant)}
+     */
+    public boolean isAvailable(Size size, Instant start, Instant end) {
+        return lotTrackerBySizeMap.get(size).isAvailable(start, end);
+    }
+
+    /**
+     * Books the best fitting lot of the given size for the window [start, end), see
+     * {@link LotTracker#book(Instant, Instant)}.
+     *
+     * @return The booking, or null if no lot of the size is free for the window
+     */
+    public Booking book(Size size, Instant start, Instant end) {
+        return lotTrackerBySizeMap.get(size).book(start, end).orElse(null);
+    }
+
+    /**
+     * @return false if the booking was over or cancelled already, see {@link LotTracker#cancelBooking(Booking)}
+     */
+    public boolean cancel(Booking booking) {
+        if (booking == null) {
+            throw new IllegalArgumentException("booking must not be null");
+        }
+        return lotTrackerBySizeMap.get(booking.getLotSize()).cancelBooking(booking);
+    }
+
+    /**
+     * Parks an arriving vehicle in the lot of its booking, see {@link LotTracker#reserveBookedLot(Booking, Vehicle)}.
+     *
+     * @param booking of the vehicle
+     * @param vehicle to be parked
+     * @return A valid {@link Ticket}, or null if the vehicle does not fit, is parked already, the booking is not valid
+     * at this time, or its lot is still occupied and no other lot of the size is free
+     */
+    public Ticket parkBooked(Booking booking, Vehicle vehicle) {
+        if (booking == null) {
+            throw new IllegalArgumentException("booking must not be null");
+        }
+        long start = startTimer();
+        ParkEvent event = ParkEvent.start();
+        if (vehicle == null || vehicle.getSize() == null || !booking.getLotSize().canHold(vehicle.getSize())) {
+            recordPark(vehicle, FreeLotIndex.ANY_GATE, Outcome.SIZE_MISMATCH, null, -1, start, event);
+            return null;
+        }
+        if (!vehicleLocationIndex.claim(vehicle.id())) {
+            recordPark(vehicle, FreeLotIndex.ANY_GATE, Outcome.ALREADY_PARKED, null, -1, start, event);
+            return null;
+        }
+        Ticket ticket = null;
+        try {
+            ticket = lotTrackerBySizeMap.get(booking.getLotSize()).reserveBookedLot(booking, vehicle).orElse(null);
+        } finally {
+            if (ticket == null) {
+                vehicleLocationIndex.abandon(vehicle.id());
+            }
+        }
+        if (ticket == null) {
+            recordPark(vehicle, FreeLotIndex.ANY_GATE, Outcome.FULL, null, -1, start, event);
+        } else {
+            recordPark(vehicle, FreeLotIndex.ANY_GATE, Outcome.SUCCESS, ticket.getLotSize(), ticket.getLotId(), start,
+                    event);
+        }
+        return ticket;
+    }
+
+    /**
+     * Parks a batch of vehicles, e.g. plate reads buffered by a gate controller. Vehicles are grouped by size and
+     * each {@link LotTracker} reserves the lots of its group in one go, see {@link LotTracker#reserveLots}. Vehicles
+     * left over once their own size is full go through the other sizes of the {@link AllocationPolicy} one by one.
+     * Takes about as long as parking the vehicles one by one, small batches a little longer.
+     *
+     * @param vehicles to be parked
+     * @return Ticket for every vehicle, in the same order, null where {@link #park(Vehicle)} would have returned null
+     */
+    public List<Ticket> parkAll(List<Vehicle> vehicles) {
+        Ticket[] tickets = new Ticket[vehicles.size()];
+        BatchScratch scratch = batchScratch.get().ensureCapacity(tickets.length);
+        Vehicle[] parking = scratch.vehicles;
+        String[] vehicleIds = scratch.vehicleIds;
+        int[] positions = scratch.positions;
+        int count = 0;
+        int position = 0;
+        for (Vehicle vehicle : vehicles) {
+            if (vehicle != null && vehicle.getSize() != null) {
+                parking[count] = vehicle;
+                vehicleIds[count] = vehicle.id();
+                positions[count++] = position;
+            } else {
+                count(Operation.PARK, null, Outcome.SIZE_MISMATCH);
+            }
+            position++;
+        }
+        boolean[] claimed = scratch.claimed;
+        try {
+            vehicleLocationIndex.claimAll(vehicleIds, count, claimed);
+            reserveClaimed(tickets, scratch, count);
+            for (int i = 0; i < count && metrics != null; i++) {
+                Ticket ticket = tickets[positions[i]];
+                Outcome outcome = !claimed[i] ? Outcome.ALREADY_PARKED
+                        : ticket == null ? Outcome.FULL : Outcome.SUCCESS;
+                count(Operation.PARK, outcome == Outcome.SUCCESS ? ticket.getLotSize() : parking[i].getSize(),
+                        outcome);
+            }
+        } finally {
+            scratch.clear(count);
+        }
+        return Arrays.asList(tickets);
+    }
+
+    /**
+     * Reserves lots for the claimed vehicles of a batch, grouped by size, and abandons the claims of those left
+     * without a lot.
+     */
+    private void reserveClaimed(Ticket[] tickets, BatchScratch scratch, int count) {
+        Vehicle[] parking = scratch.vehicles;
+        int[] positions = scratch.positions;
+        boolean[] claimed = scratch.claimed;
+        try {
+            // the claimed vehicles of each size go next to each other, from the first position of the size on, which
+            // leaves every bound at the end of its size
+            int[] bounds = scratch.groupBounds(parking, claimed, count);
+            Vehicle[] grouped = scratch.groupedVehicles;
+            int[] groupedIndexes = scratch.groupedIndexes;
+            for (int i = 0; i < count; i++) {
+                if (claimed[i]) {
+                    int slot = bounds[parking[i].getSize().ordinal()]++;
+                    grouped[slot] = parking[i];
+                    groupedIndexes[slot] = i;
+                }
+            }
+            int from = 0;
+            for (Size size : SIZES) {
+                int to = bounds[size.ordinal()];
+                LotTracker lotTracker = lotTrackerBySizeMap.get(size);
+                if (to > from && lotTracker != null) {
+                    lotTracker.reserveLots(grouped, from, to - from, scratch.groupedTickets, scratch.lotIds);
+                    for (int i = from; i < to; i++) {
+                        tickets[positions[groupedIndexes[i]]] = scratch.groupedTickets[i];
+                    }
+                }
+                from = to;
+            }
+            for (int i = 0; i < count; i++) {
+                if (claimed[i] && tickets[positions[i]] == null) {
+                    tickets[positions[i]] = reserveLot(parking[i], 1, FreeLotIndex.ANY_GATE);
+                }
+            }
+        } finally {
+            for (int i = 0; i < count; i++) {
+                if (claimed[i] && tickets[positions[i]] == null) {
+                    vehicleLocationIndex.abandon(scratch.vehicleIds[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Allocation free variant of {@link #park(Vehicle)}.
+     *
+     * @param vehicle to be parked
+     * @return A valid {@link PackedTicket} if empty slots are available for vehicle size, else {@link PackedTicket#NONE}
+     */
+    public long parkPacked(Vehicle vehicle) {
+        return parkPacked(vehicle, FreeLotIndex.ANY_GATE);
+    }
+
+    /**
+     * Allocation free variant of {@link #park(Vehicle, int)}.
+     */
+    public long parkPacked(Vehicle vehicle, int gate) {
+        long start = startTimer();
+        ParkEvent event = ParkEvent.start();
+        if (vehicle == null || vehicle.getSize() == null) {
+            recordPark(vehicle, gate, Outcome.SIZE_MISMATCH, null, -1, start, event);
+            return PackedTicket.NONE;
+        }
+        if (!vehicleLocationIndex.claim(vehicle.id())) {
+            recordPark(vehicle, gate, Outcome.ALREADY_PARKED, null, -1, start, event);
+            return PackedTicket.NONE;
+        }
+        long packedTicket = PackedTicket.NONE;
+        try {
+            List<Size> lotSizes = allocationPolicy.lotSizesFor(vehicle.getSize());
+            for (int i = 0; i < lotSizes.size() && packedTicket == PackedTicket.NONE; i++) {
+                if (i == 0 || allocationPolicy.admits(vehicle.getSize(), lotSizes.get(i), this)) {
+                    packedTicket = lotTrackerBySizeMap.get(lotSizes.get(i)).reserveLotPacked(vehicle, gate);
+                }
+            }
+        } finally {
+            if (packedTicket == PackedTicket.NONE) {
+                vehicleLocationIndex.abandon(vehicle.id());
+            }
+        }
+        if (packedTicket == PackedTicket.NONE) {
+            recordPark(vehicle, gate, Outcome.FULL, null, -1, start, event);
+        } else {
+            recordPark(vehicle, gate, Outcome.SUCCESS, PackedTicket.size(packedTicket),
+                    PackedTicket.lotId(packedTicket), start, event);
+        }
+        return packedTicket;
     }
 
     /**
@@ -45,10 +592,314 @@ public class LotManager {
      * @return True if ticket is valid for the vehicle, else False. True indicates vehicle can be unParked.
      */
     public boolean unPark(Ticket ticket) {
-        if (ticket == null || ticket.getVehicleSize() == null) {
+        long start = startTimer();
+        UnParkEvent event = UnParkEvent.start();
+        if (ticket == null) {
+            recordUnPark(null, -1, Outcome.INVALID_TICKET, start, event);
+            return false;
+        }
+        if (ticket.getLotSize() == null) {
+            recordUnPark(null, ticket.getLotId(), Outcome.SIZE_MISMATCH, start, event);
+            return false;
+        }
+        boolean released = lotTrackerBySizeMap.get(ticket.getLotSize()).releaseLot(ticket);
+        if (metrics != null || event != null) {
+            recordUnPark(ticket.getLotSize(), ticket.getLotId(),
+                    unParkOutcome(released, ticket.getLotSize(), ticket.getLotId()), start, event);
+        }
+        return released;
+    }
+
+    /**
+     * unParks a batch of vehicles, e.g. exits uploaded by an offline kiosk. Tickets are grouped by lot size and each
+     * {@link LotTracker} releases the lots of its group in one go, see {@link LotTracker#releaseLots}. Takes about as
+     * long as unParking the tickets one by one.
+     *
+     * @param tickets for the vehicles to be unParked
+     * @return Whether each ticket was valid, in iteration order of the tickets, see {@link #unPark(Ticket)}
+     */
+    public boolean[] unParkAll(Collection<Ticket> tickets) {
+        boolean[] released = new boolean[tickets.size()];
+        BatchScratch scratch = batchScratch.get().ensureCapacity(released.length);
+        int[] bounds = scratch.sizeBounds;
+        Arrays.fill(bounds, 0);
+        Ticket[] all = scratch.tickets;
+        int count = 0;
+        for (Ticket ticket : tickets) {
+            all[count++] = ticket;
+            if (ticket == null) {
+                count(Operation.UNPARK, null, Outcome.INVALID_TICKET);
+            } else if (ticket.getLotSize() == null) {
+                count(Operation.UNPARK, null, Outcome.SIZE_MISMATCH);
+            } else {
+                bounds[ticket.getLotSize().ordinal()]++;
+            }
+        }
+        toStarts(bounds);
+        Ticket[] grouped = scratch.groupedTickets;
+        int[] groupedIndexes = scratch.groupedIndexes;
+        for (int i = 0; i < count; i++) {
+            if (all[i] != null && all[i].getLotSize() != null) {
+                int slot = bounds[all[i].getLotSize().ordinal()]++;
+                grouped[slot] = all[i];
+                groupedIndexes[slot] = i;
+            }
+        }
+        try {
+            int from = 0;
+            for (Size size : SIZES) {
+                int to = bounds[size.ordinal()];
+                LotTracker lotTracker = lotTrackerBySizeMap.get(size);
+                if (to > from && lotTracker != null) {
+                    lotTracker.releaseLots(grouped, from, to - from, scratch.released, scratch.lotIds);
+                    for (int i = from; i < to; i++) {
+                        released[groupedIndexes[i]] = scratch.released[i];
+                        if (metrics != null) {
+                            count(Operation.UNPARK, size,
+                                    unParkOutcome(scratch.released[i], size, grouped[i].getLotId()));
+                        }
+                    }
+                }
+                from = to;
+            }
+        } finally {
+            Arrays.fill(all, 0, count, null);
+            Arrays.fill(grouped, 0, count, null);
+        }
+        return released;
+    }
+
+    /**
+     * Turns the number of entries of each size into the position the first of them goes to.
+     */
+    private static void toStarts(int[] bounds) {
+        int start = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            int entries = bounds[i];
+            bounds[i] = start;
+            start += entries;
+        }
+    }
+
+    /**
+     * Allocation free variant of {@link #unPark(Ticket)}.
+     *
+     * @param packedTicket returned by {@link #parkPacked(Vehicle)}
+     * @return True if ticket is valid for the lot, else False. True indicates vehicle can be unParked.
+     */
+    public boolean unParkPacked(long packedTicket) {
+        long start = startTimer();
+        UnParkEvent event = UnParkEvent.start();
+        if (!PackedTicket.isValid(packedTicket)) {
+            recordUnPark(null, -1, Outcome.INVALID_TICKET, start, event);
             return false;
         }
-        return lotTrackerBySizeMap.get(ticket.getVehicleSize()).releaseLot(ticket);
+        Size lotSize = PackedTicket.size(packedTicket);
+        int lotId = PackedTicket.lotId(packedTicket);
+        boolean released = lotTrackerBySizeMap.get(lotSize).releaseLotPacked(packedTicket);
+        if (metrics != null || event != null) {
+            recordUnPark(lotSize, lotId, unParkOutcome(released, lotSize, lotId), start, event);
+        }
+        return released;
     }
 
+    /**
+     * Tells an unknown lot from any other reason a ticket was rejected for, only done when the outcome is recorded.
+     */
+    private Outcome unParkOutcome(boolean released, Size lotSize, int lotId) {
+        if (released) {
+            return Outcome.SUCCESS;
+        }
+        return lotId < 0 || lotId >= getLotCapacity(lotSize) ? Outcome.UNKNOWN_LOT : Outcome.INVALID_TICKET;
+    }
+
+    private long startTimer() {
+        return metrics == null ? 0 : metrics.start();
+    }
+
+    /**
+     * Records a park in the metrics and the Flight Recorder event, whichever are there.
+     */
+    private void recordPark(Vehicle vehicle, int gate, Outcome outcome, Size lotSize, int lotId, long start,
+                            ParkEvent event) {
+        Size vehicleSize = vehicle == null ? null : vehicle.getSize();
+        if (metrics != null) {
+            // the same key as the unPark of the vehicle, the vehicle's own size only if it got no lot
+            metrics.record(Operation.PARK, lotSize != null ? lotSize : vehicleSize, outcome, start);
+        }
+        if (event != null) {
+            event.end(vehicleSize, lotSize, lotId, gate, outcome);
+        }
+    }
+
+    /**
+     * Records an unPark in the metrics and the Flight Recorder event, whichever are there.
+     */
+    private void recordUnPark(Size lotSize, int lotId, Outcome outcome, long start, UnParkEvent event) {
+        if (metrics != null) {
+            metrics.record(Operation.UNPARK, lotSize, outcome, start);
+        }
+        if (event != null) {
+            event.end(lotSize, lotId, outcome);
+        }
+    }
+
+    private void count(Operation operation, Size size, Outcome outcome) {
+        if (metrics != null) {
+            metrics.count(operation, size, outcome);
+        }
+    }
+
+    /**
+     * Registers a listener with the {@link LotTracker} of every size.
+     *
+     * @param listener to be notified of every successful park and unPark
+     */
+    public void addListener(LotTrackerListener listener) {
+        for (LotTracker lotTracker : lotTrackerBySizeMap.values()) {
+            lotTracker.addListener(listener);
+        }
+    }
+
+    /**
+     * Re-applies a recorded park, see {@link LotTracker#restoreReserved(int, int, Vehicle)}.
+     */
+    public boolean restoreReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+        if (!lotTrackerBySizeMap.get(size).restoreReserved(lotId, generation, vehicle)) {
+            return false;
+        }
+        vehicleLocationIndex.onReserved(size, lotId, generation, vehicle);
+        return true;
+    }
+
+    /**
+     * Re-applies a recorded unPark, see {@link LotTracker#restoreReleased(int, int)}.
+     */
+    public boolean restoreReleased(Size size, int lotId, int generation) {
+        if (!lotTrackerBySizeMap.get(size).restoreReleased(lotId, generation)) {
+            return false;
+        }
+        vehicleLocationIndex.onReleased(size, lotId, generation);
+        return true;
+    }
+
+    /**
+     * Finds where a vehicle is parked without scanning the lots.
+     *
+     * @param vehicleId of the vehicle
+     * @return The lot the vehicle is parked in, or an empty Optional if it is not parked
+     */
+    public Optional<Lot> locate(String vehicleId) {
+        long location = vehicleLocationIndex.locate(vehicleId);
+        if (location < 0) {
+            return Optional.empty();
+        }
+        return findLot(VehicleLocationIndex.sizeOf(location), VehicleLocationIndex.lotIdOf(location));
+    }
+
+    /**
+     * @param size of the lots
+     * @return Number of lots of the given size currently occupied by vehicles
+     */
+    public int getNumberOfLotsOccupied(Size size) {
+        return lotTrackerBySizeMap.get(size).getNumberOfLotsOccupied();
+    }
+
+    /**
+     * Reports the state of every lot of every size, see {@link LotTracker#forEachLot(LotTrackerListener)}.
+     */
+    public void forEachLot(LotTrackerListener visitor) {
+        for (LotTracker lotTracker : lotTrackerBySizeMap.values()) {
+            lotTracker.forEachLot(visitor);
+        }
+    }
+
+    /**
+     * @param size of the lots
+     * @return Number of vehicles waiting for a lot of the given size, see {@link #parkWhenAvailable(Vehicle, Duration)}
+     */
+    public int getNumberOfVehiclesWaiting(Size size) {
+        return lotTrackerBySizeMap.get(size).getNumberOfVehiclesWaiting();
+    }
+
+    /**
+     * @param size of the lots
+     * @return Number of lots of the given size in service, retired lots excluded
+     */
+    public int getNumberOfLots(Size size) {
+        return lotTrackerBySizeMap.get(size).getNumberOfLots();
+    }
+
+    /**
+     * @param size of the lots
+     * @return Number of lot IDs of the given size, retired lots included
+     */
+    public int getLotCapacity(Size size) {
+        return lotTrackerBySizeMap.get(size).getLotCapacity();
+    }
+
+    /**
+     * @param size  of the lot
+     * @param lotId of the lot
+     * @return The lot, see {@link LotTracker#findLot(int)}
+     */
+    public Optional<Lot> findLot(Size size, int lotId) {
+        return lotTrackerBySizeMap.get(size).findLot(lotId);
+    }
+
+
+    /**
+     * Working arrays of a batch, grown to the largest batch seen by the thread. References are cleared after every
+     * batch, so that no vehicle or ticket is kept alive by them.
+     */
+    private static final class BatchScratch {
+        final int[] sizeBounds = new int[SIZES.length];
+        Vehicle[] vehicles = new Vehicle[0];
+        String[] vehicleIds = new String[0];
+        int[] positions = new int[0];
+        boolean[] claimed = new boolean[0];
+        Vehicle[] groupedVehicles = new Vehicle[0];
+        int[] groupedIndexes = new int[0];
+        Ticket[] tickets = new Ticket[0];
+        Ticket[] groupedTickets = new Ticket[0];
+        boolean[] released = new boolean[0];
+        int[] lotIds = new int[0];
+
+        BatchScratch ensureCapacity(int count) {
+            if (positions.length < count) {
+                vehicles = new Vehicle[count];
+                vehicleIds = new String[count];
+                positions = new int[count];
+                claimed = new boolean[count];
+                groupedVehicles = new Vehicle[count];
+                groupedIndexes = new int[count];
+                tickets = new Ticket[count];
+                groupedTickets = new Ticket[count];
+                released = new boolean[count];
+                lotIds = new int[count];
+            }
+            return this;
+        }
+
+        /**
+         * @return Position of the first claimed vehicle of every size once they are grouped by size, by size ordinal
+         */
+        int[] groupBounds(Vehicle[] parking, boolean[] claimed, int count) {
+            Arrays.fill(sizeBounds, 0);
+            for (int i = 0; i < count; i++) {
+                if (claimed[i]) {
+                    sizeBounds[parking[i].getSize().ordinal()]++;
+                }
+            }
+            toStarts(sizeBounds);
+            return sizeBounds;
+        }
+
+        void clear(int count) {
+            Arrays.fill(vehicles, 0, count, null);
+            Arrays.fill(vehicleIds, 0, count, null);
+            Arrays.fill(groupedVehicles, 0, count, null);
+            Arrays.fill(groupedTickets, 0, count, null);
+        }
+    }
 }
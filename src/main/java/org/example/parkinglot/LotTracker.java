@@ -1,85 +1,431 @@
  package org.example.parkinglot;
 
+import org.example.parkinglot.billing.MonotonicClock;
+import org.example.parkinglot.booking.Booking;
+import org.example.parkinglot.booking.BookingCalendar;
+import org.example.parkinglot.index.FreeLotIndex;
+import org.example.parkinglot.index.HierarchicalFreeLotIndex;
+import org.example.parkinglot.jfr.ReserveLotEvent;
 import org.example.parkinglot.models.LotTrackerFactory;
 import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.PackedTicket;
 import org.example.parkinglot.models.Size;
 import org.example.parkinglot.models.lot.Ticket;
 import org.example.parkinglot.models.vehicle.Vehicle;
+import org.example.parkinglot.store.BufferLotStore;
+import org.example.parkinglot.store.LotStore;
+import org.example.parkinglot.store.ObjectLotStore;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
 A simple data structure to encapsulate {@link Lot} and track number of available lots.
 Since we will have finite countable number of lots, the lots are numbered numerically starting with ID=0.
 
-This data structure maintains an array of lots indexed by its ID.This ensures faster lookups and access to individual
-lots using index in array.
+This data structure maintains the lots in a {@link LotStore} indexed by their ID.This ensures faster lookups and access
+to individual lots using their ID. By default every lot is a {@link Lot} object in an array ({@link ObjectLotStore}),
+{@link BufferLotStore} keeps the same state in a compact primitive buffer for very large trackers.
+Free lots are tracked by a pluggable {@link FreeLotIndex}, so finding an available lot does not require scanning
+the lots no matter how full the tracker is.
+Every single reservation emits a {@link ReserveLotEvent} while a Flight Recorder recording has it enabled.
+Vehicles may wait for a lot in a FIFO waitlist, see {@link #reserveLotWhenAvailable(Vehicle)}. Every released lot
+is handed to the longest waiting vehicle before it goes back to the {@link FreeLotIndex}.
+Bays may be pre-booked for time windows once {@link #enableBookings(Clock, Duration)} is called, walk-ins then only get
+bays without a booking coming up, see {@link BookingCalendar}.
+Tickets are stamped with the time they were issued by a {@link MonotonicClock} once one is set, see
+{@link #setIssueClock}.
+Lots are added with {@link #addLots(int)} and taken out of service with {@link #retireLots(int, int)} while vehicles
+keep parking, without stopping the world to copy the lots.
 
 Not a ThreadSafe class as in actual world, only 1 vehicle would be allowed to enter or exit the parking lot
-at a given time.
+at a given time. Use {@link ConcurrentLotTracker} when several gates share the same tracker.
 */
 public class LotTracker {
 
-    private int numberOfLots;
-    private Lot[] lots;
+    /**
+     * Number of lot IDs, retired lots included.
+     */
+    private volatile int numberOfLots;
+    private final LotStore lotStore;
+    private final FreeLotIndex freeLotIndex;
 
     private final Size size;
 
     private int numberOfLotsOccupied = 0;
 
+    private volatile LotTrackerListener[] listeners = new LotTrackerListener[0];
+
+    private final LotWaitlist waitlist = new LotWaitlist();
+
+    private volatile BookingCalendar bookings;
+
+    private volatile MonotonicClock issueClock;
+
+    /**
+     * State of every lot, in chunks of 1 << {@link #CHUNK_SHIFT} lots, once the first lot is retired.
+     */
+    private volatile AtomicIntegerArray[] lotStates;
+    private volatile int numberOfLotsRetired;
+
+    private static final long NO_RESERVATION = -1L;
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private static final int OPEN = 0;
+    /**
+     * Retired while occupied or taken, the lot is kept out of the {@link FreeLotIndex} once released.
+     */
+    private static final int RETIRED = 1;
+    /**
+     * Retired and held out of the {@link FreeLotIndex}, neither occupied nor free.
+     */
+    private static final int RETIRED_FREE = 2;
+
     public static class Factory implements LotTrackerFactory {
-        public static final Factory INSTANCE = new Factory();
+        public static final Factory INSTANCE = new Factory(HierarchicalFreeLotIndex.FACTORY, ObjectLotStore.FACTORY);
+
+        private final FreeLotIndex.Factory indexFactory;
+        private final LotStore.Factory storeFactory;
+
+        private Factory(FreeLotIndex.Factory indexFactory, LotStore.Factory storeFactory) {
+            if (indexFactory == null || storeFactory == null) {
+                throw new IllegalArgumentException("indexFactory and storeFactory must not be null");
+            }
+            this.indexFactory = indexFactory;
+            this.storeFactory = storeFactory;
+        }
+
+        /**
+         * @param indexFactory used to create the {@link FreeLotIndex} of every tracker built by this factory
+         * @return A factory building trackers backed by the given kind of {@link FreeLotIndex}
+         */
+        public Factory withIndex(FreeLotIndex.Factory indexFactory) {
+            return new Factory(indexFactory, storeFactory);
+        }
 
-        private Factory() {}
+        /**
+         * @param storeFactory used to create the {@link LotStore} of every tracker built by this factory
+         * @return A factory building trackers backed by the given kind of {@link LotStore}
+         */
+        public Factory withStore(LotStore.Factory storeFactory) {
+            return new Factory(indexFactory, storeFactory);
+        }
 
         public LotTracker createLotTracker(int numberOfLots, Size size) {
-            return new LotTracker(numberOfLots, size);
+            return new LotTracker(numberOfLots, size, indexFactory, storeFactory);
         }
     }
 
-    private LotTracker(int numberOfLots, Size lotSize) {
+    protected LotTracker(int numberOfLots, Size lotSize, FreeLotIndex.Factory indexFactory,
+                         LotStore.Factory storeFactory) {
         if (numberOfLots < 0 || lotSize == null) {
             throw new RuntimeException();
         }
         this.numberOfLots = numberOfLots;
         this.size = lotSize;
-        initLots();
+        this.freeLotIndex = indexFactory.create(numberOfLots, lotSize);
+        this.lotStore = storeFactory.create(numberOfLots, lotSize);
     }
 
     /**
-     * Initializes the {@link Lot}'s with monotonically increasing IDs starting with 0 to numberOfLots - 1
+     * Finds an available lot and attempts to reserve it. If successful, increments the count of lots occupied.
+     *
+     * @param vehicle to be parked
+     * @return A valid {@link Ticket} if the vehicle fits the lot size and a lot is available, otherwise an empty
+     * Optional
      */
-    private void initLots() {
-        lots = new Lot[numberOfLots];
-        for (int i=0; i<numberOfLots; i++) {
-            lots[i] = new Lot(i, getLotSize());
-        }
+    public Optional<Ticket> reserveLot(Vehicle vehicle) {
+        return reserveLot(vehicle, FreeLotIndex.ANY_GATE);
     }
 
     /**
-     * Finds an available lot and attempts to reserve it. If successful, increments the count of lots occupied.
+     * Same as {@link #reserveLot(Vehicle)}, but asks the {@link FreeLotIndex} for the lot nearest to the entry gate
+     * the vehicle arrived through, see {@link FreeLotIndex#acquireNearest(int)}.
      *
      * @param vehicle to be parked
-     * @return A valid {@link Ticket} if vehicle size matches lot size and lot is available, otherwise an empty Optional
+     * @param gate    ID of the entry gate, or {@link FreeLotIndex#ANY_GATE}
+     * @return A valid {@link Ticket} if the vehicle fits the lot size and a lot is available, otherwise an empty
+     * Optional
      */
-    public Optional<Ticket> reserveLot(Vehicle vehicle) {
-        if (vehicle == null || getLotSize() != vehicle.getSize() || getNumberOfLotsOccupied() == getNumberOfLots()) {
+    public Optional<Ticket> reserveLot(Vehicle vehicle, int gate) {
+        long reservation = reserve(vehicle, gate);
+        if (reservation == NO_RESERVATION) {
             return Optional.empty();
         }
+        return Optional.of(new Ticket(reservedLotId(reservation), vehicle.id(), vehicle.getSize(), getLotSize(),
+                reservedGeneration(reservation), issuedAtMillis()));
+    }
 
-        Optional<Lot> lotOptional = findAvailableLot(lots);
-        if(!lotOptional.isPresent()) {
-            return Optional.empty();
+    /**
+     * Same as {@link #reserveLot(Vehicle)}, but returns the ticket as a {@link PackedTicket} and allocates nothing.
+     *
+     * @param vehicle to be parked
+     * @return A valid {@link PackedTicket} if the vehicle fits the lot size and a lot is available,
+     * otherwise {@link PackedTicket#NONE}
+     */
+    public long reserveLotPacked(Vehicle vehicle) {
+        return reserveLotPacked(vehicle, FreeLotIndex.ANY_GATE);
+    }
+
+    /**
+     * Same as {@link #reserveLot(Vehicle, int)}, but returns the ticket as a {@link PackedTicket} and allocates nothing.
+     */
+    public long reserveLotPacked(Vehicle vehicle, int gate) {
+        long reservation = reserve(vehicle, gate);
+        if (reservation == NO_RESERVATION) {
+            return PackedTicket.NONE;
+        }
+        return PackedTicket.pack(getLotSize(), reservedLotId(reservation), reservedGeneration(reservation));
+    }
+
+    /**
+     * Reserves a lot right away if one is available, otherwise queues the vehicle until one is released. Released lots
+     * are handed to the queued vehicles in arrival order and never become available to other callers meanwhile.
+     *
+     * Nothing waits on a thread: the future is completed by the thread releasing the lot, so stages chained to it
+     * without an executor run there. Cancelling the future, or completing it by any other means such as
+     * {@link CompletableFuture#orTimeout}, takes the vehicle out of the queue.
+     *
+     * @param vehicle to be parked
+     * @return Future of a valid {@link Ticket}, or of null right away if the vehicle does not fit the lot size
+     */
+    public CompletableFuture<Ticket> reserveLotWhenAvailable(Vehicle vehicle) {
+        if (vehicle == null || !getLotSize().canHold(vehicle.getSize())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Optional<Ticket> ticket = reserveLot(vehicle);
+        if (ticket.isPresent()) {
+            return CompletableFuture.completedFuture(ticket.get());
+        }
+
+        LotWaitlist.Waiter waiter = new LotWaitlist.Waiter(vehicle);
+        waitlist.add(waiter);
+        waiter.future.whenComplete((reserved, failure) -> {
+            if (failure != null) {
+                waitlist.cancel(waiter);
+            }
+        });
+        // a lot released between the failed attempt and joining the queue went back to the index, hand it to the
+        // head of the queue, which is not necessarily this vehicle
+        int lotId = freeLotIndex.acquire();
+        if (lotId >= 0 && !handOff(lotId)) {
+            freeLotIndex.release(lotId);
+        }
+        return waiter.future;
+    }
+
+    /**
+     * @return ID and generation of the reserved lot, packed by {@link #reservation(int, int)},
+     * or {@link #NO_RESERVATION}
+     */
+    private long reserve(Vehicle vehicle, int gate) {
+        ReserveLotEvent event = ReserveLotEvent.start();
+        if (vehicle == null || !getLotSize().canHold(vehicle.getSize())) {
+            return endReserve(event, vehicle, -1, gate, ReserveLotEvent.SIZE_MISMATCH, NO_RESERVATION);
+        }
+        advanceBookings();
+        if (isFull()) {
+            return endReserve(event, vehicle, -1, gate, ReserveLotEvent.FULL, NO_RESERVATION);
+        }
+
+        int lotId = freeLotIndex.acquireNearest(gate);
+        if (lotId < 0) {
+            return endReserve(event, vehicle, -1, gate, ReserveLotEvent.NO_FREE_LOT, NO_RESERVATION);
+        }
+
+        int generation;
+        try {
+            generation = reserveAcquired(lotId, vehicle, event);
+        } catch (RuntimeException e) {
+            freeLotIndex.release(lotId);
+            throw e;
+        }
+        if (generation < 0) {
+            freeLotIndex.release(lotId);
+            return endReserve(event, vehicle, lotId, gate, ReserveLotEvent.LOST_RACE, NO_RESERVATION);
+        }
+        incrementLotsOccupied(lotId);
+        notifyUnlocked();
+        return endReserve(event, vehicle, lotId, gate, ReserveLotEvent.RESERVED, reservation(lotId, generation));
+    }
+
+    /**
+     * Commits the event of a reservation, if a recording wants it.
+     *
+     * @return The reservation
+     */
+    private long endReserve(ReserveLotEvent event, Vehicle vehicle, int lotId, int gate, String outcome,
+                            long reservation) {
+        if (event != null) {
+            event.end(size, vehicle == null ? null : vehicle.getSize(), lotId, gate, outcome);
+        }
+        return reservation;
+    }
+
+    /**
+     * Reserves a lot taken from the {@link FreeLotIndex} and notifies the listeners. Counting the lot as occupied is
+     * left to the caller.
+     *
+     * @param event of the reservation, or null
+     * @return Generation of the reservation, or -1 if the lot could not be reserved
+     * @throws RuntimeException thrown by a listener, once the reservation was undone, see {@link #notifyReserved}.
+     *                          Returning the lot to the {@link FreeLotIndex} is left to the caller.
+     */
+    private int reserveAcquired(int lotId, Vehicle vehicle, ReserveLotEvent event) {
+        int lockRetries = lockLot(lotId);
+        if (event != null) {
+            event.setLockRetries(lockRetries);
+        }
+        try {
+            if (!lotStore.reserve(lotId, vehicle)) {
+                return -1;
+            }
+            int generation = lotStore.getGeneration(lotId);
+            notifyReserved(lotId, generation, vehicle);
+            return generation;
+        } finally {
+            unlockLot(lotId);
+        }
+    }
+
+    /**
+     * Notifies the listeners of a reservation. If one of them throws, e.g. a write-ahead log which has been closed,
+     * the reservation is undone before the exception is passed on: the listeners notified already are told that the
+     * lot was released again, and the lot is released in the {@link LotStore}. Must hold the lot lock.
+     */
+    private void notifyReserved(int lotId, int generation, Vehicle vehicle) {
+        LotTrackerListener[] listeners = this.listeners;
+        int notified = 0;
+        try {
+            for (; notified < listeners.length; notified++) {
+                listeners[notified].onReserved(size, lotId, generation, vehicle);
+            }
+        } catch (RuntimeException e) {
+            for (int i = notified - 1; i >= 0; i--) {
+                try {
+                    listeners[i].onReleased(size, lotId, generation);
+                } catch (RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            lotStore.release(lotId, generation);
+            throw e;
+        }
+    }
+
+    /**
+     * Reserves lots for several vehicles at once. Free lots are taken from the {@link FreeLotIndex} in bulk and the
+     * occupied count is updated once for the whole batch.
+     *
+     * @param vehicles to be parked, vehicles[0] to vehicles[count - 1]
+     * @param count    number of vehicles
+     * @return Ticket for every vehicle at the vehicle's position, null where the vehicle does not fit the lot size or
+     * no lot was left
+     * @throws RuntimeException thrown by a listener, once every reservation of the batch was undone
+     */
+    public Ticket[] reserveLots(Vehicle[] vehicles, int count) {
+        Ticket[] tickets = new Ticket[count];
+        reserveLots(vehicles, 0, count, tickets, new int[count]);
+        return tickets;
+    }
+
+    /**
+     * Same as {@link #reserveLots(Vehicle[], int)} for vehicles[offset] to vehicles[offset + count - 1], writing the
+     * tickets to the same positions of the given array, so that a caller parking batches over and over can reuse its
+     * arrays.
+     *
+     * @param tickets receiving the ticket of every vehicle, null where it got none
+     * @param lotIds  scratch space of at least count IDs
+     * @throws RuntimeException thrown by a listener, once every reservation of the batch was undone
+     */
+    public void reserveLots(Vehicle[] vehicles, int offset, int count, Ticket[] tickets, int[] lotIds) {
+        int end = offset + count;
+        int wanted = 0;
+        for (int i = offset; i < end; i++) {
+            tickets[i] = null;
+            if (vehicles[i] != null && getLotSize().canHold(vehicles[i].getSize())) {
+                wanted++;
+            }
+        }
+        if (wanted == 0) {
+            return;
+        }
+        advanceBookings();
+        if (isFull()) {
+            return;
+        }
+
+        int acquired = freeLotIndex.acquire(lotIds, 0, wanted);
+        long issuedAt = issuedAtMillis();
+        int used = 0;
+        int reserved = 0;
+        try {
+            for (int i = offset; i < end && used < acquired; i++) {
+                Vehicle vehicle = vehicles[i];
+                if (vehicle == null || !getLotSize().canHold(vehicle.getSize())) {
+                    continue;
+                }
+                int lotId = lotIds[used++];
+                int generation;
+                try {
+                    generation = reserveAcquired(lotId, vehicle, null);
+                } catch (RuntimeException e) {
+                    freeLotIndex.release(lotId);
+                    throw e;
+                }
+                if (generation < 0) {
+                    freeLotIndex.release(lotId);
+                    continue;
+                }
+                tickets[i] = new Ticket(lotId, vehicle.id(), vehicle.getSize(), getLotSize(), generation, issuedAt);
+                lotIds[reserved++] = lotId;
+            }
+        } catch (RuntimeException e) {
+            undoReservations(tickets, offset, end, e);
+            freeLotIndex.release(lotIds, 0, reserved);
+            freeLotIndex.release(lotIds, used, acquired - used);
+            throw e;
         }
+        addLotsOccupied(lotIds, reserved);
+        notifyUnlocked();
+    }
 
-        Lot lot = lotOptional.get();
-        if(lot.reserve(vehicle)) {
-            numberOfLotsOccupied++;
-            return Optional.of(new Ticket(lot.getId(),vehicle.id(), vehicle.getSize()));
+    /**
+     * Releases the lots of a batch whose tickets will never be handed out, as a listener failed. Failures of the
+     * listeners meanwhile are added to the first one. The lots are not counted as occupied yet and are left for the
+     * caller to return to the {@link FreeLotIndex}.
+     */
+    private void undoReservations(Ticket[] tickets, int from, int to, RuntimeException failure) {
+        for (int i = from; i < to; i++) {
+            if (tickets[i] == null) {
+                continue;
+            }
+            try {
+                releaseTicket(tickets[i]);
+            } catch (RuntimeException e) {
+                failure.addSuppressed(e);
+            }
+            tickets[i] = null;
         }
+    }
+
+    private static long reservation(int lotId, int generation) {
+        return ((long) generation << 32) | lotId;
+    }
 
-        return Optional.empty();
+    private static int reservedLotId(long reservation) {
+        return (int) reservation;
+    }
+
+    private static int reservedGeneration(long reservation) {
+        return (int) (reservation >>> 32);
     }
 
     /**
@@ -90,40 +436,866 @@ public class LotTracker {
      * @return True if lot was occupied by same vehicle, otherwise False
      */
     public boolean releaseLot(Ticket ticket) {
-        if (ticket == null || getNumberOfLotsOccupied() <=0 || !ticket.isValid()) {
+        if (ticket == null || isEmpty()) {
+            return false;
+        }
+        int lotId;
+        RuntimeException failure = null;
+        try {
+            lotId = releaseTicket(ticket);
+        } catch (RuntimeException e) {
+            lotId = ticket.getLotId();
+            failure = e;
+        }
+        if (lotId < 0) {
             return false;
         }
+        decrementLotsOccupied(lotId);
+        freeLot(lotId);
+        if (failure != null) {
+            throw failure;
+        }
+        notifyUnlocked();
+        return true;
+    }
+
+    /**
+     * Releases the lot of a ticket in the {@link LotStore} and notifies the listeners. Counting the lot as available
+     * and returning it to the {@link FreeLotIndex} is left to the caller.
+     *
+     * @return ID of the released lot, or -1 if the ticket is not valid for the lot
+     * @throws RuntimeException thrown by a listener, once every listener was notified, see {@link #notifyReleased}.
+     *                          The lot of the ticket has been released all the same.
+     */
+    private int releaseTicket(Ticket ticket) {
+        if (!ticket.isValid()) {
+            return -1;
+        }
+
+        int lotId = ticket.getLotId();
+        if (!isValidLotId(lotId)) {
+            return -1;
+        }
+
+        RuntimeException failure;
+        lockLot(lotId);
+        try {
+            // re-checked under the lock, the same ticket may have been presented at another gate meanwhile
+            if (!ticket.isValid() || !lotStore.release(lotId, ticket)) {
+                return -1;
+            }
+            failure = notifyReleased(lotId, ticket.getGeneration());
+        } finally {
+            unlockLot(lotId);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return lotId;
+    }
 
-        Optional<Lot> lotOptional = findLot(ticket.getLotId());
-        if(!lotOptional.isPresent()) {
+    /**
+     * Releases the lots of several tickets at once, updating the occupied count once for the whole batch.
+     *
+     * @param tickets for the lots to unpark the vehicles, tickets[0] to tickets[count - 1]
+     * @param count   number of tickets
+     * @return Whether each ticket released its lot, see {@link #releaseLot(Ticket)}
+     * @throws RuntimeException thrown by a listener, once the whole batch was released
+     */
+    public boolean[] releaseLots(Ticket[] tickets, int count) {
+        boolean[] released = new boolean[count];
+        releaseLots(tickets, 0, count, released, new int[count]);
+        return released;
+    }
+
+    /**
+     * Same as {@link #releaseLots(Ticket[], int)} for tickets[offset] to tickets[offset + count - 1], writing whether
+     * each ticket released its lot to the same position of the given array.
+     *
+     * @param released receiving whether each ticket released its lot
+     * @param lotIds   scratch space of at least count IDs
+     * @throws RuntimeException thrown by a listener, once the whole batch was released
+     */
+    public void releaseLots(Ticket[] tickets, int offset, int count, boolean[] released, int[] lotIds) {
+        int end = offset + count;
+        Arrays.fill(released, offset, end, false);
+        if (isEmpty()) {
+            return;
+        }
+        int releasedLots = 0;
+        RuntimeException failure = null;
+        for (int i = offset; i < end; i++) {
+            int lotId;
+            try {
+                lotId = tickets[i] == null ? -1 : releaseTicket(tickets[i]);
+            } catch (RuntimeException e) {
+                lotId = tickets[i].getLotId();
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            if (lotId >= 0) {
+                released[i] = true;
+                lotIds[releasedLots++] = lotId;
+            }
+        }
+        removeLotsOccupied(lotIds, releasedLots);
+        if (bookings != null) {
+            for (int i = 0; i < releasedLots; i++) {
+                freeLot(lotIds[i]);
+            }
+        } else {
+            int handedOff = 0;
+            while (handedOff < releasedLots && !waitlist.isEmpty() && handOff(lotIds[handedOff])) {
+                handedOff++;
+            }
+            freeLotIndex.release(lotIds, handedOff, releasedLots - handedOff);
+            for (int i = handedOff; i < releasedLots && !waitlist.isEmpty(); i++) {
+                reclaimForWaiter(lotIds[i]);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        notifyUnlocked();
+    }
+
+    /**
+     * Same as {@link #releaseLot(Ticket)} for a ticket returned by {@link #reserveLotPacked(Vehicle)}.
+     * Allocates nothing.
+     *
+     * @param packedTicket for the lot to unpark the vehicle
+     * @return True if lot is still occupied in the generation the ticket was issued for, otherwise False
+     * @throws RuntimeException thrown by a listener, once every listener was notified and the lot released
+     */
+    public boolean releaseLotPacked(long packedTicket) {
+        if (!PackedTicket.isValid(packedTicket) || PackedTicket.size(packedTicket) != getLotSize() || isEmpty()) {
             return false;
         }
 
-        Lot lot = lotOptional.get();
-        if(lot.release(ticket)) {
-            numberOfLotsOccupied--;
-            return true;
+        int lotId = PackedTicket.lotId(packedTicket);
+        if (!isValidLotId(lotId)) {
+            return false;
+        }
+
+        RuntimeException failure;
+        lockLot(lotId);
+        try {
+            int generation = lotStore.getGeneration(lotId);
+            if ((generation & PackedTicket.GENERATION_MASK) != PackedTicket.generation(packedTicket)
+                    || !lotStore.release(lotId, generation)) {
+                return false;
+            }
+            decrementLotsOccupied(lotId);
+            failure = notifyReleased(lotId, generation);
+        } finally {
+            unlockLot(lotId);
+        }
+        freeLot(lotId);
+        if (failure != null) {
+            throw failure;
+        }
+        notifyUnlocked();
+        return true;
+    }
+
+    /**
+     * Hands a lot which has just been released and counted as available to a booking waiting for it, else to the
+     * longest waiting vehicle, or returns it to the {@link FreeLotIndex} if nobody is waiting. A retired lot is kept
+     * out of service instead.
+     */
+    private void freeLot(int lotId) {
+        if (numberOfLotsRetired > 0 && holdRetired(lotId)) {
+            return;
+        }
+        BookingCalendar bookings = this.bookings;
+        if (bookings != null && bookings.holdReleased(lotId)) {
+            return;
+        }
+        if (waitlist.isEmpty() || !handOff(lotId)) {
+            freeLotIndex.release(lotId);
+            if (numberOfLotsRetired > 0) {
+                reclaimRetired(lotId);
+            }
+            reclaimForWaiter(lotId);
+            if (bookings != null) {
+                bookings.reclaim(lotId);
+            }
+        }
+    }
+
+    /**
+     * @return true if a lot which has just been released is retired, and is now held out of service
+     */
+    private boolean holdRetired(int lotId) {
+        return lotStates[lotId >>> CHUNK_SHIFT].compareAndSet(lotId & CHUNK_MASK, RETIRED, RETIRED_FREE);
+    }
+
+    /**
+     * @return true if a retired lot held out of service is now draining, to be occupied until it is released
+     */
+    private boolean drainRetired(int lotId) {
+        return numberOfLotsRetired > 0
+                && lotStates[lotId >>> CHUNK_SHIFT].compareAndSet(lotId & CHUNK_MASK, RETIRED_FREE, RETIRED);
+    }
+
+    /**
+     * Takes a lot just returned to the {@link FreeLotIndex} back out if it was retired meanwhile, unless another caller
+     * got there first. The lot then drains like any other retired lot.
+     */
+    private void reclaimRetired(int lotId) {
+        AtomicIntegerArray states = lotStates[lotId >>> CHUNK_SHIFT];
+        if (states.get(lotId & CHUNK_MASK) == RETIRED && freeLotIndex.claim(lotId)
+                && !states.compareAndSet(lotId & CHUNK_MASK, RETIRED, RETIRED_FREE)) {
+            // reopened meanwhile
+            freeLotIndex.release(lotId);
         }
+    }
 
+    /**
+     * Takes a lot just returned to the {@link FreeLotIndex} back out for a vehicle which joined the waitlist meanwhile
+     * and may have missed it, unless another caller got there first.
+     */
+    private void reclaimForWaiter(int lotId) {
+        if (!waitlist.isEmpty() && freeLotIndex.claim(lotId) && !handOff(lotId)) {
+            freeLotIndex.release(lotId);
+        }
+    }
+
+    /**
+     * Reserves a released lot, which is in neither the {@link FreeLotIndex} nor the hands of another caller, for the
+     * longest waiting vehicle.
+     *
+     * @return false if nobody is waiting any more
+     */
+    private boolean handOff(int lotId) {
+        LotWaitlist.Waiter waiter;
+        while ((waiter = waitlist.claimNext()) != null) {
+            int generation;
+            try {
+                generation = reserveAcquired(lotId, waiter.vehicle, null);
+            } catch (RuntimeException e) {
+                // undone, the lot goes back to the index
+                waiter.future.completeExceptionally(e);
+                return false;
+            }
+            if (generation < 0) {
+                waiter.future.completeExceptionally(new IllegalStateException("Lot " + lotId + " is not available"));
+                return false;
+            }
+            incrementLotsOccupied(lotId);
+            notifyUnlocked();
+            Ticket ticket = new Ticket(lotId, waiter.vehicle.id(), waiter.vehicle.getSize(), getLotSize(), generation,
+                    issuedAtMillis());
+            if (waiter.future.complete(ticket)) {
+                return true;
+            }
+            // cancelled right after being claimed, try the next vehicle
+            try {
+                if (releaseTicket(ticket) < 0) {
+                    return true;
+                }
+            } catch (RuntimeException e) {
+                // released all the same; a listener failing here fails the next park or unPark too
+            }
+            decrementLotsOccupied(lotId);
+        }
         return false;
     }
 
-    private Size getLotSize() {
+    /**
+     * @return Number of vehicles waiting for a lot, including those cancelled but not yet taken out of the queue
+     */
+    public int getNumberOfVehiclesWaiting() {
+        return waitlist.size();
+    }
+
+    /**
+     * @param issueClock stamping the tickets issued from now on. Until one is set, tickets are issued at 0.
+     */
+    public void setIssueClock(MonotonicClock issueClock) {
+        if (issueClock == null) {
+            throw new IllegalArgumentException("issueClock must not be null");
+        }
+        this.issueClock = issueClock;
+    }
+
+    private long issuedAtMillis() {
+        MonotonicClock issueClock = this.issueClock;
+        return issueClock == null ? Ticket.NOT_STAMPED : issueClock.millis();
+    }
+
+    /**
+     * Enables pre-booking the lots of this tracker for time windows, see {@link BookingCalendar}.
+     *
+     * @param clock    telling the time of walk-ins, arrivals and bookings
+     * @param leadTime walk-ins are expected to leave within; bookings are taken at least this far ahead and their bays
+     *                 held back from walk-ins this long before they start
+     * @throws IllegalStateException if bookings are enabled already
+     */
+    public synchronized void enableBookings(Clock clock, Duration leadTime) {
+        if (bookings != null) {
+            throw new IllegalStateException("Bookings are enabled already");
+        }
+        BookingCalendar calendar = new BookingCalendar(size, numberOfLots, freeLotIndex, this::freeLot, clock,
+                leadTime);
+        for (int lotId = 0; lotId < numberOfLots && numberOfLotsRetired > 0; lotId++) {
+            if (isRetired(lotId)) {
+                calendar.retire(lotId);
+            }
+        }
+        bookings = calendar;
+    }
+
+    /**
+     * @return true if a lot is free for the whole window [start, end), which starts at least the lead time from now
+     * @throws IllegalStateException if bookings are not enabled
+     */
+    public boolean isAvailable(Instant start, Instant end) {
+        return bookings().isAvailable(start.toEpochMilli(), end.toEpochMilli());
+    }
+
+    /**
+     * Books the best fitting lot for the window [start, end), in O(log n) whatever the number of lots and bookings.
+     *
+     * @return The booking, or an empty Optional if the window starts within the lead time or no lot is free for all
+     * of it
+     * @throws IllegalStateException if bookings are not enabled
+     */
+    public Optional<Booking> book(Instant start, Instant end) {
+        return Optional.ofNullable(bookings().book(start.toEpochMilli(), end.toEpochMilli()));
+    }
+
+    /**
+     * Cancels a booking, see {@link BookingCalendar#cancel(Booking)}.
+     *
+     * @return false if the booking was over or cancelled already
+     */
+    public boolean cancelBooking(Booking booking) {
+        return bookings().cancel(booking);
+    }
+
+    /**
+     * Parks the vehicle of a booking in its booked lot. The lot is held for it from the lead time before the booking
+     * starts; if a walk-in overstays in it, the vehicle gets any free lot instead.
+     *
+     * @param booking made with this tracker
+     * @param vehicle to be parked
+     * @return A valid {@link Ticket}, or an empty Optional if the vehicle does not fit the lot size, the booking is
+     * not valid at this time or it was used already, or the booked lot is occupied and no other lot is free
+     */
+    public Optional<Ticket> reserveBookedLot(Booking booking, Vehicle vehicle) {
+        BookingCalendar bookings = bookings();
+        if (vehicle == null || !getLotSize().canHold(vehicle.getSize())) {
+            return Optional.empty();
+        }
+        bookings.advanceIfDue();
+        int lotId = bookings.arrive(booking);
+        if (lotId == BookingCalendar.NOT_BOOKED) {
+            return Optional.empty();
+        }
+        if (lotId == BookingCalendar.ANY_LOT) {
+            return reserveLot(vehicle);
+        }
+        int generation;
+        try {
+            generation = reserveAcquired(lotId, vehicle, null);
+        } catch (RuntimeException e) {
+            freeLotIndex.release(lotId);
+            throw e;
+        }
+        if (generation < 0) {
+            freeLotIndex.release(lotId);
+            return reserveLot(vehicle);
+        }
+        incrementLotsOccupied(lotId);
+        notifyUnlocked();
+        return Optional.of(new Ticket(lotId, vehicle.id(), vehicle.getSize(), getLotSize(), generation,
+                issuedAtMillis()));
+    }
+
+    /**
+     * @return Number of bookings which are not over or cancelled, 0 if bookings are not enabled
+     */
+    public int getNumberOfBookings() {
+        BookingCalendar bookings = this.bookings;
+        return bookings == null ? 0 : bookings.getNumberOfBookings();
+    }
+
+    private BookingCalendar bookings() {
+        BookingCalendar bookings = this.bookings;
+        if (bookings == null) {
+            throw new IllegalStateException("Bookings are not enabled");
+        }
+        return bookings;
+    }
+
+    /**
+     * Holds the lots of upcoming bookings before a walk-in gets a lot.
+     */
+    private void advanceBookings() {
+        BookingCalendar bookings = this.bookings;
+        if (bookings != null) {
+            bookings.advanceIfDue();
+        }
+    }
+
+    /**
+     * Notifies every listener of a release, even if some of them throw, as the release cannot be undone without the
+     * vehicle. Must hold the lot lock.
+     *
+     * @return The exception thrown by the first listener which failed, with those of the others suppressed, or null
+     */
+    private RuntimeException notifyReleased(int lotId, int generation) {
+        RuntimeException failure = null;
+        for (LotTrackerListener listener : listeners) {
+            try {
+                listener.onReleased(size, lotId, generation);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Lets the listeners wait for the reservations and releases of the calling thread, see
+     * {@link LotTrackerListener#afterUnlock()}. Must not hold a lot lock.
+     */
+    private void notifyUnlocked() {
+        for (LotTrackerListener listener : listeners) {
+            listener.afterUnlock();
+        }
+    }
+
+    /**
+     * Registers a listener notified of every successful reservation and release from now on.
+     *
+     * @param listener to be notified
+     */
+    public synchronized void addListener(LotTrackerListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        LotTrackerListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Re-applies a reservation recorded earlier, e.g. in a log being replayed after a restart. Records which are
+     * already reflected in the lot's state are ignored, so replaying the same record twice is harmless.
+     * A retired lot held out of service is taken as well, as its retirement may have been recorded before the vehicle
+     * which was parked in it meanwhile, and drains once released again. Listeners are not notified.
+     *
+     * @param lotId      of the reserved lot
+     * @param generation of the reservation
+     * @param vehicle    parked in the lot
+     * @return true if the lot state changed
+     */
+    public boolean restoreReserved(int lotId, int generation, Vehicle vehicle) {
+        if (!isValidLotId(lotId) || vehicle == null) {
+            return false;
+        }
+        lockLot(lotId);
+        try {
+            if (!lotStore.isAvailable(lotId) || lotStore.getGeneration(lotId) > generation
+                    || (!freeLotIndex.claim(lotId) && !drainRetired(lotId))) {
+                return false;
+            }
+            lotStore.restore(lotId, vehicle, generation);
+            incrementLotsOccupied(lotId);
+            return true;
+        } finally {
+            unlockLot(lotId);
+        }
+    }
+
+    /**
+     * Re-applies a release recorded earlier, see {@link #restoreReserved(int, int, Vehicle)}.
+     *
+     * @param lotId      of the released lot
+     * @param generation of the occupancy which ended
+     * @return true if the lot state changed
+     */
+    public boolean restoreReleased(int lotId, int generation) {
+        if (!isValidLotId(lotId)) {
+            return false;
+        }
+        boolean released;
+        lockLot(lotId);
+        try {
+            int current = lotStore.getGeneration(lotId);
+            if (lotStore.isAvailable(lotId)) {
+                if (current > generation) {
+                    return false;
+                }
+                lotStore.restore(lotId, null, generation + 1);
+                return true;
+            }
+            released = current == generation && lotStore.release(lotId, generation);
+            if (released) {
+                decrementLotsOccupied(lotId);
+            }
+        } finally {
+            unlockLot(lotId);
+        }
+        if (released) {
+            freeLot(lotId);
+        }
+        return released;
+    }
+
+    /**
+     * Adds lots while vehicles keep parking in the existing ones. The new lots are numbered on from the existing ones,
+     * and as every part of the tracker keeps its lots in fixed size chunks, only arrays of chunks are copied. The new
+     * lots are handed to waiting vehicles first, like released lots.
+     *
+     * @param count number of lots to add
+     * @return ID of the first lot added
+     * @throws IllegalArgumentException      if count is not positive or there would be more than Integer.MAX_VALUE lots
+     * @throws UnsupportedOperationException if the {@link FreeLotIndex} or the {@link LotStore} has a fixed capacity,
+     *                                       e.g. a {@link org.example.parkinglot.index.NearestBayLotIndex}
+     * @throws IllegalStateException         if a listener refuses the lots, see
+     *                                       {@link LotTrackerListener#onLotsAdded(Size, int)}
+     */
+    public synchronized int addLots(int count) {
+        int first = numberOfLots;
+        if (count <= 0 || count > Integer.MAX_VALUE - first) {
+            throw new IllegalArgumentException("count must be positive and the number of lots fit an int");
+        }
+        int capacity = first + count;
+        // grown before the listeners hear of the lots, so that a log never records lots which could not be added, and
+        // the index first, as the one most likely to have a fixed capacity
+        freeLotIndex.ensureCapacity(capacity);
+        lotStore.ensureCapacity(capacity);
+        for (LotTrackerListener listener : listeners) {
+            listener.onLotsAdded(size, capacity);
+        }
+        addLotLocks(capacity);
+        if (lotStates != null) {
+            lotStates = addChunks(lotStates, capacity);
+        }
+        BookingCalendar bookings = this.bookings;
+        if (bookings != null) {
+            bookings.addLots(capacity);
+        }
+        numberOfLots = capacity;
+        // the new lots are taken in the index until they can be used
+        for (int lotId = first; lotId < capacity; lotId++) {
+            freeLot(lotId);
+        }
+        notifyNumberOfLotsChanged();
+        return first;
+    }
+
+    /**
+     * Takes the lots [fromLotId, toLotId) out of service, e.g. a level closed for maintenance, while vehicles keep
+     * parking elsewhere. Free lots are taken out of the {@link FreeLotIndex} right away, occupied lots drain: their
+     * tickets still release them, but they are not handed out again. Retired lots get no new bookings, vehicles of
+     * the bookings they have already get any free lot if theirs is not free.
+     *
+     * @return Number of lots retired, lots retired already are skipped
+     * @throws IllegalArgumentException if the range is not within the lots of this tracker
+     */
+    public synchronized int retireLots(int fromLotId, int toLotId) {
+        checkRange(fromLotId, toLotId);
+        if (lotStates == null) {
+            lotStates = addChunks(new AtomicIntegerArray[0], numberOfLots);
+        }
+        BookingCalendar bookings = this.bookings;
+        int retired = 0;
+        for (int lotId = fromLotId; lotId < toLotId; lotId++) {
+            AtomicIntegerArray states = lotStates[lotId >>> CHUNK_SHIFT];
+            if (!states.compareAndSet(lotId & CHUNK_MASK, OPEN, RETIRED)) {
+                continue;
+            }
+            // counted before the lot is claimed, so that a release racing with the claim takes the lot back
+            numberOfLotsRetired++;
+            retired++;
+            if (bookings != null) {
+                bookings.retire(lotId);
+            }
+            if (freeLotIndex.claim(lotId)) {
+                states.set(lotId & CHUNK_MASK, RETIRED_FREE);
+            }
+        }
+        if (retired > 0) {
+            notifyRangeChanged(fromLotId, toLotId, true);
+        }
+        return retired;
+    }
+
+    /**
+     * Puts retired lots among [fromLotId, toLotId) back into service, the free ones are handed out right away.
+     *
+     * @return Number of lots reopened
+     * @throws IllegalArgumentException if the range is not within the lots of this tracker
+     */
+    public synchronized int reopenLots(int fromLotId, int toLotId) {
+        checkRange(fromLotId, toLotId);
+        if (lotStates == null) {
+            return 0;
+        }
+        BookingCalendar bookings = this.bookings;
+        int reopened = 0;
+        for (int lotId = fromLotId; lotId < toLotId; lotId++) {
+            AtomicIntegerArray states = lotStates[lotId >>> CHUNK_SHIFT];
+            int state;
+            do {
+                state = states.get(lotId & CHUNK_MASK);
+            } while (state != OPEN && !states.compareAndSet(lotId & CHUNK_MASK, state, OPEN));
+            if (state == OPEN) {
+                continue;
+            }
+            numberOfLotsRetired--;
+            reopened++;
+            if (bookings != null) {
+                bookings.reopen(lotId);
+            }
+            if (state == RETIRED_FREE) {
+                freeLot(lotId);
+            }
+        }
+        if (reopened > 0) {
+            notifyRangeChanged(fromLotId, toLotId, false);
+        }
+        return reopened;
+    }
+
+    /**
+     * Like a release, a retirement or reopening cannot be undone: every listener is notified before the first failure
+     * is passed on.
+     */
+    private void notifyRangeChanged(int fromLotId, int toLotId, boolean retired) {
+        RuntimeException failure = null;
+        for (LotTrackerListener listener : listeners) {
+            try {
+                if (retired) {
+                    listener.onLotsRetired(size, fromLotId, toLotId);
+                } else {
+                    listener.onLotsReopened(size, fromLotId, toLotId);
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        notifyNumberOfLotsChanged();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void notifyNumberOfLotsChanged() {
+        int inService = getNumberOfLots();
+        for (LotTrackerListener listener : listeners) {
+            listener.onNumberOfLotsChanged(size, inService);
+        }
+    }
+
+    /**
+     * @return true if the lot is retired, see {@link #retireLots(int, int)}
+     */
+    public boolean isRetired(int lotId) {
+        if (!isValidLotId(lotId) || numberOfLotsRetired == 0) {
+            return false;
+        }
+        return lotStates[lotId >>> CHUNK_SHIFT].get(lotId & CHUNK_MASK) != OPEN;
+    }
+
+    /**
+     * @return Number of retired lots, including those still occupied
+     */
+    public int getNumberOfLotsRetired() {
+        return numberOfLotsRetired;
+    }
+
+    private void checkRange(int fromLotId, int toLotId) {
+        if (fromLotId < 0 || fromLotId > toLotId || toLotId > numberOfLots) {
+            throw new IllegalArgumentException("Lots [" + fromLotId + ", " + toLotId + ") are not within [0, "
+                    + numberOfLots + ")");
+        }
+    }
+
+    private static AtomicIntegerArray[] addChunks(AtomicIntegerArray[] chunks, int numberOfLots) {
+        int chunkCount = (int) (((long) numberOfLots + CHUNK_MASK) >>> CHUNK_SHIFT);
+        if (chunkCount <= chunks.length) {
+            return chunks;
+        }
+        AtomicIntegerArray[] grown = Arrays.copyOf(chunks, chunkCount);
+        for (int chunk = chunks.length; chunk < chunkCount; chunk++) {
+            grown[chunk] = new AtomicIntegerArray(CHUNK_MASK + 1);
+        }
+        return grown;
+    }
+
+    /**
+     * Reports the state of every lot, lowest ID first, as the listener calls which would restore it: the number of
+     * lots visited, then a reservation for an occupied lot and the release of the previous generation for an available
+     * lot which has been used before, and finally every run of retired lots. Each lot is read while locked, so parking
+     * can go on meanwhile and every reported state is one the lot was in. Lots added meanwhile are not visited.
+     *
+     * @param visitor receiving the lot states
+     * @throws IllegalStateException if the {@link LotStore} does not retain the vehicles of occupied lots
+     */
+    public void forEachLot(LotTrackerListener visitor) {
+        int numberOfLots = this.numberOfLots;
+        visitor.onLotsAdded(size, numberOfLots);
+        for (int lotId = 0; lotId < numberOfLots; lotId++) {
+            lockLot(lotId);
+            try {
+                int generation = lotStore.getGeneration(lotId);
+                if (!lotStore.isAvailable(lotId)) {
+                    Vehicle vehicle = lotStore.getLot(lotId).getVehicle()
+                            .orElseThrow(() -> new IllegalStateException("lot store does not retain vehicles"));
+                    visitor.onReserved(size, lotId, generation, vehicle);
+                } else if (generation > 0) {
+                    visitor.onReleased(size, lotId, generation - 1);
+                }
+            } finally {
+                unlockLot(lotId);
+            }
+        }
+        if (numberOfLotsRetired > 0) {
+            forEachRetiredRun(numberOfLots, visitor);
+        }
+    }
+
+    private void forEachRetiredRun(int numberOfLots, LotTrackerListener visitor) {
+        AtomicIntegerArray[] lotStates = this.lotStates;
+        int from = -1;
+        for (int lotId = 0; lotId <= numberOfLots; lotId++) {
+            boolean retired = lotId < numberOfLots
+                    && lotStates[lotId >>> CHUNK_SHIFT].get(lotId & CHUNK_MASK) != OPEN;
+            if (retired && from < 0) {
+                from = lotId;
+            } else if (!retired && from >= 0) {
+                visitor.onLotsRetired(size, from, lotId);
+                from = -1;
+            }
+        }
+    }
+
+    /**
+     * Gives the calling thread exclusive access to a lot while it is being reserved or released.
+     * Nothing to do by default as this class is not ThreadSafe.
+     *
+     * @param lotId of the lot
+     * @return Number of failed attempts to take the lock before it was taken, reported to Flight Recorder
+     */
+    protected int lockLot(int lotId) {
+        return 0;
+    }
+
+    /**
+     * @param lotId of the lot locked by {@link #lockLot(int)}
+     */
+    protected void unlockLot(int lotId) {
+    }
+
+    /**
+     * Makes room for the locks of the lots up to numberOfLots - 1, called while lots are added before they can be
+     * locked. Nothing to do by default.
+     */
+    protected void addLotLocks(int numberOfLots) {
+    }
+
+    /**
+     * @param lotId of the lot which has just been reserved
+     */
+    protected void incrementLotsOccupied(int lotId) {
+        numberOfLotsOccupied++;
+    }
+
+    /**
+     * @param lotId of the lot which has just been released
+     */
+    protected void decrementLotsOccupied(int lotId) {
+        numberOfLotsOccupied--;
+    }
+
+    /**
+     * Batch variant of {@link #incrementLotsOccupied(int)}.
+     *
+     * @param lotIds of the lots which have just been reserved, lotIds[0] to lotIds[count - 1]
+     */
+    protected void addLotsOccupied(int[] lotIds, int count) {
+        numberOfLotsOccupied += count;
+    }
+
+    /**
+     * Batch variant of {@link #decrementLotsOccupied(int)}.
+     *
+     * @param lotIds of the lots which have just been released, lotIds[0] to lotIds[count - 1]
+     */
+    protected void removeLotsOccupied(int[] lotIds, int count) {
+        numberOfLotsOccupied -= count;
+    }
+
+    /**
+     * Cheap pre-check done before looking for a free lot.
+     *
+     * @return true if every lot is known to be occupied
+     */
+    protected boolean isFull() {
+        return getNumberOfLotsOccupied() >= numberOfLots;
+    }
+
+    /**
+     * Cheap pre-check done before releasing a lot.
+     *
+     * @return true if no lot is known to be occupied
+     */
+    protected boolean isEmpty() {
+        return getNumberOfLotsOccupied() <= 0;
+    }
+
+    protected Size getLotSize() {
         return size;
     }
 
-    private Optional<Lot> findAvailableLot(Lot[] lots) {
-        return Arrays.stream(lots).filter(lot -> lot.isAvailable()).findFirst();
+    private boolean isValidLotId(int lotId) {
+        return lotId >= 0 && lotId < numberOfLots;
     }
 
-    private Optional<Lot> findLot(int lotId) {
-        if (lotId >= numberOfLots) {
+    /**
+     * Materialises a lot from the {@link LotStore}, not meant for the park/unPark hot path.
+     *
+     * @param lotId of the lot
+     * @return The lot, or an empty Optional if there is no lot with this ID
+     */
+    public Optional<Lot> findLot(int lotId) {
+        if (!isValidLotId(lotId)) {
             return Optional.empty();
         }
-        return Optional.of(lots[lotId]);
+        return Optional.of(lotStore.getLot(lotId));
     }
 
-    private int getNumberOfLots() {
+    protected FreeLotIndex getFreeLotIndex() {
+        return freeLotIndex;
+    }
+
+    /**
+     * @return Number of lots in service, retired lots excluded
+     */
+    protected int getNumberOfLots() {
+        return numberOfLots - numberOfLotsRetired;
+    }
+
+    /**
+     * @return Number of lot IDs, retired lots included
+     */
+    protected int getLotCapacity() {
         return numberOfLots;
     }
 
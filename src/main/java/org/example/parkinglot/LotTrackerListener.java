@@ -0,0 +1,88 @@
+package org.example.parkinglot;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+/**
+ * Notified by a {@link LotTracker} of every successful reservation and release.
+ *
+ * Callbacks run on the parking thread while the lot is still locked, so the callbacks for one lot are never
+ * concurrent and always arrive in the order the lot changed. They must be quick and must not call back into the
+ * tracker.
+ *
+ * A callback may throw to fail the park or unPark, e.g. when a log cannot record it. A reservation is then undone:
+ * the listeners notified before are told that the lot was released again, and the lot goes back to the free lots.
+ * A release cannot be undone, nor can retiring or reopening lots, so it completes, every other listener is notified
+ * and the exception is passed on afterwards.
+ */
+public interface LotTrackerListener {
+
+    /**
+     * @param size       of the lot
+     * @param lotId      of the lot
+     * @param generation of the new occupancy, see {@link org.example.parkinglot.models.lot.Lot#getGeneration()}
+     * @param vehicle    now parked in the lot
+     */
+    void onReserved(Size size, int lotId, int generation, Vehicle vehicle);
+
+    /**
+     * @param size       of the lot
+     * @param lotId      of the lot
+     * @param generation of the occupancy which just ended
+     */
+    void onReleased(Size size, int lotId, int generation);
+
+    /**
+     * Called on the parking thread once the lots it reserved or released are unlocked again, before the park or unPark
+     * returns or a waiting vehicle is handed its ticket. A listener may wait here, e.g. for a standby to confirm the
+     * records of the thread, without holding up other vehicles parking in the same lots. Must not throw. Does nothing
+     * by default.
+     */
+    default void afterUnlock() {
+    }
+
+    /**
+     * Called while lots are added to a tracker, see {@link LotTracker#addLots(int)}, before any of them can be
+     * reserved, and first thing by {@link LotTracker#forEachLot(LotTrackerListener)}. Does nothing by default.
+     *
+     * @param size         of the lots
+     * @param numberOfLots lot IDs from now on go up to numberOfLots - 1
+     * @throws IllegalStateException to refuse the lots, in which case the tracker is left as it was
+     */
+    default void onLotsAdded(Size size, int numberOfLots) {
+    }
+
+    /**
+     * Called once lots were retired, see {@link LotTracker#retireLots(int, int)}, while no other lots are being
+     * retired or reopened. Retiring the same range again leads to the same state, lots retired already included.
+     * Does nothing by default.
+     *
+     * @param size      of the lots
+     * @param fromLotId first lot of the range, inclusive
+     * @param toLotId   end of the range, exclusive
+     */
+    default void onLotsRetired(Size size, int fromLotId, int toLotId) {
+    }
+
+    /**
+     * Called once lots were put back into service, see {@link LotTracker#reopenLots(int, int)}, while no other lots
+     * are being retired or reopened. Does nothing by default.
+     *
+     * @param size      of the lots
+     * @param fromLotId first lot of the range, inclusive
+     * @param toLotId   end of the range, exclusive
+     */
+    default void onLotsReopened(Size size, int fromLotId, int toLotId) {
+    }
+
+    /**
+     * Called once lots were added, retired or reopened, see {@link LotTracker#addLots(int)},
+     * {@link LotTracker#retireLots(int, int)} and {@link LotTracker#reopenLots(int, int)}. Calls for one tracker are
+     * never concurrent. Does nothing by default.
+     *
+     * @param size         of the lots
+     * @param numberOfLots in service from now on, retired lots excluded
+     */
+    default void onNumberOfLotsChanged(Size size, int numberOfLots) {
+    }
+}
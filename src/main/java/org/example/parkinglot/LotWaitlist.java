@@ -0,0 +1,104 @@
+package org.example.parkinglot;
+
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FIFO queue of the vehicles waiting for a lot of one {@link LotTracker}, see
+ * {@link LotTracker#reserveLotWhenAvailable(Vehicle)}.
+ *
+ * A waiter leaves the queue once claimed for a freed lot. A cancelled or timed out waiter only changes its own state
+ * and is skipped when its turn comes, the queue is compacted once cancelled waiters make up most of it, so neither
+ * costs more than O(1) amortised.
+ *
+ * ThreadSafe class.
+ */
+final class LotWaitlist {
+
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;
+    private static final int CANCELLED = 2;
+
+    private static final int MIN_COMPACTION = 64;
+
+    static final class Waiter {
+        final Vehicle vehicle;
+        final CompletableFuture<Ticket> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(Vehicle vehicle) {
+            this.vehicle = vehicle;
+        }
+
+        /**
+         * @return true if the waiter was still waiting and is now handed a lot by the caller
+         */
+        private boolean claim() {
+            return state.compareAndSet(WAITING, CLAIMED);
+        }
+    }
+
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private int cancelled;
+    /**
+     * Size of the queue including cancelled waiters, read without the lock on every release.
+     */
+    private volatile int size;
+
+    /**
+     * @return true if nobody is waiting, a hint which may be stale by the time it is returned
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Number of waiters in the queue, including cancelled ones not taken out yet
+     */
+    int size() {
+        return size;
+    }
+
+    synchronized void add(Waiter waiter) {
+        waiters.addLast(waiter);
+        size = waiters.size();
+    }
+
+    /**
+     * Takes out the longest waiting vehicle which has neither been cancelled nor timed out.
+     *
+     * @return The claimed waiter, or null if nobody is waiting
+     */
+    synchronized Waiter claimNext() {
+        Waiter waiter;
+        while ((waiter = waiters.pollFirst()) != null) {
+            if (waiter.claim()) {
+                break;
+            }
+            cancelled--;
+        }
+        size = waiters.size();
+        return waiter;
+    }
+
+    /**
+     * Marks a waiter whose future completed before it was handed a lot.
+     */
+    void cancel(Waiter waiter) {
+        if (!waiter.state.compareAndSet(WAITING, CANCELLED)) {
+            return;
+        }
+        synchronized (this) {
+            cancelled++;
+            if (cancelled >= MIN_COMPACTION && cancelled * 2 > waiters.size()) {
+                waiters.removeIf(w -> w.state.get() != WAITING);
+                cancelled = 0;
+                size = waiters.size();
+            }
+        }
+    }
+}
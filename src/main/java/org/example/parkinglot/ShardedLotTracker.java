@@ -0,0 +1,134 @@
+package org.example.parkinglot;
+
+import org.example.parkinglot.index.StripedFreeLotIndex;
+import org.example.parkinglot.models.LotTrackerFactory;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.store.LotStore;
+import org.example.parkinglot.store.ObjectLotStore;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link ConcurrentLotTracker} whose lot ID space is split into stripes, each with its own free lot index and its own
+ * occupied counter, so that gates running on different cores do not contend on the same structure.
+ *
+ * Gates allocate from the stripe of their thread and steal from other stripes only when their own is empty
+ * (see {@link StripedFreeLotIndex}). The count of lots occupied is the sum of the per stripe counters, which are
+ * padded to sit on separate cache lines. The full check before a park sums them, like the counter of a
+ * {@link ConcurrentLotTracker}, so that a full tracker is skipped without searching every stripe.
+ */
+public class ShardedLotTracker extends ConcurrentLotTracker {
+
+    /**
+     * Distance in longs between two stripe counters, keeps them on separate cache lines.
+     */
+    private static final int COUNTER_PADDING = 16;
+
+    private final StripedFreeLotIndex stripedIndex;
+    private final AtomicLongArray occupiedByStripe;
+
+    public static class Factory implements LotTrackerFactory {
+
+        private final int numberOfStripes;
+        private final LotStore.Factory storeFactory;
+
+        private Factory(int numberOfStripes, LotStore.Factory storeFactory) {
+            if (storeFactory == null) {
+                throw new IllegalArgumentException("storeFactory must not be null");
+            }
+            this.numberOfStripes = numberOfStripes;
+            this.storeFactory = storeFactory;
+        }
+
+        /**
+         * @param numberOfStripes to split every tracker into, typically the number of cores or gates
+         * @return A factory building sharded trackers
+         */
+        public static Factory withStripes(int numberOfStripes) {
+            if (numberOfStripes <= 0) {
+                throw new IllegalArgumentException("numberOfStripes must be positive");
+            }
+            return new Factory(numberOfStripes, ObjectLotStore.FACTORY);
+        }
+
+        /**
+         * @param storeFactory used to create the {@link LotStore} of every tracker built by this factory
+         * @return A factory building trackers backed by the given kind of {@link LotStore}
+         */
+        public Factory withStore(LotStore.Factory storeFactory) {
+            return new Factory(numberOfStripes, storeFactory);
+        }
+
+        public LotTracker createLotTracker(int numberOfLots, Size size) {
+            return new ShardedLotTracker(numberOfLots, size, numberOfStripes, storeFactory);
+        }
+    }
+
+    private ShardedLotTracker(int numberOfLots, Size lotSize, int numberOfStripes, LotStore.Factory storeFactory) {
+        super(numberOfLots, lotSize, StripedFreeLotIndex.factory(numberOfStripes), storeFactory);
+        this.stripedIndex = (StripedFreeLotIndex) getFreeLotIndex();
+        this.occupiedByStripe = new AtomicLongArray(stripedIndex.getNumberOfStripes() * COUNTER_PADDING);
+    }
+
+    @Override
+    protected void incrementLotsOccupied(int lotId) {
+        occupiedByStripe.getAndIncrement(stripedIndex.stripeOf(lotId) * COUNTER_PADDING);
+    }
+
+    @Override
+    protected void decrementLotsOccupied(int lotId) {
+        occupiedByStripe.getAndDecrement(stripedIndex.stripeOf(lotId) * COUNTER_PADDING);
+    }
+
+    @Override
+    protected void addLotsOccupied(int[] lotIds, int count) {
+        addPerStripe(lotIds, count, 1);
+    }
+
+    @Override
+    protected void removeLotsOccupied(int[] lotIds, int count) {
+        addPerStripe(lotIds, count, -1);
+    }
+
+    /**
+     * Lots of a batch mostly come from the same stripe, so each run of lots of one stripe is counted with one update.
+     */
+    private void addPerStripe(int[] lotIds, int count, int sign) {
+        int i = 0;
+        while (i < count) {
+            int stripe = stripedIndex.stripeOf(lotIds[i]);
+            int run = 1;
+            while (i + run < count && stripedIndex.stripeOf(lotIds[i + run]) == stripe) {
+                run++;
+            }
+            occupiedByStripe.getAndAdd(stripe * COUNTER_PADDING, (long) sign * run);
+            i += run;
+        }
+    }
+
+    /**
+     * Stops at the first stripe with a lot occupied, which is usually the first one read.
+     */
+    @Override
+    protected boolean isEmpty() {
+        for (int stripe = 0; stripe < stripedIndex.getNumberOfStripes(); stripe++) {
+            if (occupiedByStripe.get(stripe * COUNTER_PADDING) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @return Number of lots currently occupied by vehicles, summed over all stripes
+     */
+    @Override
+    public int getNumberOfLotsOccupied() {
+        long occupied = 0;
+        for (int stripe = 0; stripe < stripedIndex.getNumberOfStripes(); stripe++) {
+            occupied += occupiedByStripe.get(stripe * COUNTER_PADDING);
+        }
+        return (int) occupied;
+    }
+}
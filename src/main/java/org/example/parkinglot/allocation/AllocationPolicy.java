@@ -0,0 +1,36 @@
+package org.example.parkinglot.allocation;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.models.Size;
+
+import java.util.List;
+
+/**
+ * Decides which lot sizes a {@link LotManager} may park a vehicle in, e.g. whether a Bike may take a MEDIUM lot once
+ * every SMALL lot is occupied.
+ *
+ * A vehicle is always offered its own lot size first. Other sizes are tried in the given order, each only if
+ * {@link #admits(Size, Size, LotManager)} agrees at that moment. Implementations are shared by every gate and must be
+ * ThreadSafe.
+ */
+public interface AllocationPolicy {
+
+    /**
+     * @param vehicleSize of the vehicle to be parked
+     * @return Lot sizes to try in order, starting with vehicleSize itself. Called on every park, so implementations
+     * should return a shared unmodifiable list.
+     */
+    List<Size> lotSizesFor(Size vehicleSize);
+
+    /**
+     * Checked right before a vehicle is sent to a lot size larger than its own. This runs on the park path, so
+     * implementations should only consult cheap counters such as {@link LotManager#getNumberOfLotsOccupied(Size)}.
+     * The answer is advisory, concurrent parks may change the occupancy right after it.
+     *
+     * @param vehicleSize of the vehicle to be parked
+     * @param lotSize     of the lots about to be tried, other than vehicleSize
+     * @param lotManager  the vehicle is parked with
+     * @return true if the vehicle may take a lot of lotSize
+     */
+    boolean admits(Size vehicleSize, Size lotSize, LotManager lotManager);
+}
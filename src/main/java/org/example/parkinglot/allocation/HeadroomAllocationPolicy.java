@@ -0,0 +1,33 @@
+package org.example.parkinglot.allocation;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.models.Size;
+
+/**
+ * {@link OverflowAllocationPolicy} which keeps a share of every larger lot size for vehicles of that size: a smaller
+ * vehicle only overflows into a size while at least the headroom of its lots would still be free afterwards. With a
+ * headroom of 10%, Bikes stop taking MEDIUM lots once fewer than 10% of them would be left for Cars.
+ *
+ * ThreadSafe class.
+ */
+public class HeadroomAllocationPolicy extends OverflowAllocationPolicy {
+
+    private final int headroomPercent;
+
+    /**
+     * @param headroomPercent share of the lots of every size, from 0 to 100, kept for vehicles of that size
+     */
+    public HeadroomAllocationPolicy(int headroomPercent) {
+        if (headroomPercent < 0 || headroomPercent > 100) {
+            throw new IllegalArgumentException("headroomPercent must be in [0, 100]");
+        }
+        this.headroomPercent = headroomPercent;
+    }
+
+    @Override
+    public boolean admits(Size vehicleSize, Size lotSize, LotManager lotManager) {
+        long numberOfLots = lotManager.getNumberOfLots(lotSize);
+        long freeAfterwards = numberOfLots - lotManager.getNumberOfLotsOccupied(lotSize) - 1;
+        return freeAfterwards * 100 >= numberOfLots * headroomPercent;
+    }
+}
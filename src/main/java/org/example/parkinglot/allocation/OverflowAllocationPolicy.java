@@ -0,0 +1,44 @@
+package org.example.parkinglot.allocation;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.models.Size;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link AllocationPolicy} letting a vehicle overflow into the next larger lot size when its own size is full,
+ * SMALL to MEDIUM to LARGE. A full size is skipped by its tracker's occupied counter, so trying the next size costs
+ * next to nothing.
+ *
+ * ThreadSafe class.
+ */
+public class OverflowAllocationPolicy implements AllocationPolicy {
+
+    public static final OverflowAllocationPolicy INSTANCE = new OverflowAllocationPolicy();
+
+    private static final List<List<Size>> LOT_SIZES = new ArrayList<>();
+
+    static {
+        for (Size size : Size.values()) {
+            List<Size> lotSizes = new ArrayList<>();
+            for (Size lotSize = size; lotSize != null; lotSize = lotSize.larger()) {
+                lotSizes.add(lotSize);
+            }
+            LOT_SIZES.add(Collections.unmodifiableList(lotSizes));
+        }
+    }
+
+    protected OverflowAllocationPolicy() {}
+
+    @Override
+    public List<Size> lotSizesFor(Size vehicleSize) {
+        return LOT_SIZES.get(vehicleSize.ordinal());
+    }
+
+    @Override
+    public boolean admits(Size vehicleSize, Size lotSize, LotManager lotManager) {
+        return true;
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.parkinglot.allocation;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.models.Size;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link AllocationPolicy} parking every vehicle in lots of exactly its own size, the default of {@link LotManager}.
+ *
+ * ThreadSafe class.
+ */
+public final class StrictAllocationPolicy implements AllocationPolicy {
+
+    public static final StrictAllocationPolicy INSTANCE = new StrictAllocationPolicy();
+
+    private static final List<List<Size>> LOT_SIZES = new ArrayList<>();
+
+    static {
+        for (Size size : Size.values()) {
+            LOT_SIZES.add(Collections.singletonList(size));
+        }
+    }
+
+    private StrictAllocationPolicy() {}
+
+    @Override
+    public List<Size> lotSizesFor(Size vehicleSize) {
+        return LOT_SIZES.get(vehicleSize.ordinal());
+    }
+
+    @Override
+    public boolean admits(Size vehicleSize, Size lotSize, LotManager lotManager) {
+        return false;
+    }
+}
@@ -0,0 +1,362 @@
+package org.example.parkinglot.analytics;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTrackerListener;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Rolling occupancy analytics of a {@link LotManager} by {@link Size}, kept up to date as vehicles park and leave
+ * instead of reconstructed from logs: utilisation curves, arrival and departure rates, dwell time distributions and
+ * a forecast of the occupancy a while ahead.
+ *
+ * Time is cut into buckets of equal width, e.g. 5 minutes, and the latest buckets are kept in a ring, e.g. 288 of them
+ * for a day, so memory is bounded whatever the traffic. Every bucket counts the arrivals and departures within it, the
+ * sums of their offsets from the bucket start, the peak occupancy and a histogram of the dwell times of the
+ * departures. Recording a park or unPark is a few atomic adds to the bucket of the current time, without locks or
+ * allocation; only the first event in a bucket takes a lock to clear it for reuse. The occupancy at the start of
+ * every bucket follows from the current occupancy and the counts of the buckets since, and the time integral of the
+ * occupancy within a bucket from the offset sums, so {@link #window(Size, Instant, Instant)} aggregates any window
+ * from the buckets it covers without looking at a single park or unPark.
+ *
+ * {@link #forecastOccupancy(Size, Duration)} smooths the occupancy at the end of the latest buckets with Holt's
+ * linear method and extends its trend from the current occupancy. It is meant to tell "will we be full in 30
+ * minutes", not to plan capacity.
+ *
+ * The occupancy is kept here, seeded from the lot manager when attached, so attach before parking starts or after a
+ * recovery, not during one. Vehicles parked before have no known arrival and no dwell time.
+ *
+ * ThreadSafe class. A window or forecast taken while vehicles park may miss the changes in flight.
+ */
+public class OccupancyAnalytics implements LotTrackerListener {
+
+    /**
+     * Most buckets kept per size.
+     */
+    public static final int MAX_BUCKETS = 1 << 14;
+
+    private static final Size[] SIZES = Size.values();
+    private static final long UNKNOWN = Long.MIN_VALUE;
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final double ALPHA = 0.5;
+    private static final double BETA = 0.3;
+    private static final int FORECAST_BUCKETS = 12;
+
+    /**
+     * Longs per bucket: the epoch (start time / width) the bucket holds, the counts and offset sums of arrivals and
+     * departures, the peak occupancy, the sum of the dwell times, then the dwell time histogram.
+     */
+    private static final int EPOCH = 0;
+    private static final int ARRIVALS = 1;
+    private static final int DEPARTURES = 2;
+    private static final int ARRIVAL_OFFSETS = 3;
+    private static final int DEPARTURE_OFFSETS = 4;
+    private static final int PEAK = 5;
+    private static final int DWELL_MILLIS = 6;
+    private static final int DWELL_HISTOGRAM = 7;
+    private static final int STRIDE = DWELL_HISTOGRAM + OccupancyWindow.DWELL_BUCKETS;
+
+    private final Clock clock;
+    private final long widthMillis;
+    private final int numberOfBuckets;
+    /**
+     * Buckets by size ordinal, each array also locked to clear a bucket for reuse.
+     */
+    private final AtomicLongArray[] buckets = new AtomicLongArray[SIZES.length];
+    private final AtomicIntegerArray occupied = new AtomicIntegerArray(SIZES.length);
+    private final AtomicIntegerArray lots = new AtomicIntegerArray(SIZES.length);
+    /**
+     * Arrival time of the vehicle in every lot by size ordinal, in chunks of {@link #CHUNK_SIZE} lots. Written and
+     * read while the lot is locked, see {@link LotTrackerListener}; chunks are never copied as lots are added.
+     */
+    private final AtomicReferenceArray<long[][]> arrivalMillis = new AtomicReferenceArray<>(SIZES.length);
+
+    /**
+     * Registers new analytics with the lot manager.
+     *
+     * @param clock           telling the time of parks and unParks
+     * @param bucketWidth     resolution of the analytics, whole milliseconds
+     * @param numberOfBuckets kept per size, the analytics cover numberOfBuckets times bucketWidth
+     */
+    public static OccupancyAnalytics attach(LotManager lotManager, Clock clock, Duration bucketWidth,
+                                            int numberOfBuckets) {
+        int[] occupied = new int[SIZES.length];
+        int[] lots = new int[SIZES.length];
+        int[] capacity = new int[SIZES.length];
+        for (Size size : SIZES) {
+            occupied[size.ordinal()] = lotManager.getNumberOfLotsOccupied(size);
+            lots[size.ordinal()] = lotManager.getNumberOfLots(size);
+            capacity[size.ordinal()] = lotManager.getLotCapacity(size);
+        }
+        OccupancyAnalytics analytics = new OccupancyAnalytics(clock, bucketWidth, numberOfBuckets, occupied, lots,
+                capacity);
+        lotManager.addListener(analytics);
+        return analytics;
+    }
+
+    /**
+     * @param occupied number of lots occupied by size ordinal
+     * @param lots     number of lots in service by size ordinal
+     * @param capacity highest lot ID + 1 by size ordinal
+     */
+    OccupancyAnalytics(Clock clock, Duration bucketWidth, int numberOfBuckets, int[] occupied, int[] lots,
+                       int[] capacity) {
+        if (clock == null || bucketWidth == null) {
+            throw new IllegalArgumentException("clock and bucketWidth must not be null");
+        }
+        if (bucketWidth.isNegative() || bucketWidth.isZero() || bucketWidth.getNano() % 1_000_000 != 0) {
+            throw new IllegalArgumentException("bucketWidth must be a positive number of milliseconds");
+        }
+        if (numberOfBuckets < 2 || numberOfBuckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("numberOfBuckets must be between 2 and " + MAX_BUCKETS);
+        }
+        this.clock = clock;
+        this.widthMillis = bucketWidth.toMillis();
+        this.numberOfBuckets = numberOfBuckets;
+        for (Size size : SIZES) {
+            int i = size.ordinal();
+            buckets[i] = new AtomicLongArray(numberOfBuckets * STRIDE);
+            for (int bucket = 0; bucket < numberOfBuckets; bucket++) {
+                buckets[i].set(bucket * STRIDE + EPOCH, Long.MIN_VALUE);
+            }
+            this.occupied.set(i, occupied[i]);
+            this.lots.set(i, lots[i]);
+            arrivalMillis.set(i, new long[0][]);
+            growTo(size, capacity[i]);
+        }
+    }
+
+    @Override
+    public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+        long now = clock.millis();
+        int occupancy = occupied.incrementAndGet(size.ordinal());
+        arrivalMillis.get(size.ordinal())[lotId >>> CHUNK_BITS][lotId & CHUNK_MASK] = now;
+        AtomicLongArray buckets = this.buckets[size.ordinal()];
+        long epoch = Math.floorDiv(now, widthMillis);
+        int bucket = bucketOf(buckets, epoch);
+        if (bucket < 0) {
+            return;
+        }
+        buckets.incrementAndGet(bucket + ARRIVALS);
+        buckets.addAndGet(bucket + ARRIVAL_OFFSETS, now - epoch * widthMillis);
+        long peak = buckets.get(bucket + PEAK);
+        while (occupancy > peak && !buckets.compareAndSet(bucket + PEAK, peak, occupancy)) {
+            peak = buckets.get(bucket + PEAK);
+        }
+    }
+
+    @Override
+    public void onReleased(Size size, int lotId, int generation) {
+        long now = clock.millis();
+        occupied.decrementAndGet(size.ordinal());
+        long[] chunk = arrivalMillis.get(size.ordinal())[lotId >>> CHUNK_BITS];
+        long arrival = chunk[lotId & CHUNK_MASK];
+        chunk[lotId & CHUNK_MASK] = UNKNOWN;
+        AtomicLongArray buckets = this.buckets[size.ordinal()];
+        long epoch = Math.floorDiv(now, widthMillis);
+        int bucket = bucketOf(buckets, epoch);
+        if (bucket < 0) {
+            return;
+        }
+        buckets.incrementAndGet(bucket + DEPARTURES);
+        buckets.addAndGet(bucket + DEPARTURE_OFFSETS, now - epoch * widthMillis);
+        if (arrival != UNKNOWN) {
+            long dwell = Math.max(0, now - arrival);
+            buckets.addAndGet(bucket + DWELL_MILLIS, dwell);
+            buckets.incrementAndGet(bucket + DWELL_HISTOGRAM + OccupancyWindow.dwellBucketOf(dwell / 60_000));
+        }
+    }
+
+    @Override
+    public void onLotsAdded(Size size, int numberOfLots) {
+        growTo(size, numberOfLots);
+    }
+
+    @Override
+    public void onNumberOfLotsChanged(Size size, int numberOfLots) {
+        lots.set(size.ordinal(), numberOfLots);
+    }
+
+    private synchronized void growTo(Size size, int capacity) {
+        long[][] chunks = arrivalMillis.get(size.ordinal());
+        int needed = (int) (((long) capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        if (needed > chunks.length) {
+            long[][] grown = Arrays.copyOf(chunks, needed);
+            for (int chunk = chunks.length; chunk < needed; chunk++) {
+                grown[chunk] = new long[CHUNK_SIZE];
+                Arrays.fill(grown[chunk], UNKNOWN);
+            }
+            arrivalMillis.set(size.ordinal(), grown);
+        }
+    }
+
+    /**
+     * @return Offset of the bucket holding the epoch, cleared first if it held an older one, or -1 if it holds a newer
+     * one already, i.e. the epoch is no longer kept
+     */
+    private int bucketOf(AtomicLongArray buckets, long epoch) {
+        int bucket = (int) Math.floorMod(epoch, (long) numberOfBuckets) * STRIDE;
+        long held = buckets.get(bucket + EPOCH);
+        if (held == epoch) {
+            return bucket;
+        }
+        if (held > epoch) {
+            return -1;
+        }
+        synchronized (buckets) {
+            held = buckets.get(bucket + EPOCH);
+            if (held < epoch) {
+                for (int field = EPOCH + 1; field < STRIDE; field++) {
+                    buckets.set(bucket + field, 0);
+                }
+                // published last, events seeing the epoch add to the cleared counts
+                buckets.set(bucket + EPOCH, epoch);
+                held = epoch;
+            }
+        }
+        return held == epoch ? bucket : -1;
+    }
+
+    /**
+     * Aggregates the buckets covering a window. The window is widened to bucket boundaries and narrowed to the buckets
+     * kept and to now.
+     *
+     * @param from start of the window, inclusive
+     * @param to   end of the window, exclusive
+     */
+    public OccupancyWindow window(Size size, Instant from, Instant to) {
+        if (size == null || from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("size, from and to must not be null and to must not be before from");
+        }
+        long now = clock.millis();
+        int occupancy = occupied.get(size.ordinal());
+        long nowEpoch = Math.floorDiv(now, widthMillis);
+        long fromEpoch = Math.max(Math.floorDiv(from.toEpochMilli(), widthMillis), nowEpoch - numberOfBuckets + 1);
+        long toEpoch = Math.min(Math.floorDiv(to.toEpochMilli() - 1, widthMillis), nowEpoch);
+        if (fromEpoch > toEpoch || !from.isBefore(to)) {
+            Instant start = from.isBefore(to) ? Instant.ofEpochMilli(Math.min(to.toEpochMilli(), now)) : to;
+            return new OccupancyWindow(size, start, start, lots.get(size.ordinal()), 0, 0, 0, 0, new double[0],
+                    new long[OccupancyWindow.DWELL_BUCKETS], 0);
+        }
+        AtomicLongArray buckets = this.buckets[size.ordinal()];
+        double[] averages = new double[(int) (toEpoch - fromEpoch + 1)];
+        long[] dwellCounts = new long[OccupancyWindow.DWELL_BUCKETS];
+        long arrivals = 0;
+        long departures = 0;
+        long dwellMillis = 0;
+        double integral = 0;
+        int peak = 0;
+        // the occupancy at the end of a bucket is the occupancy at the start of the next one
+        long end = occupancy;
+        for (long epoch = nowEpoch; epoch >= fromEpoch; epoch--) {
+            int bucket = (int) Math.floorMod(epoch, (long) numberOfBuckets) * STRIDE;
+            boolean held = buckets.get(bucket + EPOCH) == epoch;
+            long bucketArrivals = held ? buckets.get(bucket + ARRIVALS) : 0;
+            long bucketDepartures = held ? buckets.get(bucket + DEPARTURES) : 0;
+            long start = end - bucketArrivals + bucketDepartures;
+            if (epoch <= toEpoch) {
+                long width = epoch == nowEpoch ? now - epoch * widthMillis : widthMillis;
+                double bucketIntegral = (double) start * width;
+                if (held) {
+                    bucketIntegral += (double) width * (bucketArrivals - bucketDepartures)
+                            - buckets.get(bucket + ARRIVAL_OFFSETS) + buckets.get(bucket + DEPARTURE_OFFSETS);
+                    peak = (int) Math.max(peak, buckets.get(bucket + PEAK));
+                    dwellMillis += buckets.get(bucket + DWELL_MILLIS);
+                    for (int i = 0; i < dwellCounts.length; i++) {
+                        dwellCounts[i] += buckets.get(bucket + DWELL_HISTOGRAM + i);
+                    }
+                }
+                averages[(int) (epoch - fromEpoch)] = width == 0 ? start : bucketIntegral / width;
+                integral += bucketIntegral;
+                arrivals += bucketArrivals;
+                departures += bucketDepartures;
+                peak = (int) Math.max(peak, Math.max(start, end));
+            }
+            end = start;
+        }
+        long fromMillis = fromEpoch * widthMillis;
+        long toMillis = Math.min((toEpoch + 1) * widthMillis, now);
+        double average = toMillis == fromMillis ? averages[0] : integral / (toMillis - fromMillis);
+        return new OccupancyWindow(size, Instant.ofEpochMilli(fromMillis), Instant.ofEpochMilli(toMillis),
+                lots.get(size.ordinal()), arrivals, departures, average, peak, averages, dwellCounts, dwellMillis);
+    }
+
+    /**
+     * Same as {@link #window(Size, Instant, Instant)} for the given time up to now.
+     */
+    public OccupancyWindow lastWindow(Size size, Duration duration) {
+        if (duration == null || duration.isNegative()) {
+            throw new IllegalArgumentException("duration must not be negative");
+        }
+        Instant now = Instant.ofEpochMilli(clock.millis());
+        return window(size, now.minus(duration), now.plusMillis(1));
+    }
+
+    /**
+     * @param horizon how far ahead
+     * @return Number of lots expected to be occupied after the horizon, between 0 and the number of lots in service:
+     * the current occupancy plus the smoothed trend per bucket of the occupancy at the end of the latest buckets
+     */
+    public int forecastOccupancy(Size size, Duration horizon) {
+        if (size == null || horizon == null || horizon.isNegative()) {
+            throw new IllegalArgumentException("size must not be null and horizon must not be negative");
+        }
+        long now = clock.millis();
+        int occupancy = occupied.get(size.ordinal());
+        long nowEpoch = Math.floorDiv(now, widthMillis);
+        int points = Math.min(FORECAST_BUCKETS, numberOfBuckets - 1);
+        AtomicLongArray buckets = this.buckets[size.ordinal()];
+        // occupancy at the end of the latest complete buckets, newest first
+        long[] ends = new long[points];
+        long end = occupancy;
+        for (long epoch = nowEpoch; epoch > nowEpoch - points; epoch--) {
+            int bucket = (int) Math.floorMod(epoch, (long) numberOfBuckets) * STRIDE;
+            if (buckets.get(bucket + EPOCH) == epoch) {
+                end += buckets.get(bucket + DEPARTURES) - buckets.get(bucket + ARRIVALS);
+            }
+            ends[(int) (nowEpoch - epoch)] = end;
+        }
+        double level = ends[points - 1];
+        double trend = 0;
+        for (int i = points - 2; i >= 0; i--) {
+            double previous = level;
+            level = ALPHA * ends[i] + (1 - ALPHA) * (level + trend);
+            trend = BETA * (level - previous) + (1 - BETA) * trend;
+        }
+        double forecast = occupancy + trend * horizon.toMillis() / widthMillis;
+        return (int) Math.max(0, Math.min(lots.get(size.ordinal()), Math.round(forecast)));
+    }
+
+    /**
+     * @return Whether all lots of the size are expected to be occupied after the horizon, see
+     * {@link #forecastOccupancy(Size, Duration)}
+     */
+    public boolean willBeFull(Size size, Duration horizon) {
+        return forecastOccupancy(size, horizon) >= lots.get(size.ordinal());
+    }
+
+    /**
+     * @return Number of lots of the size occupied after the latest change recorded
+     */
+    public int getNumberOfLotsOccupied(Size size) {
+        return occupied.get(size.ordinal());
+    }
+
+    public Duration getBucketWidth() {
+        return Duration.ofMillis(widthMillis);
+    }
+
+    public int getNumberOfBuckets() {
+        return numberOfBuckets;
+    }
+}
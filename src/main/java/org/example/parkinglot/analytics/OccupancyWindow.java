@@ -0,0 +1,201 @@
+package org.example.parkinglot.analytics;
+
+import org.example.parkinglot.models.Size;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Occupancy of the lots of one size over a window of time, aggregated from the buckets of an
+ * {@link OccupancyAnalytics}. The window starts and ends on bucket boundaries, except that it ends at the time it
+ * was taken if it reaches into the current bucket.
+ *
+ * Immutable, hence ThreadSafe.
+ */
+public final class OccupancyWindow {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_BITS = SUB_BUCKET_BITS - 1;
+
+    /**
+     * Longest dwell time told apart, in minutes (about 45 days). Longer stays count as this long.
+     */
+    static final long MAX_DWELL_MINUTES = (1L << 16) - 1;
+
+    /**
+     * Buckets of the dwell time histogram: one per minute below {@link #SUB_BUCKETS} minutes, then every larger
+     * power of two split into {@link #SUB_BUCKETS} / 2 buckets, so a dwell time is off by less than 1 / 8 of itself.
+     */
+    static final int DWELL_BUCKETS = dwellBucketOf(MAX_DWELL_MINUTES) + 1;
+
+    private final Size size;
+    private final Instant from;
+    private final Instant to;
+    private final int numberOfLots;
+    private final long arrivals;
+    private final long departures;
+    private final double averageOccupancy;
+    private final int peakOccupancy;
+    private final double[] averageOccupancyByBucket;
+    private final long[] dwellCounts;
+    private final long dwells;
+    private final long dwellMillis;
+
+    OccupancyWindow(Size size, Instant from, Instant to, int numberOfLots, long arrivals, long departures,
+                    double averageOccupancy, int peakOccupancy, double[] averageOccupancyByBucket,
+                    long[] dwellCounts, long dwellMillis) {
+        this.size = size;
+        this.from = from;
+        this.to = to;
+        this.numberOfLots = numberOfLots;
+        this.arrivals = arrivals;
+        this.departures = departures;
+        this.averageOccupancy = averageOccupancy;
+        this.peakOccupancy = peakOccupancy;
+        this.averageOccupancyByBucket = averageOccupancyByBucket;
+        this.dwellCounts = dwellCounts;
+        long total = 0;
+        for (long count : dwellCounts) {
+            total += count;
+        }
+        this.dwells = total;
+        this.dwellMillis = dwellMillis;
+    }
+
+    static int dwellBucketOf(long minutes) {
+        long value = minutes < 0 ? 0 : Math.min(minutes, MAX_DWELL_MINUTES);
+        int shift = (63 - Long.numberOfLeadingZeros(value | (SUB_BUCKETS - 1))) - HALF_BITS;
+        return (shift << HALF_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return Shortest dwell time counted in the bucket, in minutes
+     */
+    static long lowestMinutesOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> HALF_BITS) - 1;
+        return (long) (bucket - (shift << HALF_BITS)) << shift;
+    }
+
+    public Size getSize() {
+        return size;
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    public Duration getDuration() {
+        return Duration.between(from, to);
+    }
+
+    /**
+     * @return Number of lots in service when the window was taken, which utilisation is relative to
+     */
+    public int getNumberOfLots() {
+        return numberOfLots;
+    }
+
+    public long getArrivals() {
+        return arrivals;
+    }
+
+    public long getDepartures() {
+        return departures;
+    }
+
+    public double getArrivalsPerHour() {
+        return perHour(arrivals);
+    }
+
+    public double getDeparturesPerHour() {
+        return perHour(departures);
+    }
+
+    private double perHour(long count) {
+        long millis = getDuration().toMillis();
+        return millis == 0 ? 0 : count * 3_600_000.0 / millis;
+    }
+
+    /**
+     * @return Number of lots occupied on average over the window
+     */
+    public double getAverageOccupancy() {
+        return averageOccupancy;
+    }
+
+    /**
+     * @return Most lots occupied at once within the window
+     */
+    public int getPeakOccupancy() {
+        return peakOccupancy;
+    }
+
+    /**
+     * @return Average share of the lots occupied over the window, between 0 and 1 unless lots were retired since
+     */
+    public double getUtilisation() {
+        return numberOfLots == 0 ? 0 : averageOccupancy / numberOfLots;
+    }
+
+    /**
+     * @return Average share of the lots occupied in every bucket of the window, oldest first
+     */
+    public double[] getUtilisationCurve() {
+        double[] curve = new double[averageOccupancyByBucket.length];
+        for (int i = 0; i < curve.length; i++) {
+            curve[i] = numberOfLots == 0 ? 0 : averageOccupancyByBucket[i] / numberOfLots;
+        }
+        return curve;
+    }
+
+    /**
+     * @return Number of departures within the window whose arrival was seen, i.e. those with a dwell time
+     */
+    public long getNumberOfDwells() {
+        return dwells;
+    }
+
+    /**
+     * @return Average dwell time of the departures within the window, or zero if there were none
+     */
+    public Duration getMeanDwellTime() {
+        return dwells == 0 ? Duration.ZERO : Duration.ofMillis(dwellMillis / dwells);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return Dwell time at least percentile percent of the departures within the window stayed less than, rounded up
+     * to the histogram bucket, or zero if there were none
+     */
+    public Duration getDwellTimeAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        if (dwells == 0) {
+            return Duration.ZERO;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * dwells));
+        long seen = 0;
+        int bucket = 0;
+        while (seen + dwellCounts[bucket] < rank) {
+            seen += dwellCounts[bucket++];
+        }
+        return Duration.ofMinutes(bucket + 1 == DWELL_BUCKETS ? MAX_DWELL_MINUTES + 1 : lowestMinutesOf(bucket + 1));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s %s to %s: %d arrivals, %d departures, %.1f%% utilisation, peak %d of %d"
+                        + " lots, dwell p50 %s, p90 %s", size, from, to, arrivals, departures, getUtilisation() * 100,
+                peakOccupancy, numberOfLots, getDwellTimeAtPercentile(50), getDwellTimeAtPercentile(90));
+    }
+}
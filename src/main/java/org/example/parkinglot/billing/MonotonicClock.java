@@ -0,0 +1,42 @@
+package org.example.parkinglot.billing;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wall clock time in milliseconds which never goes backwards, for stamping tickets: when the underlying clock is set
+ * back, e.g. by NTP, the time stands still until the clock has caught up, so no stay comes out negative.
+ *
+ * Reading the time writes the shared state at most once per millisecond, otherwise it is a plain read.
+ *
+ * ThreadSafe class.
+ */
+public final class MonotonicClock {
+
+    public static final MonotonicClock SYSTEM = new MonotonicClock(Clock.systemUTC());
+
+    private final Clock clock;
+    private final AtomicLong latest = new AtomicLong(Long.MIN_VALUE);
+
+    public MonotonicClock(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock must not be null");
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * @return Milliseconds since the epoch, at least the value returned by any earlier call
+     */
+    public long millis() {
+        long now = clock.millis();
+        long latest = this.latest.get();
+        while (now > latest) {
+            if (this.latest.compareAndSet(latest, now)) {
+                return now;
+            }
+            latest = this.latest.get();
+        }
+        return latest;
+    }
+}
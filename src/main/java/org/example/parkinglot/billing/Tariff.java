@@ -0,0 +1,212 @@
+package org.example.parkinglot.billing;
+
+import org.example.parkinglot.models.Size;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Prices a stay from its entry and exit time, in minor currency units (e.g. cents).
+ *
+ * A stay is charged per started billing unit counted from the entry, e.g. every started 15 minutes. Each unit costs
+ * the rate of the time band, by time of day, it starts in, and every size has its own bands. Every 24 hours from the
+ * entry are charged at most the daily cap of the size. Stays no longer than the grace period are free.
+ *
+ * All of it is compiled into tables when the tariff is built: for every size and every minute the entry can fall on
+ * within a unit, the running total of the units of a day starting there. A full day then costs the last entry of the
+ * table and the units of the last partial day are the difference of two entries, so {@link #fee(Size, long, long)}
+ * takes constant time whatever the stay and allocates nothing. The tables hold one long per minute of the day and
+ * size. Time bands are in a fixed {@link ZoneOffset}, so a change to daylight saving time needs a new tariff.
+ *
+ * Immutable once built, hence ThreadSafe.
+ */
+public final class Tariff {
+
+    private static final Size[] SIZES = Size.values();
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final int unitMinutes;
+    private final long unitMillis;
+    private final int unitsPerDay;
+    private final long offsetMillis;
+    private final long graceMillis;
+    private final long[] dailyCaps;
+    /**
+     * Running totals, one row of unitsPerDay + 1 longs per size and minute within a unit, see
+     * {@link #row(Size, int)}.
+     */
+    private final long[] totals;
+
+    private Tariff(Builder builder) {
+        this.unitMinutes = builder.unitMinutes;
+        this.unitMillis = unitMinutes * MINUTE_MILLIS;
+        this.unitsPerDay = MINUTES_PER_DAY / unitMinutes;
+        this.offsetMillis = builder.zone.getTotalSeconds() * 1000L;
+        this.graceMillis = builder.graceMillis;
+        this.dailyCaps = builder.dailyCaps.clone();
+        this.totals = new long[SIZES.length * unitMinutes * (unitsPerDay + 1)];
+        for (Size size : SIZES) {
+            long[] rates = builder.ratesByMinute(size);
+            for (int minute = 0; minute < unitMinutes; minute++) {
+                int row = row(size, minute);
+                for (int unit = 0; unit < unitsPerDay; unit++) {
+                    totals[row + unit + 1] = totals[row + unit] + rates[minute + unit * unitMinutes];
+                }
+            }
+        }
+    }
+
+    /**
+     * @param unit billing unit, a whole number of minutes dividing a day, e.g. 15 minutes
+     * @param zone the time bands are given in
+     */
+    public static Builder builder(Duration unit, ZoneOffset zone) {
+        if (unit == null || zone == null) {
+            throw new IllegalArgumentException("unit and zone must not be null");
+        }
+        long minutes = unit.toMinutes();
+        if (minutes < 1 || minutes > MINUTES_PER_DAY || !unit.equals(Duration.ofMinutes(minutes))
+                || MINUTES_PER_DAY % minutes != 0) {
+            throw new IllegalArgumentException("unit must be a whole number of minutes dividing a day");
+        }
+        return new Builder((int) minutes, zone);
+    }
+
+    /**
+     * @param size        of the vehicle
+     * @param entryMillis time the vehicle entered, in milliseconds since the epoch
+     * @param exitMillis  time the vehicle leaves
+     * @return Amount due in minor currency units, 0 within the grace period or if exit is not after entry
+     */
+    public long fee(Size size, long entryMillis, long exitMillis) {
+        long stay = exitMillis - entryMillis;
+        if (stay <= graceMillis) {
+            return 0;
+        }
+        long units = (stay - 1) / unitMillis + 1;
+        int minuteOfDay = (int) Math.floorMod(Math.floorDiv(entryMillis + offsetMillis, MINUTE_MILLIS),
+                (long) MINUTES_PER_DAY);
+        int row = row(size, minuteOfDay % unitMinutes);
+        int first = minuteOfDay / unitMinutes;
+        long day = totals[row + unitsPerDay];
+        long cap = dailyCaps[size.ordinal()];
+        int rest = (int) (units % unitsPerDay);
+        int last = first + rest;
+        long restFee = last <= unitsPerDay
+                ? totals[row + last] - totals[row + first]
+                : day - totals[row + first] + totals[row + last - unitsPerDay];
+        return units / unitsPerDay * Math.min(day, cap) + Math.min(restFee, cap);
+    }
+
+    /**
+     * @return Offset in {@link #totals} of the running totals of the units starting at minute, minute + unit, ...
+     */
+    private int row(Size size, int minute) {
+        return (size.ordinal() * unitMinutes + minute) * (unitsPerDay + 1);
+    }
+
+    /**
+     * Collects the rates of a tariff. Every size needs a rate from at least one time of day on.
+     *
+     * Not a ThreadSafe class.
+     */
+    public static final class Builder {
+        private final int unitMinutes;
+        private final ZoneOffset zone;
+        private long graceMillis;
+        private final long[] dailyCaps = new long[SIZES.length];
+        /**
+         * Rate of every size by the minute of the day its band starts at, -1 where no band starts.
+         */
+        private final long[][] bandRates = new long[SIZES.length][MINUTES_PER_DAY];
+
+        private Builder(int unitMinutes, ZoneOffset zone) {
+            this.unitMinutes = unitMinutes;
+            this.zone = zone;
+            Arrays.fill(dailyCaps, Long.MAX_VALUE);
+            for (long[] rates : bandRates) {
+                Arrays.fill(rates, -1);
+            }
+        }
+
+        /**
+         * Charges the units of a size starting from a time of day on, until the next band of the size starts.
+         *
+         * @param from          whole minute the band starts at, bands wrap around midnight
+         * @param amountPerUnit charged for every started unit
+         */
+        public Builder rate(Size size, LocalTime from, long amountPerUnit) {
+            if (size == null || from == null || from.getSecond() != 0 || from.getNano() != 0 || amountPerUnit < 0) {
+                throw new IllegalArgumentException("size and a whole minute are required and the amount must not"
+                        + " be negative");
+            }
+            bandRates[size.ordinal()][from.getHour() * 60 + from.getMinute()] = amountPerUnit;
+            return this;
+        }
+
+        /**
+         * Charges the units of a size from midnight on, the same all day unless the size has other bands.
+         */
+        public Builder rate(Size size, long amountPerUnit) {
+            return rate(size, LocalTime.MIDNIGHT, amountPerUnit);
+        }
+
+        /**
+         * @param cap most charged to a vehicle of the size for any 24 hours from its entry
+         */
+        public Builder dailyCap(Size size, long cap) {
+            if (size == null || cap < 0) {
+                throw new IllegalArgumentException("size is required and cap must not be negative");
+            }
+            dailyCaps[size.ordinal()] = cap;
+            return this;
+        }
+
+        /**
+         * @param grace stays up to this long are free, e.g. to drop someone off
+         */
+        public Builder gracePeriod(Duration grace) {
+            if (grace == null || grace.isNegative()) {
+                throw new IllegalArgumentException("grace must not be negative");
+            }
+            this.graceMillis = grace.toMillis();
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a size has no rate
+         */
+        public Tariff build() {
+            for (Size size : SIZES) {
+                ratesByMinute(size);
+            }
+            return new Tariff(this);
+        }
+
+        /**
+         * @return Rate of the band every minute of the day is in
+         */
+        private long[] ratesByMinute(Size size) {
+            long[] bands = bandRates[size.ordinal()];
+            long rate = -1;
+            for (int minute = MINUTES_PER_DAY - 1; minute >= 0 && rate < 0; minute--) {
+                rate = bands[minute];
+            }
+            if (rate < 0) {
+                throw new IllegalArgumentException("No rate for " + size);
+            }
+            // minutes before the first band of the day belong to the last band of the previous day
+            long[] rates = new long[MINUTES_PER_DAY];
+            for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                if (bands[minute] >= 0) {
+                    rate = bands[minute];
+                }
+                rates[minute] = rate;
+            }
+            return rates;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.parkinglot.booking;
+
+/**
+ * Head node of a bay in a {@link BookingCalendar}, holding what the calendar knows about the bay besides its bookings.
+ */
+final class Bay extends CalendarNode {
+
+    /**
+     * Earliest booking waiting for the bay to be released, or null.
+     */
+    Booking pending;
+    /**
+     * Taken out of service, the gaps of a retired bay are kept empty so that it gets no new bookings.
+     */
+    boolean retired;
+
+    Bay(int lotId) {
+        super(lotId, Long.MIN_VALUE, Long.MIN_VALUE);
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.parkinglot.booking;
+
+import org.example.parkinglot.models.Size;
+
+import java.time.Instant;
+
+/**
+ * A bay pre-booked for a time window [start, end), handed out by {@link BookingCalendar#book(long, long)}. Present it
+ * when the vehicle arrives, see {@link org.example.parkinglot.LotTracker#reserveBookedLot(Booking,
+ * org.example.parkinglot.models.vehicle.Vehicle)}.
+ */
+public final class Booking extends CalendarNode {
+
+    static final int BOOKED = 0;
+    /**
+     * The bay is taken out of the free lot index and kept for the booking.
+     */
+    static final int HELD = 1;
+    /**
+     * The bay should be held but is still occupied, it is held as soon as it is released.
+     */
+    static final int PENDING = 2;
+    static final int ARRIVED = 3;
+    /**
+     * Cancelled or over, and out of the calendar.
+     */
+    static final int ENDED = 4;
+
+    final BookingCalendar calendar;
+    int state = BOOKED;
+    /**
+     * When the calendar has to look at the booking next: the time its bay is held, then its end.
+     */
+    long dueAt;
+
+    Booking(BookingCalendar calendar, int lotId, long start, long end) {
+        super(lotId, start, end);
+        this.calendar = calendar;
+    }
+
+    public Size getLotSize() {
+        return calendar.getLotSize();
+    }
+
+    public int getLotId() {
+        return lotId;
+    }
+
+    public Instant getStart() {
+        return Instant.ofEpochMilli(start);
+    }
+
+    public Instant getEnd() {
+        return Instant.ofEpochMilli(end);
+    }
+}
@@ -0,0 +1,406 @@
+package org.example.parkinglot.booking;
+
+import org.example.parkinglot.index.FreeLotIndex;
+import org.example.parkinglot.models.Size;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * Pre-booked time windows of the bays of one {@link org.example.parkinglot.LotTracker}, created by
+ * {@link org.example.parkinglot.LotTracker#enableBookings(Clock, Duration)}. Times are epoch milliseconds.
+ *
+ * The free gaps between the bookings of every bay are kept in a {@link GapTree}, so telling whether any bay is free
+ * for a window, and booking the best fitting one, takes O(log n) whatever the number of bays and bookings. The best
+ * fitting bay is the one whose free gap covers the window and starts the latest, which keeps the bookings of a bay
+ * close together and leaves whole days free on other bays for long bookings.
+ *
+ * Walk-ins do not know how long they stay, they are expected to leave within the lead time. Bookings are taken at
+ * least the lead time ahead, and the bay of a booking is taken out of the {@link FreeLotIndex} the lead time before
+ * the booking starts, so walk-ins only get bays without a booking coming up. If a walk-in overstays, the bay is held
+ * as soon as it is released, and a vehicle arriving meanwhile gets any free lot instead. A bay held for a vehicle which
+ * does not show up goes back to the index when the booking ends. Bookings which ended or were cancelled leave the
+ * calendar, so it only grows with the bookings still to come.
+ *
+ * Due holds and ends are kept in a priority queue and applied by {@link #advanceIfDue()}, which the tracker calls
+ * before handing out a lot; when nothing is due it costs a clock read.
+ *
+ * Bays are added with {@link #addLots(int)} and taken out of service with {@link #retire(int)}, which keeps the bay's
+ * gaps empty so that it gets no new bookings. Bookings it has already keep it, and get any lot if it is not free.
+ *
+ * ThreadSafe class.
+ */
+public final class BookingCalendar {
+
+    /**
+     * Returned by {@link #arrive(Booking)} for a booking which is not valid at this time.
+     */
+    public static final int NOT_BOOKED = -2;
+    /**
+     * Returned by {@link #arrive(Booking)} when the booked bay is still occupied, the vehicle gets any free lot.
+     */
+    public static final int ANY_LOT = -1;
+
+    private static final int[] NO_LOTS = new int[0];
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_LOTS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_LOTS - 1;
+
+    private final Size lotSize;
+    private final FreeLotIndex freeLotIndex;
+    private final IntConsumer releasedLots;
+    private final Clock clock;
+    private final long leadTime;
+
+    private final GapTree gaps = new GapTree();
+    private final PriorityQueue<Booking> due = new PriorityQueue<>(
+            (first, second) -> Long.compare(first.dueAt, second.dueAt));
+    /**
+     * Head node of every bay, in chunks of {@link #CHUNK_LOTS} by lot ID, so that adding bays leaves the existing ones
+     * in place.
+     */
+    private Bay[][] bays = new Bay[0][];
+    private int numberOfLots;
+    private volatile int numberOfPending;
+    private volatile long nextDueAt = Long.MAX_VALUE;
+    private int numberOfBookings;
+
+    /**
+     * @param freeLotIndex of the tracker, booked bays are claimed from it while held
+     * @param releasedLots called with a held bay given up, which is neither in the index nor occupied, once no lock of
+     *                     the calendar is held
+     * @param leadTime     bays are held for, and bookings taken at least, ahead of the booking start
+     */
+    public BookingCalendar(Size lotSize, int numberOfLots, FreeLotIndex freeLotIndex, IntConsumer releasedLots,
+                           Clock clock, Duration leadTime) {
+        if (lotSize == null || numberOfLots < 0 || freeLotIndex == null || releasedLots == null || clock == null
+                || leadTime == null || leadTime.isNegative()) {
+            throw new IllegalArgumentException("Invalid booking calendar arguments");
+        }
+        this.lotSize = lotSize;
+        this.freeLotIndex = freeLotIndex;
+        this.releasedLots = releasedLots;
+        this.clock = clock;
+        this.leadTime = leadTime.toMillis();
+        addLots(numberOfLots);
+    }
+
+    /**
+     * Adds free bays up to the given number of lots, in O(log n) per bay.
+     */
+    public synchronized void addLots(int numberOfLots) {
+        if (numberOfLots <= this.numberOfLots) {
+            return;
+        }
+        int chunkCount = (int) (((long) numberOfLots + CHUNK_MASK) >>> CHUNK_SHIFT);
+        if (chunkCount > bays.length) {
+            Bay[][] grown = Arrays.copyOf(bays, chunkCount);
+            for (int chunk = bays.length; chunk < chunkCount; chunk++) {
+                grown[chunk] = new Bay[CHUNK_LOTS];
+            }
+            bays = grown;
+        }
+        for (int lotId = this.numberOfLots; lotId < numberOfLots; lotId++) {
+            Bay bay = new Bay(lotId);
+            bays[lotId >>> CHUNK_SHIFT][lotId & CHUNK_MASK] = bay;
+            gaps.insert(bay);
+        }
+        this.numberOfLots = numberOfLots;
+    }
+
+    /**
+     * Stops taking bookings for a bay, see the class comment.
+     */
+    public synchronized void retire(int lotId) {
+        Bay bay = bay(lotId);
+        if (bay.retired) {
+            return;
+        }
+        bay.retired = true;
+        for (CalendarNode node = bay; node != null; node = node.next) {
+            gaps.setGapEnd(node, node.end);
+        }
+    }
+
+    /**
+     * Takes bookings for a retired bay again.
+     */
+    public synchronized void reopen(int lotId) {
+        Bay bay = bay(lotId);
+        if (!bay.retired) {
+            return;
+        }
+        bay.retired = false;
+        for (CalendarNode node = bay; node != null; node = node.next) {
+            gaps.setGapEnd(node, node.next == null ? Long.MAX_VALUE : node.next.start);
+        }
+    }
+
+    /**
+     * @return true if a bay is free for the whole window, which starts at least the lead time from now
+     */
+    public boolean isAvailable(long start, long end) {
+        checkWindow(start, end);
+        advanceIfDue();
+        synchronized (this) {
+            return start >= clock.millis() + leadTime && gaps.findBest(start, end) != null;
+        }
+    }
+
+    /**
+     * Books the best fitting bay for a window, see the class comment.
+     *
+     * @return The booking, or null if the window starts within the lead time or no bay is free for all of it
+     */
+    public Booking book(long start, long end) {
+        checkWindow(start, end);
+        advanceIfDue();
+        synchronized (this) {
+            if (start < clock.millis() + leadTime) {
+                return null;
+            }
+            CalendarNode gap = gaps.findBest(start, end);
+            if (gap == null) {
+                return null;
+            }
+            Booking booking = new Booking(this, gap.lotId, start, end);
+            booking.gapEnd = gap.gapEnd;
+            booking.previous = gap;
+            booking.next = gap.next;
+            if (gap.next != null) {
+                gap.next.previous = booking;
+            }
+            gap.next = booking;
+            gaps.setGapEnd(gap, start);
+            gaps.insert(booking);
+
+            booking.dueAt = start - leadTime;
+            schedule(booking);
+            numberOfBookings++;
+            return booking;
+        }
+    }
+
+    /**
+     * Cancels a booking. A bay held for it is given up, a vehicle which arrived already stays parked.
+     *
+     * @return false if the booking was over or cancelled already
+     */
+    public boolean cancel(Booking booking) {
+        checkOwner(booking);
+        int heldLot;
+        synchronized (this) {
+            if (booking.state == Booking.ENDED) {
+                return false;
+            }
+            heldLot = end(booking);
+        }
+        if (heldLot >= 0) {
+            releasedLots.accept(heldLot);
+        }
+        return true;
+    }
+
+    /**
+     * Hands the bay of a booking to its vehicle, from the lead time before the booking starts until it ends. A booking
+     * is used up by the first arrival, also when the vehicle gets another lot.
+     *
+     * @return ID of the bay, which is out of the {@link FreeLotIndex} and not occupied, {@link #ANY_LOT} if the bay is
+     * still occupied, or {@link #NOT_BOOKED}
+     */
+    public int arrive(Booking booking) {
+        checkOwner(booking);
+        synchronized (this) {
+            long now = clock.millis();
+            if (booking.state == Booking.ENDED || booking.state == Booking.ARRIVED
+                    || now < booking.start - leadTime || now >= booking.end) {
+                return NOT_BOOKED;
+            }
+            int state = booking.state;
+            booking.state = Booking.ARRIVED;
+            if (state == Booking.PENDING) {
+                removePending(booking);
+            }
+            if (state == Booking.HELD || freeLotIndex.claim(booking.lotId)) {
+                return booking.lotId;
+            }
+            return ANY_LOT;
+        }
+    }
+
+    /**
+     * Holds a bay which has just been released, if a booking is waiting for it.
+     *
+     * @param lotId of a bay which is neither in the {@link FreeLotIndex} nor occupied
+     * @return true if the bay is now held, false if the caller has to free it
+     */
+    public boolean holdReleased(int lotId) {
+        if (numberOfPending == 0) {
+            return false;
+        }
+        synchronized (this) {
+            Booking booking = bay(lotId).pending;
+            if (booking == null) {
+                return false;
+            }
+            booking.state = Booking.HELD;
+            removePending(booking);
+            return true;
+        }
+    }
+
+    /**
+     * Claims a bay just returned to the {@link FreeLotIndex} back for a booking which started waiting for it meanwhile,
+     * unless another caller got there first.
+     */
+    public void reclaim(int lotId) {
+        if (numberOfPending == 0) {
+            return;
+        }
+        synchronized (this) {
+            Booking booking = bay(lotId).pending;
+            if (booking != null && freeLotIndex.claim(lotId)) {
+                booking.state = Booking.HELD;
+                removePending(booking);
+            }
+        }
+    }
+
+    /**
+     * Holds the bays of bookings starting within the lead time, and takes the bookings which are over out of the
+     * calendar, giving up the bays held for vehicles which did not show up.
+     */
+    public void advanceIfDue() {
+        if (clock.millis() < nextDueAt) {
+            return;
+        }
+        int[] released = NO_LOTS;
+        int count = 0;
+        synchronized (this) {
+            long now = clock.millis();
+            Booking booking;
+            while ((booking = due.peek()) != null && booking.dueAt <= now) {
+                due.poll();
+                if (booking.state == Booking.ENDED) {
+                    continue;
+                }
+                if (booking.dueAt < booking.end) {
+                    if (booking.state == Booking.BOOKED) {
+                        hold(booking);
+                    }
+                    booking.dueAt = booking.end;
+                    due.add(booking);
+                    continue;
+                }
+                int heldLot = end(booking);
+                if (heldLot >= 0) {
+                    if (count == released.length) {
+                        released = Arrays.copyOf(released, Math.max(4, count * 2));
+                    }
+                    released[count++] = heldLot;
+                }
+            }
+            Booking next = due.peek();
+            nextDueAt = next == null ? Long.MAX_VALUE : next.dueAt;
+        }
+        for (int i = 0; i < count; i++) {
+            releasedLots.accept(released[i]);
+        }
+    }
+
+    /**
+     * @return Number of bookings which are not over or cancelled
+     */
+    public synchronized int getNumberOfBookings() {
+        return numberOfBookings;
+    }
+
+    public Size getLotSize() {
+        return lotSize;
+    }
+
+    private void hold(Booking booking) {
+        if (freeLotIndex.claim(booking.lotId)) {
+            booking.state = Booking.HELD;
+            return;
+        }
+        booking.state = Booking.PENDING;
+        Bay bay = bay(booking.lotId);
+        if (bay.pending == null) {
+            bay.pending = booking;
+            numberOfPending++;
+        }
+    }
+
+    /**
+     * Takes a booking out of the calendar and merges its interval into the gap in front of it, unless the bay is
+     * retired.
+     *
+     * @return ID of the bay held for the booking, which the caller has to release, or -1
+     */
+    private int end(Booking booking) {
+        int state = booking.state;
+        booking.state = Booking.ENDED;
+        if (state == Booking.PENDING) {
+            removePending(booking);
+        }
+        CalendarNode previous = booking.previous;
+        gaps.remove(booking);
+        previous.next = booking.next;
+        if (booking.next != null) {
+            booking.next.previous = previous;
+        }
+        gaps.setGapEnd(previous, bay(booking.lotId).retired ? previous.end : booking.gapEnd);
+        numberOfBookings--;
+        return state == Booking.HELD ? booking.lotId : -1;
+    }
+
+    /**
+     * Called once a booking is no longer pending, passes the bay on to the next pending booking of the bay.
+     */
+    private void removePending(Booking booking) {
+        Bay bay = bay(booking.lotId);
+        if (bay.pending != booking) {
+            return;
+        }
+        Booking next = booking.next;
+        while (next != null && next.state != Booking.BOOKED && next.state != Booking.PENDING) {
+            next = next.next;
+        }
+        if (next != null && next.state == Booking.PENDING) {
+            bay.pending = next;
+        } else {
+            bay.pending = null;
+            numberOfPending--;
+        }
+    }
+
+    private Bay bay(int lotId) {
+        if (lotId < 0 || lotId >= numberOfLots) {
+            throw new IllegalArgumentException("No bay " + lotId);
+        }
+        return bays[lotId >>> CHUNK_SHIFT][lotId & CHUNK_MASK];
+    }
+
+    private void schedule(Booking booking) {
+        due.add(booking);
+        if (booking.dueAt < nextDueAt) {
+            nextDueAt = booking.dueAt;
+        }
+    }
+
+    private void checkOwner(Booking booking) {
+        if (booking == null || booking.calendar != this) {
+            throw new IllegalArgumentException("Booking is not from this calendar");
+        }
+    }
+
+    private static void checkWindow(long start, long end) {
+        if (start >= end) {
+            throw new IllegalArgumentException("start must be before end");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.parkinglot.booking;
+
+/**
+ * Node of a {@link GapTree}: an interval of one bay together with the free gap which follows it, up to the start of
+ * the bay's next booking.
+ *
+ * Every bay has a head node, a {@link Bay} booked from and to Long.MIN_VALUE, whose gap runs up to the bay's first
+ * booking. Every {@link Booking} is the node of its own interval. The nodes of a bay are linked in time order.
+ */
+class CalendarNode {
+
+    final int lotId;
+    final long start;
+    /**
+     * End of the interval and start of the gap, the tree key together with the lot ID.
+     */
+    final long end;
+    /**
+     * Start of the next booking of the bay, or Long.MAX_VALUE.
+     */
+    long gapEnd;
+
+    long maxGapEnd;
+    int priority;
+    CalendarNode left;
+    CalendarNode right;
+
+    CalendarNode previous;
+    Booking next;
+
+    CalendarNode(int lotId, long start, long end) {
+        this.lotId = lotId;
+        this.start = start;
+        this.end = end;
+        this.gapEnd = Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.parkinglot.booking;
+
+/**
+ * Treap of the free gaps of every bay of a {@link BookingCalendar}, ordered by gap start and then by descending lot ID,
+ * where every node also knows the latest gap end in its subtree.
+ *
+ * The gaps starting at or before a time are a prefix of the order, and the latest gap end prunes every subtree which
+ * cannot hold a window, so the gap covering a window with the latest start is found on a single walk down the tree.
+ * All operations are O(log n) expected, n being the number of bays plus the number of bookings.
+ *
+ * Not a ThreadSafe class.
+ */
+final class GapTree {
+
+    private CalendarNode root;
+    private int seed = 0x2545F491;
+
+    void insert(CalendarNode node) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        node.priority = seed;
+        node.left = null;
+        node.right = null;
+        node.maxGapEnd = node.gapEnd;
+        root = insert(root, node);
+    }
+
+    void remove(CalendarNode node) {
+        root = remove(root, node);
+    }
+
+    /**
+     * Changes the end of the gap following a node in the tree.
+     */
+    void setGapEnd(CalendarNode node, long gapEnd) {
+        node.gapEnd = gapEnd;
+        refresh(root, node);
+    }
+
+    /**
+     * Finds the gap which covers [start, end) and starts the latest, leaving the smallest idle gap in front of a
+     * booking of the window. Among gaps starting at the same time, the one of the lowest lot ID wins.
+     *
+     * @return Node followed by the gap, or null if no gap covers the window
+     */
+    CalendarNode findBest(long start, long end) {
+        return best(root, start, end);
+    }
+
+    private static CalendarNode insert(CalendarNode root, CalendarNode node) {
+        if (root == null) {
+            return node;
+        }
+        if (compare(node, root) < 0) {
+            root.left = insert(root.left, node);
+            if (root.left.priority > root.priority) {
+                return rotateRight(root);
+            }
+        } else {
+            root.right = insert(root.right, node);
+            if (root.right.priority > root.priority) {
+                return rotateLeft(root);
+            }
+        }
+        update(root);
+        return root;
+    }
+
+    private static CalendarNode remove(CalendarNode root, CalendarNode node) {
+        if (root == null) {
+            throw new IllegalStateException("Node of lot " + node.lotId + " is not in the tree");
+        }
+        if (root == node) {
+            return merge(root.left, root.right);
+        }
+        if (compare(node, root) < 0) {
+            root.left = remove(root.left, node);
+        } else {
+            root.right = remove(root.right, node);
+        }
+        update(root);
+        return root;
+    }
+
+    private static CalendarNode merge(CalendarNode left, CalendarNode right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static void refresh(CalendarNode root, CalendarNode node) {
+        if (root != node) {
+            refresh(compare(node, root) < 0 ? root.left : root.right, node);
+        }
+        update(root);
+    }
+
+    private static CalendarNode best(CalendarNode node, long start, long end) {
+        if (node == null || node.maxGapEnd < end) {
+            return null;
+        }
+        if (node.end > start) {
+            return best(node.left, start, end);
+        }
+        CalendarNode best = best(node.right, start, end);
+        if (best != null) {
+            return best;
+        }
+        return node.gapEnd >= end ? node : latest(node.left, end);
+    }
+
+    /**
+     * @return Node with the greatest key in a subtree whose gaps all start early enough, with a gap reaching the end
+     */
+    private static CalendarNode latest(CalendarNode node, long end) {
+        if (node == null || node.maxGapEnd < end) {
+            return null;
+        }
+        while (true) {
+            if (node.right != null && node.right.maxGapEnd >= end) {
+                node = node.right;
+            } else if (node.gapEnd >= end) {
+                return node;
+            } else {
+                node = node.left;
+            }
+        }
+    }
+
+    private static int compare(CalendarNode a, CalendarNode b) {
+        int byEnd = Long.compare(a.end, b.end);
+        return byEnd != 0 ? byEnd : Integer.compare(b.lotId, a.lotId);
+    }
+
+    private static CalendarNode rotateRight(CalendarNode node) {
+        CalendarNode left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static CalendarNode rotateLeft(CalendarNode node) {
+        CalendarNode right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(CalendarNode node) {
+        long max = node.gapEnd;
+        if (node.left != null && node.left.maxGapEnd > max) {
+            max = node.left.maxGapEnd;
+        }
+        if (node.right != null && node.right.maxGapEnd > max) {
+            max = node.right.maxGapEnd;
+        }
+        node.maxGapEnd = max;
+    }
+}
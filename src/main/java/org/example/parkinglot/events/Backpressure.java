@@ -0,0 +1,22 @@
+package org.example.parkinglot.events;
+
+/**
+ * What an {@link OccupancyEventBus} subscriber gets when it reads slower than lots change.
+ */
+public enum Backpressure {
+    /**
+     * Every event in order, as long as the subscriber keeps up. Events overwritten before it read them are skipped
+     * and counted by {@link OccupancyEventBus.Subscription#getDropped()}. Parking never waits for the subscriber.
+     */
+    DROP,
+    /**
+     * Only the latest event of every size changed since the previous poll, i.e. the latest occupancy count. Parking
+     * never waits for the subscriber, and a slow subscriber still ends up with the current counts.
+     */
+    COALESCE,
+    /**
+     * Every event in order. Parking waits while the ring buffer is full of events the subscriber has not read, so the
+     * subscriber must be polled continuously.
+     */
+    BLOCK
+}
@@ -0,0 +1,362 @@
+package org.example.parkinglot.events;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTrackerListener;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Publishes every park and unPark of a {@link LotManager} as an occupancy change event into a bounded ring buffer,
+ * which any number of {@link Subscription}s read at their own pace instead of polling the occupancy counts.
+ *
+ * Publishing is lock-free and allocation-free and costs the same whatever the number of subscribers: the parking
+ * thread claims a sequence, bumps the count of the size and writes the slot, it never visits the subscribers. Only
+ * {@link Backpressure#BLOCK} subscribers hold it back, and then only when the ring buffer is full.
+ *
+ * The count of a size is kept here, seeded from the lot manager when the bus is created, so create it before
+ * parking starts or after a recovery, not during one. Changes of the same size racing on different lots may take
+ * sequences in the opposite order to their counts; every count is versioned, and {@link Backpressure#COALESCE}
+ * subscribers always deliver the count of the latest version.
+ *
+ * ThreadSafe class.
+ */
+public class OccupancyEventBus implements LotTrackerListener {
+
+    /**
+     * Most lots of one size whose counts and IDs fit in an event.
+     */
+    public static final int MAX_LOTS = (1 << 24) - 1;
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = MAX_LOTS;
+    private static final long PARK = (1L << COUNT_BITS) + 1;
+    private static final long UNPARK = (1L << COUNT_BITS) - 1;
+    private static final Size[] SIZES = Size.values();
+
+    /**
+     * Longs per slot: the published sequence, the payload (parked, size and lot ID), the versioned count and the
+     * timestamp. The published sequence is {@link #BUSY} while the slot is rewritten.
+     */
+    private static final int STRIDE = 4;
+    private static final int PUBLISHED = 0;
+    private static final int PAYLOAD = 1;
+    private static final int COUNT = 2;
+    private static final int TIMESTAMP = 3;
+    private static final long BUSY = Long.MIN_VALUE;
+    private static final int SPINS = 100;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray slots;
+    private final AtomicLong cursor = new AtomicLong();
+    /**
+     * Versioned count of every size, the version above {@link #COUNT_BITS} and the count below.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(SIZES.length);
+    /**
+     * Lowest next sequence of the {@link Backpressure#BLOCK} subscribers when last looked at, Long.MAX_VALUE if none.
+     */
+    private final AtomicLong gatingSequence = new AtomicLong(Long.MAX_VALUE);
+    private volatile Subscription[] blocking = new Subscription[0];
+
+    /**
+     * Registers a new bus with the lot manager.
+     *
+     * @param capacity of the ring buffer, a power of two
+     */
+    public static OccupancyEventBus attach(LotManager lotManager, int capacity) {
+        int[] occupied = new int[SIZES.length];
+        for (Size size : SIZES) {
+            if (lotManager.getLotCapacity(size) > MAX_LOTS) {
+                throw new IllegalArgumentException("At most " + MAX_LOTS + " lots per size are supported");
+            }
+            occupied[size.ordinal()] = lotManager.getNumberOfLotsOccupied(size);
+        }
+        OccupancyEventBus bus = new OccupancyEventBus(capacity, occupied);
+        lotManager.addListener(bus);
+        return bus;
+    }
+
+    /**
+     * @param capacity of the ring buffer, a power of two
+     * @param occupied number of lots occupied by size ordinal
+     */
+    OccupancyEventBus(int capacity, int[] occupied) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new AtomicLongArray(capacity * STRIDE);
+        for (int slot = 0; slot < capacity; slot++) {
+            // no sequence maps to this slot before it is first written
+            slots.set(slot * STRIDE + PUBLISHED, slot - capacity);
+        }
+        for (int i = 0; i < occupied.length; i++) {
+            counts.set(i, occupied[i]);
+        }
+    }
+
+    @Override
+    public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+        publish(true, size, lotId);
+    }
+
+    @Override
+    public void onReleased(Size size, int lotId, int generation) {
+        publish(false, size, lotId);
+    }
+
+    @Override
+    public void onLotsAdded(Size size, int numberOfLots) {
+        if (numberOfLots > MAX_LOTS) {
+            throw new IllegalStateException("At most " + MAX_LOTS + " lots per size are supported");
+        }
+    }
+
+    /**
+     * Subscribes from the next event published.
+     */
+    public Subscription subscribe(Backpressure backpressure) {
+        Subscription subscription = new Subscription(backpressure, cursor.get());
+        if (backpressure == Backpressure.BLOCK) {
+            synchronized (this) {
+                Subscription[] subscriptions = Arrays.copyOf(blocking, blocking.length + 1);
+                subscriptions[blocking.length] = subscription;
+                blocking = subscriptions;
+                gatingSequence.accumulateAndGet(subscription.next, Math::min);
+            }
+        }
+        return subscription;
+    }
+
+    /**
+     * @return Number of lots of the size occupied after the latest change published
+     */
+    public int getNumberOfLotsOccupied(Size size) {
+        return (int) (counts.get(size.ordinal()) & COUNT_MASK);
+    }
+
+    /**
+     * @return Sequence the next event will be published with
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void publish(boolean parked, Size size, int lotId) {
+        long sequence = cursor.getAndIncrement();
+        long count = counts.getAndAdd(size.ordinal(), parked ? PARK : UNPARK) + (parked ? PARK : UNPARK);
+        long timestamp = System.currentTimeMillis();
+        if (sequence - capacity >= gatingSequence.get()) {
+            awaitBlockingSubscribers(sequence - capacity);
+        }
+        int offset = (int) (sequence & mask) * STRIDE;
+        // a producer descheduled a whole lap behind must publish before its slot is reused
+        for (int spins = 0; slots.get(offset + PUBLISHED) != sequence - capacity; ) {
+            spins = backOff(spins);
+        }
+        slots.lazySet(offset + PUBLISHED, BUSY);
+        slots.lazySet(offset + PAYLOAD, (long) lotId << 3 | size.ordinal() << 1 | (parked ? 1 : 0));
+        slots.lazySet(offset + COUNT, count);
+        slots.lazySet(offset + TIMESTAMP, timestamp);
+        slots.lazySet(offset + PUBLISHED, sequence);
+    }
+
+    /**
+     * Waits until every {@link Backpressure#BLOCK} subscriber has read the event with the sequence, caching the lowest
+     * next sequence so the subscribers are only looked at again once the ring buffer has wrapped past it.
+     */
+    private void awaitBlockingSubscribers(long sequence) {
+        int spins = 0;
+        while (true) {
+            long cached = gatingSequence.get();
+            long lowest = Long.MAX_VALUE;
+            for (Subscription subscription : blocking) {
+                lowest = Math.min(lowest, subscription.next);
+            }
+            // fails if a subscriber joined meanwhile, which is then looked at on the next turn
+            gatingSequence.compareAndSet(cached, lowest);
+            if (sequence < lowest) {
+                return;
+            }
+            spins = backOff(spins);
+        }
+    }
+
+    private static int backOff(int spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+            return spins + 1;
+        }
+        Thread.yield();
+        return spins;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        int index = Arrays.asList(blocking).indexOf(subscription);
+        if (index >= 0) {
+            Subscription[] subscriptions = new Subscription[blocking.length - 1];
+            System.arraycopy(blocking, 0, subscriptions, 0, index);
+            System.arraycopy(blocking, index + 1, subscriptions, index, subscriptions.length - index);
+            blocking = subscriptions;
+            gatingSequence.set(Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Reads the events of the bus on the threads calling {@link #poll}, one at a time.
+     *
+     * Not a ThreadSafe class.
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private final Backpressure backpressure;
+        /**
+         * Sequence of the next event to read, volatile as producers gate on it under {@link Backpressure#BLOCK}.
+         */
+        private volatile long next;
+        private long dropped;
+        private final long[] event = new long[STRIDE];
+        /**
+         * Latest event of every size read under {@link Backpressure#COALESCE}, laid out as the slots, and whether it is
+         * yet to be handed over. Kept across polls so that an event published late cannot take an older count back.
+         */
+        private final long[] latest;
+        private final boolean[] changed;
+        private boolean closed;
+
+        private Subscription(Backpressure backpressure, long next) {
+            this.backpressure = backpressure;
+            this.next = next;
+            this.latest = new long[SIZES.length * STRIDE];
+            this.changed = new boolean[SIZES.length];
+            Arrays.fill(latest, BUSY);
+        }
+
+        /**
+         * Hands the events published since the previous poll to the handler, stopping at the first event not yet
+         * published. A {@link Backpressure#COALESCE} subscription hands over only the latest event of every size.
+         *
+         * @param maxEvents most events handed over
+         * @return Number of events handed over
+         */
+        public int poll(OccupancyEventHandler handler, int maxEvents) {
+            if (closed) {
+                throw new IllegalStateException("Subscription is closed");
+            }
+            return backpressure == Backpressure.COALESCE ? pollLatest(handler, maxEvents) : pollEach(handler, maxEvents);
+        }
+
+        /**
+         * @return Number of events overwritten before this subscription read them
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        public Backpressure getBackpressure() {
+            return backpressure;
+        }
+
+        /**
+         * Stops the subscription holding back the producers.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            unsubscribe(this);
+        }
+
+        private int pollEach(OccupancyEventHandler handler, int maxEvents) {
+            int handled = 0;
+            long sequence = next;
+            while (handled < maxEvents) {
+                long published = read(sequence, event);
+                if (published < sequence) {
+                    break;
+                }
+                if (published > sequence) {
+                    // overwritten, skip to the oldest event which may still be in the ring buffer
+                    long oldest = Math.max(sequence + 1, published - capacity + 1);
+                    dropped += oldest - sequence;
+                    sequence = oldest;
+                    continue;
+                }
+                deliver(handler, event, 0);
+                next = ++sequence;
+                handled++;
+            }
+            next = sequence;
+            return handled;
+        }
+
+        private int pollLatest(OccupancyEventHandler handler, int maxEvents) {
+            long end = cursor.get();
+            long sequence = Math.max(next, end - capacity);
+            while (sequence < end) {
+                long published = read(sequence, event);
+                if (published < sequence) {
+                    break;
+                }
+                // an overwritten event is superseded by a later one of the same size
+                if (published == sequence) {
+                    int size = (int) (event[PAYLOAD] >>> 1 & 3);
+                    int offset = size * STRIDE;
+                    if (latest[offset + PUBLISHED] == BUSY || event[COUNT] - latest[offset + COUNT] > 0) {
+                        System.arraycopy(event, 0, latest, offset, STRIDE);
+                        changed[size] = true;
+                    }
+                }
+                sequence++;
+            }
+            next = sequence;
+            int handled = 0;
+            for (int size = 0; size < changed.length && handled < maxEvents; size++) {
+                if (changed[size]) {
+                    changed[size] = false;
+                    deliver(handler, latest, size * STRIDE);
+                    handled++;
+                }
+            }
+            return handled;
+        }
+
+        /**
+         * Copies the slot of the sequence into the event, consistently as it may be rewritten meanwhile.
+         *
+         * @return Sequence in the slot: lower if not published yet, higher if overwritten
+         */
+        private long read(long sequence, long[] event) {
+            int offset = (int) (sequence & mask) * STRIDE;
+            while (true) {
+                long published = slots.get(offset + PUBLISHED);
+                if (published != sequence) {
+                    // a slot being rewritten holds either this event, not published yet, or a later one
+                    return published == BUSY ? sequence - 1 : published;
+                }
+                event[PAYLOAD] = slots.get(offset + PAYLOAD);
+                event[COUNT] = slots.get(offset + COUNT);
+                event[TIMESTAMP] = slots.get(offset + TIMESTAMP);
+                if (slots.get(offset + PUBLISHED) == sequence) {
+                    event[PUBLISHED] = sequence;
+                    return sequence;
+                }
+            }
+        }
+
+        private void deliver(OccupancyEventHandler handler, long[] events, int offset) {
+            long payload = events[offset + PAYLOAD];
+            handler.onEvent(events[offset + PUBLISHED], (payload & 1) != 0, SIZES[(int) (payload >>> 1 & 3)],
+                    (int) (payload >>> 3), events[offset + TIMESTAMP], (int) (events[offset + COUNT] & COUNT_MASK));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.parkinglot.events;
+
+import org.example.parkinglot.models.Size;
+
+/**
+ * Receives the occupancy changes read by an {@link OccupancyEventBus.Subscription}, on the thread polling it.
+ */
+public interface OccupancyEventHandler {
+
+    /**
+     * @param sequence        of the event in the bus, increasing by one per event
+     * @param parked          true if a vehicle was parked in the lot, false if the lot was released
+     * @param size            of the lot
+     * @param lotId           of the lot
+     * @param timestampMillis wall clock time of the change
+     * @param lotsOccupied    number of lots of the size occupied right after the change
+     */
+    void onEvent(long sequence, boolean parked, Size size, int lotId, long timestampMillis, int lotsOccupied);
+}
@@ -0,0 +1,103 @@
+package org.example.parkinglot.facility;
+
+import java.util.Arrays;
+
+/**
+ * Maps keys such as facility IDs to partitions by consistent hashing. Every partition owns a number of virtual nodes
+ * spread over a ring of 64 bit hashes, and a key belongs to the partition of the first virtual node at or after its
+ * own hash. Going from n to n + 1 partitions therefore only moves about 1 / (n + 1) of the keys, all of them to the
+ * new partition.
+ *
+ * Hashes depend on nothing but the key and the partition numbers, so every process building a ring of the same size
+ * agrees on where each key lives.
+ *
+ * Immutable, hence ThreadSafe.
+ */
+public final class ConsistentHashRing {
+
+    /**
+     * Virtual nodes per partition used by {@link FacilityRegistry}, keeping the share of every partition within a
+     * few percent of 1 / n.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    /**
+     * The low bits of a virtual node's hash are replaced by its partition, see {@link #ConsistentHashRing(int, int)}.
+     */
+    private static final int PARTITION_BITS = 20;
+    public static final int MAX_PARTITIONS = 1 << PARTITION_BITS;
+
+    private final int numberOfPartitions;
+    private final long[] hashes;
+    private final int[] partitions;
+
+    /**
+     * @param numberOfPartitions      partitions 0 to numberOfPartitions - 1
+     * @param virtualNodesPerPartition points of every partition on the ring
+     */
+    public ConsistentHashRing(int numberOfPartitions, int virtualNodesPerPartition) {
+        if (numberOfPartitions < 1 || numberOfPartitions > MAX_PARTITIONS || virtualNodesPerPartition < 1
+                || (long) numberOfPartitions * virtualNodesPerPartition > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Need 1 to " + MAX_PARTITIONS
+                    + " partitions and a positive number of virtual nodes per partition");
+        }
+        this.numberOfPartitions = numberOfPartitions;
+        int numberOfNodes = numberOfPartitions * virtualNodesPerPartition;
+        long[] nodes = new long[numberOfNodes];
+        for (int partition = 0; partition < numberOfPartitions; partition++) {
+            for (int node = 0; node < virtualNodesPerPartition; node++) {
+                long hash = mix(((long) partition << 32) | node);
+                // the low bits carry the partition, so that sorting keeps the owner of every hash
+                nodes[partition * virtualNodesPerPartition + node] = hash & -(1L << PARTITION_BITS) | partition;
+            }
+        }
+        Arrays.sort(nodes);
+        this.hashes = nodes;
+        this.partitions = new int[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++) {
+            partitions[i] = (int) (nodes[i] & (MAX_PARTITIONS - 1));
+        }
+    }
+
+    public int getNumberOfPartitions() {
+        return numberOfPartitions;
+    }
+
+    /**
+     * @param key e.g. a facility ID
+     * @return Partition owning the key, O(log(partitions * virtual nodes))
+     */
+    public int partitionOf(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null");
+        }
+        int i = Arrays.binarySearch(hashes, hash(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return partitions[i == hashes.length ? 0 : i];
+    }
+
+    /**
+     * FNV-1a over the characters of the key, then scrambled so that keys differing in their last character only
+     * land far apart.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of MurmurHash3, every input bit affects every output bit.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.parkinglot.facility;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Car;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shows how a fleet of facilities scales with the number of partitions, each partition being its own process.
+ *
+ * For 1 to n processes, it starts that many JVMs. Every process builds a {@link ConsistentHashRing} with one
+ * partition per process, registers the facilities the ring assigns to it in a single partition
+ * {@link FacilityRegistry} and parks and unParks cars in them as fast as its worker goes. The throughput of all
+ * processes is summed up and compared with a single process; it should grow linearly while there are free cores.
+ *
+ *     java -cp build/classes/java/main org.example.parkinglot.facility.FacilityLoadGenerator [processes]
+ *             [facilities] [seconds]
+ */
+public final class FacilityLoadGenerator {
+
+    /**
+     * Cars parked, then unParked, in a facility by one piece of work; also the number of lots of every facility.
+     */
+    private static final int BATCH = 64;
+    /**
+     * Pieces of work queued for the worker of a process at any time.
+     */
+    private static final int IN_FLIGHT = 8;
+    private static final Duration WARM_UP = Duration.ofSeconds(1);
+
+    private FacilityLoadGenerator() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 5 && args[0].equals("--partition")) {
+            long[] result = runPartition(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Duration.ofSeconds(Long.parseLong(args[4])));
+            System.out.println(result[0] + " " + result[1]);
+            return;
+        }
+        int processes = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int facilities = args.length > 1 ? Integer.parseInt(args[1]) : 48;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 5);
+        System.out.println(facilities + " facilities, " + Runtime.getRuntime().availableProcessors() + " cores");
+        double single = 0;
+        for (int n = 1; n <= processes; n++) {
+            double operationsPerSecond = run(n, facilities, duration);
+            if (n == 1) {
+                single = operationsPerSecond;
+            }
+            System.out.println(String.format(Locale.ROOT, "%d processes: %.0f operations/s, %.2fx one process",
+                    n, operationsPerSecond, operationsPerSecond / single));
+        }
+    }
+
+    /**
+     * Runs one process per partition at the same time.
+     *
+     * @return Operations per second of all processes together
+     */
+    public static double run(int processes, int facilities, Duration duration) throws IOException,
+            InterruptedException {
+        if (processes < 1 || facilities < 1) {
+            throw new IllegalArgumentException("processes and facilities must be positive");
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> started = new ArrayList<>();
+        try {
+            for (int partition = 0; partition < processes; partition++) {
+                started.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        FacilityLoadGenerator.class.getName(), "--partition", String.valueOf(partition),
+                        String.valueOf(processes), String.valueOf(facilities),
+                        String.valueOf(duration.getSeconds()))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+            double operationsPerSecond = 0;
+            for (Process process : started) {
+                String line;
+                try (BufferedReader out = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    line = out.readLine();
+                }
+                if (process.waitFor() != 0 || line == null) {
+                    throw new IOException("Partition process failed");
+                }
+                String[] result = line.split(" ");
+                long nanos = Long.parseLong(result[1]);
+                operationsPerSecond += nanos == 0 ? 0 : Long.parseLong(result[0]) * 1e9 / nanos;
+            }
+            return operationsPerSecond;
+        } finally {
+            for (Process process : started) {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Drives the facilities of one partition, after warming up.
+     *
+     * @return Operations done and nanoseconds taken
+     */
+    static long[] runPartition(int partition, int processes, int facilities, Duration duration)
+            throws InterruptedException {
+        ConsistentHashRing ring = new ConsistentHashRing(processes, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        List<String> owned = new ArrayList<>();
+        try (FacilityRegistry registry = new FacilityRegistry(1)) {
+            for (int facility = 0; facility < facilities; facility++) {
+                String facilityId = "facility-" + facility;
+                if (ring.partitionOf(facilityId) == partition) {
+                    registry.register(facilityId, facility, 0,
+                            new LotManager(BATCH, BATCH, BATCH, LotTracker.Factory.INSTANCE));
+                    owned.add(facilityId);
+                }
+            }
+            if (owned.isEmpty()) {
+                return new long[]{0, 0};
+            }
+            drive(registry, owned, System.nanoTime() + WARM_UP.toNanos());
+            long start = System.nanoTime();
+            long operations = drive(registry, owned, start + duration.toNanos());
+            return new long[]{operations, System.nanoTime() - start};
+        }
+    }
+
+    /**
+     * Keeps {@link #IN_FLIGHT} pieces of work queued, going round the facilities, until the deadline.
+     *
+     * @return Number of parks and unParks done
+     */
+    private static long drive(FacilityRegistry registry, List<String> facilityIds, long deadline)
+            throws InterruptedException {
+        Semaphore inFlight = new Semaphore(IN_FLIGHT);
+        AtomicLong operations = new AtomicLong();
+        long batches = 0;
+        while (System.nanoTime() < deadline) {
+            inFlight.acquire();
+            String facilityId = facilityIds.get((int) (batches++ % facilityIds.size()));
+            long batch = batches;
+            registry.execute(facilityId, lotManager -> parkAndUnPark(lotManager, facilityId, batch))
+                    .whenComplete((done, failure) -> {
+                        if (done != null) {
+                            operations.addAndGet(done);
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(IN_FLIGHT);
+        return operations.get();
+    }
+
+    private static int parkAndUnPark(LotManager lotManager, String facilityId, long batch) {
+        Ticket[] tickets = new Ticket[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            tickets[i] = lotManager.park(new Car(facilityId + "-" + batch + "-" + i));
+        }
+        int operations = BATCH;
+        for (Ticket ticket : tickets) {
+            if (ticket != null && lotManager.unPark(ticket)) {
+                operations++;
+            }
+        }
+        return operations;
+    }
+}
@@ -0,0 +1,271 @@
+package org.example.parkinglot.facility;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTrackerListener;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Holds the {@link LotManager} of many facilities (sites) and routes work to them by facility ID.
+ *
+ * Facilities are partitioned by a {@link ConsistentHashRing} over their IDs, and every partition has a single worker
+ * thread running all work on its facilities, see {@link #execute(String, Function)}. As a facility is only ever
+ * touched by its worker, its manager may use the plain {@link org.example.parkinglot.LotTracker.Factory}. To spread
+ * facilities over processes instead, every process builds a ring of the same size and registers only the facilities
+ * the ring assigns to it, see {@link FacilityLoadGenerator}.
+ *
+ * Cross-facility questions, such as the nearest facility with a free car bay, are answered from an aggregate kept up
+ * to date by a {@link LotTrackerListener} on every manager: the lots in service and occupied per facility and size.
+ * Queries read those counters from any thread and never go through the workers or the trackers. A lot counts as free
+ * when it is in service and not occupied, so lots held for bookings count as free and lots retired while occupied
+ * count as taken until they drain.
+ *
+ * ThreadSafe class.
+ */
+public final class FacilityRegistry implements Closeable {
+
+    private static final Size[] SIZES = Size.values();
+
+    private final ConsistentHashRing ring;
+    private final ExecutorService[] workers;
+    private final ConcurrentHashMap<String, Facility> facilitiesById = new ConcurrentHashMap<>();
+    /**
+     * Every facility, scanned by {@link #findNearestAvailable(Size, int, int)}. Copied on every registration.
+     */
+    private volatile Facility[] facilities = new Facility[0];
+    private final LongAdder[] lotsInService = new LongAdder[SIZES.length];
+    private final LongAdder[] lotsOccupied = new LongAdder[SIZES.length];
+
+    /**
+     * @param numberOfPartitions worker threads, facilities are spread over them by a {@link ConsistentHashRing} with
+     *                           {@link ConsistentHashRing#DEFAULT_VIRTUAL_NODES} per partition
+     */
+    public FacilityRegistry(int numberOfPartitions) {
+        this(new ConsistentHashRing(numberOfPartitions, ConsistentHashRing.DEFAULT_VIRTUAL_NODES));
+    }
+
+    public FacilityRegistry(ConsistentHashRing ring) {
+        if (ring == null) {
+            throw new IllegalArgumentException("ring must not be null");
+        }
+        this.ring = ring;
+        this.workers = new ExecutorService[ring.getNumberOfPartitions()];
+        for (int partition = 0; partition < workers.length; partition++) {
+            String name = "facility-partition-" + partition;
+            workers[partition] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        for (Size size : SIZES) {
+            lotsInService[size.ordinal()] = new LongAdder();
+            lotsOccupied[size.ordinal()] = new LongAdder();
+        }
+    }
+
+    /**
+     * Adds a facility. Its manager must not be used other than through {@link #execute(String, Function)} from now
+     * on, and its lots are counted as they are at this point.
+     *
+     * @param facilityId unique ID of the facility
+     * @param x          position of the facility, in any unit as long as it is the same for all facilities
+     * @param y          position of the facility
+     * @param lotManager of the facility
+     * @return Partition of the facility
+     * @throws IllegalArgumentException if a facility with that ID is registered already
+     */
+    public synchronized int register(String facilityId, int x, int y, LotManager lotManager) {
+        if (facilityId == null || lotManager == null) {
+            throw new IllegalArgumentException("facilityId and lotManager must not be null");
+        }
+        if (facilitiesById.containsKey(facilityId)) {
+            throw new IllegalArgumentException("Facility " + facilityId + " is registered already");
+        }
+        Facility facility = new Facility(facilityId, ring.partitionOf(facilityId), x, y, lotManager);
+        for (Size size : SIZES) {
+            facility.onNumberOfLotsChanged(size, lotManager.getNumberOfLots(size));
+            facility.addOccupied(size, lotManager.getNumberOfLotsOccupied(size));
+        }
+        lotManager.addListener(facility);
+        facilitiesById.put(facilityId, facility);
+        Facility[] updated = Arrays.copyOf(facilities, facilities.length + 1);
+        updated[facilities.length] = facility;
+        facilities = updated;
+        return facility.partition;
+    }
+
+    /**
+     * Runs work on the manager of a facility, on the worker thread of its partition. Work on the facilities of one
+     * partition runs one at a time in the order it was submitted.
+     *
+     * @return The result of the work, failed with an {@link IllegalArgumentException} if there is no such facility
+     */
+    public <T> CompletableFuture<T> execute(String facilityId, Function<LotManager, T> work) {
+        Facility facility = facilitiesById.get(facilityId);
+        if (facility == null) {
+            CompletableFuture<T> unknown = new CompletableFuture<>();
+            unknown.completeExceptionally(new IllegalArgumentException("No facility " + facilityId));
+            return unknown;
+        }
+        return CompletableFuture.supplyAsync(() -> work.apply(facility.lotManager), workers[facility.partition]);
+    }
+
+    /**
+     * Parks a vehicle in a facility, see {@link LotManager#park(Vehicle)}.
+     *
+     * @return The ticket, or null if the facility is full
+     */
+    public CompletableFuture<Ticket> park(String facilityId, Vehicle vehicle) {
+        return execute(facilityId, lotManager -> lotManager.park(vehicle));
+    }
+
+    /**
+     * UnParks a vehicle from a facility, see {@link LotManager#unPark(Ticket)}.
+     */
+    public CompletableFuture<Boolean> unPark(String facilityId, Ticket ticket) {
+        return execute(facilityId, lotManager -> lotManager.unPark(ticket));
+    }
+
+    /**
+     * @return The partition a facility belongs to, whether it is registered or not
+     */
+    public int partitionOf(String facilityId) {
+        return ring.partitionOf(facilityId);
+    }
+
+    public int getNumberOfPartitions() {
+        return workers.length;
+    }
+
+    public int getNumberOfFacilities() {
+        return facilities.length;
+    }
+
+    /**
+     * @return Number of free lots of a size in a facility, from the aggregate
+     * @throws IllegalArgumentException if there is no such facility
+     */
+    public int getNumberOfFreeLots(String facilityId, Size size) {
+        Facility facility = facilitiesById.get(facilityId);
+        if (facility == null) {
+            throw new IllegalArgumentException("No facility " + facilityId);
+        }
+        return facility.getNumberOfFreeLots(size);
+    }
+
+    /**
+     * @return Number of free lots of a size over all facilities, from the aggregate
+     */
+    public long getNumberOfFreeLots(Size size) {
+        return Math.max(0, lotsInService[size.ordinal()].sum() - lotsOccupied[size.ordinal()].sum());
+    }
+
+    /**
+     * Finds the facility with a free lot of a size nearest to a position, by straight line distance. Scans the
+     * aggregate counters of every facility, O(facilities), which for dozens of facilities is a few cache lines.
+     *
+     * @return ID of the nearest facility with a free lot, or an empty Optional if every facility is full
+     */
+    public Optional<String> findNearestAvailable(Size size, int x, int y) {
+        Facility nearest = null;
+        long nearestDistance = Long.MAX_VALUE;
+        for (Facility facility : facilities) {
+            if (facility.getNumberOfFreeLots(size) == 0) {
+                continue;
+            }
+            long dx = (long) facility.x - x;
+            long dy = (long) facility.y - y;
+            long distance = dx * dx + dy * dy;
+            if (distance < nearestDistance) {
+                nearest = facility;
+                nearestDistance = distance;
+            }
+        }
+        return nearest == null ? Optional.empty() : Optional.of(nearest.id);
+    }
+
+    /**
+     * Stops the workers once the work submitted so far is done.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        try {
+            for (ExecutorService worker : workers) {
+                worker.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A registered facility and its share of the aggregate, kept up to date by the listener callbacks of its
+     * manager.
+     */
+    private final class Facility implements LotTrackerListener {
+
+        private static final int IN_SERVICE = 0;
+        private static final int OCCUPIED = 1;
+
+        private final String id;
+        private final int partition;
+        private final int x;
+        private final int y;
+        private final LotManager lotManager;
+        /**
+         * Lots in service and occupied of every size, two ints per size.
+         */
+        private final AtomicIntegerArray lots = new AtomicIntegerArray(SIZES.length * 2);
+
+        private Facility(String id, int partition, int x, int y, LotManager lotManager) {
+            this.id = id;
+            this.partition = partition;
+            this.x = x;
+            this.y = y;
+            this.lotManager = lotManager;
+        }
+
+        int getNumberOfFreeLots(Size size) {
+            int s = size.ordinal() * 2;
+            return Math.max(0, lots.get(s + IN_SERVICE) - lots.get(s + OCCUPIED));
+        }
+
+        void addOccupied(Size size, int delta) {
+            lots.addAndGet(size.ordinal() * 2 + OCCUPIED, delta);
+            lotsOccupied[size.ordinal()].add(delta);
+        }
+
+        @Override
+        public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+            addOccupied(size, 1);
+        }
+
+        @Override
+        public void onReleased(Size size, int lotId, int generation) {
+            addOccupied(size, -1);
+        }
+
+        @Override
+        public void onNumberOfLotsChanged(Size size, int numberOfLots) {
+            int previous = lots.getAndSet(size.ordinal() * 2 + IN_SERVICE, numberOfLots);
+            lotsInService[size.ordinal()].add(numberOfLots - previous);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.example.parkinglot.index;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free {@link FreeLotIndex}. Lots are tracked in a bitset (bit set when free) whose words are claimed with
+ * compareAndSet, plus a summary bitset telling which words may still have a free lot.
+ *
+ * A lot is only ever handed out by the thread whose compareAndSet cleared its bit, so the same lot can never be
+ * acquired twice without being released in between. Summary bits may be stale (set for an empty word) but never
+ * missing for a word with a free lot; stale bits are cleaned up by the next acquire that runs into them.
+ *
+ * The bitsets are split into chunks of 64 words, 4096 lots, each with its own summary word, so lots are added by
+ * appending chunks while other threads keep acquiring and releasing, see {@link #ensureCapacity(int)}.
+ *
+ * ThreadSafe class. Acquire and release never allocate.
+ */
+public class AtomicFreeLotIndex implements FreeLotIndex {
+
+    public static final FreeLotIndex.Factory FACTORY = (numberOfLots, size) -> new AtomicFreeLotIndex(numberOfLots);
+
+    private static final int WORD_SHIFT = 6;
+    private static final int WORD_MASK = 63;
+    private static final int CHUNK_SHIFT = 2 * WORD_SHIFT;
+    /**
+     * Position of the summary word in a chunk, behind the 64 words of lots.
+     */
+    private static final int SUMMARY = 1 << WORD_SHIFT;
+
+    private volatile int capacity;
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+
+    public AtomicFreeLotIndex(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        ensureCapacity(capacity);
+        for (int lotId = 0; lotId < capacity; lotId += 64) {
+            int bits = Math.min(64, capacity - lotId);
+            AtomicLongArray chunk = chunks[lotId >>> CHUNK_SHIFT];
+            chunk.set(wordOf(lotId), bits == 64 ? -1L : (1L << bits) - 1);
+            setSummaryBit(chunk, wordOf(lotId));
+        }
+    }
+
+    /**
+     * Appends empty chunks, acquires running meanwhile just do not see the new lots yet.
+     */
+    @Override
+    public synchronized void ensureCapacity(int numberOfLots) {
+        if (numberOfLots <= capacity) {
+            return;
+        }
+        int chunkCount = (int) (((long) numberOfLots + (1 << CHUNK_SHIFT) - 1) >>> CHUNK_SHIFT);
+        if (chunkCount > chunks.length) {
+            AtomicLongArray[] grown = Arrays.copyOf(chunks, chunkCount);
+            for (int chunk = chunks.length; chunk < chunkCount; chunk++) {
+                grown[chunk] = new AtomicLongArray(SUMMARY + 1);
+            }
+            chunks = grown;
+        }
+        capacity = numberOfLots;
+    }
+
+    @Override
+    public int acquire() {
+        AtomicLongArray[] chunks = this.chunks;
+        for (int c = 0; c < chunks.length; c++) {
+            AtomicLongArray chunk = chunks[c];
+            long summaryWord;
+            while ((summaryWord = chunk.get(SUMMARY)) != 0) {
+                int word = Long.numberOfTrailingZeros(summaryWord);
+                int bit = tryAcquire(chunk, word);
+                if (bit >= 0) {
+                    return (c << CHUNK_SHIFT) | (word << WORD_SHIFT) | bit;
+                }
+                clearSummaryBit(chunk, word);
+                // a release may have landed between the failed claim and clearing the summary bit
+                if (chunk.get(word) != 0) {
+                    setSummaryBit(chunk, word);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Claims the lowest free lot of a word, retrying while other threads win the race for the same word.
+     *
+     * @return Bit of the claimed lot within the word, or -1 once the word has no free lot left
+     */
+    private static int tryAcquire(AtomicLongArray chunk, int word) {
+        long bits;
+        while ((bits = chunk.get(word)) != 0) {
+            long lowest = bits & -bits;
+            if (chunk.compareAndSet(word, bits, bits & ~lowest)) {
+                return Long.numberOfTrailingZeros(lowest);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Claims up to 64 lots per compareAndSet, taking the lowest free lots of each word.
+     */
+    @Override
+    public int acquire(int[] lotIds, int offset, int count) {
+        AtomicLongArray[] chunks = this.chunks;
+        int acquired = 0;
+        for (int c = 0; c < chunks.length && acquired < count; c++) {
+            AtomicLongArray chunk = chunks[c];
+            long summaryWord;
+            while (acquired < count && (summaryWord = chunk.get(SUMMARY)) != 0) {
+                int word = Long.numberOfTrailingZeros(summaryWord);
+                long taken = tryAcquire(chunk, word, count - acquired);
+                if (taken == 0) {
+                    clearSummaryBit(chunk, word);
+                    if (chunk.get(word) != 0) {
+                        setSummaryBit(chunk, word);
+                    }
+                }
+                for (; taken != 0; taken &= taken - 1) {
+                    lotIds[offset + acquired++] = (c << CHUNK_SHIFT) | (word << WORD_SHIFT)
+                            | Long.numberOfTrailingZeros(taken);
+                }
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * Claims up to max of the lowest free lots of a word.
+     *
+     * @return Bits of the claimed lots, 0 once the word has no free lot left
+     */
+    private static long tryAcquire(AtomicLongArray chunk, int word, int max) {
+        long bits;
+        while ((bits = chunk.get(word)) != 0) {
+            long taken = bits;
+            if (Long.bitCount(bits) > max) {
+                taken = 0;
+                long rest = bits;
+                for (int i = 0; i < max; i++) {
+                    long lowest = rest & -rest;
+                    taken |= lowest;
+                    rest ^= lowest;
+                }
+            }
+            if (chunk.compareAndSet(word, bits, bits & ~taken)) {
+                return taken;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean claim(int lotId) {
+        AtomicLongArray chunk = chunkOf(lotId);
+        int word = wordOf(lotId);
+        long bit = 1L << (lotId & WORD_MASK);
+        long bits;
+        do {
+            bits = chunk.get(word);
+            if ((bits & bit) == 0) {
+                return false;
+            }
+        } while (!chunk.compareAndSet(word, bits, bits & ~bit));
+        return true;
+    }
+
+    @Override
+    public void release(int lotId) {
+        AtomicLongArray chunk = chunkOf(lotId);
+        int word = wordOf(lotId);
+        long bit = 1L << (lotId & WORD_MASK);
+        long bits;
+        do {
+            bits = chunk.get(word);
+        } while ((bits & bit) == 0 && !chunk.compareAndSet(word, bits, bits | bit));
+        setSummaryBit(chunk, word);
+    }
+
+    @Override
+    public boolean isFree(int lotId) {
+        return (chunkOf(lotId).get(wordOf(lotId)) & (1L << (lotId & WORD_MASK))) != 0;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    private static void setSummaryBit(AtomicLongArray chunk, int word) {
+        long bit = 1L << word;
+        long bits;
+        do {
+            bits = chunk.get(SUMMARY);
+        } while ((bits & bit) == 0 && !chunk.compareAndSet(SUMMARY, bits, bits | bit));
+    }
+
+    private static void clearSummaryBit(AtomicLongArray chunk, int word) {
+        long bit = 1L << word;
+        long bits;
+        do {
+            bits = chunk.get(SUMMARY);
+        } while ((bits & bit) != 0 && !chunk.compareAndSet(SUMMARY, bits, bits & ~bit));
+    }
+
+    /**
+     * @return Chunk of a lot, after checking the lot is covered by the index
+     */
+    private AtomicLongArray chunkOf(int lotId) {
+        int capacity = this.capacity;
+        if (lotId < 0 || lotId >= capacity) {
+            throw new IndexOutOfBoundsException("lotId " + lotId + " out of range [0, " + capacity + ")");
+        }
+        return chunks[lotId >>> CHUNK_SHIFT];
+    }
+
+    /**
+     * @return Index of the word of a lot within its chunk
+     */
+    private static int wordOf(int lotId) {
+        return (lotId >>> WORD_SHIFT) & WORD_MASK;
+    }
+}
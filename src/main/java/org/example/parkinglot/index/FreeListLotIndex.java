@@ -0,0 +1,104 @@
+package org.example.parkinglot.index;
+
+import java.util.Arrays;
+
+/**
+ * {@link FreeLotIndex} backed by a stack of free lot IDs. Acquire, claim and release are O(1) and never allocate.
+ *
+ * Lots are handed out lowest ID first until the first release, after which the most recently freed lot is reused first.
+ *
+ * Not a ThreadSafe class.
+ */
+public class FreeListLotIndex implements FreeLotIndex {
+
+    public static final FreeLotIndex.Factory FACTORY = (numberOfLots, size) -> new FreeListLotIndex(numberOfLots);
+
+    private static final int NOT_FREE = -1;
+
+    private int[] freeLots;
+    /**
+     * Position of every free lot in {@link #freeLots}, or {@link #NOT_FREE}.
+     */
+    private int[] positions;
+    private int top;
+
+    public FreeListLotIndex(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.freeLots = new int[capacity];
+        this.positions = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            freeLots[i] = capacity - 1 - i;
+            positions[capacity - 1 - i] = i;
+        }
+        this.top = capacity;
+    }
+
+    @Override
+    public void ensureCapacity(int numberOfLots) {
+        int capacity = positions.length;
+        if (numberOfLots <= capacity) {
+            return;
+        }
+        freeLots = Arrays.copyOf(freeLots, numberOfLots);
+        positions = Arrays.copyOf(positions, numberOfLots);
+        Arrays.fill(positions, capacity, numberOfLots, NOT_FREE);
+    }
+
+    @Override
+    public int acquire() {
+        if (top == 0) {
+            return -1;
+        }
+        int lotId = freeLots[--top];
+        positions[lotId] = NOT_FREE;
+        return lotId;
+    }
+
+    @Override
+    public int acquire(int[] lotIds, int offset, int count) {
+        int acquired = Math.min(count, top);
+        for (int i = 0; i < acquired; i++) {
+            int lotId = freeLots[--top];
+            positions[lotId] = NOT_FREE;
+            lotIds[offset + i] = lotId;
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean claim(int lotId) {
+        if (!isFree(lotId)) {
+            return false;
+        }
+        int position = positions[lotId];
+        int last = freeLots[--top];
+        freeLots[position] = last;
+        positions[last] = position;
+        positions[lotId] = NOT_FREE;
+        return true;
+    }
+
+    @Override
+    public void release(int lotId) {
+        if (isFree(lotId)) {
+            return;
+        }
+        positions[lotId] = top;
+        freeLots[top++] = lotId;
+    }
+
+    @Override
+    public boolean isFree(int lotId) {
+        if (lotId < 0 || lotId >= positions.length) {
+            throw new IndexOutOfBoundsException("lotId " + lotId + " out of range [0, " + positions.length + ")");
+        }
+        return positions[lotId] != NOT_FREE;
+    }
+
+    @Override
+    public int capacity() {
+        return positions.length;
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.parkinglot.index;
+
+import org.example.parkinglot.models.Size;
+
+/**
+ * Keeps track of which lots of a {@link org.example.parkinglot.LotTracker} are free, so that an available lot can be
+ * found without scanning every {@link org.example.parkinglot.models.lot.Lot}.
+ *
+ * Lots are identified by their ID, numbered from 0 to capacity - 1. All lots are free when the index is created.
+ */
+public interface FreeLotIndex {
+
+    /**
+     * Gate of a vehicle which did not arrive through a known entry gate, see {@link #acquireNearest(int)}.
+     */
+    int ANY_GATE = -1;
+
+    /**
+     * Claims a free lot and marks it as taken.
+     *
+     * @return ID of the claimed lot, or -1 if no lot is free
+     */
+    int acquire();
+
+    /**
+     * Claims the free lot closest to an entry gate. Only indexes which know the site layout tell gates apart, all
+     * others claim the same lot as {@link #acquire()}.
+     *
+     * @param gate ID of the entry gate, or {@link #ANY_GATE}
+     * @return ID of the claimed lot, or -1 if no lot is free
+     */
+    default int acquireNearest(int gate) {
+        return acquire();
+    }
+
+    /**
+     * Claims up to count free lots at once, e.g. for a batch of vehicles arriving together. Implementations take
+     * several lots per word or node where they can.
+     *
+     * @param lotIds receiving the IDs of the claimed lots from the offset on
+     * @param offset of the first ID in lotIds
+     * @param count  maximum number of lots to claim
+     * @return Number of lots claimed, less than count only if no other lot is free
+     */
+    default int acquire(int[] lotIds, int offset, int count) {
+        int acquired = 0;
+        while (acquired < count) {
+            int lotId = acquire();
+            if (lotId < 0) {
+                break;
+            }
+            lotIds[offset + acquired++] = lotId;
+        }
+        return acquired;
+    }
+
+    /**
+     * Claims a specific lot, e.g. when restoring a previously reserved lot.
+     *
+     * @param lotId of the lot to claim
+     * @return true if the lot was free and is now taken, otherwise false
+     */
+    boolean claim(int lotId);
+
+    /**
+     * Marks a previously claimed lot as free again.
+     *
+     * @param lotId of the lot to be returned to the index
+     */
+    void release(int lotId);
+
+    /**
+     * Marks several previously claimed lots as free again.
+     *
+     * @param lotIds holding the IDs of the lots from the offset on
+     * @param offset of the first ID in lotIds
+     * @param count  number of lots to be returned to the index
+     */
+    default void release(int[] lotIds, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            release(lotIds[i]);
+        }
+    }
+
+    /**
+     * @param lotId of the lot
+     * @return true if the lot is currently free, otherwise false
+     */
+    boolean isFree(int lotId);
+
+    /**
+     * @return Number of lots covered by this index
+     */
+    int capacity();
+
+    /**
+     * Adds lots up to the given capacity. Unlike the lots the index is created with, the new lots are taken, so that
+     * the caller can get them ready and {@link #release(int)} them once they may be handed out.
+     *
+     * @param numberOfLots capacity wanted, nothing is done if the index is as large already
+     * @throws UnsupportedOperationException if the index has a fixed capacity
+     */
+    default void ensureCapacity(int numberOfLots) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has a fixed capacity");
+    }
+
+    interface Factory {
+        FreeLotIndex create(int numberOfLots, Size size);
+    }
+}
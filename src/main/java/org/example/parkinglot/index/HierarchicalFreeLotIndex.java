@@ -0,0 +1,183 @@
+package org.example.parkinglot.index;
+
+import java.util.Arrays;
+
+/**
+ * {@link FreeLotIndex} backed by a hierarchical bitset. Level 0 holds one bit per lot (set when free), and every bit of
+ * level k + 1 tells whether the corresponding word of level k still has a free lot.
+ *
+ * Finding a free lot walks down from the single top word, so both acquire and release are O(log64 n) and never
+ * allocate. The lowest free ID is always handed out first, same as a linear scan would do.
+ *
+ * Not a ThreadSafe class.
+ */
+public class HierarchicalFreeLotIndex implements FreeLotIndex {
+
+    public static final FreeLotIndex.Factory FACTORY = (numberOfLots, size) -> new HierarchicalFreeLotIndex(numberOfLots);
+
+    private static final int WORD_SHIFT = 6;
+    private static final int WORD_MASK = 63;
+
+    private int capacity;
+
+    /**
+     * levels[0] is the per lot bitset, levels[levels.length - 1] always has exactly one word.
+     */
+    private long[][] levels;
+
+    public HierarchicalFreeLotIndex(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.capacity = capacity;
+        this.levels = buildLevels(capacity);
+    }
+
+    private static long[][] buildLevels(int capacity) {
+        int depth = 1;
+        for (long bits = capacity; bits > 64; bits = (bits + WORD_MASK) >>> WORD_SHIFT) {
+            depth++;
+        }
+        long[][] levels = new long[depth][];
+        long bits = capacity;
+        for (int level = 0; level < depth; level++) {
+            int words = (int) Math.max(1, (bits + WORD_MASK) >>> WORD_SHIFT);
+            levels[level] = new long[words];
+            fillLowBits(levels[level], bits);
+            bits = words;
+        }
+        return levels;
+    }
+
+    private static void fillLowBits(long[] words, long bits) {
+        int fullWords = (int) (bits >>> WORD_SHIFT);
+        for (int i = 0; i < fullWords; i++) {
+            words[i] = -1L;
+        }
+        int remaining = (int) (bits & WORD_MASK);
+        if (remaining != 0) {
+            words[fullWords] = (1L << remaining) - 1;
+        }
+    }
+
+    /**
+     * Rebuilds the bitsets, which take one bit per lot, with the new lots taken.
+     */
+    @Override
+    public void ensureCapacity(int numberOfLots) {
+        if (numberOfLots <= capacity) {
+            return;
+        }
+        long[][] grown = buildLevels(numberOfLots);
+        Arrays.fill(grown[0], 0L);
+        System.arraycopy(levels[0], 0, grown[0], 0, levels[0].length);
+        for (int level = 1; level < grown.length; level++) {
+            long[] words = grown[level];
+            Arrays.fill(words, 0L);
+            long[] below = grown[level - 1];
+            for (int word = 0; word < below.length; word++) {
+                if (below[word] != 0) {
+                    words[word >>> WORD_SHIFT] |= 1L << (word & WORD_MASK);
+                }
+            }
+        }
+        levels = grown;
+        capacity = numberOfLots;
+    }
+
+    @Override
+    public int acquire() {
+        int top = levels.length - 1;
+        if (levels[top][0] == 0) {
+            return -1;
+        }
+        int index = 0;
+        for (int level = top; level >= 0; level--) {
+            index = (index << WORD_SHIFT) | Long.numberOfTrailingZeros(levels[level][index]);
+        }
+        clear(0, index);
+        return index;
+    }
+
+    /**
+     * Takes as many lots as needed from the lowest word with a free lot before walking down again, so a batch costs
+     * one walk per 64 lots.
+     */
+    @Override
+    public int acquire(int[] lotIds, int offset, int count) {
+        int top = levels.length - 1;
+        int acquired = 0;
+        while (acquired < count && levels[top][0] != 0) {
+            int word = 0;
+            for (int level = top; level > 0; level--) {
+                word = (word << WORD_SHIFT) | Long.numberOfTrailingZeros(levels[level][word]);
+            }
+            long bits = levels[0][word];
+            while (bits != 0 && acquired < count) {
+                lotIds[offset + acquired++] = (word << WORD_SHIFT) | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+            levels[0][word] = bits;
+            if (bits == 0) {
+                clear(1, word);
+            }
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean claim(int lotId) {
+        if (!isFree(lotId)) {
+            return false;
+        }
+        clear(0, lotId);
+        return true;
+    }
+
+    @Override
+    public void release(int lotId) {
+        checkLotId(lotId);
+        int index = lotId;
+        for (long[] words : levels) {
+            int word = index >>> WORD_SHIFT;
+            boolean wasEmpty = words[word] == 0;
+            words[word] |= 1L << (index & WORD_MASK);
+            if (!wasEmpty) {
+                return;
+            }
+            index = word;
+        }
+    }
+
+    @Override
+    public boolean isFree(int lotId) {
+        checkLotId(lotId);
+        return (levels[0][lotId >>> WORD_SHIFT] & (1L << (lotId & WORD_MASK))) != 0;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Clears the bit of the given index at a level, and at the levels above as long as words become empty.
+     */
+    private void clear(int level, int index) {
+        for (; level < levels.length; level++) {
+            long[] words = levels[level];
+            int word = index >>> WORD_SHIFT;
+            words[word] &= ~(1L << (index & WORD_MASK));
+            if (words[word] != 0) {
+                return;
+            }
+            index = word;
+        }
+    }
+
+    private void checkLotId(int lotId) {
+        if (lotId < 0 || lotId >= capacity) {
+            throw new IndexOutOfBoundsException("lotId " + lotId + " out of range [0, " + capacity + ")");
+        }
+    }
+}
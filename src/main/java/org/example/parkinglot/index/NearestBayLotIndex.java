@@ -0,0 +1,551 @@
+package org.example.parkinglot.index;
+
+import org.example.parkinglot.layout.BayLayout;
+import org.example.parkinglot.models.Size;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * {@link FreeLotIndex} handing out the free lot nearest to the entry gate a vehicle arrives through, instead of the
+ * lowest free ID, so that a multi-storey site fills up around all of its gates rather than level 0 first.
+ *
+ * The lots of one size are kept in a balanced k-d tree over their level and x/y position, built once from the
+ * {@link BayLayout}, with buckets of up to {@link #BUCKET_SIZE} neighbouring lots as leaves. Every node records the
+ * bounding box of each of its two subtrees and whether it still has free lots. A nearest search visits the closer
+ * child first and skips subtrees which are full or whose box is farther away than the best lot found so far, adding
+ * up the level distance of a box first and giving up on it as soon as the sum reaches the best distance. It touches
+ * O(log n) nodes unless the free lots near the gate are scattered, as they are once departures leave holes in the
+ * area a busy gate filled. Most nodes visited are cache misses on a large site: in NearestBayBenchmark a departure
+ * plus an arrival over 100000 bays takes 1 to 5 microseconds, against 60 to 150 nanoseconds with the flat
+ * {@link HierarchicalFreeLotIndex}. Claiming or releasing a lot usually updates only the entry of its bucket, and
+ * goes further up only when the bucket or a subtree fills up or gets its first free lot. Nothing is allocated after
+ * construction, apart from a small search stack per thread.
+ *
+ * Nodes are stored in pre-order in a single int array, one 64 byte record per node, so that deciding which children
+ * to visit reads a single cache line. The lots of a bucket are contiguous in a second array.
+ *
+ * The tree itself never changes after construction, only the free flags and counts do. Searches therefore run under
+ * an optimistic read of a {@link StampedLock}, in parallel, and only taking the lot found holds the write lock; a
+ * search overlapping a write is repeated under the write lock. Claims and releases hold the write lock.
+ *
+ * The lots are those of the layout, so the index cannot grow, see {@link #ensureCapacity(int)}.
+ *
+ * ThreadSafe class.
+ */
+public class NearestBayLotIndex implements FreeLotIndex {
+
+    static final int BUCKET_SIZE = 8;
+
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int LEVEL = 2;
+
+    /**
+     * Ints per node in {@link #nodes}. A node holds the left, then the right child's bounding box (minimum and
+     * maximum of x, y and level, in that order) and free count, followed by the references to both children. The free
+     * count of a bucket is the number of its free lots, that of an inner node the number of its children with free
+     * lots, so either is 0 exactly when the subtree is full.
+     */
+    private static final int NODE = 16;
+    private static final int CHILD = 7;
+    private static final int FREE_COUNT = 6;
+    private static final int LEFT_CHILD = 14;
+    private static final int RIGHT_CHILD = 15;
+
+    /**
+     * A child reference is the offset of an inner node, or the complement of a bucket: its first slot in
+     * {@link #lots} shifted left by {@link #BUCKET_BITS}, or'ed with the number of lots in it.
+     */
+    private static final int BUCKET_BITS = 4;
+    private static final int BUCKET_MASK = (1 << BUCKET_BITS) - 1;
+
+    /**
+     * Ints per lot slot in {@link #lots}: its position, then its ID shifted left by one with the free flag in the
+     * lowest bit.
+     */
+    private static final int LOT = 4;
+    private static final int STATE = 3;
+    private static final int FREE = 1;
+
+    private final BayLayout layout;
+    private final int capacity;
+    private final long levelDistance;
+
+    private final int[] nodes;
+    private final int[] lots;
+    /**
+     * Link to the parent of every inner node, by node number, and of the bucket of every lot, by lot ID. A link is
+     * the offset of the parent, or'ed with 1 for its right child; -1 for the root.
+     */
+    private final int[] nodeParents;
+    private final int[] lotParents;
+    private final int[] lotSlots;
+    private final ThreadLocal<SearchStack> searchStacks;
+
+    private final StampedLock lock = new StampedLock();
+
+    private int nextNode;
+    private int depth;
+
+    /**
+     * @param layout holding the positions of the lots of every size and of the gates
+     * @return A factory creating the index of every size from the layout. Creating an index fails with an
+     * {@link IllegalArgumentException} if the layout does not have exactly as many bays of that size as lots.
+     */
+    public static FreeLotIndex.Factory factory(BayLayout layout) {
+        if (layout == null) {
+            throw new IllegalArgumentException("layout must not be null");
+        }
+        return (numberOfLots, size) -> {
+            if (layout.getNumberOfBays(size) != numberOfLots) {
+                throw new IllegalArgumentException("layout has " + layout.getNumberOfBays(size) + " bays of size "
+                        + size + " but the tracker has " + numberOfLots + " lots");
+            }
+            return new NearestBayLotIndex(layout, size);
+        };
+    }
+
+    public NearestBayLotIndex(BayLayout layout, Size size) {
+        this.layout = layout;
+        this.capacity = layout.getNumberOfBays(size);
+        this.levelDistance = layout.getLevelDistance();
+        int numberOfNodes = 1 + countNodes(capacity >>> 1) + countNodes(capacity - (capacity >>> 1));
+        this.nodes = new int[numberOfNodes * NODE];
+        this.nodeParents = new int[numberOfNodes];
+        this.lots = new int[capacity * LOT];
+        this.lotParents = new int[capacity];
+        this.lotSlots = new int[capacity];
+
+        int[] order = new int[capacity];
+        int[][] keys = new int[3][capacity];
+        for (int lotId = 0; lotId < capacity; lotId++) {
+            order[lotId] = lotId;
+            keys[X][lotId] = layout.getX(size, lotId);
+            keys[Y][lotId] = layout.getY(size, lotId);
+            keys[LEVEL][lotId] = layout.getLevel(size, lotId);
+        }
+        // the root is an inner node even for a handful of lots, so that searches always start from one
+        buildNode(order, keys, 0, capacity, -1, 1);
+        int stackSize = depth + 2;
+        this.searchStacks = ThreadLocal.withInitial(() -> new SearchStack(stackSize));
+    }
+
+    private static int countNodes(int numberOfLots) {
+        if (numberOfLots <= BUCKET_SIZE) {
+            return 0;
+        }
+        int half = numberOfLots >>> 1;
+        return 1 + countNodes(half) + countNodes(numberOfLots - half);
+    }
+
+    /**
+     * Turns order[lo, hi) into the subtree of an inner node, splitting at the median of the widest axis.
+     *
+     * @return Offset of the node in {@link #nodes}
+     */
+    private int buildNode(int[] order, int[][] keys, int lo, int hi, int parentLink, int level) {
+        depth = Math.max(depth, level);
+        int node = NODE * nextNode++;
+        nodeParents[node / NODE] = parentLink;
+        int mid = (lo + hi) >>> 1;
+        select(order, keys[widestAxis(order, keys, lo, hi)], lo, hi, mid);
+        nodes[node + LEFT_CHILD] = buildChild(order, keys, lo, mid, node, level + 1);
+        nodes[node + RIGHT_CHILD] = buildChild(order, keys, mid, hi, node | 1, level + 1);
+        return node;
+    }
+
+    /**
+     * Records the box and free count of order[lo, hi) in its parent, then turns it into a bucket once it is small
+     * enough, or an inner node otherwise.
+     *
+     * @return Reference to the child
+     */
+    private int buildChild(int[] order, int[][] keys, int lo, int hi, int parentLink, int level) {
+        int child = (parentLink & ~1) + (parentLink & 1) * CHILD;
+        for (int axis = X; axis <= LEVEL; axis++) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = lo; i < hi; i++) {
+                int key = keys[axis][order[i]];
+                min = Math.min(min, key);
+                max = Math.max(max, key);
+            }
+            nodes[child + 2 * axis] = min;
+            nodes[child + 2 * axis + 1] = max;
+        }
+        if (hi - lo > BUCKET_SIZE) {
+            // both halves of an inner node have lots
+            nodes[child + FREE_COUNT] = 2;
+            return buildNode(order, keys, lo, hi, parentLink, level);
+        }
+        nodes[child + FREE_COUNT] = hi - lo;
+        // order[lo, hi) is final once it fits a bucket, so its lots take the same slots
+        for (int slot = lo; slot < hi; slot++) {
+            int lotId = order[slot];
+            int offset = slot * LOT;
+            lots[offset + X] = keys[X][lotId];
+            lots[offset + Y] = keys[Y][lotId];
+            lots[offset + LEVEL] = keys[LEVEL][lotId];
+            lots[offset + STATE] = (lotId << 1) | FREE;
+            lotParents[lotId] = parentLink;
+            lotSlots[lotId] = slot;
+        }
+        return ~((lo << BUCKET_BITS) | (hi - lo));
+    }
+
+    private int widestAxis(int[] order, int[][] keys, int lo, int hi) {
+        long[] spans = new long[3];
+        for (int axis = X; axis <= LEVEL; axis++) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = lo; i < hi; i++) {
+                int key = keys[axis][order[i]];
+                min = Math.min(min, key);
+                max = Math.max(max, key);
+            }
+            spans[axis] = hi > lo ? (long) max - min : 0;
+        }
+        spans[LEVEL] *= levelDistance;
+        if (spans[LEVEL] > spans[X] && spans[LEVEL] > spans[Y]) {
+            return LEVEL;
+        }
+        return spans[X] >= spans[Y] ? X : Y;
+    }
+
+    /**
+     * Rearranges order[lo, hi) so that order[k] holds the element of rank k by key, smaller ones before and larger
+     * ones after it. Three-way partitioning keeps the many equal coordinates of a grid from degrading it.
+     */
+    private static void select(int[] order, int[] key, int lo, int hi, int k) {
+        while (hi - lo > 1) {
+            int pivot = key[order[(lo + hi) >>> 1]];
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i < gt) {
+                int value = key[order[i]];
+                if (value < pivot) {
+                    swap(order, lt++, i++);
+                } else if (value > pivot) {
+                    swap(order, i, --gt);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt;
+            } else if (k >= gt) {
+                lo = gt;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(int[] order, int i, int j) {
+        int tmp = order[i];
+        order[i] = order[j];
+        order[j] = tmp;
+    }
+
+    /**
+     * Claims a free lot on the path of least resistance from the root, without regard to any gate.
+     */
+    @Override
+    public int acquire() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int offset = findAny();
+            if (lock.validate(stamp)) {
+                if (offset < 0) {
+                    return -1;
+                }
+                stamp = lock.tryConvertToWriteLock(stamp);
+                if (stamp != 0) {
+                    try {
+                        return take(offset);
+                    } finally {
+                        lock.unlockWrite(stamp);
+                    }
+                }
+            }
+        }
+        stamp = lock.writeLock();
+        try {
+            int offset = findAny();
+            return offset < 0 ? -1 : take(offset);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return Offset of a free lot in {@link #lots}, or -1 if none is free. Under an optimistic read the result is
+     * only good once validated, but the walk always ends since the tree does not change.
+     */
+    private int findAny() {
+        if (nodes[FREE_COUNT] + nodes[CHILD + FREE_COUNT] == 0) {
+            return -1;
+        }
+        int child = 0;
+        while (child >= 0) {
+            child = nodes[child + FREE_COUNT] > 0 ? nodes[child + LEFT_CHILD] : nodes[child + RIGHT_CHILD];
+        }
+        int offset = (~child >>> BUCKET_BITS) * LOT;
+        for (int end = offset + (~child & BUCKET_MASK) * LOT; offset < end; offset += LOT) {
+            if ((lots[offset + STATE] & FREE) != 0) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int acquireNearest(int gate) {
+        if (gate == ANY_GATE) {
+            return acquire();
+        }
+        if (gate < 0 || gate >= layout.getNumberOfGates()) {
+            throw new IndexOutOfBoundsException("gate " + gate + " out of range [0, " + layout.getNumberOfGates()
+                    + ")");
+        }
+        int gateX = layout.getGateX(gate);
+        int gateY = layout.getGateY(gate);
+        int gateLevel = layout.getGateLevel(gate);
+        SearchStack stack = searchStacks.get();
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int offset = findNearest(stack, gateX, gateY, gateLevel);
+            if (lock.validate(stamp)) {
+                if (offset < 0) {
+                    return -1;
+                }
+                stamp = lock.tryConvertToWriteLock(stamp);
+                if (stamp != 0) {
+                    try {
+                        return take(offset);
+                    } finally {
+                        lock.unlockWrite(stamp);
+                    }
+                }
+            }
+        }
+        stamp = lock.writeLock();
+        try {
+            int offset = findNearest(stack, gateX, gateY, gateLevel);
+            return offset < 0 ? -1 : take(offset);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return Offset of the free lot nearest to the gate in {@link #lots}, or -1 if none is free. Under an optimistic
+     * read the result is only good once validated, but the search always ends since the tree does not change.
+     */
+    private int findNearest(SearchStack stack, int gateX, int gateY, int gateLevel) {
+        if (nodes[FREE_COUNT] + nodes[CHILD + FREE_COUNT] == 0) {
+            return -1;
+        }
+        int[] children = stack.children;
+        long[] distances = stack.distances;
+        long bestDistance = Long.MAX_VALUE;
+        int bestOffset = -1;
+        int top = 0;
+        children[top] = 0;
+        distances[top++] = 0;
+        while (top > 0) {
+            int child = children[--top];
+            if (distances[top] >= bestDistance) {
+                continue;
+            }
+            if (child < 0) {
+                int offset = (~child >>> BUCKET_BITS) * LOT;
+                for (int end = offset + (~child & BUCKET_MASK) * LOT; offset < end; offset += LOT) {
+                    if ((lots[offset + STATE] & FREE) != 0) {
+                        long distance = lotDistance(offset, gateX, gateY, gateLevel, bestDistance);
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            bestOffset = offset;
+                        }
+                    }
+                }
+                continue;
+            }
+            long leftDistance = nodes[child + FREE_COUNT] > 0
+                    ? boxDistance(child, gateX, gateY, gateLevel, bestDistance)
+                    : Long.MAX_VALUE;
+            long rightDistance = nodes[child + CHILD + FREE_COUNT] > 0
+                    ? boxDistance(child + CHILD, gateX, gateY, gateLevel, bestDistance)
+                    : Long.MAX_VALUE;
+            // the closer child goes on top so that it is searched first
+            if (leftDistance <= rightDistance) {
+                top = push(stack, top, nodes[child + RIGHT_CHILD], rightDistance, bestDistance);
+                top = push(stack, top, nodes[child + LEFT_CHILD], leftDistance, bestDistance);
+            } else {
+                top = push(stack, top, nodes[child + LEFT_CHILD], leftDistance, bestDistance);
+                top = push(stack, top, nodes[child + RIGHT_CHILD], rightDistance, bestDistance);
+            }
+        }
+        return bestOffset;
+    }
+
+    private static int push(SearchStack stack, int top, int child, long distance, long bestDistance) {
+        if (distance >= bestDistance) {
+            return top;
+        }
+        stack.children[top] = child;
+        stack.distances[top] = distance;
+        return top + 1;
+    }
+
+    /**
+     * @return Distance from the gate to the lot in the slot at the offset, or a partial sum of at least bound once it
+     * is clear that the lot is no closer
+     */
+    private long lotDistance(int offset, int gateX, int gateY, int gateLevel, long bound) {
+        long distance = levelDistance * Math.abs((long) lots[offset + LEVEL] - gateLevel);
+        if (distance >= bound) {
+            return distance;
+        }
+        return distance + Math.abs((long) lots[offset + X] - gateX) + Math.abs((long) lots[offset + Y] - gateY);
+    }
+
+    /**
+     * The level distance is added first, being the largest part unless the gate is on the level of the box, so that
+     * boxes on other levels are mostly given up after one axis.
+     *
+     * @return Distance from the gate to the closest point of the bounding box starting at the offset, or a partial
+     * sum of at least bound once it is clear that the box is no closer
+     */
+    private long boxDistance(int box, int gateX, int gateY, int gateLevel, long bound) {
+        long distance = levelDistance * outside(gateLevel, nodes[box + 4], nodes[box + 5]);
+        if (distance >= bound) {
+            return distance;
+        }
+        distance += outside(gateX, nodes[box], nodes[box + 1]);
+        if (distance >= bound) {
+            return distance;
+        }
+        return distance + outside(gateY, nodes[box + 2], nodes[box + 3]);
+    }
+
+    private static long outside(int value, int min, int max) {
+        if (value < min) {
+            return (long) min - value;
+        }
+        return value > max ? (long) value - max : 0;
+    }
+
+    /**
+     * Marks the lot in the slot at the offset taken, under the write lock.
+     *
+     * @return ID of the lot
+     */
+    private int take(int offset) {
+        lots[offset + STATE] &= ~FREE;
+        int lotId = lots[offset + STATE] >>> 1;
+        // a subtree only counts as one fewer in its parent once it is full
+        for (int link = lotParents[lotId]; link >= 0; link = nodeParents[link / NODE]) {
+            if (--nodes[(link & ~1) + (link & 1) * CHILD + FREE_COUNT] > 0) {
+                break;
+            }
+        }
+        return lotId;
+    }
+
+    @Override
+    public boolean claim(int lotId) {
+        checkLotId(lotId);
+        long stamp = lock.writeLock();
+        try {
+            int offset = lotSlots[lotId] * LOT;
+            if ((lots[offset + STATE] & FREE) == 0) {
+                return false;
+            }
+            take(offset);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void release(int lotId) {
+        checkLotId(lotId);
+        long stamp = lock.writeLock();
+        try {
+            int offset = lotSlots[lotId] * LOT;
+            if ((lots[offset + STATE] & FREE) != 0) {
+                return;
+            }
+            lots[offset + STATE] |= FREE;
+            // a subtree only counts as one more in its parent when it gets its first free lot
+            for (int link = lotParents[lotId]; link >= 0; link = nodeParents[link / NODE]) {
+                if (nodes[(link & ~1) + (link & 1) * CHILD + FREE_COUNT]++ > 0) {
+                    break;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean isFree(int lotId) {
+        checkLotId(lotId);
+        int offset = lotSlots[lotId] * LOT + STATE;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean free = (lots[offset] & FREE) != 0;
+            if (lock.validate(stamp)) {
+                return free;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return (lots[offset] & FREE) != 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void checkLotId(int lotId) {
+        if (lotId < 0 || lotId >= capacity) {
+            throw new IndexOutOfBoundsException("lotId " + lotId + " out of range [0, " + capacity + ")");
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * The index holds exactly the bays of its {@link BayLayout}, so lots cannot be added to a tracker using it: there
+     * would be no position to search them by. Build a new layout and tracker for a larger site instead.
+     *
+     * @throws UnsupportedOperationException if more lots than the bays of the layout are wanted
+     */
+    @Override
+    public void ensureCapacity(int numberOfLots) {
+        if (numberOfLots > capacity) {
+            throw new UnsupportedOperationException("NearestBayLotIndex holds the " + capacity
+                    + " bays of its BayLayout and cannot grow to " + numberOfLots + " lots");
+        }
+    }
+
+    /**
+     * Nodes still to be searched with the distance of their boxes, one per thread so that searches run in parallel.
+     */
+    private static final class SearchStack {
+        final int[] children;
+        final long[] distances;
+
+        SearchStack(int size) {
+            this.children = new int[size];
+            this.distances = new long[size];
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.parkinglot.index;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free {@link FreeLotIndex} which splits the lot ID space into stripes, each backed by its own
+ * {@link AtomicFreeLotIndex}. Lot IDs are dealt out to the stripes in blocks of 64, round-robin, so that every stripe
+ * gets its share of the lots added later as well.
+ *
+ * Every thread has a home stripe, handed out round-robin as threads first use an index, and allocates from it first,
+ * so gates running on different threads mostly touch different words. Lots are stolen from the other stripes only
+ * when the home stripe is empty, hence a lot is still handed out as long as any stripe has one free.
+ *
+ * ThreadSafe class.
+ */
+public class StripedFreeLotIndex implements FreeLotIndex {
+
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+    private static final AtomicInteger NEXT_THREAD = new AtomicInteger();
+    private static final ThreadLocal<Integer> THREAD_NUMBER = ThreadLocal.withInitial(NEXT_THREAD::getAndIncrement);
+
+    private volatile int capacity;
+    private final AtomicFreeLotIndex[] stripes;
+
+    public StripedFreeLotIndex(int capacity, int numberOfStripes) {
+        if (capacity < 0 || numberOfStripes <= 0) {
+            throw new IllegalArgumentException("capacity must not be negative and numberOfStripes must be positive");
+        }
+        this.capacity = capacity;
+        this.stripes = new AtomicFreeLotIndex[numberOfStripes];
+        for (int stripe = 0; stripe < numberOfStripes; stripe++) {
+            stripes[stripe] = new AtomicFreeLotIndex(stripeCapacity(stripe, capacity));
+        }
+    }
+
+    public static FreeLotIndex.Factory factory(int numberOfStripes) {
+        return (numberOfLots, size) -> new StripedFreeLotIndex(numberOfLots, numberOfStripes);
+    }
+
+    @Override
+    public int acquire() {
+        return acquire(homeStripe());
+    }
+
+    /**
+     * Claims a free lot, preferring the given stripe and stealing from the following ones when it is empty.
+     *
+     * @param homeStripe stripe to allocate from first
+     * @return ID of the claimed lot, or -1 if no lot is free
+     */
+    public int acquire(int homeStripe) {
+        for (int i = 0; i < stripes.length; i++) {
+            int stripe = (homeStripe + i) % stripes.length;
+            int localId = stripes[stripe].acquire();
+            if (localId >= 0) {
+                return lotIdOf(stripe, localId);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int acquire(int[] lotIds, int offset, int count) {
+        int homeStripe = homeStripe();
+        int acquired = 0;
+        for (int i = 0; i < stripes.length && acquired < count; i++) {
+            int stripe = (homeStripe + i) % stripes.length;
+            int taken = stripes[stripe].acquire(lotIds, offset + acquired, count - acquired);
+            for (int j = offset + acquired; j < offset + acquired + taken; j++) {
+                lotIds[j] = lotIdOf(stripe, lotIds[j]);
+            }
+            acquired += taken;
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean claim(int lotId) {
+        checkLotId(lotId);
+        return stripes[stripeOf(lotId)].claim(localIdOf(lotId));
+    }
+
+    @Override
+    public void release(int lotId) {
+        checkLotId(lotId);
+        stripes[stripeOf(lotId)].release(localIdOf(lotId));
+    }
+
+    @Override
+    public boolean isFree(int lotId) {
+        checkLotId(lotId);
+        return stripes[stripeOf(lotId)].isFree(localIdOf(lotId));
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Grows every stripe by its share of the added lots, which stay taken like in {@link AtomicFreeLotIndex}.
+     */
+    @Override
+    public synchronized void ensureCapacity(int numberOfLots) {
+        if (numberOfLots <= capacity) {
+            return;
+        }
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            stripes[stripe].ensureCapacity(stripeCapacity(stripe, numberOfLots));
+        }
+        capacity = numberOfLots;
+    }
+
+    /**
+     * @return Number of stripes the lot ID space is split into
+     */
+    public int getNumberOfStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * @param lotId of a lot
+     * @return Stripe the lot belongs to
+     */
+    public int stripeOf(int lotId) {
+        return (lotId >>> BLOCK_SHIFT) % stripes.length;
+    }
+
+    /**
+     * @return Home stripe of the calling thread
+     */
+    public int homeStripe() {
+        return Math.floorMod(THREAD_NUMBER.get(), stripes.length);
+    }
+
+    private int localIdOf(int lotId) {
+        return (lotId >>> BLOCK_SHIFT) / stripes.length << BLOCK_SHIFT | lotId & BLOCK_MASK;
+    }
+
+    private int lotIdOf(int stripe, int localId) {
+        return ((localId >>> BLOCK_SHIFT) * stripes.length + stripe) << BLOCK_SHIFT | localId & BLOCK_MASK;
+    }
+
+    /**
+     * @return Number of the first numberOfLots lot IDs which belong to the stripe
+     */
+    private int stripeCapacity(int stripe, int numberOfLots) {
+        int fullBlocks = numberOfLots >>> BLOCK_SHIFT;
+        int blocks = fullBlocks / stripes.length + (stripe < fullBlocks % stripes.length ? 1 : 0);
+        int partial = fullBlocks % stripes.length == stripe ? numberOfLots & BLOCK_MASK : 0;
+        return (blocks << BLOCK_SHIFT) + partial;
+    }
+
+    private void checkLotId(int lotId) {
+        int capacity = this.capacity;
+        if (lotId < 0 || lotId >= capacity) {
+            throw new IndexOutOfBoundsException("lotId " + lotId + " out of range [0, " + capacity + ")");
+        }
+    }
+}
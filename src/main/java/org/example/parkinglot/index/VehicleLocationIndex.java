@@ -0,0 +1,426 @@
+package org.example.parkinglot.index;
+
+import org.example.parkinglot.LotTrackerListener;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Maps the ID of every parked vehicle to the lot it is parked in, so that a vehicle can be found and a second park of
+ * the same vehicle rejected in O(1).
+ *
+ * IDs are spread over segments, each an open addressing hash table of vehicle IDs and packed locations (size ordinal
+ * in the upper 32 bits, lot ID in the lower 32) with linear probing and backward shift deletion, so entries take two
+ * array slots and no boxing. A segment is changed under its write lock and read optimistically.
+ *
+ * As a {@link LotTrackerListener} the index records the location while the lot is still locked, so a vehicle can be
+ * located as soon as its ticket is issued. To detect duplicate parks the ID has to be {@link #claim(String) claimed}
+ * before reserving a lot, and {@link #abandon(String) abandoned} if no lot could be reserved.
+ *
+ * ThreadSafe class.
+ */
+public class VehicleLocationIndex implements LotTrackerListener {
+
+    /**
+     * Returned by {@link #locate(String)} for a vehicle which is not parked.
+     */
+    public static final long NOT_FOUND = -1L;
+
+    /**
+     * Returned by {@link #locate(String)} for a vehicle which has been claimed but not yet parked.
+     */
+    public static final long PENDING = -2L;
+
+    private static final int SEGMENT_SHIFT = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_SHIFT;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_LOTS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_LOTS - 1;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final ThreadLocal<BatchScratch> batchScratch = ThreadLocal.withInitial(BatchScratch::new);
+
+    /**
+     * ID of the vehicle parked in every lot, by size ordinal and chunks of {@link #CHUNK_LOTS} lots, so that releases
+     * can be mapped back to the ID. Elements are only accessed while the lot is locked, lots added later get new
+     * chunks and leave the existing ones in place.
+     */
+    private volatile String[][][] vehicleIdByLot = new String[Size.values().length][0][];
+
+    /**
+     * @param numberOfLotsBySize number of lots of every size which may be tracked, more may be added later
+     */
+    public VehicleLocationIndex(Map<Size, Integer> numberOfLotsBySize) {
+        long totalLots = 0;
+        for (Size size : Size.values()) {
+            int numberOfLots = numberOfLotsBySize.getOrDefault(size, 0);
+            onLotsAdded(size, numberOfLots);
+            totalLots += numberOfLots;
+        }
+        // sized for a load factor of at most 0.5 with every lot occupied
+        int segmentCapacity = MIN_SEGMENT_CAPACITY;
+        while (segmentCapacity < (totalLots * 2) / SEGMENTS + 1 && segmentCapacity < (1 << 30)) {
+            segmentCapacity <<= 1;
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    public static long location(Size size, int lotId) {
+        return ((long) size.ordinal() << 32) | lotId;
+    }
+
+    public static Size sizeOf(long location) {
+        return Size.values()[(int) (location >>> 32)];
+    }
+
+    public static int lotIdOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Registers a vehicle which is about to be parked.
+     *
+     * @param vehicleId of the vehicle
+     * @return true if the vehicle was neither parked nor claimed yet, otherwise false
+     */
+    public boolean claim(String vehicleId) {
+        int hash = hash(vehicleId);
+        return segmentFor(hash).putIfAbsent(vehicleId, hash, PENDING);
+    }
+
+    /**
+     * Batch variant of {@link #claim(String)}, taking the lock of each segment once for all IDs falling into it.
+     * Batches smaller than the number of segments are claimed ID by ID.
+     *
+     * @param vehicleIds of the vehicles, vehicleIds[0] to vehicleIds[count - 1]
+     * @param claimed    receiving whether each ID was claimed, false for the repeats of an ID within the batch
+     */
+    public void claimAll(String[] vehicleIds, int count, boolean[] claimed) {
+        if (count < SEGMENTS) {
+            // too few IDs to share a segment lock often enough to pay for sorting them by segment
+            for (int i = 0; i < count; i++) {
+                claimed[i] = claim(vehicleIds[i]);
+            }
+            return;
+        }
+        BatchScratch scratch = batchScratch.get().ensureCapacity(count);
+        int[] hashes = scratch.hashes;
+        int[] bounds = scratch.segmentBounds;
+        Arrays.fill(bounds, 0);
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hash(vehicleIds[i]);
+            bounds[segmentIndex(hashes[i])]++;
+        }
+        // bounds[segment] becomes the end of the segment's positions, then its start while they are filled in backwards
+        for (int segment = 1; segment < SEGMENTS; segment++) {
+            bounds[segment] += bounds[segment - 1];
+        }
+        bounds[SEGMENTS] = count;
+        int[] bySegment = scratch.bySegment;
+        for (int i = count - 1; i >= 0; i--) {
+            bySegment[--bounds[segmentIndex(hashes[i])]] = i;
+        }
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            if (bounds[segment] < bounds[segment + 1]) {
+                segments[segment].putAllIfAbsent(vehicleIds, hashes, bySegment, bounds[segment], bounds[segment + 1],
+                        claimed);
+            }
+        }
+    }
+
+    /**
+     * Removes a claim which did not result in a park. Does nothing if the vehicle has been parked meanwhile.
+     *
+     * @param vehicleId of the vehicle
+     */
+    public void abandon(String vehicleId) {
+        int hash = hash(vehicleId);
+        segmentFor(hash).remove(vehicleId, hash, PENDING);
+    }
+
+    /**
+     * @param vehicleId of the vehicle
+     * @return Location of the vehicle, see {@link #location(Size, int)}, or {@link #NOT_FOUND} or {@link #PENDING}
+     */
+    public long locate(String vehicleId) {
+        if (vehicleId == null) {
+            return NOT_FOUND;
+        }
+        int hash = hash(vehicleId);
+        return segmentFor(hash).get(vehicleId, hash);
+    }
+
+    @Override
+    public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+        String vehicleId = vehicle.id();
+        if (vehicleId == null) {
+            return;
+        }
+        vehicleIdByLot[size.ordinal()][lotId >>> CHUNK_SHIFT][lotId & CHUNK_MASK] = vehicleId;
+        int hash = hash(vehicleId);
+        segmentFor(hash).put(vehicleId, hash, location(size, lotId));
+    }
+
+    @Override
+    public void onReleased(Size size, int lotId, int generation) {
+        String[] vehicleIds = vehicleIdByLot[size.ordinal()][lotId >>> CHUNK_SHIFT];
+        String vehicleId = vehicleIds[lotId & CHUNK_MASK];
+        if (vehicleId == null) {
+            return;
+        }
+        vehicleIds[lotId & CHUNK_MASK] = null;
+        int hash = hash(vehicleId);
+        segmentFor(hash).remove(vehicleId, hash, location(size, lotId));
+    }
+
+    /**
+     * Makes room for the IDs of the vehicles parked in lots added later. The hash tables grow on their own.
+     */
+    @Override
+    public synchronized void onLotsAdded(Size size, int numberOfLots) {
+        String[][] chunks = vehicleIdByLot[size.ordinal()];
+        int chunkCount = (int) (((long) numberOfLots + CHUNK_MASK) >>> CHUNK_SHIFT);
+        if (chunkCount <= chunks.length) {
+            return;
+        }
+        String[][] grown = Arrays.copyOf(chunks, chunkCount);
+        for (int chunk = chunks.length; chunk < chunkCount; chunk++) {
+            grown[chunk] = new String[CHUNK_LOTS];
+        }
+        String[][][] updated = vehicleIdByLot.clone();
+        updated[size.ordinal()] = grown;
+        vehicleIdByLot = updated;
+    }
+
+    /**
+     * @return Number of vehicles parked or claimed
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[segmentIndex(hash)];
+    }
+
+    private static int segmentIndex(int hash) {
+        return hash >>> (Integer.SIZE - SEGMENT_SHIFT);
+    }
+
+    private static int hash(String vehicleId) {
+        int h = vehicleId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Keys and values are swapped together when the table grows, so that optimistic readers never mix two tables.
+     */
+    private static final class Table {
+        final String[] keys;
+        final long[] locations;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new String[capacity];
+            this.locations = new long[capacity];
+            this.mask = capacity - 1;
+        }
+    }
+
+    /**
+     * Working arrays of {@link #claimAll}, kept per thread and grown to the largest batch seen.
+     */
+    private static final class BatchScratch {
+        int[] hashes = new int[0];
+        int[] bySegment = new int[0];
+        final int[] segmentBounds = new int[SEGMENTS + 1];
+
+        BatchScratch ensureCapacity(int count) {
+            if (hashes.length < count) {
+                hashes = new int[count];
+                bySegment = new int[count];
+            }
+            return this;
+        }
+    }
+
+    private static final class Segment {
+
+        private final StampedLock lock = new StampedLock();
+        private volatile Table table;
+        private int size;
+
+        Segment(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        long get(String key, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long location = find(table, key, hash);
+                if (lock.validate(stamp)) {
+                    return location;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return find(table, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private static long find(Table table, String key, int hash) {
+            String[] keys = table.keys;
+            for (int i = hash & table.mask, probes = 0; probes <= table.mask; i = (i + 1) & table.mask, probes++) {
+                String candidate = keys[i];
+                if (candidate == null) {
+                    return NOT_FOUND;
+                }
+                if (candidate.equals(key)) {
+                    return table.locations[i];
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        boolean putIfAbsent(String key, int hash, long location) {
+            long stamp = lock.writeLock();
+            try {
+                Table table = this.table;
+                int slot = slotOf(table, key, hash);
+                if (table.keys[slot] != null) {
+                    return false;
+                }
+                insert(table, slot, key, location);
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Claims the keys at positions[from] to positions[to - 1] with a single lock acquisition.
+         */
+        void putAllIfAbsent(String[] keys, int[] hashes, int[] positions, int from, int to, boolean[] claimed) {
+            long stamp = lock.writeLock();
+            try {
+                for (int i = from; i < to; i++) {
+                    int position = positions[i];
+                    Table table = this.table;
+                    int slot = slotOf(table, keys[position], hashes[position]);
+                    claimed[position] = table.keys[slot] == null;
+                    if (claimed[position]) {
+                        insert(table, slot, keys[position], PENDING);
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void put(String key, int hash, long location) {
+            long stamp = lock.writeLock();
+            try {
+                Table table = this.table;
+                int slot = slotOf(table, key, hash);
+                if (table.keys[slot] != null) {
+                    table.locations[slot] = location;
+                } else {
+                    insert(table, slot, key, location);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Removes the key if it is mapped to the expected location.
+         */
+        void remove(String key, int hash, long expected) {
+            long stamp = lock.writeLock();
+            try {
+                Table table = this.table;
+                int slot = slotOf(table, key, hash);
+                if (table.keys[slot] != null && table.locations[slot] == expected) {
+                    deleteAt(table, slot);
+                    size--;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * @return Slot holding the key, or the empty slot where it belongs
+         */
+        private static int slotOf(Table table, String key, int hash) {
+            int i = hash & table.mask;
+            while (table.keys[i] != null && !table.keys[i].equals(key)) {
+                i = (i + 1) & table.mask;
+            }
+            return i;
+        }
+
+        private void insert(Table table, int slot, String key, long location) {
+            table.keys[slot] = key;
+            table.locations[slot] = location;
+            if (++size * 2 > table.keys.length) {
+                grow(table);
+            }
+        }
+
+        private void grow(Table table) {
+            Table grown = new Table(table.keys.length * 2);
+            for (int i = 0; i < table.keys.length; i++) {
+                String key = table.keys[i];
+                if (key != null) {
+                    int slot = slotOf(grown, key, hash(key));
+                    grown.keys[slot] = key;
+                    grown.locations[slot] = table.locations[i];
+                }
+            }
+            this.table = grown;
+        }
+
+        /**
+         * Empties a slot and shifts back later entries of the same probe run, so that lookups never need tombstones.
+         */
+        private static void deleteAt(Table table, int slot) {
+            String[] keys = table.keys;
+            int mask = table.mask;
+            int gap = slot;
+            for (int i = (slot + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+                int home = hash(keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    table.locations[gap] = table.locations[i];
+                    gap = i;
+                }
+            }
+            keys[gap] = null;
+            table.locations[gap] = 0;
+        }
+    }
+}
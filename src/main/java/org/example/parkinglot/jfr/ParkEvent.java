@@ -0,0 +1,76 @@
+package org.example.parkinglot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.example.parkinglot.metrics.Outcome;
+import org.example.parkinglot.models.Size;
+
+/**
+ * Flight Recorder event for a {@link org.example.parkinglot.LotManager} park, packed or not, spanning the whole call.
+ *
+ * Not a ThreadSafe class, every call creates its own event.
+ */
+@Name(ParkEvent.NAME)
+@Label("Park")
+@Category("Parking Lot")
+@Description("Vehicle parked or turned away by the LotManager")
+@StackTrace(false)
+public class ParkEvent extends Event {
+
+    public static final String NAME = "org.example.parkinglot.Park";
+
+    private static final EventType TYPE = EventType.getEventType(ParkEvent.class);
+
+    @Label("Vehicle Size")
+    String vehicleSize;
+
+    @Label("Lot Size")
+    @Description("Size of the lot the vehicle got, null if it got none")
+    String lotSize;
+
+    @Label("Lot ID")
+    int lotId;
+
+    @Label("Gate")
+    @Description("Entry gate the vehicle arrived through, -1 for any")
+    int gate;
+
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * @return A started event if a running recording has the event enabled, else null. Nothing is allocated while no
+     * recording wants the event.
+     */
+    public static ParkEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        ParkEvent event = new ParkEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the event, unless it is shorter than the threshold of the recording.
+     *
+     * @param lotSize of the lot the vehicle got, or null
+     * @param lotId   of the lot the vehicle got, or -1
+     */
+    public void end(Size vehicleSize, Size lotSize, int lotId, int gate, Outcome outcome) {
+        end();
+        if (shouldCommit()) {
+            this.vehicleSize = vehicleSize == null ? null : vehicleSize.name();
+            this.lotSize = lotSize == null ? null : lotSize.name();
+            this.lotId = lotId;
+            this.gate = gate;
+            this.outcome = outcome.name();
+            commit();
+        }
+    }
+}
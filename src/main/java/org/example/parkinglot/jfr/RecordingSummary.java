@@ -0,0 +1,125 @@
+package org.example.parkinglot.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.parkinglot.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarises the {@link ParkEvent}, {@link UnParkEvent} and {@link ReserveLotEvent} events of a Flight Recorder
+ * recording: latency percentiles per event type and size, counts per outcome, and the lots whose locks were retried
+ * the most. Other events in the recording are ignored, open it in JDK Mission Control to line the spikes up with GC
+ * pauses, safepoints and lock contention.
+ *
+ *     java -cp build/classes/java/main org.example.parkinglot.jfr.RecordingSummary recording.jfr
+ *
+ * Not a ThreadSafe class.
+ */
+public class RecordingSummary {
+
+    private static final int HOTSPOTS = 10;
+
+    /**
+     * Latencies by event label and size.
+     */
+    private final Map<String, Map<String, LatencyHistogram>> latencies = new TreeMap<>();
+    private final Map<String, Long> outcomes = new TreeMap<>();
+    /**
+     * Lock retries and reservations by lot, keyed by lot size and ID.
+     */
+    private final Map<String, long[]> lockRetries = new TreeMap<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: RecordingSummary <recording.jfr>");
+            System.exit(2);
+        }
+        System.out.print(summarize(Paths.get(args[0])));
+    }
+
+    /**
+     * @param recording a Flight Recorder file
+     * @return The summary as text
+     */
+    public static String summarize(Path recording) throws IOException {
+        RecordingSummary summary = new RecordingSummary();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                summary.add(file.readEvent());
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Adds an event of the recording, ignoring the events of other types.
+     */
+    public void add(RecordedEvent event) {
+        String name = event.getEventType().getName();
+        String size;
+        if (ParkEvent.NAME.equals(name)) {
+            size = event.getString("vehicleSize");
+        } else if (UnParkEvent.NAME.equals(name) || ReserveLotEvent.NAME.equals(name)) {
+            size = event.getString("lotSize");
+        } else {
+            return;
+        }
+        String label = event.getEventType().getLabel();
+        size = size == null ? "none" : size;
+        latencies.computeIfAbsent(label, k -> new TreeMap<>())
+                .computeIfAbsent(size, k -> new LatencyHistogram())
+                .record(event.getDuration().toNanos());
+        outcomes.merge(label + " " + size + " " + event.getString("outcome"), 1L, Long::sum);
+
+        if (ReserveLotEvent.NAME.equals(name) && event.getInt("lotId") >= 0) {
+            long[] lot = lockRetries.computeIfAbsent(size + " lot " + event.getInt("lotId"), k -> new long[2]);
+            lot[0] += event.getInt("lockRetries");
+            lot[1]++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-12s %-7s %9s %9s %9s %9s %9s%n",
+                "event", "size", "count", "p50 ns", "p99 ns", "p99.9 ns", "max ns"));
+        for (Map.Entry<String, Map<String, LatencyHistogram>> byEvent : latencies.entrySet()) {
+            for (Map.Entry<String, LatencyHistogram> bySize : byEvent.getValue().entrySet()) {
+                LatencyHistogram.Snapshot latency = bySize.getValue().snapshot();
+                text.append(String.format(Locale.ROOT, "%-12s %-7s %9d %9d %9d %9d %9d%n",
+                        byEvent.getKey(), bySize.getKey(), latency.getCount(), latency.getValueAtPercentile(50),
+                        latency.getValueAtPercentile(99), latency.getValueAtPercentile(99.9), latency.getMax()));
+            }
+        }
+
+        text.append(String.format(Locale.ROOT, "%nOutcomes:%n"));
+        for (Map.Entry<String, Long> outcome : outcomes.entrySet()) {
+            text.append(String.format(Locale.ROOT, "  %-40s %9d%n", outcome.getKey(), outcome.getValue()));
+        }
+
+        List<Map.Entry<String, long[]>> hotspots = new ArrayList<>();
+        for (Map.Entry<String, long[]> lot : lockRetries.entrySet()) {
+            if (lot.getValue()[0] > 0) {
+                hotspots.add(lot);
+            }
+        }
+        hotspots.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        text.append(String.format(Locale.ROOT, "%nLock retry hotspots:%n"));
+        if (hotspots.isEmpty()) {
+            text.append(String.format(Locale.ROOT, "  none%n"));
+        }
+        for (Map.Entry<String, long[]> lot : hotspots.subList(0, Math.min(HOTSPOTS, hotspots.size()))) {
+            text.append(String.format(Locale.ROOT, "  %-20s %9d retries over %d reservations%n",
+                    lot.getKey(), lot.getValue()[0], lot.getValue()[1]));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.parkinglot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.example.parkinglot.models.Size;
+
+/**
+ * Flight Recorder event for a single lot reservation by a {@link org.example.parkinglot.LotTracker}, i.e. one lot size
+ * tried for a park.
+ *
+ * Not a ThreadSafe class, every call creates its own event.
+ */
+@Name(ReserveLotEvent.NAME)
+@Label("Reserve Lot")
+@Category("Parking Lot")
+@Description("Lot reservation attempted by the LotTracker of one lot size")
+@StackTrace(false)
+public class ReserveLotEvent extends Event {
+
+    public static final String NAME = "org.example.parkinglot.ReserveLot";
+
+    /**
+     * A lot was reserved.
+     */
+    public static final String RESERVED = "RESERVED";
+    /**
+     * The vehicle does not fit the lots of the tracker.
+     */
+    public static final String SIZE_MISMATCH = "SIZE_MISMATCH";
+    /**
+     * The occupied count showed every lot taken, no lot was looked for.
+     */
+    public static final String FULL = "FULL";
+    /**
+     * The occupied count showed a free lot, but the free lot index had none left, another gate took it meanwhile.
+     */
+    public static final String NO_FREE_LOT = "NO_FREE_LOT";
+    /**
+     * The lot handed out by the free lot index could not be reserved in the lot store.
+     */
+    public static final String LOST_RACE = "LOST_RACE";
+
+    private static final EventType TYPE = EventType.getEventType(ReserveLotEvent.class);
+
+    @Label("Lot Size")
+    String lotSize;
+
+    @Label("Vehicle Size")
+    String vehicleSize;
+
+    @Label("Lot ID")
+    @Description("Lot handed out by the free lot index, -1 if none")
+    int lotId;
+
+    @Label("Gate")
+    int gate;
+
+    @Label("Lock Retries")
+    @Description("Failed compareAndSet attempts on the lock of the lot before it was taken")
+    int lockRetries;
+
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * @return A started event if a running recording has the event enabled, else null, see {@link ParkEvent#start()}
+     */
+    public static ReserveLotEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        ReserveLotEvent event = new ReserveLotEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param lockRetries failed attempts to lock the lot
+     */
+    public void setLockRetries(int lockRetries) {
+        this.lockRetries = lockRetries;
+    }
+
+    /**
+     * Ends and commits the event, unless it is shorter than the threshold of the recording.
+     *
+     * @param lotId   handed out by the free lot index, or -1
+     * @param outcome one of the outcome constants of this class
+     */
+    public void end(Size lotSize, Size vehicleSize, int lotId, int gate, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.lotSize = lotSize.name();
+            this.vehicleSize = vehicleSize == null ? null : vehicleSize.name();
+            this.lotId = lotId;
+            this.gate = gate;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
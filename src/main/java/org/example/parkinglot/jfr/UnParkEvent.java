@@ -0,0 +1,66 @@
+package org.example.parkinglot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.example.parkinglot.metrics.Outcome;
+import org.example.parkinglot.models.Size;
+
+/**
+ * Flight Recorder event for a {@link org.example.parkinglot.LotManager} unPark, packed or not, spanning the whole
+ * call.
+ *
+ * Not a ThreadSafe class, every call creates its own event.
+ */
+@Name(UnParkEvent.NAME)
+@Label("UnPark")
+@Category("Parking Lot")
+@Description("Ticket released or rejected by the LotManager")
+@StackTrace(false)
+public class UnParkEvent extends Event {
+
+    public static final String NAME = "org.example.parkinglot.UnPark";
+
+    private static final EventType TYPE = EventType.getEventType(UnParkEvent.class);
+
+    @Label("Lot Size")
+    String lotSize;
+
+    @Label("Lot ID")
+    int lotId;
+
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * @return A started event if a running recording has the event enabled, else null, see {@link ParkEvent#start()}
+     */
+    public static UnParkEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        UnParkEvent event = new UnParkEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the event, unless it is shorter than the threshold of the recording.
+     *
+     * @param lotSize named by the ticket, or null
+     * @param lotId   named by the ticket, or -1
+     */
+    public void end(Size lotSize, int lotId, Outcome outcome) {
+        end();
+        if (shouldCommit()) {
+            this.lotSize = lotSize == null ? null : lotSize.name();
+            this.lotId = lotId;
+            this.outcome = outcome.name();
+            commit();
+        }
+    }
+}
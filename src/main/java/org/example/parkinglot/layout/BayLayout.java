@@ -0,0 +1,170 @@
+package org.example.parkinglot.layout;
+
+import org.example.parkinglot.models.Size;
+
+import java.util.Arrays;
+
+/**
+ * Physical layout of a site: where every lot (bay) of every {@link Size} is, and where the entry gates are. Lots of a
+ * size are numbered in the order they were added, matching the lot IDs of the tracker of that size.
+ *
+ * Positions are a level plus x/y coordinates on that level, in any unit as long as it is the same everywhere. The
+ * distance between a gate and a bay is the walking distance |dx| + |dy| on the level plus a fixed distance per level
+ * changed, standing for the ramp. Zones are free labels such as a wing or a colour coded area.
+ *
+ * Immutable once built, hence ThreadSafe.
+ */
+public final class BayLayout {
+
+    private static final Size[] SIZES = Size.values();
+
+    private final int levelDistance;
+    private final int[] gateLevels;
+    private final int[] gateXs;
+    private final int[] gateYs;
+    private final int[][] zones;
+    private final int[][] levels;
+    private final int[][] xs;
+    private final int[][] ys;
+
+    private BayLayout(Builder builder) {
+        this.levelDistance = builder.levelDistance;
+        this.gateLevels = Arrays.copyOf(builder.gateLevels, builder.numberOfGates);
+        this.gateXs = Arrays.copyOf(builder.gateXs, builder.numberOfGates);
+        this.gateYs = Arrays.copyOf(builder.gateYs, builder.numberOfGates);
+        this.zones = new int[SIZES.length][];
+        this.levels = new int[SIZES.length][];
+        this.xs = new int[SIZES.length][];
+        this.ys = new int[SIZES.length][];
+        for (Size size : SIZES) {
+            int s = size.ordinal();
+            int count = builder.numberOfBays[s];
+            zones[s] = Arrays.copyOf(builder.zones[s], count);
+            levels[s] = Arrays.copyOf(builder.levels[s], count);
+            xs[s] = Arrays.copyOf(builder.xs[s], count);
+            ys[s] = Arrays.copyOf(builder.ys[s], count);
+        }
+    }
+
+    /**
+     * @param levelDistance distance added for every level between a gate and a bay
+     */
+    public static Builder builder(int levelDistance) {
+        if (levelDistance < 0) {
+            throw new IllegalArgumentException("levelDistance must not be negative");
+        }
+        return new Builder(levelDistance);
+    }
+
+    public int getNumberOfGates() {
+        return gateLevels.length;
+    }
+
+    public int getNumberOfBays(Size size) {
+        return levels[size.ordinal()].length;
+    }
+
+    public int getLevelDistance() {
+        return levelDistance;
+    }
+
+    public int getGateLevel(int gate) {
+        return gateLevels[gate];
+    }
+
+    public int getGateX(int gate) {
+        return gateXs[gate];
+    }
+
+    public int getGateY(int gate) {
+        return gateYs[gate];
+    }
+
+    public int getZone(Size size, int lotId) {
+        return zones[size.ordinal()][lotId];
+    }
+
+    public int getLevel(Size size, int lotId) {
+        return levels[size.ordinal()][lotId];
+    }
+
+    public int getX(Size size, int lotId) {
+        return xs[size.ordinal()][lotId];
+    }
+
+    public int getY(Size size, int lotId) {
+        return ys[size.ordinal()][lotId];
+    }
+
+    /**
+     * @return Distance from the gate to the lot, see the class comment
+     */
+    public long distance(int gate, Size size, int lotId) {
+        int s = size.ordinal();
+        return Math.abs((long) gateXs[gate] - xs[s][lotId]) + Math.abs((long) gateYs[gate] - ys[s][lotId])
+                + (long) levelDistance * Math.abs((long) gateLevels[gate] - levels[s][lotId]);
+    }
+
+    /**
+     * Collects gates and bays. Not a ThreadSafe class.
+     */
+    public static final class Builder {
+
+        private final int levelDistance;
+        private int numberOfGates;
+        private int[] gateLevels = new int[4];
+        private int[] gateXs = new int[4];
+        private int[] gateYs = new int[4];
+        private final int[] numberOfBays = new int[SIZES.length];
+        private final int[][] zones = new int[SIZES.length][16];
+        private final int[][] levels = new int[SIZES.length][16];
+        private final int[][] xs = new int[SIZES.length][16];
+        private final int[][] ys = new int[SIZES.length][16];
+
+        private Builder(int levelDistance) {
+            this.levelDistance = levelDistance;
+        }
+
+        /**
+         * @return ID of the gate, numbered from 0 in the order gates are added
+         */
+        public int addGate(int level, int x, int y) {
+            if (numberOfGates == gateLevels.length) {
+                gateLevels = Arrays.copyOf(gateLevels, numberOfGates * 2);
+                gateXs = Arrays.copyOf(gateXs, numberOfGates * 2);
+                gateYs = Arrays.copyOf(gateYs, numberOfGates * 2);
+            }
+            gateLevels[numberOfGates] = level;
+            gateXs[numberOfGates] = x;
+            gateYs[numberOfGates] = y;
+            return numberOfGates++;
+        }
+
+        /**
+         * @return ID of the lot among the lots of its size, numbered from 0 in the order bays are added
+         */
+        public int addBay(Size size, int zone, int level, int x, int y) {
+            if (size == null) {
+                throw new IllegalArgumentException("size must not be null");
+            }
+            int s = size.ordinal();
+            int lotId = numberOfBays[s];
+            if (lotId == levels[s].length) {
+                zones[s] = Arrays.copyOf(zones[s], lotId * 2);
+                levels[s] = Arrays.copyOf(levels[s], lotId * 2);
+                xs[s] = Arrays.copyOf(xs[s], lotId * 2);
+                ys[s] = Arrays.copyOf(ys[s], lotId * 2);
+            }
+            zones[s][lotId] = zone;
+            levels[s][lotId] = level;
+            xs[s][lotId] = x;
+            ys[s][lotId] = y;
+            numberOfBays[s]++;
+            return lotId;
+        }
+
+        public BayLayout build() {
+            return new BayLayout(this);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.parkinglot.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, laid out like an HdrHistogram: values below {@link #SUB_BUCKETS} get a
+ * bucket each, every larger power of two is split into {@link #SUB_BUCKETS} / 2 buckets of equal width. Every
+ * recorded value is thus off by less than 1 / 16 (about 6%) of itself. Values above {@link #MAX_VALUE} (about 18
+ * minutes) count as {@link #MAX_VALUE}.
+ *
+ * Recording is one atomic increment of the bucket plus one atomic add to the sum, without locks or allocation.
+ *
+ * ThreadSafe class. A {@link Snapshot} taken while values are being recorded may miss the latest ones.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_BITS = SUB_BUCKET_BITS - 1;
+    private static final int MAX_VALUE_BITS = 40;
+
+    public static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    private static final int NUMBER_OF_BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * @param nanos latency, negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        counts.incrementAndGet(bucketOf(value));
+        sum.addAndGet(value);
+    }
+
+    static int bucketOf(long value) {
+        int shift = (63 - Long.numberOfLeadingZeros(value | (SUB_BUCKETS - 1))) - HALF_BITS;
+        return (shift << HALF_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return Smallest value counted in the bucket
+     */
+    static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> HALF_BITS) - 1;
+        return (long) (bucket - (shift << HALF_BITS)) << shift;
+    }
+
+    /**
+     * @return Largest value counted in the bucket
+     */
+    static long highestValueOf(int bucket) {
+        return bucket + 1 == NUMBER_OF_BUCKETS ? MAX_VALUE : lowestValueOf(bucket + 1) - 1;
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[NUMBER_OF_BUCKETS];
+        for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+            copy[bucket] = counts.get(bucket);
+        }
+        return new Snapshot(copy, sum.get());
+    }
+
+    /**
+     * Copy of the bucket counts at one point in time. Immutable, hence ThreadSafe.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(long[] counts, long sum) {
+            this.counts = counts;
+            long total = 0;
+            for (long bucketCount : counts) {
+                total += bucketCount;
+            }
+            this.count = total;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return Sum of all recorded values in nanoseconds
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return Largest value of the bucket holding the given percentile of the recorded values, i.e. at least
+         * percentile percent of the values are less or equal, or 0 if nothing was recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return highestValueOf(bucket);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return Largest value of the highest bucket with a recorded value, or 0 if nothing was recorded
+         */
+        public long getMax() {
+            for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+                if (counts[bucket] != 0) {
+                    return highestValueOf(bucket);
+                }
+            }
+            return 0;
+        }
+    }
+}
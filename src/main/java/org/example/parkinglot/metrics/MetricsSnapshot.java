@@ -0,0 +1,126 @@
+package org.example.parkinglot.metrics;
+
+import org.example.parkinglot.models.Size;
+
+import java.util.Locale;
+
+/**
+ * Copy of the {@link LotMetrics} of a {@link org.example.parkinglot.LotManager} at one point in time, together with
+ * the number of lots and lots occupied of every size. {@link #toText()} renders it in the Prometheus text exposition
+ * format, so it can be served as is to a scraper.
+ *
+ * Immutable, hence ThreadSafe.
+ */
+public final class MetricsSnapshot {
+
+    private static final Size[] SIZES = Size.values();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    private final long[] counts;
+    private final LatencyHistogram.Snapshot[] latencies;
+    private final int sampleInterval;
+    private final int[] lotsOccupied;
+    private final int[] lots;
+
+    MetricsSnapshot(long[] counts, LatencyHistogram.Snapshot[] latencies, int sampleInterval, int[] lotsOccupied,
+                    int[] lots) {
+        this.counts = counts;
+        this.latencies = latencies;
+        this.sampleInterval = sampleInterval;
+        this.lotsOccupied = lotsOccupied;
+        this.lots = lots;
+    }
+
+    /**
+     * @param size of the vehicle or lot, or null for calls without a size
+     */
+    public long getCount(Operation operation, Size size, Outcome outcome) {
+        return counts[LotMetrics.counter(operation, size, outcome)];
+    }
+
+    /**
+     * @param size of the vehicle or lot, or null for calls without a size
+     * @return Latencies of the timed calls, a sample of 1 in {@link #getSampleInterval()} calls
+     */
+    public LatencyHistogram.Snapshot getLatency(Operation operation, Size size) {
+        return latencies[LotMetrics.slot(operation, size)];
+    }
+
+    /**
+     * @see LotMetrics#getSampleInterval()
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    public int getNumberOfLotsOccupied(Size size) {
+        return lotsOccupied[size.ordinal()];
+    }
+
+    public int getNumberOfLots(Size size) {
+        return lots[size.ordinal()];
+    }
+
+    /**
+     * @return The snapshot in the Prometheus text exposition format: a counter per operation, size and outcome, a
+     * latency summary per operation and size, the sample interval of the summaries and the occupancy gauges per size.
+     * The count and sum of a summary cover the timed calls only. Calls without a size are labelled size="none".
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder(16 * 1024);
+        text.append("# HELP parkinglot_operations_total Parks and unParks by size and outcome.\n");
+        text.append("# TYPE parkinglot_operations_total counter\n");
+        for (Operation operation : Operation.values()) {
+            for (int s = 0; s <= SIZES.length; s++) {
+                Size size = s < SIZES.length ? SIZES[s] : null;
+                for (Outcome outcome : Outcome.values()) {
+                    text.append("parkinglot_operations_total{operation=\"").append(label(operation))
+                            .append("\",size=\"").append(label(size))
+                            .append("\",outcome=\"").append(label(outcome)).append("\"} ")
+                            .append(getCount(operation, size, outcome)).append('\n');
+                }
+            }
+        }
+
+        text.append("# HELP parkinglot_operation_latency_nanoseconds Latency of sampled parks and unParks by size.\n");
+        text.append("# TYPE parkinglot_operation_latency_nanoseconds summary\n");
+        for (Operation operation : Operation.values()) {
+            for (int s = 0; s <= SIZES.length; s++) {
+                Size size = s < SIZES.length ? SIZES[s] : null;
+                LatencyHistogram.Snapshot latency = getLatency(operation, size);
+                String labels = "operation=\"" + label(operation) + "\",size=\"" + label(size) + "\"";
+                for (double quantile : QUANTILES) {
+                    text.append("parkinglot_operation_latency_nanoseconds{").append(labels)
+                            .append(",quantile=\"").append(quantile).append("\"} ")
+                            .append(latency.getValueAtPercentile(quantile * 100)).append('\n');
+                }
+                text.append("parkinglot_operation_latency_nanoseconds_sum{").append(labels).append("} ")
+                        .append(latency.getSum()).append('\n');
+                text.append("parkinglot_operation_latency_nanoseconds_count{").append(labels).append("} ")
+                        .append(latency.getCount()).append('\n');
+            }
+        }
+
+        text.append("# HELP parkinglot_operation_latency_sample_interval 1 in how many calls is timed.\n");
+        text.append("# TYPE parkinglot_operation_latency_sample_interval gauge\n");
+        text.append("parkinglot_operation_latency_sample_interval ").append(sampleInterval).append('\n');
+
+        text.append("# HELP parkinglot_lots_occupied Lots currently occupied by size.\n");
+        text.append("# TYPE parkinglot_lots_occupied gauge\n");
+        for (Size size : SIZES) {
+            text.append("parkinglot_lots_occupied{size=\"").append(label(size)).append("\"} ")
+                    .append(getNumberOfLotsOccupied(size)).append('\n');
+        }
+        text.append("# HELP parkinglot_lots Lots by size.\n");
+        text.append("# TYPE parkinglot_lots gauge\n");
+        for (Size size : SIZES) {
+            text.append("parkinglot_lots{size=\"").append(label(size)).append("\"} ")
+                    .append(getNumberOfLots(size)).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String label(Enum<?> value) {
+        return value == null ? "none" : value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,8 @@
+package org.example.parkinglot.metrics;
+
+/**
+ * Operations of the {@link org.example.parkinglot.LotManager} recorded by {@link LotMetrics}.
+ */
+public enum Operation {
+    PARK, UNPARK
+}
@@ -0,0 +1,31 @@
+package org.example.parkinglot.metrics;
+
+/**
+ * How a park or unPark ended, as recorded by {@link LotMetrics}.
+ */
+public enum Outcome {
+    /**
+     * The vehicle got a lot, or the ticket released its lot.
+     */
+    SUCCESS,
+    /**
+     * Park only: every lot size the allocation policy offered the vehicle was full.
+     */
+    FULL,
+    /**
+     * Park only: the vehicle is parked already.
+     */
+    ALREADY_PARKED,
+    /**
+     * The vehicle or ticket has no size, so no lot size can take it.
+     */
+    SIZE_MISMATCH,
+    /**
+     * UnPark only: the ticket is malformed, forged or from an earlier occupancy of its lot.
+     */
+    INVALID_TICKET,
+    /**
+     * UnPark only: the ticket names a lot ID the tracker of its size does not have.
+     */
+    UNKNOWN_LOT
+}
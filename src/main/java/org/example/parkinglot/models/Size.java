@@ -1,5 +1,25 @@
 package org.example.parkinglot.models;
 
+/**
+ * Sizes of lots and vehicles, declared from the largest to the smallest.
+ */
 public enum Size {
     LARGE, MEDIUM,SMALL;
+
+    private static final Size[] SIZES = values();
+
+    /**
+     * @param vehicleSize of the vehicle
+     * @return true if a vehicle of the given size fits a lot of this size, i.e. the lot is at least as large
+     */
+    public boolean canHold(Size vehicleSize) {
+        return vehicleSize != null && ordinal() <= vehicleSize.ordinal();
+    }
+
+    /**
+     * @return The next larger size, or null for the largest size
+     */
+    public Size larger() {
+        return ordinal() == 0 ? null : SIZES[ordinal() - 1];
+    }
 }
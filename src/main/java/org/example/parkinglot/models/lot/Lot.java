@@ -11,9 +11,14 @@ public class Lot {
     private final int id;
     private final Size size;
 
-     private Optional<Vehicle> vehicle = Optional.empty();
+     private volatile Vehicle vehicle;
 
-    private LotParkingStatus parkingStatus = LotParkingStatus.AVAILABLE;
+    private volatile LotParkingStatus parkingStatus = LotParkingStatus.AVAILABLE;
+
+    /**
+     * Incremented on every release, so that each occupancy of the lot has its own generation.
+     */
+    private volatile int generation;
 
     public Lot(int id, Size size) {
         if (size == null) {
@@ -23,29 +28,54 @@ public class Lot {
         this.size = size;
     }
 
+    /**
+     * Detached copy of a lot's state, for storage backends which do not keep {@link Lot} objects. The occupant is not
+     * known to such backends, so {@link #getVehicle()} of the copy is always empty. Changing the copy has no effect on
+     * the backend.
+     */
+    public static Lot snapshot(int id, Size size, boolean occupied, int generation) {
+        Lot lot = new Lot(id, size);
+        lot.generation = generation;
+        if (occupied) {
+            lot.parkingStatus = LotParkingStatus.OCCUPIED;
+        }
+        return lot;
+    }
+
     public int getId() {
         return id;
     }
 
+    public Size getSize() {
+        return size;
+    }
+
     public boolean isAvailable() {
         return parkingStatus == LotParkingStatus.AVAILABLE;
     }
 
     public Optional<Vehicle> getVehicle() {
-        return vehicle;
+        return Optional.ofNullable(vehicle);
+    }
+
+    /**
+     * @return Generation of the current or, if available, the next occupancy of this lot
+     */
+    public int getGeneration() {
+        return generation;
     }
 
     /**
      * Reserves itself for the provided vehicle
      *
      * @param vehicle to be parked
-     * @return true if lot is unoccupied and matches the vehicle's size, otherwise false
+     * @return true if lot is unoccupied and large enough for the vehicle, otherwise false
      */
     public boolean reserve(Vehicle vehicle) {
-        if (vehicle == null || !isAvailable() || size != vehicle.getSize()) {
+        if (vehicle == null || !isAvailable() || !size.canHold(vehicle.getSize())) {
             return false;
         }
-        this.vehicle = Optional.of(vehicle);
+        this.vehicle = vehicle;
         parkingStatus = LotParkingStatus.OCCUPIED;
         return true;
     }
@@ -55,19 +85,52 @@ public class Lot {
      * ensure it cannot be reused multiple times to unpark.
      *
      * @param ticket which was issued for this lot when vehicle was parked
-     * @return true if lot is occupied by the same vehicle, otherwise false
+     * @return true if lot is occupied by the same vehicle in the same generation, otherwise false
      */
     public boolean release(Ticket ticket) {
         if (ticket == null || isAvailable() || !getVehicle().isPresent()
-                || ticket.getLotId() != getId() || !getVehicle().get().id().equals(ticket.getVehicleId())
-                || size != getVehicle().get().getSize()) {
+                || ticket.getLotId() != getId() || ticket.getGeneration() != getGeneration()
+                || !getVehicle().get().id().equals(ticket.getVehicleId())
+                || !size.canHold(getVehicle().get().getSize())) {
             return false;
         }
 
-        this.vehicle = Optional.empty();
-        parkingStatus = LotParkingStatus.AVAILABLE;
+        vacate();
         ticket.invalidateTicket();
         return true;
     }
 
+    /**
+     * Releases the parked vehicle without a {@link Ticket}, for callers which only kept the generation the lot was
+     * reserved in.
+     *
+     * @param generation of the occupancy to end, as returned by {@link #getGeneration()} after reserving
+     * @return true if lot is occupied in the given generation, otherwise false
+     */
+    public boolean release(int generation) {
+        if (isAvailable() || generation != getGeneration()) {
+            return false;
+        }
+        vacate();
+        return true;
+    }
+
+    /**
+     * Overwrites the state of this lot, e.g. when restoring it from a log or a snapshot.
+     *
+     * @param vehicle    occupying the lot, or null if the lot is available
+     * @param generation of the lot
+     */
+    public void restore(Vehicle vehicle, int generation) {
+        this.vehicle = vehicle;
+        this.generation = generation;
+        parkingStatus = vehicle == null ? LotParkingStatus.AVAILABLE : LotParkingStatus.OCCUPIED;
+    }
+
+    private void vacate() {
+        this.vehicle = null;
+        generation++;
+        parkingStatus = LotParkingStatus.AVAILABLE;
+    }
+
 }
\ No newline at end of file
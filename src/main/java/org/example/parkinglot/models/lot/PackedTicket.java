@@ -0,0 +1,55 @@
+package org.example.parkinglot.models.lot;
+
+import org.example.parkinglot.models.Size;
+
+/**
+ * Encodes a ticket as a single primitive long, for the allocation free park/unPark API.
+ *
+ * Layout, from the most significant bit: 1 unused bit (packed tickets are never negative), 2 bits of {@link Size}
+ * ordinal, 30 bits of lot generation and 31 bits of lot ID. The generation is truncated to 30 bits, which is enough to
+ * tell apart every occupancy of a lot a ticket could realistically be presented for.
+ */
+public final class PackedTicket {
+
+    /**
+     * Returned instead of a packed ticket when no lot could be reserved.
+     */
+    public static final long NONE = -1L;
+
+    public static final int GENERATION_MASK = (1 << 30) - 1;
+
+    private static final int LOT_ID_BITS = 31;
+    private static final int GENERATION_BITS = 30;
+    private static final long LOT_ID_MASK = (1L << LOT_ID_BITS) - 1;
+    private static final Size[] SIZES = Size.values();
+
+    private PackedTicket() {}
+
+    public static long pack(Size size, int lotId, int generation) {
+        return ((long) size.ordinal() << (LOT_ID_BITS + GENERATION_BITS))
+                | ((long) (generation & GENERATION_MASK) << LOT_ID_BITS)
+                | (lotId & LOT_ID_MASK);
+    }
+
+    /**
+     * @return true if the value could have been returned by {@link #pack(Size, int, int)}
+     */
+    public static boolean isValid(long packedTicket) {
+        return packedTicket >= 0 && (packedTicket >>> (LOT_ID_BITS + GENERATION_BITS)) < SIZES.length;
+    }
+
+    public static Size size(long packedTicket) {
+        return SIZES[(int) (packedTicket >>> (LOT_ID_BITS + GENERATION_BITS))];
+    }
+
+    public static int lotId(long packedTicket) {
+        return (int) (packedTicket & LOT_ID_MASK);
+    }
+
+    /**
+     * @return Generation of the lot occupancy, truncated to {@link #GENERATION_MASK}
+     */
+    public static int generation(long packedTicket) {
+        return (int) (packedTicket >>> LOT_ID_BITS) & GENERATION_MASK;
+    }
+}
@@ -0,0 +1,253 @@
+package org.example.parkinglot.models.lot;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.VehicleKey;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Self-contained ticket which an exit gate can check without access to the tracker state, e.g. on another node or
+ * after a restart. Forged or tampered tickets fail the signature check before any lot is looked at, and a ticket for
+ * an earlier occupancy of a lot is rejected by the lot generation when it is released as a {@link PackedTicket}.
+ *
+ * Layout of the {@link #ENCODED_BYTES} bytes: version, {@link Size} ordinal, lot ID, lot generation,
+ * {@link VehicleKey} of the vehicle, issue time in epoch milliseconds, and the first {@link #TAG_BYTES} bytes of an
+ * HMAC-SHA256 over everything before it. The Base64 form (URL alphabet, no padding) takes {@link #BASE64_CHARS} chars.
+ *
+ * The HMAC is computed on a per thread {@link MessageDigest} rather than a {@link javax.crypto.Mac}, whose doFinal
+ * allocates, so that encoding and verifying into caller supplied buffers allocate nothing.
+ *
+ * ThreadSafe class.
+ */
+public final class SignedTicketCodec {
+
+    public static final int ENCODED_BYTES = 42;
+    public static final int BASE64_CHARS = 56;
+    public static final int TAG_BYTES = 16;
+
+    static final byte VERSION = 1;
+
+    private static final int SIZE_OFFSET = 1;
+    private static final int LOT_ID_OFFSET = 2;
+    private static final int GENERATION_OFFSET = 6;
+    private static final int VEHICLE_KEY_OFFSET = 10;
+    private static final int ISSUED_AT_OFFSET = 18;
+    private static final int TAG_OFFSET = 26;
+
+    private static final int BLOCK_BYTES = 64;
+    private static final int DIGEST_BYTES = 32;
+    private static final int MIN_KEY_BYTES = 32;
+
+    private static final Size[] SIZES = Size.values();
+
+    private static final byte[] BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+                    .getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        for (int i = 0; i < BASE64_ALPHABET.length; i++) {
+            BASE64_VALUES[BASE64_ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private final byte[] innerPad = new byte[BLOCK_BYTES];
+    private final byte[] outerPad = new byte[BLOCK_BYTES];
+    private final ThreadLocal<Signer> signers = ThreadLocal.withInitial(Signer::new);
+
+    /**
+     * @param key secret shared by every gate issuing or checking tickets, at least 32 bytes
+     */
+    public SignedTicketCodec(byte[] key) {
+        if (key == null || key.length < MIN_KEY_BYTES) {
+            throw new IllegalArgumentException("key must have at least " + MIN_KEY_BYTES + " bytes");
+        }
+        byte[] blockKey = key.length > BLOCK_BYTES ? Signer.newDigest().digest(key) : key;
+        for (int i = 0; i < BLOCK_BYTES; i++) {
+            byte b = i < blockKey.length ? blockKey[i] : 0;
+            innerPad[i] = (byte) (b ^ 0x36);
+            outerPad[i] = (byte) (b ^ 0x5c);
+        }
+    }
+
+    /**
+     * Writes a signed ticket.
+     *
+     * @param packedTicket   issued for the vehicle, see {@link PackedTicket}
+     * @param vehicleId      of the parked vehicle
+     * @param issuedAtMillis issue time in epoch milliseconds
+     * @param out            receiving {@link #ENCODED_BYTES} bytes from the offset on
+     * @return Number of bytes written
+     */
+    public int encode(long packedTicket, String vehicleId, long issuedAtMillis, byte[] out, int offset) {
+        if (!PackedTicket.isValid(packedTicket) || vehicleId == null) {
+            throw new IllegalArgumentException("a valid packed ticket and vehicle ID are required");
+        }
+        out[offset] = VERSION;
+        out[offset + SIZE_OFFSET] = (byte) PackedTicket.size(packedTicket).ordinal();
+        putInt(out, offset + LOT_ID_OFFSET, PackedTicket.lotId(packedTicket));
+        putInt(out, offset + GENERATION_OFFSET, PackedTicket.generation(packedTicket));
+        putLong(out, offset + VEHICLE_KEY_OFFSET, VehicleKey.of(vehicleId));
+        putLong(out, offset + ISSUED_AT_OFFSET, issuedAtMillis);
+        Signer signer = signers.get();
+        signer.sign(innerPad, outerPad, out, offset);
+        System.arraycopy(signer.tag, 0, out, offset + TAG_OFFSET, TAG_BYTES);
+        return ENCODED_BYTES;
+    }
+
+    /**
+     * Same as {@link #encode(long, String, long, byte[], int)}, written as {@link #BASE64_CHARS} ASCII chars.
+     */
+    public int encodeBase64(long packedTicket, String vehicleId, long issuedAtMillis, byte[] out, int offset) {
+        Signer signer = signers.get();
+        encode(packedTicket, vehicleId, issuedAtMillis, signer.ticket, 0);
+        byte[] ticket = signer.ticket;
+        for (int i = 0, o = offset; i < ENCODED_BYTES; i += 3, o += 4) {
+            int bits = (ticket[i] & 0xFF) << 16 | (ticket[i + 1] & 0xFF) << 8 | (ticket[i + 2] & 0xFF);
+            out[o] = BASE64_ALPHABET[bits >>> 18];
+            out[o + 1] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            out[o + 2] = BASE64_ALPHABET[(bits >>> 6) & 0x3F];
+            out[o + 3] = BASE64_ALPHABET[bits & 0x3F];
+        }
+        return BASE64_CHARS;
+    }
+
+    /**
+     * Checks the signature of a ticket.
+     *
+     * @param in holding {@link #ENCODED_BYTES} bytes of ticket from the offset on
+     * @return The {@link PackedTicket} to unPark with, or {@link PackedTicket#NONE} if the ticket is not genuine
+     */
+    public long verify(byte[] in, int offset) {
+        if (in == null || offset < 0 || in.length - offset < ENCODED_BYTES || in[offset] != VERSION
+                || (in[offset + SIZE_OFFSET] & 0xFF) >= SIZES.length) {
+            return PackedTicket.NONE;
+        }
+        Signer signer = signers.get();
+        signer.sign(innerPad, outerPad, in, offset);
+        int difference = 0;
+        for (int i = 0; i < TAG_BYTES; i++) {
+            difference |= signer.tag[i] ^ in[offset + TAG_OFFSET + i];
+        }
+        int lotId = getInt(in, offset + LOT_ID_OFFSET);
+        if (difference != 0 || lotId < 0) {
+            return PackedTicket.NONE;
+        }
+        return PackedTicket.pack(SIZES[in[offset + SIZE_OFFSET]], lotId, getInt(in, offset + GENERATION_OFFSET));
+    }
+
+    /**
+     * Same as {@link #verify(byte[], int)}, also rejecting tickets issued more than maxAgeMillis before or later than
+     * nowMillis.
+     */
+    public long verify(byte[] in, int offset, long nowMillis, long maxAgeMillis) {
+        long packedTicket = verify(in, offset);
+        if (packedTicket == PackedTicket.NONE) {
+            return PackedTicket.NONE;
+        }
+        long age = nowMillis - issuedAtMillis(in, offset);
+        return age < 0 || age > maxAgeMillis ? PackedTicket.NONE : packedTicket;
+    }
+
+    /**
+     * Checks the signature of a ticket in Base64 form, see {@link #verify(byte[], int)}.
+     *
+     * @param in holding {@link #BASE64_CHARS} ASCII chars from the offset on
+     */
+    public long verifyBase64(byte[] in, int offset) {
+        if (in == null || offset < 0 || in.length - offset < BASE64_CHARS) {
+            return PackedTicket.NONE;
+        }
+        byte[] ticket = signers.get().ticket;
+        for (int i = offset, o = 0; o < ENCODED_BYTES; i += 4, o += 3) {
+            int bits = 0;
+            for (int j = 0; j < 4; j++) {
+                int c = in[i + j];
+                int value = c >= 0 && c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+                if (value < 0) {
+                    return PackedTicket.NONE;
+                }
+                bits = bits << 6 | value;
+            }
+            ticket[o] = (byte) (bits >>> 16);
+            ticket[o + 1] = (byte) (bits >>> 8);
+            ticket[o + 2] = (byte) bits;
+        }
+        return verify(ticket, 0);
+    }
+
+    /**
+     * @return Issue time of a ticket in epoch milliseconds, only meaningful once the ticket is verified
+     */
+    public static long issuedAtMillis(byte[] in, int offset) {
+        return getLong(in, offset + ISSUED_AT_OFFSET);
+    }
+
+    /**
+     * @return true if the ticket was issued for the vehicle with this ID, e.g. as read by a plate camera. Only
+     * meaningful once the ticket is verified.
+     */
+    public static boolean isIssuedFor(byte[] in, int offset, String vehicleId) {
+        return vehicleId != null && getLong(in, offset + VEHICLE_KEY_OFFSET) == VehicleKey.of(vehicleId);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        putInt(bytes, offset, (int) (value >>> 32));
+        putInt(bytes, offset + 4, (int) value);
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8
+                | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        return (long) getInt(bytes, offset) << 32 | (getInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Per thread HMAC-SHA256 state and scratch buffers.
+     */
+    private static final class Signer {
+        private final MessageDigest digest = newDigest();
+        private final byte[] inner = new byte[DIGEST_BYTES];
+        private final byte[] tag = new byte[DIGEST_BYTES];
+        private final byte[] ticket = new byte[ENCODED_BYTES];
+
+        static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+            }
+        }
+
+        /**
+         * Computes the HMAC of the signed part of a ticket into {@link #tag}.
+         */
+        void sign(byte[] innerPad, byte[] outerPad, byte[] ticket, int offset) {
+            try {
+                digest.update(innerPad, 0, BLOCK_BYTES);
+                digest.update(ticket, offset, TAG_OFFSET);
+                digest.digest(inner, 0, DIGEST_BYTES);
+                digest.update(outerPad, 0, BLOCK_BYTES);
+                digest.update(inner, 0, DIGEST_BYTES);
+                digest.digest(tag, 0, DIGEST_BYTES);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
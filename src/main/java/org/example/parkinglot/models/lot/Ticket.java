@@ -3,20 +3,62 @@ package org.example.parkinglot.models.lot;
 import org.example.parkinglot.exception.CannotIssueTicketException;
 import org.example.parkinglot.models.Size;
 
+import java.time.Instant;
+
 public class Ticket {
+
+    /**
+     * Issue time of a ticket issued without a clock, e.g. before billing was enabled, see
+     * {@link #getIssuedAtMillis()}.
+     */
+    public static final long NOT_STAMPED = 0L;
+
     private final int lotId;
     private final String vehicleId;
     private final Size vehicleSize;
+    private final Size lotSize;
+    private final int generation;
+    private final long issuedAtMillis;
 
-    private TicketStatus status = TicketStatus.VALID;
+    private volatile TicketStatus status = TicketStatus.VALID;
 
     public Ticket(int lotId, String vehicleId, Size vehicleSize) throws CannotIssueTicketException {
-        if (vehicleId == null || vehicleId.trim().isEmpty() || vehicleSize == null) {
+        this(lotId, vehicleId, vehicleSize, 0);
+    }
+
+    /**
+     * @param generation of the lot occupancy this ticket was issued for, see {@link Lot#getGeneration()}
+     */
+    public Ticket(int lotId, String vehicleId, Size vehicleSize, int generation) throws CannotIssueTicketException {
+        this(lotId, vehicleId, vehicleSize, vehicleSize, generation);
+    }
+
+    /**
+     * @param lotSize    of the lot the vehicle was parked in, larger than vehicleSize if it overflowed
+     * @param generation of the lot occupancy this ticket was issued for, see {@link Lot#getGeneration()}
+     */
+    public Ticket(int lotId, String vehicleId, Size vehicleSize, Size lotSize, int generation)
+            throws CannotIssueTicketException {
+        this(lotId, vehicleId, vehicleSize, lotSize, generation, NOT_STAMPED);
+    }
+
+    /**
+     * @param lotSize        of the lot the vehicle was parked in, larger than vehicleSize if it overflowed
+     * @param generation     of the lot occupancy this ticket was issued for, see {@link Lot#getGeneration()}
+     * @param issuedAtMillis time the vehicle was parked, in milliseconds since the epoch
+     */
+    public Ticket(int lotId, String vehicleId, Size vehicleSize, Size lotSize, int generation, long issuedAtMillis)
+            throws CannotIssueTicketException {
+        if (vehicleId == null || vehicleId.trim().isEmpty() || vehicleSize == null || lotSize == null
+                || !lotSize.canHold(vehicleSize)) {
             throw new CannotIssueTicketException();
         }
         this.lotId = lotId;
         this.vehicleId = vehicleId;
         this.vehicleSize = vehicleSize;
+        this.lotSize = lotSize;
+        this.generation = generation;
+        this.issuedAtMillis = issuedAtMillis;
     }
 
     public int getLotId() {
@@ -31,6 +73,32 @@ public class Ticket {
         return vehicleSize;
     }
 
+    /**
+     * @return Size of the lot the vehicle was parked in, which decides where the ticket is handed back
+     */
+    public Size getLotSize() {
+        return lotSize;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return Time the vehicle was parked, in milliseconds since the epoch, see
+     * {@link org.example.parkinglot.billing.MonotonicClock}, or {@link #NOT_STAMPED} if it was issued without a clock
+     */
+    public long getIssuedAtMillis() {
+        return issuedAtMillis;
+    }
+
+    public Instant getIssuedAt() {
+        return Instant.ofEpochMilli(issuedAtMillis);
+    }
+
+    /**
+     * Package-private so that only a released {@link Lot}, or a store through {@link TicketAccess}, invalidates it.
+     */
     boolean invalidateTicket() {
         status = TicketStatus.INVALID;
         return true;
@@ -0,0 +1,24 @@
+package org.example.parkinglot.models.lot;
+
+/**
+ * Lets {@link org.example.parkinglot.store.LotStore} implementations which keep no {@link Lot} objects do the part of
+ * {@link Lot#release(Ticket)} they cannot do themselves: invalidating the ticket of the released lot. Not meant for
+ * clients, which hand tickets back through {@link org.example.parkinglot.LotManager#unPark(Ticket)}.
+ */
+public final class TicketAccess {
+
+    private TicketAccess() {}
+
+    /**
+     * @param ticket     presented for the released lot
+     * @param lotId      of the released lot
+     * @param generation of the occupancy which ended
+     * @return true if the ticket was issued for that occupancy and is now invalid, false if it was left alone
+     */
+    public static boolean invalidateReleased(Ticket ticket, int lotId, int generation) {
+        if (ticket.getLotId() != lotId || ticket.getGeneration() != generation) {
+            return false;
+        }
+        return ticket.invalidateTicket();
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.parkinglot.models.vehicle;
+
+/**
+ * 64 bit key derived from a vehicle ID, for storing and comparing vehicles without keeping their ID strings around.
+ * Two different IDs may share a key, so keys must only be used together with another check such as a lot generation.
+ */
+public final class VehicleKey {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private VehicleKey() {}
+
+    /**
+     * @param vehicleId of the vehicle
+     * @return FNV-1a hash of the ID, computed without allocating
+     */
+    public static long of(String vehicleId) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < vehicleId.length(); i++) {
+            hash ^= vehicleId.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
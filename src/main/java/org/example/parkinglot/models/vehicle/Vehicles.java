@@ -0,0 +1,25 @@
+package org.example.parkinglot.models.vehicle;
+
+import org.example.parkinglot.models.Size;
+
+/**
+ * Creates the {@link Vehicle} type matching a {@link Size}, for code which only knows a vehicle's ID and size, such
+ * as log replay.
+ */
+public final class Vehicles {
+
+    private Vehicles() {}
+
+    public static Vehicle of(Size size, String id) {
+        switch (size) {
+            case SMALL:
+                return new Bike(id);
+            case MEDIUM:
+                return new Car(id);
+            case LARGE:
+                return new Truck(id);
+            default:
+                throw new IllegalArgumentException("Unknown size " + size);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.parkinglot.persistence;
+
+/**
+ * When the {@link WriteAheadLog} forces appended records to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every park/unPark waits until its record has been fsynced. Records appended while an fsync is running are
+     * committed together by the next one (group commit).
+     */
+    EVERY_COMMIT,
+    /**
+     * Records are written and fsynced in the background every sync interval. A crash loses at most one interval.
+     */
+    INTERVAL,
+    /**
+     * Records are written in the background every sync interval and never fsynced, the OS decides when they reach
+     * the disk. Survives a process crash but not a power loss.
+     */
+    NEVER
+}
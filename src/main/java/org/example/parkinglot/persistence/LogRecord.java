@@ -0,0 +1,198 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.LotTrackerListener;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.example.parkinglot.models.vehicle.Vehicles;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary encoding of the park/unPark records of the {@link WriteAheadLog}, and of the lots added, retired and reopened
+ * in between.
+ *
+ * Every record is a 12 byte header (type, sizes, lot ID, generation, vehicle ID length), the vehicle ID in
+ * modified UTF-8 (reserve records only) and a CRC32C of everything before it. The sizes byte holds the lot size
+ * ordinal in its low 4 bits and, for a vehicle parked in a larger lot, the vehicle size ordinal + 1 in its high 4
+ * bits. A record whose checksum does not match, typically one torn by a crash during the write, marks the end of the
+ * log.
+ *
+ * Records of lots added hold the new number of lots in place of the lot ID, records of lots retired or reopened the
+ * range of lots in place of the lot ID and the generation.
+ */
+final class LogRecord {
+
+    static final byte RESERVED = 1;
+    static final byte RELEASED = 2;
+    static final byte LOTS_ADDED = 3;
+    static final byte LOTS_RETIRED = 4;
+    static final byte LOTS_REOPENED = 5;
+
+    static final int HEADER_BYTES = 12;
+    static final int CHECKSUM_BYTES = 4;
+    static final int MAX_VEHICLE_ID_BYTES = 0xFFFF;
+    static final int MAX_RECORD_BYTES = HEADER_BYTES + MAX_VEHICLE_ID_BYTES + CHECKSUM_BYTES;
+
+    private static final Size[] SIZES = Size.values();
+
+    private LogRecord() {}
+
+    /**
+     * Encodes a record into the scratch array, allocating nothing.
+     *
+     * @param vehicle parked in the lot, or null for a release
+     * @return Length of the encoded record
+     */
+    static int encode(byte[] scratch, CRC32C crc, byte type, Size size, int lotId, int generation, Vehicle vehicle) {
+        int idBytes = vehicle == null ? 0 : encodeVehicleId(vehicle.id(), scratch, HEADER_BYTES);
+        scratch[0] = type;
+        scratch[1] = encodeSizes(size, vehicle == null ? size : vehicle.getSize());
+        putInt(scratch, 2, lotId);
+        putInt(scratch, 6, generation);
+        scratch[10] = (byte) (idBytes >>> 8);
+        scratch[11] = (byte) idBytes;
+        int length = HEADER_BYTES + idBytes;
+        crc.reset();
+        crc.update(scratch, 0, length);
+        putInt(scratch, length, (int) crc.getValue());
+        return length + CHECKSUM_BYTES;
+    }
+
+    /**
+     * @return Lot size and vehicle size packed into one byte, equal to the lot size ordinal unless the vehicle is
+     * smaller
+     */
+    static byte encodeSizes(Size lotSize, Size vehicleSize) {
+        return (byte) (vehicleSize == lotSize
+                ? lotSize.ordinal()
+                : lotSize.ordinal() | (vehicleSize.ordinal() + 1) << 4);
+    }
+
+    /**
+     * @return Lot size of a byte written by {@link #encodeSizes(Size, Size)}, or null if it is not valid
+     */
+    static Size decodeLotSize(byte sizes) {
+        int lotOrdinal = sizes & 0x0F;
+        int vehicleOrdinal = ((sizes & 0xF0) >>> 4) - 1;
+        if (lotOrdinal >= SIZES.length || vehicleOrdinal >= SIZES.length
+                || (vehicleOrdinal >= 0 && !SIZES[lotOrdinal].canHold(SIZES[vehicleOrdinal]))) {
+            return null;
+        }
+        return SIZES[lotOrdinal];
+    }
+
+    /**
+     * @return Vehicle size of a valid byte written by {@link #encodeSizes(Size, Size)}
+     */
+    static Size decodeVehicleSize(byte sizes) {
+        int vehicleOrdinal = ((sizes & 0xF0) >>> 4) - 1;
+        return vehicleOrdinal < 0 ? SIZES[sizes & 0x0F] : SIZES[vehicleOrdinal];
+    }
+
+    static int encodeVehicleId(String vehicleId, byte[] scratch, int offset) {
+        int position = offset;
+        for (int i = 0; i < vehicleId.length(); i++) {
+            char c = vehicleId.charAt(i);
+            if (position + 3 > offset + MAX_VEHICLE_ID_BYTES) {
+                throw new IllegalArgumentException("vehicle ID too long to be logged");
+            }
+            if (c >= 0x0001 && c <= 0x007F) {
+                scratch[position++] = (byte) c;
+            } else if (c <= 0x07FF) {
+                scratch[position++] = (byte) (0xC0 | (c >> 6));
+                scratch[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                scratch[position++] = (byte) (0xE0 | (c >> 12));
+                scratch[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                scratch[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position - offset;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * @param buffer heap buffer positioned at the start of a record
+     * @return Length of the complete record at the buffer's position, -1 if more bytes are needed to tell, or 0 if the
+     * bytes cannot be the start of a record
+     */
+    static int length(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES) {
+            return -1;
+        }
+        int start = buffer.position();
+        byte type = buffer.get(start);
+        if (type < RESERVED || type > LOTS_REOPENED || decodeLotSize(buffer.get(start + 1)) == null) {
+            return 0;
+        }
+        int length = HEADER_BYTES + (buffer.getShort(start + 10) & 0xFFFF) + CHECKSUM_BYTES;
+        return buffer.remaining() < length ? -1 : length;
+    }
+
+    /**
+     * Checks and applies the complete record at the buffer's position, see {@link #length(ByteBuffer)}.
+     *
+     * @return false if the checksum does not match, in which case nothing is applied
+     */
+    static boolean apply(ByteBuffer buffer, int length, CRC32C crc, LotTrackerListener target) {
+        byte[] bytes = buffer.array();
+        int start = buffer.arrayOffset() + buffer.position();
+        int payload = length - CHECKSUM_BYTES;
+        crc.reset();
+        crc.update(bytes, start, payload);
+        if ((int) crc.getValue() != buffer.getInt(buffer.position() + payload)) {
+            return false;
+        }
+        int position = buffer.position();
+        byte type = buffer.get(position);
+        byte sizes = buffer.get(position + 1);
+        Size size = decodeLotSize(sizes);
+        int lotId = buffer.getInt(position + 2);
+        int generation = buffer.getInt(position + 6);
+        switch (type) {
+            case RESERVED:
+                String vehicleId = decodeVehicleId(bytes, start + HEADER_BYTES, payload - HEADER_BYTES);
+                target.onReserved(size, lotId, generation, Vehicles.of(decodeVehicleSize(sizes), vehicleId));
+                break;
+            case RELEASED:
+                target.onReleased(size, lotId, generation);
+                break;
+            case LOTS_ADDED:
+                target.onLotsAdded(size, lotId);
+                break;
+            case LOTS_RETIRED:
+                target.onLotsRetired(size, lotId, generation);
+                break;
+            default:
+                target.onLotsReopened(size, lotId, generation);
+                break;
+        }
+        return true;
+    }
+
+    static String decodeVehicleId(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length];
+        int count = 0;
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            int b = bytes[position++] & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (bytes[position++] & 0x3F));
+            } else {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((bytes[position++] & 0x3F) << 6)
+                        | (bytes[position++] & 0x3F));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+}
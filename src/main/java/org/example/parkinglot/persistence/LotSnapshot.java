@@ -0,0 +1,323 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTrackerListener;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.example.parkinglot.models.vehicle.Vehicles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.zip.CRC32C;
+
+/**
+ * Point-in-time image of the lots of a {@link LotManager}, written to and loaded from a memory-mapped file, so that
+ * startup only has to replay the {@link WriteAheadLog} records appended after the snapshot.
+ *
+ * The file starts with a header (magic, version, log position, length of the vehicle IDs, CRC32C of the rest),
+ * followed by one section per {@link Size} holding the number of lots, one int per lot (generation in the upper
+ * 31 bits, occupied flag in the lowest) and a bitmap of the retired lots, and finally the size ordinal and ID of every
+ * parked vehicle in lot order. Version 2 snapshots have no bitmap, and version 1 snapshots, which predate vehicles
+ * overflowing into larger lots, hold the IDs only.
+ *
+ * Snapshots are fuzzy: lots are read one by one while parking goes on, starting after the log position recorded in
+ * the header. Replaying the log from that position is idempotent, so it brings lots which changed during the snapshot
+ * to their latest state, lots added, retired and reopened meanwhile included. Requires trackers whose
+ * {@link org.example.parkinglot.store.LotStore} retains vehicles.
+ */
+public final class LotSnapshot {
+
+    static final int MAGIC = 0x504C534E;
+    static final int VERSION = 3;
+    private static final int VERSION_WITHOUT_RETIRED_LOTS = 2;
+    private static final int VERSION_WITHOUT_VEHICLE_SIZES = 1;
+
+    private static final int HEADER_BYTES = 32;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int POSITION_OFFSET = 8;
+    private static final int IDS_LENGTH_OFFSET = 16;
+    private static final int CHECKSUM_OFFSET = 24;
+
+    private static final int ID_BUFFER_BYTES = 1 << 20;
+    private static final int OCCUPIED = 1;
+
+    private static final Size[] SIZES = Size.values();
+
+    private LotSnapshot() {}
+
+    /**
+     * Writes a snapshot of the manager, replacing the file atomically once complete. Parking may go on meanwhile, and
+     * lots may be added, in which case the lots are read again.
+     *
+     * @param path       of the snapshot file
+     * @param lotManager to take the snapshot of
+     * @param log        the manager's log, forced to disk before the snapshot is published so that the snapshot never
+     *                   gets ahead of it
+     * @return Log position the snapshot starts at
+     */
+    public static long write(Path path, LotManager lotManager, WriteAheadLog log) throws IOException {
+        long position = log.getPosition();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            StateWriter writer;
+            do {
+                channel.truncate(0);
+                writer = new StateWriter(channel, lotManager);
+                try {
+                    lotManager.forEachLot(writer);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            } while (writer.isStale());
+            long bytes = writer.getStatesLength();
+            long idsLength = writer.finish();
+
+            CRC32C crc = new CRC32C();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, bytes - HEADER_BYTES + idsLength));
+            MappedByteBuffer states = writer.states;
+            states.putInt(MAGIC_OFFSET, MAGIC);
+            states.putInt(VERSION_OFFSET, VERSION);
+            states.putLong(POSITION_OFFSET, position);
+            states.putLong(IDS_LENGTH_OFFSET, idsLength);
+            states.putInt(CHECKSUM_OFFSET, (int) crc.getValue());
+            states.force();
+            channel.force(true);
+        }
+        log.sync();
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return position;
+    }
+
+    /**
+     * Loads a snapshot into a freshly created {@link LotManager} with at most as many lots per size as the snapshot.
+     * Lots the manager lacks are added, which requires trackers which can grow, and retired lots are retired again.
+     *
+     * @return Log position to replay the {@link WriteAheadLog} from
+     * @throws IOException                   if the file is not a complete snapshot, in which case the manager is left
+     *                                       untouched
+     * @throws IllegalArgumentException      if the manager has more lots of a size than the snapshot
+     * @throws UnsupportedOperationException if lots have to be added to a tracker which cannot grow
+     */
+    public static long load(Path path, LotManager lotManager) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (snapshot.capacity() < HEADER_BYTES || snapshot.getInt(MAGIC_OFFSET) != MAGIC
+                    || snapshot.getInt(VERSION_OFFSET) < VERSION_WITHOUT_VEHICLE_SIZES
+                    || snapshot.getInt(VERSION_OFFSET) > VERSION) {
+                throw new IOException("not a lot snapshot: " + path);
+            }
+            int version = snapshot.getInt(VERSION_OFFSET);
+            boolean withVehicleSizes = version >= VERSION_WITHOUT_RETIRED_LOTS;
+            boolean withRetiredLots = version >= VERSION;
+            long idsLength = snapshot.getLong(IDS_LENGTH_OFFSET);
+            CRC32C crc = new CRC32C();
+            crc.update(snapshot.duplicate().position(HEADER_BYTES));
+            if ((int) crc.getValue() != snapshot.getInt(CHECKSUM_OFFSET)) {
+                throw new IOException("corrupt lot snapshot: " + path);
+            }
+
+            int idsOffset = HEADER_BYTES;
+            for (Size size : SIZES) {
+                int numberOfLots = snapshot.getInt(idsOffset);
+                if (numberOfLots < lotManager.getLotCapacity(size)) {
+                    throw new IllegalArgumentException("snapshot has " + numberOfLots + " lots of size " + size
+                            + " but the manager has " + lotManager.getLotCapacity(size));
+                }
+                idsOffset += (int) sectionLength(numberOfLots, withRetiredLots);
+            }
+            if (idsOffset + idsLength != snapshot.capacity()) {
+                throw new IOException("corrupt lot snapshot: " + path);
+            }
+
+            ByteBuffer ids = snapshot.duplicate().position(idsOffset);
+            byte[] scratch = new byte[LogRecord.MAX_VEHICLE_ID_BYTES];
+            int section = HEADER_BYTES;
+            for (Size size : SIZES) {
+                int numberOfLots = snapshot.getInt(section);
+                if (numberOfLots > lotManager.getLotCapacity(size)) {
+                    lotManager.addLots(size, numberOfLots - lotManager.getLotCapacity(size));
+                }
+                int offset = section + Integer.BYTES;
+                for (int lotId = 0; lotId < numberOfLots; lotId++, offset += Integer.BYTES) {
+                    int state = snapshot.getInt(offset);
+                    int generation = state >>> 1;
+                    if ((state & OCCUPIED) != 0) {
+                        Size vehicleSize = withVehicleSizes ? vehicleSize(ids.get(), size, path) : size;
+                        int length = ids.getShort() & 0xFFFF;
+                        ids.get(scratch, 0, length);
+                        Vehicle vehicle = Vehicles.of(vehicleSize, LogRecord.decodeVehicleId(scratch, 0, length));
+                        lotManager.restoreReserved(size, lotId, generation, vehicle);
+                    } else if (generation > 0) {
+                        lotManager.restoreReleased(size, lotId, generation - 1);
+                    }
+                }
+                if (withRetiredLots) {
+                    // after the vehicles, so that retired lots still occupied drain
+                    retire(snapshot, offset, numberOfLots, size, lotManager);
+                }
+                section += (int) sectionLength(numberOfLots, withRetiredLots);
+            }
+            return snapshot.getLong(POSITION_OFFSET);
+        }
+    }
+
+    private static void retire(ByteBuffer snapshot, int bitmapOffset, int numberOfLots, Size size,
+                               LotManager lotManager) {
+        int from = -1;
+        for (int lotId = 0; lotId <= numberOfLots; lotId++) {
+            boolean retired = lotId < numberOfLots
+                    && (snapshot.getInt(bitmapOffset + (lotId >>> 5) * Integer.BYTES) & (1 << lotId)) != 0;
+            if (retired && from < 0) {
+                from = lotId;
+            } else if (!retired && from >= 0) {
+                lotManager.retireLots(size, from, lotId);
+                from = -1;
+            }
+        }
+    }
+
+    /**
+     * @return Bytes taken by the section of a size: the number of lots, the lot states and the bitmap of retired lots
+     */
+    private static long sectionLength(int numberOfLots, boolean withRetiredLots) {
+        long length = Integer.BYTES + (long) numberOfLots * Integer.BYTES;
+        return withRetiredLots ? length + ((numberOfLots + 31L) >>> 5) * Integer.BYTES : length;
+    }
+
+    private static Size vehicleSize(byte ordinal, Size lotSize, Path path) throws IOException {
+        if (ordinal < 0 || ordinal >= SIZES.length || !lotSize.canHold(SIZES[ordinal])) {
+            throw new IOException("corrupt lot snapshot: " + path);
+        }
+        return SIZES[ordinal];
+    }
+
+    /**
+     * Rebuilds a freshly created {@link LotManager} from the latest snapshot, if there is a usable one, and the log
+     * records appended after it, then keeps logging every park and unPark of the manager.
+     *
+     * @return The log, already registered as a listener of the manager
+     * @see WriteAheadLog#recover(Path, LotManager, FsyncPolicy, Duration)
+     */
+    public static WriteAheadLog recover(Path snapshotPath, Path logPath, LotManager lotManager,
+                                        FsyncPolicy fsyncPolicy, Duration syncInterval) throws IOException {
+        long position = 0;
+        if (Files.exists(snapshotPath)) {
+            position = load(snapshotPath, lotManager);
+        }
+        return WriteAheadLog.recover(logPath, position, lotManager, fsyncPolicy, syncInterval);
+    }
+
+    /**
+     * Fills the per lot states of the mapped file and appends the vehicle IDs after them. Becomes stale if lots were
+     * added since the file was laid out.
+     */
+    private static final class StateWriter implements LotTrackerListener {
+
+        private final FileChannel channel;
+        private final int[] numberOfLots = new int[SIZES.length];
+        private final int[] sectionOffsets = new int[SIZES.length];
+        private final long statesLength;
+        private final MappedByteBuffer states;
+        private final ByteBuffer ids = ByteBuffer.allocateDirect(ID_BUFFER_BYTES);
+        private final byte[] scratch = new byte[LogRecord.MAX_VEHICLE_ID_BYTES];
+        private long position;
+        private long idsLength;
+        private boolean stale;
+
+        StateWriter(FileChannel channel, LotManager lotManager) throws IOException {
+            this.channel = channel;
+            long bytes = HEADER_BYTES;
+            for (Size size : SIZES) {
+                numberOfLots[size.ordinal()] = lotManager.getLotCapacity(size);
+                sectionOffsets[size.ordinal()] = (int) bytes;
+                bytes += sectionLength(numberOfLots[size.ordinal()], true);
+                if (bytes > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("too many lots for a single snapshot file");
+                }
+            }
+            this.statesLength = bytes;
+            this.position = bytes;
+            this.states = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            for (Size size : SIZES) {
+                states.putInt(sectionOffsets[size.ordinal()], numberOfLots[size.ordinal()]);
+            }
+        }
+
+        @Override
+        public void onLotsAdded(Size size, int numberOfLots) {
+            stale |= numberOfLots != this.numberOfLots[size.ordinal()];
+        }
+
+        @Override
+        public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+            if (stale) {
+                return;
+            }
+            putState(size, lotId, (generation << 1) | OCCUPIED);
+            int length = LogRecord.encodeVehicleId(vehicle.id(), scratch, 0);
+            if (ids.remaining() < 1 + Short.BYTES + length) {
+                flush();
+            }
+            ids.put((byte) vehicle.getSize().ordinal()).putShort((short) length).put(scratch, 0, length);
+            idsLength += 1 + Short.BYTES + length;
+        }
+
+        @Override
+        public void onReleased(Size size, int lotId, int generation) {
+            if (!stale) {
+                putState(size, lotId, (generation + 1) << 1);
+            }
+        }
+
+        @Override
+        public void onLotsRetired(Size size, int fromLotId, int toLotId) {
+            if (stale) {
+                return;
+            }
+            int bitmap = sectionOffsets[size.ordinal()] + Integer.BYTES + numberOfLots[size.ordinal()] * Integer.BYTES;
+            for (int lotId = fromLotId; lotId < toLotId; lotId++) {
+                int offset = bitmap + (lotId >>> 5) * Integer.BYTES;
+                states.putInt(offset, states.getInt(offset) | 1 << lotId);
+            }
+        }
+
+        boolean isStale() {
+            return stale;
+        }
+
+        long getStatesLength() {
+            return statesLength;
+        }
+
+        private void putState(Size size, int lotId, int state) {
+            states.putInt(sectionOffsets[size.ordinal()] + Integer.BYTES + lotId * Integer.BYTES, state);
+        }
+
+        private void flush() {
+            ids.flip();
+            try {
+                while (ids.hasRemaining()) {
+                    position += channel.write(ids, position);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            ids.clear();
+        }
+
+        long finish() {
+            flush();
+            return idsLength;
+        }
+    }
+}
@@ -0,0 +1,615 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTrackerListener;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Streams every park and unPark of a {@link LotManager}, and the lots added, retired and reopened, to
+ * {@link ReplicationStandby} processes over local sockets, so that a standby can take over when the primary dies.
+ * Records use the {@link WriteAheadLog} encoding and are numbered in the order they are appended, the order of the
+ * records of a lot being the order the lot changed in.
+ *
+ * Parking only enqueues: records are encoded into an in-memory buffer while the lot is still locked, and nothing is
+ * sent from there. A sender thread swaps the buffer with a second one and copies it to the queue of every standby
+ * while parking continues into the other, and a writer thread per standby writes out whatever was queued for it
+ * meanwhile, so one slow standby holds up neither parking nor the other standbys. Standbys report the number of the
+ * last record they applied after every batch they read.
+ *
+ * A standby connecting is brought up to date first: it is sent the state of every lot, read while parking goes on,
+ * followed by the records appended since it connected. Like a {@link LotSnapshot}, the fuzzy state plus the records
+ * converge because restoring is idempotent.
+ *
+ * Lag is bounded by maxLag: once its lots are unlocked again, a park or unPark waits until every standby which is up
+ * to date has applied all but the last maxLag records, so a promoted standby misses at most that many. With 0 it
+ * misses none of the parks and unParks which returned, and no bay can be handed out twice, at the cost of one round
+ * trip shared by everything appended meanwhile. A standby which has not caught up within the ack timeout, or falls so
+ * far behind that its queue overflows, is dropped and may have missed records; so is one whose connection fails.
+ *
+ * ThreadSafe class. Appending a record does not allocate.
+ */
+public final class ReplicationPrimary implements LotTrackerListener, Closeable {
+
+    static final int BUFFER_BYTES = 1 << 20;
+    /**
+     * Sent to a standby before the state of the lots: the number of the last record it will not be sent, and the
+     * length of the lot states.
+     */
+    static final int HEADER_BYTES = Long.BYTES + Integer.BYTES;
+    /**
+     * Most bytes queued for an up to date standby before it is dropped.
+     */
+    static final int MAX_QUEUED_BYTES = 4 * BUFFER_BYTES;
+
+    public static final Duration DEFAULT_ACK_TIMEOUT = Duration.ofSeconds(1);
+
+    private final LotManager lotManager;
+    private final ServerSocketChannel serverChannel;
+    private final long maxLag;
+    private final long ackTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsAppended = lock.newCondition();
+    private final Condition batchSent = lock.newCondition();
+    private final Condition acknowledged = lock.newCondition();
+
+    private final byte[] scratch = new byte[LogRecord.MAX_RECORD_BYTES];
+    private final CRC32C crc = new CRC32C();
+    /**
+     * Number of the last record appended by each parking thread and not waited for yet, 0 if none.
+     */
+    private final ThreadLocal<long[]> unconfirmed = ThreadLocal.withInitial(() -> new long[1]);
+
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_BYTES);
+    private ByteBuffer sending = ByteBuffer.allocate(BUFFER_BYTES);
+
+    private long appendedSequence;
+    /**
+     * Number of the last record which is not in {@link #active}.
+     */
+    private long swappedSequence;
+    private long sentSequence;
+    private boolean closed;
+
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+    private final Thread acceptor;
+    private final Thread sender;
+
+    private ReplicationPrimary(LotManager lotManager, ServerSocketChannel serverChannel, long maxLag,
+                               Duration ackTimeout) {
+        this.lotManager = lotManager;
+        this.serverChannel = serverChannel;
+        this.maxLag = maxLag;
+        this.ackTimeoutNanos = ackTimeout.toNanos();
+        this.acceptor = new Thread(this::accept, "replication-acceptor");
+        this.acceptor.setDaemon(true);
+        this.sender = new Thread(this::sendLoop, "replication-sender");
+        this.sender.setDaemon(true);
+    }
+
+    /**
+     * Same as {@link #start(LotManager, InetSocketAddress, long, Duration)} with the {@link #DEFAULT_ACK_TIMEOUT}.
+     */
+    public static ReplicationPrimary start(LotManager lotManager, InetSocketAddress address, long maxLag)
+            throws IOException {
+        return start(lotManager, address, maxLag, DEFAULT_ACK_TIMEOUT);
+    }
+
+    /**
+     * Starts replicating the manager, every park and unPark from now on is streamed to the standbys.
+     *
+     * @param address    to listen for standbys on, e.g. new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)
+     * @param maxLag     number of records a standby may be behind before parking waits for it, 0 to wait for every
+     *                   record
+     * @param ackTimeout parking waits for a standby at most this long, then drops it
+     * @return The primary, already registered as a listener of the manager
+     */
+    public static ReplicationPrimary start(LotManager lotManager, InetSocketAddress address, long maxLag,
+                                           Duration ackTimeout) throws IOException {
+        if (lotManager == null || address == null || maxLag < 0 || ackTimeout == null || ackTimeout.isNegative()
+                || ackTimeout.isZero()) {
+            throw new IllegalArgumentException("lotManager, address and a positive ackTimeout are required and maxLag"
+                    + " must not be negative");
+        }
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+        } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+        ReplicationPrimary primary = new ReplicationPrimary(lotManager, serverChannel, maxLag, ackTimeout);
+        lotManager.addListener(primary);
+        primary.sender.start();
+        primary.acceptor.start();
+        return primary;
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * @return Number of standbys which are up to date and being streamed to
+     */
+    public int getNumberOfStandbys() {
+        int standbys = 0;
+        for (Replica replica : replicas) {
+            if (replica.live) {
+                standbys++;
+            }
+        }
+        return standbys;
+    }
+
+    /**
+     * @return Number of records appended so far
+     */
+    public long getSequence() {
+        lock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of records the slowest up to date standby has not applied yet, 0 without standbys
+     */
+    public long getLag() {
+        lock.lock();
+        try {
+            return appendedSequence - acknowledgedSequence();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+        append(LogRecord.RESERVED, size, lotId, generation, vehicle);
+    }
+
+    @Override
+    public void onReleased(Size size, int lotId, int generation) {
+        append(LogRecord.RELEASED, size, lotId, generation, null);
+    }
+
+    @Override
+    public void onLotsAdded(Size size, int numberOfLots) {
+        append(LogRecord.LOTS_ADDED, size, numberOfLots, 0, null);
+    }
+
+    @Override
+    public void onLotsRetired(Size size, int fromLotId, int toLotId) {
+        append(LogRecord.LOTS_RETIRED, size, fromLotId, toLotId, null);
+    }
+
+    @Override
+    public void onLotsReopened(Size size, int fromLotId, int toLotId) {
+        append(LogRecord.LOTS_REOPENED, size, fromLotId, toLotId, null);
+    }
+
+    /**
+     * Waits until the standbys are at most maxLag records behind the last record the calling thread appended. A standby
+     * still behind after the ack timeout is dropped.
+     */
+    @Override
+    public void afterUnlock() {
+        long[] unconfirmed = this.unconfirmed.get();
+        long sequence = unconfirmed[0];
+        if (sequence == 0) {
+            return;
+        }
+        unconfirmed[0] = 0;
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            long remaining = ackTimeoutNanos;
+            while (sequence - acknowledgedSequence() > maxLag && !closed) {
+                if (remaining <= 0) {
+                    dropLagging(sequence - maxLag);
+                    break;
+                }
+                try {
+                    remaining = acknowledged.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Appends a record, only waiting for the sender if the buffer is full. A closed primary is reported to the parking
+     * thread as an {@link IllegalStateException}, and the tracker undoes a reservation it fails, see
+     * {@link LotTrackerListener}.
+     */
+    private void append(byte type, Size size, int lotId, int generation, Vehicle vehicle) {
+        lock.lock();
+        try {
+            checkOpen();
+            int length = LogRecord.encode(scratch, crc, type, size, lotId, generation, vehicle);
+            while (active.remaining() < length) {
+                recordsAppended.signal();
+                long waitingFor = appendedSequence;
+                while (sentSequence < waitingFor && !closed) {
+                    batchSent.awaitUninterruptibly();
+                }
+                checkOpen();
+            }
+            active.put(scratch, 0, length);
+            unconfirmed.get()[0] = ++appendedSequence;
+            recordsAppended.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must hold the lock. Drops the up to date standbys which have not applied the given record yet.
+     */
+    private void dropLagging(long sequence) {
+        for (Replica replica : replicas) {
+            if (replica.live && replica.acknowledged < sequence) {
+                replicas.remove(replica);
+                replica.stop(true);
+            }
+        }
+        acknowledged.signalAll();
+    }
+
+    /**
+     * Must hold the lock.
+     *
+     * @return Number of the last record every up to date standby has applied, {@link #appendedSequence} without
+     * standbys
+     */
+    private long acknowledgedSequence() {
+        long sequence = appendedSequence;
+        for (Replica replica : replicas) {
+            if (replica.live) {
+                sequence = Math.min(sequence, replica.acknowledged);
+            }
+        }
+        return sequence;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("replication is closed");
+        }
+    }
+
+    private void accept() {
+        while (serverChannel.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                return;
+            }
+            Thread follower = new Thread(() -> follow(channel), "replication-standby");
+            follower.setDaemon(true);
+            follower.start();
+        }
+    }
+
+    /**
+     * Starts writing to a standby, then reads the numbers of the records it applied until its connection fails.
+     */
+    private void follow(SocketChannel channel) {
+        Replica replica = new Replica(channel);
+        lock.lock();
+        try {
+            if (closed) {
+                close(channel);
+                return;
+            }
+            // the records still in the active buffer will be sent to the replica with it
+            replica.base = swappedSequence;
+            replica.acknowledged = swappedSequence;
+            replicas.add(replica);
+        } finally {
+            lock.unlock();
+        }
+        replica.writer = new Thread(() -> writeTo(replica), "replication-writer");
+        replica.writer.setDaemon(true);
+        replica.writer.start();
+        try {
+            ByteBuffer in = ByteBuffer.allocate(Long.BYTES * 64);
+            while (channel.read(in) >= 0) {
+                int complete = in.position() / Long.BYTES * Long.BYTES;
+                if (complete == 0) {
+                    continue;
+                }
+                // only the latest of the numbers read matters
+                long sequence = in.getLong(complete - Long.BYTES);
+                in.flip();
+                in.position(complete);
+                in.compact();
+                lock.lock();
+                try {
+                    replica.acknowledged = sequence;
+                    acknowledged.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // the standby is dropped below
+        }
+        drop(replica);
+    }
+
+    /**
+     * Brings a standby up to date, then writes out the batches queued for it until it is stopped.
+     */
+    private void writeTo(Replica replica) {
+        try {
+            StateEncoder states = new StateEncoder();
+            lotManager.forEachLot(states);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(replica.base).putInt(states.size()).flip();
+            write(replica.channel, header);
+            write(replica.channel, ByteBuffer.wrap(states.toByteArray()));
+            ByteBuffer batch;
+            while ((batch = replica.take()) != null) {
+                write(replica.channel, batch);
+                batch.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            // the standby is dropped below
+        } catch (InterruptedException e) {
+            // nothing interrupts the writer, handled like a failed connection
+        }
+        drop(replica);
+    }
+
+    private void sendLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                while (!closed && active.position() == 0) {
+                    recordsAppended.awaitUninterruptibly();
+                }
+                if (active.position() == 0) {
+                    return;
+                }
+                ByteBuffer toSend = active;
+                active = sending;
+                sending = toSend;
+                long sequence = appendedSequence;
+                swappedSequence = sequence;
+                Replica[] targets = replicas.toArray(new Replica[0]);
+                lock.unlock();
+                try {
+                    toSend.flip();
+                    for (Replica replica : targets) {
+                        send(replica, toSend.duplicate());
+                    }
+                    toSend.clear();
+                } finally {
+                    lock.lock();
+                }
+                sentSequence = sequence;
+                batchSent.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void send(Replica replica, ByteBuffer batch) {
+        if (!replica.offer(batch)) {
+            drop(replica);
+        }
+    }
+
+    private void drop(Replica replica) {
+        replica.stop(true);
+        lock.lock();
+        try {
+            replicas.remove(replica);
+            acknowledged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void close(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to do with it
+        }
+    }
+
+    /**
+     * Sends the records appended so far, then disconnects the standbys once they were written out. Parking into a
+     * manager the primary is still registered with fails afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            recordsAppended.signal();
+            batchSent.signalAll();
+            acknowledged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        serverChannel.close();
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (Replica replica : replicas) {
+            replica.stop(false);
+            try {
+                Thread writer = replica.writer;
+                long remaining = deadline - System.nanoTime();
+                if (writer != null && remaining > 0) {
+                    writer.join(TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            close(replica.channel);
+        }
+    }
+
+    /**
+     * A connected standby and the batches queued for its writer. Until it is up to date the queue grows as needed,
+     * afterwards a standby whose queue would exceed {@link #MAX_QUEUED_BYTES} is too far behind.
+     */
+    private static final class Replica {
+        private final SocketChannel channel;
+        private Thread writer;
+        private long base;
+        /**
+         * Guarded by the lock of the primary.
+         */
+        private long acknowledged;
+        private volatile boolean live;
+
+        /**
+         * Guarded by the replica.
+         */
+        private ByteBuffer queued = ByteBuffer.allocate(BUFFER_BYTES);
+        private ByteBuffer writing = ByteBuffer.allocate(BUFFER_BYTES);
+        private boolean stopping;
+        private boolean stopped;
+
+        private Replica(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Queues a batch for the writer, called by the sender only.
+         *
+         * @return false if the standby is up to date but too far behind to queue the batch
+         */
+        synchronized boolean offer(ByteBuffer batch) {
+            if (stopped || stopping) {
+                return true;
+            }
+            if (queued.remaining() < batch.remaining()) {
+                int needed = queued.position() + batch.remaining();
+                if (live && needed > MAX_QUEUED_BYTES) {
+                    return false;
+                }
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(needed, queued.capacity() * 2));
+                queued.flip();
+                grown.put(queued);
+                queued = grown;
+            }
+            queued.put(batch);
+            notifyAll();
+            return true;
+        }
+
+        /**
+         * Waits for batches to write, the standby counts as up to date once everything queued before it caught up
+         * was written.
+         *
+         * @return Everything queued since the last call, or null once stopped and, unless stopped right away, every
+         * batch was written
+         */
+        synchronized ByteBuffer take() throws InterruptedException {
+            while (queued.position() == 0) {
+                if (stopped || stopping) {
+                    return null;
+                }
+                live = true;
+                wait();
+            }
+            if (stopped) {
+                return null;
+            }
+            ByteBuffer batch = queued;
+            queued = writing;
+            writing = batch;
+            batch.flip();
+            return batch;
+        }
+
+        /**
+         * @param now true to disconnect right away, false to let the writer write out what is queued first
+         */
+        void stop(boolean now) {
+            synchronized (this) {
+                stopping = true;
+                stopped |= now;
+                notifyAll();
+            }
+            if (now) {
+                close(channel);
+            }
+        }
+    }
+
+    /**
+     * Encodes the state of every lot as the records restoring it.
+     */
+    private static final class StateEncoder extends ByteArrayOutputStream implements LotTrackerListener {
+        private final byte[] record = new byte[LogRecord.MAX_RECORD_BYTES];
+        private final CRC32C crc = new CRC32C();
+
+        @Override
+        public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+            write(record, 0, LogRecord.encode(record, crc, LogRecord.RESERVED, size, lotId, generation, vehicle));
+        }
+
+        @Override
+        public void onReleased(Size size, int lotId, int generation) {
+            write(record, 0, LogRecord.encode(record, crc, LogRecord.RELEASED, size, lotId, generation, null));
+        }
+
+        @Override
+        public void onLotsAdded(Size size, int numberOfLots) {
+            write(record, 0, LogRecord.encode(record, crc, LogRecord.LOTS_ADDED, size, numberOfLots, 0, null));
+        }
+
+        @Override
+        public void onLotsRetired(Size size, int fromLotId, int toLotId) {
+            write(record, 0, LogRecord.encode(record, crc, LogRecord.LOTS_RETIRED, size, fromLotId, toLotId, null));
+        }
+    }
+}
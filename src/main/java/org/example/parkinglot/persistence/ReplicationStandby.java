@@ -0,0 +1,186 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.LotManager;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Follows a {@link ReplicationPrimary}, applying every park and unPark it streams to a {@link LotManager} of its own,
+ * and takes over with {@link #promote()} when the primary is gone.
+ *
+ * A receiver thread reads the stream, applies every complete record it read and then reports the number of the last
+ * one to the primary, so the primary hears back once per batch. Records are restored like a replayed
+ * {@link WriteAheadLog}, which is idempotent and does not notify the manager's listeners.
+ *
+ * ThreadSafe class.
+ */
+public final class ReplicationStandby implements Closeable {
+
+    private static final int READ_BUFFER_BYTES = 1 << 17;
+
+    private final LotManager lotManager;
+    private final SocketChannel channel;
+    private final Thread receiver;
+
+    private volatile long appliedSequence;
+    private volatile boolean upToDate;
+    private volatile boolean connected = true;
+    private volatile IOException failure;
+
+    private ReplicationStandby(LotManager lotManager, SocketChannel channel) {
+        this.lotManager = lotManager;
+        this.channel = channel;
+        this.receiver = new Thread(this::receive, "replication-receiver");
+        this.receiver.setDaemon(true);
+    }
+
+    /**
+     * Connects to a primary and starts following it.
+     *
+     * @param primary    address of the {@link ReplicationPrimary}
+     * @param lotManager to apply the records to, freshly created with at most as many lots per size as the primary's,
+     *                   which it is grown to, or one which followed the same primary before
+     */
+    public static ReplicationStandby connect(InetSocketAddress primary, LotManager lotManager) throws IOException {
+        if (primary == null || lotManager == null) {
+            throw new IllegalArgumentException("primary and lotManager must not be null");
+        }
+        SocketChannel channel = SocketChannel.open(primary);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        ReplicationStandby standby = new ReplicationStandby(lotManager, channel);
+        standby.receiver.start();
+        return standby;
+    }
+
+    /**
+     * @return Number of the last record applied
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * @return true once the state of every lot of the primary has been applied
+     */
+    public boolean isUpToDate() {
+        return upToDate;
+    }
+
+    /**
+     * @return false once the stream has ended, e.g. because the primary died
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return Why the stream ended, or null if the primary closed it or it has not ended
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Stops following the primary, whether it is still there or not. Every record received completely has been
+     * applied once this returns, so the manager is ready to serve gates, e.g. behind a new primary.
+     *
+     * @return The manager of this standby
+     */
+    public LotManager promote() throws IOException {
+        close();
+        return lotManager;
+    }
+
+    private void receive() {
+        CRC32C crc = new CRC32C();
+        RestoringListener restoring = new RestoringListener(lotManager);
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        ByteBuffer ack = ByteBuffer.allocate(Long.BYTES);
+        try {
+            readFully(in, ReplicationPrimary.HEADER_BYTES);
+            in.flip();
+            long sequence = in.getLong();
+            long statesRemaining = in.getInt();
+            long acknowledged = -1;
+            in.compact();
+            while (true) {
+                in.flip();
+                int length;
+                while ((length = LogRecord.length(in)) > 0) {
+                    if (!LogRecord.apply(in, length, crc, restoring)) {
+                        throw new IOException("corrupt replication record");
+                    }
+                    in.position(in.position() + length);
+                    if (statesRemaining > 0) {
+                        statesRemaining -= length;
+                    } else {
+                        sequence++;
+                    }
+                }
+                if (length == 0) {
+                    throw new IOException("malformed replication stream");
+                }
+                in.compact();
+                appliedSequence = sequence;
+                if (statesRemaining == 0 && sequence != acknowledged) {
+                    upToDate = true;
+                    ack.clear();
+                    ack.putLong(0, sequence);
+                    while (ack.hasRemaining()) {
+                        channel.write(ack);
+                    }
+                    acknowledged = sequence;
+                }
+                if (channel.read(in) < 0) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            if (channel.isOpen()) {
+                failure = e;
+            }
+        } finally {
+            connected = false;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // the stream has ended anyway
+            }
+        }
+    }
+
+    private void readFully(ByteBuffer in, int bytes) throws IOException {
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("primary closed the stream");
+            }
+        }
+    }
+
+    /**
+     * Stops following the primary, waiting for the records received to be applied.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.shutdownInput();
+        } catch (ClosedChannelException e) {
+            // the stream has ended already
+        }
+        try {
+            receiver.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+}
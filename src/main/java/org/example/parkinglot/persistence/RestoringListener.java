@@ -0,0 +1,48 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTrackerListener;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+/**
+ * Applies replayed records to a {@link LotManager}. Restoring is idempotent, so records already reflected in the
+ * manager's state are skipped. Lots recorded as added are added unless the manager has them already, which requires
+ * a {@link org.example.parkinglot.LotTrackerFactory} whose trackers can grow.
+ */
+final class RestoringListener implements LotTrackerListener {
+
+    private final LotManager lotManager;
+
+    RestoringListener(LotManager lotManager) {
+        this.lotManager = lotManager;
+    }
+
+    @Override
+    public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+        lotManager.restoreReserved(size, lotId, generation, vehicle);
+    }
+
+    @Override
+    public void onReleased(Size size, int lotId, int generation) {
+        lotManager.restoreReleased(size, lotId, generation);
+    }
+
+    @Override
+    public void onLotsAdded(Size size, int numberOfLots) {
+        int capacity = lotManager.getLotCapacity(size);
+        if (numberOfLots > capacity) {
+            lotManager.addLots(size, numberOfLots - capacity);
+        }
+    }
+
+    @Override
+    public void onLotsRetired(Size size, int fromLotId, int toLotId) {
+        lotManager.retireLots(size, fromLotId, toLotId);
+    }
+
+    @Override
+    public void onLotsReopened(Size size, int fromLotId, int toLotId) {
+        lotManager.reopenLots(size, fromLotId, toLotId);
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.LotManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes a {@link LotSnapshot} of a {@link LotManager} at a fixed interval on a background thread, so that a restart
+ * only replays the log records of the last interval.
+ *
+ * ThreadSafe class.
+ */
+public final class SnapshotScheduler implements Closeable {
+
+    private final Path path;
+    private final LotManager lotManager;
+    private final WriteAheadLog log;
+    private final ScheduledExecutorService executor;
+
+    private volatile IOException lastFailure;
+
+    public SnapshotScheduler(Path path, LotManager lotManager, WriteAheadLog log, Duration interval) {
+        if (path == null || lotManager == null || log == null || interval == null || interval.isNegative()
+                || interval.isZero()) {
+            throw new IllegalArgumentException("path, lotManager, log and a positive interval are required");
+        }
+        this.path = path;
+        this.lotManager = lotManager;
+        this.log = log;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lot-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nanos = interval.toNanos();
+        executor.scheduleWithFixedDelay(this::snapshot, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void snapshot() {
+        try {
+            LotSnapshot.write(path, lotManager, log);
+            lastFailure = null;
+        } catch (IOException e) {
+            lastFailure = e;
+        }
+    }
+
+    /**
+     * @return Why the latest snapshot could not be written, or an empty Optional if it was written
+     */
+    public Optional<IOException> getLastFailure() {
+        return Optional.ofNullable(lastFailure);
+    }
+
+    /**
+     * Stops taking snapshots, waiting for one in progress to complete.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTrackerListener;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of every park and unPark, so that the occupancy of a {@link LotManager} survives a restart. Lots
+ * added, retired and reopened are logged as well, and replaying them needs trackers which can grow. Register it with
+ * {@link LotManager#addListener(LotTrackerListener)}, or let {@link #recover} do it.
+ *
+ * Records are encoded into an in-memory buffer while the lot is still locked, which keeps the records of a lot in
+ * order. A background thread swaps the buffer with a second one and writes it out while parking continues into the
+ * other, so a single write and fsync commits every record appended meanwhile (group commit). When the fsync happens
+ * is decided by the {@link FsyncPolicy}. Positions in the log are plain file offsets.
+ *
+ * A crash may leave a partially written record at the end of the file. Replay stops at the first record which is
+ * incomplete or fails its checksum, and reopening the log truncates the file there.
+ *
+ * ThreadSafe class. Appending a record does not allocate.
+ */
+public final class WriteAheadLog implements LotTrackerListener, Closeable {
+
+    static final int BUFFER_BYTES = 1 << 20;
+
+    private static final int READ_BUFFER_BYTES = 1 << 17;
+
+    private static final LotTrackerListener IGNORE = new LotTrackerListener() {
+        @Override
+        public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+        }
+
+        @Override
+        public void onReleased(Size size, int lotId, int generation) {
+        }
+    };
+
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final long syncIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition flushDone = lock.newCondition();
+
+    private final byte[] scratch = new byte[LogRecord.MAX_RECORD_BYTES];
+    private final CRC32C crc = new CRC32C();
+
+    private ByteBuffer active = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private ByteBuffer flushing = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    private long appendedPosition;
+    private long requestedPosition;
+    private long flushedPosition;
+    private boolean closed;
+    private IOException failure;
+
+    private final Thread flusher;
+
+    private WriteAheadLog(FileChannel channel, long position, FsyncPolicy fsyncPolicy, Duration syncInterval) {
+        this.channel = channel;
+        this.fsyncPolicy = fsyncPolicy;
+        this.syncIntervalNanos = syncInterval.toNanos();
+        this.appendedPosition = position;
+        this.requestedPosition = position;
+        this.flushedPosition = position;
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Opens or creates a log for appending, truncating a torn record left at its end by a crash.
+     *
+     * @param path         of the log file
+     * @param fsyncPolicy  when appended records are forced to disk
+     * @param syncInterval how often records are written out, unless the policy is {@link FsyncPolicy#EVERY_COMMIT}
+     */
+    public static WriteAheadLog open(Path path, FsyncPolicy fsyncPolicy, Duration syncInterval) throws IOException {
+        return open(path, replay(path, 0, IGNORE), fsyncPolicy, syncInterval);
+    }
+
+    /**
+     * Replays a log into a freshly created {@link LotManager}, then keeps logging every park and unPark of it.
+     *
+     * @param path         of the log file, created if missing
+     * @param lotManager   to restore, created with the lots the logged manager started with and no vehicle parked in
+     *                     it yet
+     * @param fsyncPolicy  when appended records are forced to disk
+     * @param syncInterval how often records are written out, unless the policy is {@link FsyncPolicy#EVERY_COMMIT}
+     * @return The log, already registered as a listener of the manager
+     */
+    public static WriteAheadLog recover(Path path, LotManager lotManager, FsyncPolicy fsyncPolicy,
+                                        Duration syncInterval) throws IOException {
+        return recover(path, 0, lotManager, fsyncPolicy, syncInterval);
+    }
+
+    /**
+     * Same as {@link #recover(Path, LotManager, FsyncPolicy, Duration)}, replaying only the records from the given
+     * position on, e.g. those following a snapshot the manager was loaded from.
+     */
+    public static WriteAheadLog recover(Path path, long fromPosition, LotManager lotManager, FsyncPolicy fsyncPolicy,
+                                        Duration syncInterval) throws IOException {
+        long end = restore(path, fromPosition, lotManager);
+        WriteAheadLog log = open(path, end, fsyncPolicy, syncInterval);
+        lotManager.addListener(log);
+        return log;
+    }
+
+    private static WriteAheadLog open(Path path, long end, FsyncPolicy fsyncPolicy, Duration syncInterval)
+            throws IOException {
+        if (fsyncPolicy == null || syncInterval == null || syncInterval.isNegative() || syncInterval.isZero()) {
+            throw new IllegalArgumentException("fsyncPolicy and a positive syncInterval are required");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() > end) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+            channel.position(end);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new WriteAheadLog(channel, end, fsyncPolicy, syncInterval);
+    }
+
+    /**
+     * Feeds every intact record of a log to the target, oldest first. The log is not modified.
+     *
+     * @param path         of the log file, a missing file is an empty log
+     * @param fromPosition offset of the first record to replay, as returned by {@link #getPosition()}
+     * @param target       receiving the records
+     * @return Position right after the last intact record
+     */
+    public static long replay(Path path, long fromPosition, LotTrackerListener target) throws IOException {
+        if (!path.toFile().exists()) {
+            return fromPosition;
+        }
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        long position = fromPosition;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(fromPosition);
+            boolean endOfFile = false;
+            while (true) {
+                if (!endOfFile && channel.read(buffer) < 0) {
+                    endOfFile = true;
+                }
+                buffer.flip();
+                int length;
+                while ((length = LogRecord.length(buffer)) > 0) {
+                    if (!LogRecord.apply(buffer, length, crc, target)) {
+                        return position;
+                    }
+                    buffer.position(buffer.position() + length);
+                    position += length;
+                }
+                if (length == 0 || endOfFile) {
+                    return position;
+                }
+                buffer.compact();
+            }
+        }
+    }
+
+    /**
+     * Replays the records of a log from the given position on into a {@link LotManager}, skipping records already
+     * reflected in its state. The log is not modified.
+     *
+     * @return Position right after the last intact record
+     */
+    public static long restore(Path path, long fromPosition, LotManager lotManager) throws IOException {
+        return replay(path, fromPosition, new RestoringListener(lotManager));
+    }
+
+    @Override
+    public void onReserved(Size size, int lotId, int generation, Vehicle vehicle) {
+        append(LogRecord.RESERVED, size, lotId, generation, vehicle);
+    }
+
+    @Override
+    public void onReleased(Size size, int lotId, int generation) {
+        append(LogRecord.RELEASED, size, lotId, generation, null);
+    }
+
+    @Override
+    public void onLotsAdded(Size size, int numberOfLots) {
+        append(LogRecord.LOTS_ADDED, size, numberOfLots, 0, null);
+    }
+
+    @Override
+    public void onLotsRetired(Size size, int fromLotId, int toLotId) {
+        append(LogRecord.LOTS_RETIRED, size, fromLotId, toLotId, null);
+    }
+
+    @Override
+    public void onLotsReopened(Size size, int fromLotId, int toLotId) {
+        append(LogRecord.LOTS_REOPENED, size, fromLotId, toLotId, null);
+    }
+
+    /**
+     * Appends a record, waiting for it to be fsynced under {@link FsyncPolicy#EVERY_COMMIT}. A failure to log is
+     * reported to the parking thread as an {@link UncheckedIOException}, or an {@link IllegalStateException} once
+     * closed, and the tracker undoes a reservation it fails, see {@link LotTrackerListener}.
+     */
+    private void append(byte type, Size size, int lotId, int generation, Vehicle vehicle) {
+        lock.lock();
+        try {
+            checkUsable();
+            int length = LogRecord.encode(scratch, crc, type, size, lotId, generation, vehicle);
+            while (active.remaining() < length) {
+                awaitFlushed(appendedPosition);
+            }
+            active.put(scratch, 0, length);
+            appendedPosition += length;
+            if (fsyncPolicy == FsyncPolicy.EVERY_COMMIT) {
+                awaitFlushed(appendedPosition);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far has been written out and forces it to disk, whatever the policy.
+     */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            checkUsable();
+            awaitFlushed(appendedPosition);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            lock.unlock();
+        }
+        channel.force(false);
+    }
+
+    /**
+     * @return Position right after the last appended record, which is where replaying the records appended from now
+     * on has to start
+     */
+    public long getPosition() {
+        lock.lock();
+        try {
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void awaitFlushed(long position) {
+        if (requestedPosition < position) {
+            requestedPosition = position;
+            flushNeeded.signal();
+        }
+        while (flushedPosition < position && failure == null) {
+            flushDone.awaitUninterruptibly();
+        }
+        if (flushedPosition < position) {
+            checkUsable();
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("write-ahead log failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("write-ahead log is closed");
+        }
+    }
+
+    private void flushLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                awaitFlushNeeded();
+                if (active.position() == 0) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                ByteBuffer toWrite = active;
+                active = flushing;
+                flushing = toWrite;
+                long position = appendedPosition;
+                lock.unlock();
+                IOException error = null;
+                try {
+                    write(toWrite);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                if (error != null) {
+                    failure = error;
+                    flushDone.signalAll();
+                    return;
+                }
+                flushedPosition = position;
+                flushDone.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must hold the lock. Returns once a record is waited for, the log is closed, or a sync interval has passed.
+     */
+    private void awaitFlushNeeded() {
+        long remaining = syncIntervalNanos;
+        while (!closed && requestedPosition <= flushedPosition) {
+            if (fsyncPolicy == FsyncPolicy.EVERY_COMMIT) {
+                flushNeeded.awaitUninterruptibly();
+            } else if (remaining <= 0) {
+                return;
+            } else {
+                try {
+                    remaining = flushNeeded.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    // only close() stops the flusher
+                }
+            }
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                channel.force(false);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Writes out and forces every appended record, then closes the file. Parking into a manager the log is still
+     * registered with fails afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.parkinglot.server;
+
+import org.example.parkinglot.index.VehicleLocationIndex;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.PackedTicket;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Blocking client of a {@link GateServer}, sending one request at a time and waiting for its response. Pipelining
+ * clients such as the {@link LoadGenerator} write the frames of {@link GateProtocol} themselves.
+ *
+ * Not a ThreadSafe class.
+ */
+public final class GateClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(GateProtocol.MAX_FRAME_BYTES);
+    private final ByteBuffer in = ByteBuffer.allocate(GateProtocol.MAX_FRAME_BYTES);
+    private int nextRequestId;
+
+    private GateClient(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public static GateClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return new GateClient(channel);
+    }
+
+    /**
+     * @param gate ID of the entry gate, or {@link org.example.parkinglot.index.FreeLotIndex#ANY_GATE}
+     * @return A valid {@link PackedTicket}, or {@link PackedTicket#NONE} if the vehicle could not be parked
+     */
+    public long park(Vehicle vehicle, int gate) throws IOException {
+        GateProtocol.writePark(out, nextRequestId, vehicle.getSize(), gate, vehicle.id());
+        ByteBuffer response = call(GateProtocol.PARK);
+        return response == null ? PackedTicket.NONE : response.getLong();
+    }
+
+    /**
+     * @return true if the ticket was valid and the lot is released
+     */
+    public boolean unPark(long packedTicket) throws IOException {
+        GateProtocol.writeUnPark(out, nextRequestId, packedTicket);
+        return call(GateProtocol.UNPARK) != null;
+    }
+
+    /**
+     * @return Location of the vehicle, see {@link VehicleLocationIndex#location(Size, int)}, or
+     * {@link VehicleLocationIndex#NOT_FOUND}
+     */
+    public long locate(String vehicleId) throws IOException {
+        GateProtocol.writeLocate(out, nextRequestId, vehicleId);
+        ByteBuffer response = call(GateProtocol.LOCATE);
+        if (response == null) {
+            return VehicleLocationIndex.NOT_FOUND;
+        }
+        Size size = GateProtocol.sizeOf(response.get());
+        return VehicleLocationIndex.location(size, response.getInt());
+    }
+
+    /**
+     * @return Lots occupied and lots of every size, at 2 * size ordinal and 2 * size ordinal + 1
+     */
+    public int[] occupancy() throws IOException {
+        GateProtocol.writeOccupancy(out, nextRequestId);
+        ByteBuffer response = call(GateProtocol.OCCUPANCY);
+        int[] occupancy = new int[Size.values().length * 2];
+        for (int i = 0; i < occupancy.length; i++) {
+            occupancy[i] = response.getInt();
+        }
+        return occupancy;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Sends the request in the output buffer and reads its response.
+     *
+     * @return The response positioned at its body if the status is {@link GateProtocol#OK}, null if rejected
+     * @throws IOException if the connection fails or the server could not understand the request
+     */
+    private ByteBuffer call(byte opcode) throws IOException {
+        int requestId = nextRequestId++;
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+
+        in.clear();
+        int length;
+        do {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+            in.flip();
+            length = GateProtocol.frameLength(in);
+            in.position(in.limit()).limit(in.capacity());
+        } while (length < 0);
+        in.flip();
+        if (length == 0 || in.get(GateProtocol.LENGTH_BYTES) != opcode
+                || in.getInt(GateProtocol.LENGTH_BYTES + 1) != requestId) {
+            throw new IOException("Malformed response");
+        }
+        in.position(GateProtocol.HEADER_BYTES);
+        byte status = in.get();
+        if (status == GateProtocol.BAD_REQUEST) {
+            throw new IOException("Request rejected as malformed by the server");
+        }
+        if (status == GateProtocol.FAILED) {
+            throw new IOException("Request failed on the server");
+        }
+        return status == GateProtocol.OK ? in : null;
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.parkinglot.server;
+
+import org.example.parkinglot.models.Size;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary protocol between gates and the {@link GateServer}, shared by the server and the clients.
+ *
+ * Every frame is a 4 byte length of the rest of the frame, the opcode, a 4 byte request ID chosen by the client and
+ * the body, all big endian. Responses repeat the opcode and request ID, add a status byte and come back in the order
+ * the requests were sent, so a client may send many requests before reading any response.
+ *
+ *     PARK      request: vehicle size ordinal (1), gate (4), vehicle ID length (2), vehicle ID in UTF-8
+ *               response: packed ticket (8)
+ *     UNPARK    request: packed ticket (8)
+ *     LOCATE    request: vehicle ID length (2), vehicle ID in UTF-8
+ *               response: lot size ordinal (1), lot ID (4)
+ *     OCCUPANCY response: lots occupied (4) and lots (4) of every size, by size ordinal
+ *
+ * A response carries a body only with status {@link #OK}.
+ */
+public final class GateProtocol {
+
+    public static final byte PARK = 1;
+    public static final byte UNPARK = 2;
+    public static final byte LOCATE = 3;
+    public static final byte OCCUPANCY = 4;
+
+    /**
+     * The request was carried out.
+     */
+    public static final byte OK = 0;
+    /**
+     * No lot could be reserved, the ticket was not valid or the vehicle is not parked.
+     */
+    public static final byte REJECTED = 1;
+    /**
+     * The request could not be understood, e.g. an unknown opcode or size, a blank vehicle ID or a gate the lot
+     * does not have.
+     */
+    public static final byte BAD_REQUEST = 2;
+    /**
+     * The request was understood but the server failed to carry it out, e.g. because its log is closed.
+     */
+    public static final byte FAILED = 3;
+
+    public static final int MAX_VEHICLE_ID_BYTES = 255;
+    public static final int MAX_FRAME_BYTES = 512;
+
+    static final int LENGTH_BYTES = 4;
+    static final int HEADER_BYTES = LENGTH_BYTES + 1 + 4;
+    static final int MAX_RESPONSE_BYTES = HEADER_BYTES + 1 + Size.values().length * 8;
+
+    private static final Size[] SIZES = Size.values();
+
+    private GateProtocol() {}
+
+    /**
+     * @param buffer positioned at the start of a frame
+     * @return Length of the complete frame at the buffer's position, -1 if more bytes are needed, or 0 if the bytes
+     * cannot be the start of a frame
+     */
+    public static int frameLength(ByteBuffer buffer) {
+        if (buffer.remaining() < LENGTH_BYTES) {
+            return -1;
+        }
+        int length = buffer.getInt(buffer.position());
+        if (length < HEADER_BYTES - LENGTH_BYTES || length > MAX_FRAME_BYTES - LENGTH_BYTES) {
+            return 0;
+        }
+        return buffer.remaining() < LENGTH_BYTES + length ? -1 : LENGTH_BYTES + length;
+    }
+
+    public static void writePark(ByteBuffer buffer, int requestId, Size vehicleSize, int gate, String vehicleId) {
+        byte[] id = encodeVehicleId(vehicleId);
+        int start = writeHeader(buffer, PARK, requestId);
+        buffer.put((byte) vehicleSize.ordinal()).putInt(gate).putShort((short) id.length).put(id);
+        endFrame(buffer, start);
+    }
+
+    public static void writeUnPark(ByteBuffer buffer, int requestId, long packedTicket) {
+        int start = writeHeader(buffer, UNPARK, requestId);
+        buffer.putLong(packedTicket);
+        endFrame(buffer, start);
+    }
+
+    public static void writeLocate(ByteBuffer buffer, int requestId, String vehicleId) {
+        byte[] id = encodeVehicleId(vehicleId);
+        int start = writeHeader(buffer, LOCATE, requestId);
+        buffer.putShort((short) id.length).put(id);
+        endFrame(buffer, start);
+    }
+
+    public static void writeOccupancy(ByteBuffer buffer, int requestId) {
+        endFrame(buffer, writeHeader(buffer, OCCUPANCY, requestId));
+    }
+
+    /**
+     * Writes the header of a response, the caller then puts the body and ends it with {@link #endFrame}.
+     *
+     * @return Position of the frame
+     */
+    static int writeResponseHeader(ByteBuffer buffer, byte opcode, int requestId, byte status) {
+        int start = writeHeader(buffer, opcode, requestId);
+        buffer.put(status);
+        return start;
+    }
+
+    /**
+     * Fills in the length of the frame starting at the position, now that the body is written.
+     */
+    static void endFrame(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - LENGTH_BYTES);
+    }
+
+    /**
+     * @return Size of the ordinal, or null if there is none
+     */
+    static Size sizeOf(byte ordinal) {
+        return ordinal >= 0 && ordinal < SIZES.length ? SIZES[ordinal] : null;
+    }
+
+    /**
+     * Reads a vehicle ID length and the ID.
+     *
+     * @return The vehicle ID, or null if it runs past the end of the frame or is blank
+     */
+    static String readVehicleId(ByteBuffer buffer, int frameEnd) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == 0 || buffer.position() + length > frameEnd) {
+            return null;
+        }
+        String id = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return id.trim().isEmpty() ? null : id;
+    }
+
+    private static int writeHeader(ByteBuffer buffer, byte opcode, int requestId) {
+        int start = buffer.position();
+        buffer.putInt(0).put(opcode).putInt(requestId);
+        return start;
+    }
+
+    private static byte[] encodeVehicleId(String vehicleId) {
+        byte[] id = vehicleId.getBytes(StandardCharsets.UTF_8);
+        if (id.length == 0 || id.length > MAX_VEHICLE_ID_BYTES) {
+            throw new IllegalArgumentException("Vehicle ID must take 1 to " + MAX_VEHICLE_ID_BYTES + " bytes");
+        }
+        return id;
+    }
+}
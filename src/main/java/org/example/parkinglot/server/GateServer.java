@@ -0,0 +1,272 @@
+package org.example.parkinglot.server;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.PackedTicket;
+import org.example.parkinglot.models.vehicle.Vehicles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded TCP front end of a {@link LotManager}, speaking the {@link GateProtocol} with any number of gates.
+ *
+ * Every connection is served by its own thread doing blocking reads and writes on a {@link SocketChannel}: a virtual
+ * thread where the JVM has them (Java 21 on), otherwise a pooled platform thread. Requests are handled in the order
+ * they arrive, every request read in one go is handled before the responses are written back together, so pipelining
+ * clients get one write per batch of requests. A connection sending a malformed frame is closed.
+ *
+ * Parks and unParks use the allocation free packed variants, the {@link LotManager} has to be ThreadSafe, e.g. built
+ * with {@link org.example.parkinglot.ConcurrentLotTracker.Factory}.
+ *
+ * ThreadSafe class.
+ */
+public final class GateServer implements Closeable {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final LotManager lotManager;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connections;
+    private final boolean virtualThreads;
+    private final Set<SocketChannel> openChannels = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    private GateServer(LotManager lotManager, ServerSocketChannel serverChannel) {
+        this.lotManager = lotManager;
+        this.serverChannel = serverChannel;
+        ExecutorService virtual = virtualThreadPerTaskExecutor();
+        this.virtualThreads = virtual != null;
+        this.connections = virtual != null ? virtual : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "gate-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::accept, "gate-acceptor");
+        acceptor.setDaemon(true);
+    }
+
+    /**
+     * Starts serving the lot manager.
+     *
+     * @param address to listen on, e.g. new InetSocketAddress(InetAddress.getLoopbackAddress(), 0) for any free
+     *                local port
+     */
+    public static GateServer start(LotManager lotManager, InetSocketAddress address) throws IOException {
+        if (lotManager == null || address == null) {
+            throw new IllegalArgumentException("lotManager and address must not be null");
+        }
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address, 1024);
+        } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+        GateServer server = new GateServer(lotManager, serverChannel);
+        server.acceptor.start();
+        return server;
+    }
+
+    /**
+     * @return Executor starting a virtual thread per task, or null if this JVM has no virtual threads
+     */
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * @return true if connections are served by virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones.
+     */
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        for (SocketChannel channel : openChannels) {
+            channel.close();
+        }
+        connections.shutdown();
+        try {
+            connections.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                openChannels.add(channel);
+                connections.execute(() -> serve(channel));
+            } catch (IOException | RejectedExecutionException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                int length;
+                while ((length = GateProtocol.frameLength(in)) > 0) {
+                    if (out.remaining() < GateProtocol.MAX_RESPONSE_BYTES) {
+                        flush(channel, out);
+                    }
+                    handle(in, in.position() + length, out);
+                }
+                if (length == 0) {
+                    flush(channel, out);
+                    return;
+                }
+                in.compact();
+                flush(channel, out);
+            }
+        } catch (IOException e) {
+            // the gate went away
+        } finally {
+            openChannels.remove(channel);
+            try {
+                // answers already handled are owed to the gate even when the connection ends early
+                if (channel.isOpen() && out.position() > 0) {
+                    flush(channel, out);
+                }
+            } catch (IOException e) {
+                // the gate went away
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+
+    private static void flush(SocketChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Handles the request frame at the position of the input and leaves the position at the frame end.
+     *
+     * A request the lot manager throws on is answered with {@link GateProtocol#BAD_REQUEST} for bad arguments and
+     * {@link GateProtocol#FAILED} otherwise, so that the connection and the requests pipelined after it live on.
+     */
+    private void handle(ByteBuffer in, int frameEnd, ByteBuffer out) {
+        in.position(in.position() + GateProtocol.LENGTH_BYTES);
+        byte opcode = in.get();
+        int requestId = in.getInt();
+        int responseStart = out.position();
+        int start;
+        try {
+            start = dispatch(in, frameEnd, out, opcode, requestId);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            out.position(responseStart);
+            start = badRequest(out, opcode, requestId);
+        } catch (RuntimeException e) {
+            out.position(responseStart);
+            start = GateProtocol.writeResponseHeader(out, opcode, requestId, GateProtocol.FAILED);
+        }
+        GateProtocol.endFrame(out, start);
+        in.position(frameEnd);
+    }
+
+    private int dispatch(ByteBuffer in, int frameEnd, ByteBuffer out, byte opcode, int requestId) {
+        int start;
+        switch (opcode) {
+            case GateProtocol.PARK:
+                start = park(in, frameEnd, out, requestId);
+                break;
+            case GateProtocol.UNPARK:
+                start = frameEnd - in.position() < Long.BYTES ? badRequest(out, opcode, requestId)
+                        : status(out, opcode, requestId, lotManager.unParkPacked(in.getLong()));
+                break;
+            case GateProtocol.LOCATE:
+                start = locate(in, frameEnd, out, requestId);
+                break;
+            case GateProtocol.OCCUPANCY:
+                start = GateProtocol.writeResponseHeader(out, opcode, requestId, GateProtocol.OK);
+                for (Size size : Size.values()) {
+                    out.putInt(lotManager.getNumberOfLotsOccupied(size)).putInt(lotManager.getNumberOfLots(size));
+                }
+                break;
+            default:
+                start = badRequest(out, opcode, requestId);
+        }
+        return start;
+    }
+
+    private int park(ByteBuffer in, int frameEnd, ByteBuffer out, int requestId) {
+        if (frameEnd - in.position() < 1 + Integer.BYTES + Short.BYTES) {
+            return badRequest(out, GateProtocol.PARK, requestId);
+        }
+        Size size = GateProtocol.sizeOf(in.get());
+        int gate = in.getInt();
+        String vehicleId = GateProtocol.readVehicleId(in, frameEnd);
+        if (size == null || vehicleId == null) {
+            return badRequest(out, GateProtocol.PARK, requestId);
+        }
+        long packedTicket = lotManager.parkPacked(Vehicles.of(size, vehicleId), gate);
+        int start = status(out, GateProtocol.PARK, requestId, packedTicket != PackedTicket.NONE);
+        if (packedTicket != PackedTicket.NONE) {
+            out.putLong(packedTicket);
+        }
+        return start;
+    }
+
+    private int locate(ByteBuffer in, int frameEnd, ByteBuffer out, int requestId) {
+        String vehicleId = frameEnd - in.position() < Short.BYTES ? null : GateProtocol.readVehicleId(in, frameEnd);
+        if (vehicleId == null) {
+            return badRequest(out, GateProtocol.LOCATE, requestId);
+        }
+        Optional<Lot> lot = lotManager.locate(vehicleId);
+        int start = status(out, GateProtocol.LOCATE, requestId, lot.isPresent());
+        if (lot.isPresent()) {
+            out.put((byte) lot.get().getSize().ordinal()).putInt(lot.get().getId());
+        }
+        return start;
+    }
+
+    private static int status(ByteBuffer out, byte opcode, int requestId, boolean ok) {
+        return GateProtocol.writeResponseHeader(out, opcode, requestId, ok ? GateProtocol.OK : GateProtocol.REJECTED);
+    }
+
+    private static int badRequest(ByteBuffer out, byte opcode, int requestId) {
+        return GateProtocol.writeResponseHeader(out, opcode, requestId, GateProtocol.BAD_REQUEST);
+    }
+}
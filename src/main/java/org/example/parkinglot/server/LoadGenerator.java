@@ -0,0 +1,218 @@
+package org.example.parkinglot.server;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.index.FreeLotIndex;
+import org.example.parkinglot.metrics.LatencyHistogram;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.PackedTicket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drives a {@link GateServer} with thousands of simulated gates and reports the throughput and latency percentiles.
+ *
+ * The gates are spread over a few connections. Every gate parks a vehicle, unParks it once parked and starts over
+ * with the next vehicle, keeping one request in flight, so every connection carries as many pipelined requests as it
+ * has gates. Latency is measured from writing a request to reading its response.
+ *
+ *     java -cp build/classes/java/main org.example.parkinglot.server.LoadGenerator [gates] [connections] [seconds]
+ *             [host:port]
+ *
+ * Without an address, a {@link GateServer} is started in process over a {@link LotManager} with as many lots of
+ * every size as there are gates.
+ */
+public final class LoadGenerator {
+
+    /**
+     * Requests of one connection are written in one go before any response is read, this keeps them within the
+     * socket buffers.
+     */
+    public static final int MAX_GATES_PER_CONNECTION = 1024;
+
+    private LoadGenerator() {}
+
+    public static void main(String[] args) throws Exception {
+        int gates = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 10);
+        if (args.length > 3) {
+            String[] hostAndPort = args[3].split(":");
+            System.out.println(run(new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])), gates,
+                    connections, duration));
+            return;
+        }
+        LotManager lotManager = new LotManager(gates, gates, gates, ConcurrentLotTracker.Factory.INSTANCE);
+        try (GateServer server = GateServer.start(lotManager,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            System.out.println("In process server, virtual threads: " + server.usesVirtualThreads());
+            System.out.println(run(server.getAddress(), gates, connections, duration));
+        }
+    }
+
+    /**
+     * Runs the simulated gates against a server until the duration is up and every request in flight is answered.
+     */
+    public static Result run(InetSocketAddress address, int gates, int connections, Duration duration)
+            throws Exception {
+        if (connections < 1 || gates < connections || gates > connections * MAX_GATES_PER_CONNECTION) {
+            throw new IllegalArgumentException("Need 1 to " + MAX_GATES_PER_CONNECTION + " gates per connection");
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        long deadline = System.nanoTime() + duration.toNanos();
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            List<Future<Long>> operations = new ArrayList<>();
+            for (int connection = 0; connection < connections; connection++) {
+                int connectionGates = gates / connections + (connection < gates % connections ? 1 : 0);
+                int id = connection;
+                operations.add(executor.submit(() -> drive(address, id, connectionGates, deadline, latency)));
+            }
+            long total = 0;
+            for (Future<Long> future : operations) {
+                total += future.get();
+            }
+            return new Result(gates, connections, total, System.nanoTime() - start, latency.snapshot());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the gates of one connection.
+     *
+     * @return Number of requests answered
+     */
+    private static long drive(InetSocketAddress address, int connection, int gates, long deadline,
+                              LatencyHistogram latency) throws IOException {
+        long[] tickets = new long[gates];
+        long[] sentAt = new long[gates];
+        int[] vehicles = new int[gates];
+        int[] ready = new int[gates];
+        for (int gate = 0; gate < gates; gate++) {
+            tickets[gate] = PackedTicket.NONE;
+            ready[gate] = gate;
+        }
+        int readyCount = gates;
+        int inFlight = 0;
+        long answered = 0;
+        ByteBuffer out = ByteBuffer.allocate(gates * 64);
+        ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            while (true) {
+                if (System.nanoTime() < deadline) {
+                    for (int i = 0; i < readyCount; i++) {
+                        int gate = ready[i];
+                        if (tickets[gate] == PackedTicket.NONE) {
+                            GateProtocol.writePark(out, gate, sizeOf(gate),
+                                    FreeLotIndex.ANY_GATE, "gate-" + connection + "-" + gate + "-" + vehicles[gate]++);
+                        } else {
+                            GateProtocol.writeUnPark(out, gate, tickets[gate]);
+                        }
+                        sentAt[gate] = System.nanoTime();
+                    }
+                    inFlight += readyCount;
+                    readyCount = 0;
+                    out.flip();
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+                    out.clear();
+                }
+                if (inFlight == 0) {
+                    return answered;
+                }
+
+                if (channel.read(in) < 0) {
+                    throw new EOFException("Connection closed by the server");
+                }
+                in.flip();
+                int length;
+                while ((length = GateProtocol.frameLength(in)) > 0) {
+                    int frameEnd = in.position() + length;
+                    byte opcode = in.get(in.position() + GateProtocol.LENGTH_BYTES);
+                    int gate = in.getInt(in.position() + GateProtocol.LENGTH_BYTES + 1);
+                    byte status = in.get(in.position() + GateProtocol.HEADER_BYTES);
+                    if (opcode == GateProtocol.PARK && status == GateProtocol.OK) {
+                        tickets[gate] = in.getLong(in.position() + GateProtocol.HEADER_BYTES + 1);
+                    } else if (opcode == GateProtocol.UNPARK) {
+                        tickets[gate] = PackedTicket.NONE;
+                    }
+                    latency.record(System.nanoTime() - sentAt[gate]);
+                    ready[readyCount++] = gate;
+                    inFlight--;
+                    answered++;
+                    in.position(frameEnd);
+                }
+                if (length == 0) {
+                    throw new IOException("Malformed response");
+                }
+                in.compact();
+            }
+        }
+    }
+
+    /**
+     * @return Size of the vehicles of a gate: six in ten gates see cars, three bikes and one trucks
+     */
+    private static Size sizeOf(int gate) {
+        int bucket = gate % 10;
+        return bucket < 6 ? Size.MEDIUM : bucket < 9 ? Size.SMALL : Size.LARGE;
+    }
+
+    public static final class Result {
+        private final int gates;
+        private final int connections;
+        private final long operations;
+        private final long nanos;
+        private final LatencyHistogram.Snapshot latency;
+
+        private Result(int gates, int connections, long operations, long nanos, LatencyHistogram.Snapshot latency) {
+            this.gates = gates;
+            this.connections = connections;
+            this.operations = operations;
+            this.nanos = nanos;
+            this.latency = latency;
+        }
+
+        /**
+         * @return Number of requests answered
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        public double getOperationsPerSecond() {
+            return operations * 1e9 / nanos;
+        }
+
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d gates over %d connections: %d requests, %.0f requests/s, latency p50 %d us, p99 %d us,"
+                            + " p99.9 %d us, max %d us",
+                    gates, connections, operations, getOperationsPerSecond(), latency.getValueAtPercentile(50) / 1000,
+                    latency.getValueAtPercentile(99) / 1000, latency.getValueAtPercentile(99.9) / 1000,
+                    latency.getMax() / 1000);
+        }
+    }
+}
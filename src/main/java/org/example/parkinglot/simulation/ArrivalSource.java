@@ -0,0 +1,33 @@
+package org.example.parkinglot.simulation;
+
+import org.example.parkinglot.models.Size;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Arrivals driving a {@link TrafficSimulator}, in order of arrival time. The accessors describe the arrival the last
+ * call to {@link #next()} moved to, so iterating allocates nothing.
+ */
+interface ArrivalSource extends Closeable {
+
+    /**
+     * @return false once there are no more arrivals
+     */
+    boolean next() throws IOException;
+
+    /**
+     * @return Arrival time in milliseconds since the start of the simulation
+     */
+    long arrivalMillis();
+
+    /**
+     * @return Size of the arriving vehicle
+     */
+    Size size();
+
+    /**
+     * @return How long the vehicle stays if it gets a lot, at least 1 millisecond
+     */
+    long dwellMillis();
+}
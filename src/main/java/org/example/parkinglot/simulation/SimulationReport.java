@@ -0,0 +1,171 @@
+package org.example.parkinglot.simulation;
+
+import org.example.parkinglot.metrics.LatencyHistogram;
+import org.example.parkinglot.models.Size;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Outcome of a {@link TrafficSimulator} run: arrivals and rejections by vehicle size, occupancy by lot size over the
+ * simulated time, and the throughput and latency of the lot manager while the simulator drove it.
+ *
+ * Immutable, hence ThreadSafe.
+ */
+public final class SimulationReport {
+
+    private static final Size[] SIZES = Size.values();
+
+    private final long events;
+    private final long simulatedMillis;
+    private final long wallNanos;
+    private final long[] arrivals;
+    private final long[] rejections;
+    private final long[] overflows;
+    private final int[] lots;
+    private final double[] occupancyMillis;
+    private final int[] peakOccupancy;
+    private final int[] occupiedAtEnd;
+    private final LatencyHistogram.Snapshot parkLatency;
+    private final LatencyHistogram.Snapshot unParkLatency;
+
+    SimulationReport(long events, long simulatedMillis, long wallNanos, long[] arrivals, long[] rejections,
+                     long[] overflows, int[] lots, double[] occupancyMillis, int[] peakOccupancy, int[] occupiedAtEnd,
+                     LatencyHistogram.Snapshot parkLatency, LatencyHistogram.Snapshot unParkLatency) {
+        this.events = events;
+        this.simulatedMillis = simulatedMillis;
+        this.wallNanos = wallNanos;
+        this.arrivals = arrivals;
+        this.rejections = rejections;
+        this.overflows = overflows;
+        this.lots = lots;
+        this.occupancyMillis = occupancyMillis;
+        this.peakOccupancy = peakOccupancy;
+        this.occupiedAtEnd = occupiedAtEnd;
+        this.parkLatency = parkLatency;
+        this.unParkLatency = unParkLatency;
+    }
+
+    /**
+     * @return Number of arrivals and departures simulated
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * @return Simulated time from midnight to the last event
+     */
+    public Duration getSimulatedTime() {
+        return Duration.ofMillis(simulatedMillis);
+    }
+
+    public Duration getWallTime() {
+        return Duration.ofNanos(wallNanos);
+    }
+
+    public double getEventsPerSecond() {
+        return wallNanos == 0 ? 0 : events * 1e9 / wallNanos;
+    }
+
+    /**
+     * @param size of the vehicles
+     */
+    public long getArrivals(Size size) {
+        return arrivals[size.ordinal()];
+    }
+
+    /**
+     * @param size of the vehicles
+     * @return Number of vehicles of the size turned away because no lot was free for them
+     */
+    public long getRejections(Size size) {
+        return rejections[size.ordinal()];
+    }
+
+    /**
+     * @param size of the vehicles
+     * @return Share of the vehicles of the size turned away, 0 if none arrived
+     */
+    public double getRejectionRate(Size size) {
+        long arrived = arrivals[size.ordinal()];
+        return arrived == 0 ? 0 : (double) rejections[size.ordinal()] / arrived;
+    }
+
+    /**
+     * @param size of the vehicles
+     * @return Number of vehicles of the size parked in a larger lot, see
+     * {@link org.example.parkinglot.allocation.AllocationPolicy}
+     */
+    public long getOverflows(Size size) {
+        return overflows[size.ordinal()];
+    }
+
+    /**
+     * @param size of the lots
+     * @return Average number of lots of the size occupied over the simulated time
+     */
+    public double getAverageOccupancy(Size size) {
+        return simulatedMillis == 0 ? 0 : occupancyMillis[size.ordinal()] / simulatedMillis;
+    }
+
+    /**
+     * @param size of the lots
+     * @return Average share of the lots of the size occupied over the simulated time, 0 without lots
+     */
+    public double getUtilisation(Size size) {
+        int count = lots[size.ordinal()];
+        return count == 0 ? 0 : getAverageOccupancy(size) / count;
+    }
+
+    /**
+     * @param size of the lots
+     * @return Most lots of the size occupied at once
+     */
+    public int getPeakOccupancy(Size size) {
+        return peakOccupancy[size.ordinal()];
+    }
+
+    /**
+     * @param size of the lots
+     * @return Number of lots of the size still occupied after the last event
+     */
+    public int getOccupiedAtEnd(Size size) {
+        return occupiedAtEnd[size.ordinal()];
+    }
+
+    /**
+     * @return Latency of {@link org.example.parkinglot.LotManager#parkPacked} in nanoseconds
+     */
+    public LatencyHistogram.Snapshot getParkLatency() {
+        return parkLatency;
+    }
+
+    /**
+     * @return Latency of {@link org.example.parkinglot.LotManager#unParkPacked} in nanoseconds
+     */
+    public LatencyHistogram.Snapshot getUnParkLatency() {
+        return unParkLatency;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%d events over %s simulated in %d ms, %.0f events/s%n", events,
+                getSimulatedTime(), getWallTime().toMillis(), getEventsPerSecond()));
+        text.append(String.format(Locale.ROOT, "%-7s %10s %10s %9s %10s %8s %6s %6s%n",
+                "size", "arrivals", "rejected", "rejected%", "overflows", "lots", "util%", "peak"));
+        for (Size size : SIZES) {
+            text.append(String.format(Locale.ROOT, "%-7s %10d %10d %9.2f %10d %8d %6.1f %6d%n", size,
+                    getArrivals(size), getRejections(size), getRejectionRate(size) * 100, getOverflows(size),
+                    lots[size.ordinal()], getUtilisation(size) * 100, getPeakOccupancy(size)));
+        }
+        text.append(String.format(Locale.ROOT, "park latency p50 %d ns, p99 %d ns, p99.9 %d ns, max %d ns%n",
+                parkLatency.getValueAtPercentile(50), parkLatency.getValueAtPercentile(99),
+                parkLatency.getValueAtPercentile(99.9), parkLatency.getMax()));
+        text.append(String.format(Locale.ROOT, "unPark latency p50 %d ns, p99 %d ns, p99.9 %d ns, max %d ns",
+                unParkLatency.getValueAtPercentile(50), unParkLatency.getValueAtPercentile(99),
+                unParkLatency.getValueAtPercentile(99.9), unParkLatency.getMax()));
+        return text.toString();
+    }
+}
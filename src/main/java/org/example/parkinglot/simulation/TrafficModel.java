@@ -0,0 +1,241 @@
+package org.example.parkinglot.simulation;
+
+import org.example.parkinglot.models.Size;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Traffic of bikes, cars and trucks arriving at a parking lot, for {@link TrafficSimulator}.
+ *
+ * Vehicles of every size arrive as a Poisson process whose rate follows the time of day: the average number of
+ * arrivals per hour is scaled by an hourly profile, e.g. a morning and an evening peak. Dwell times are log-normal,
+ * given by their median and spread (the standard deviation of their logarithm), as stays in a car park tend to be:
+ * most are short, a few last all day. Simulated time starts at midnight.
+ *
+ * The arrivals depend on nothing but the model and the seed, so the same seed always gives the same arrivals.
+ *
+ * Immutable once built, hence ThreadSafe.
+ */
+public final class TrafficModel {
+
+    private static final Size[] SIZES = Size.values();
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private final double[] arrivalsPerHour;
+    private final double[] medianDwellMillis;
+    private final double[] dwellSpread;
+    /**
+     * Hourly profile scaled to an average of 1.
+     */
+    private final double[] profile;
+    private final double peak;
+
+    private TrafficModel(Builder builder) {
+        this.arrivalsPerHour = builder.arrivalsPerHour.clone();
+        this.medianDwellMillis = builder.medianDwellMillis.clone();
+        this.dwellSpread = builder.dwellSpread.clone();
+        double sum = 0;
+        for (double weight : builder.profile) {
+            sum += weight;
+        }
+        this.profile = new double[24];
+        double peak = 0;
+        for (int hour = 0; hour < 24; hour++) {
+            profile[hour] = builder.profile[hour] * 24 / sum;
+            peak = Math.max(peak, profile[hour]);
+        }
+        this.peak = peak;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return Average number of vehicles of the size arriving per hour over a day
+     */
+    public double getArrivalsPerHour(Size size) {
+        return arrivalsPerHour[size.ordinal()];
+    }
+
+    /**
+     * @return Average dwell time of vehicles of the size, the mean of the log-normal distribution
+     */
+    public Duration getMeanDwellTime(Size size) {
+        double sigma = dwellSpread[size.ordinal()];
+        return Duration.ofMillis(Math.round(medianDwellMillis[size.ordinal()] * Math.exp(sigma * sigma / 2)));
+    }
+
+    /**
+     * @param seed of the arrivals
+     * @return Arrivals of the model from midnight on, endless
+     */
+    ArrivalSource arrivals(long seed) {
+        return new Arrivals(seed);
+    }
+
+    /**
+     * Merges the arrival processes of the sizes. Each is thinned from a process at the peak rate of the profile, which
+     * keeps drawing the next arrival constant time whatever the profile.
+     */
+    private final class Arrivals implements ArrivalSource {
+
+        private final SplittableRandom random;
+        private final long[] next = new long[SIZES.length];
+        private final double[] candidate = new double[SIZES.length];
+        private long arrivalMillis;
+        private Size size;
+        private long dwellMillis;
+        private double spareGaussian = Double.NaN;
+
+        Arrivals(long seed) {
+            this.random = new SplittableRandom(seed);
+            for (Size size : SIZES) {
+                advance(size.ordinal());
+            }
+        }
+
+        private void advance(int i) {
+            double peakPerMilli = arrivalsPerHour[i] * peak / HOUR_MILLIS;
+            if (peakPerMilli == 0) {
+                next[i] = Long.MAX_VALUE;
+                return;
+            }
+            do {
+                candidate[i] += -Math.log(1 - random.nextDouble()) / peakPerMilli;
+            } while (random.nextDouble() * peak >= profile[(int) ((long) candidate[i] / HOUR_MILLIS % 24)]);
+            next[i] = (long) candidate[i];
+        }
+
+        @Override
+        public boolean next() {
+            int earliest = 0;
+            for (int i = 1; i < SIZES.length; i++) {
+                if (next[i] < next[earliest]) {
+                    earliest = i;
+                }
+            }
+            if (next[earliest] == Long.MAX_VALUE) {
+                return false;
+            }
+            arrivalMillis = next[earliest];
+            size = SIZES[earliest];
+            double dwell = medianDwellMillis[earliest] * Math.exp(dwellSpread[earliest] * nextGaussian());
+            dwellMillis = Math.max(1, Math.round(dwell));
+            advance(earliest);
+            return true;
+        }
+
+        /**
+         * @return Standard normal value, drawn in pairs by the polar method
+         */
+        private double nextGaussian() {
+            double gaussian = spareGaussian;
+            if (!Double.isNaN(gaussian)) {
+                spareGaussian = Double.NaN;
+                return gaussian;
+            }
+            double x;
+            double y;
+            double square;
+            do {
+                x = 2 * random.nextDouble() - 1;
+                y = 2 * random.nextDouble() - 1;
+                square = x * x + y * y;
+            } while (square >= 1 || square == 0);
+            double scale = Math.sqrt(-2 * Math.log(square) / square);
+            spareGaussian = y * scale;
+            return x * scale;
+        }
+
+        @Override
+        public long arrivalMillis() {
+            return arrivalMillis;
+        }
+
+        @Override
+        public Size size() {
+            return size;
+        }
+
+        @Override
+        public long dwellMillis() {
+            return dwellMillis;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Collects the traffic of a model. Sizes without traffic get no arrivals.
+     *
+     * Not a ThreadSafe class.
+     */
+    public static final class Builder {
+        private final double[] arrivalsPerHour = new double[SIZES.length];
+        private final double[] medianDwellMillis = new double[SIZES.length];
+        private final double[] dwellSpread = new double[SIZES.length];
+        private final double[] profile = new double[24];
+
+        private Builder() {
+            Arrays.fill(profile, 1);
+        }
+
+        /**
+         * @param size            of the vehicles, e.g. {@link Size#MEDIUM} for cars
+         * @param arrivalsPerHour average number of vehicles arriving per hour over a day
+         * @param medianDwell     half the vehicles stay shorter than this
+         * @param dwellSpread     standard deviation of the logarithm of the dwell times, e.g. 0.8; 0 makes every
+         *                        vehicle stay the median
+         */
+        public Builder traffic(Size size, double arrivalsPerHour, Duration medianDwell, double dwellSpread) {
+            if (size == null || medianDwell == null || !(arrivalsPerHour >= 0) || !(dwellSpread >= 0)
+                    || medianDwell.isNegative() || medianDwell.isZero()) {
+                throw new IllegalArgumentException("size and a positive medianDwell are required, arrivalsPerHour"
+                        + " and dwellSpread must not be negative");
+            }
+            this.arrivalsPerHour[size.ordinal()] = arrivalsPerHour;
+            this.medianDwellMillis[size.ordinal()] = medianDwell.toMillis();
+            this.dwellSpread[size.ordinal()] = dwellSpread;
+            return this;
+        }
+
+        /**
+         * @param weights relative arrival rate of every hour of the day from midnight, 24 of them, e.g. 2 for twice
+         *                the rate of an hour of weight 1. Flat unless given.
+         */
+        public Builder hourlyProfile(double... weights) {
+            if (weights == null || weights.length != 24) {
+                throw new IllegalArgumentException("24 hourly weights are required");
+            }
+            double sum = 0;
+            for (double weight : weights) {
+                if (!(weight >= 0) || Double.isInfinite(weight)) {
+                    throw new IllegalArgumentException("weights must not be negative");
+                }
+                sum += weight;
+            }
+            if (sum == 0) {
+                throw new IllegalArgumentException("At least one hour needs a positive weight");
+            }
+            System.arraycopy(weights, 0, profile, 0, 24);
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if no size has traffic
+         */
+        public TrafficModel build() {
+            for (double rate : arrivalsPerHour) {
+                if (rate > 0) {
+                    return new TrafficModel(this);
+                }
+            }
+            throw new IllegalArgumentException("No traffic");
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.example.parkinglot.simulation;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.metrics.LatencyHistogram;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.PackedTicket;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.example.parkinglot.models.vehicle.Vehicles;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deterministic discrete-event simulator driving a {@link LotManager} with the arrivals of a {@link TrafficModel} or
+ * of a recorded {@link TrafficTrace}, for trying allocation policies and capacity changes away from production.
+ *
+ * Simulated time jumps from one event to the next: an arriving vehicle is parked, or counted as rejected if no lot is
+ * free for it, and leaves again after its dwell time. Departures due at the time of an arrival happen first. The
+ * run is single-threaded and allocation free once warmed up: departures sit in a binary heap of primitive arrays,
+ * vehicles are reused once they left and parking goes through the packed ticket API. Every park and unPark is
+ * timed, see {@link SimulationReport}.
+ *
+ * The same model, seed and lot manager configuration always give the same report, except for the timings. Use a lot
+ * manager nothing else parks in; vehicles parked before the run take lots but are not counted.
+ *
+ *     java -cp build/classes/java/main org.example.parkinglot.simulation.TrafficSimulator [lotsPerSize] [days]
+ *             [seed] [trace]
+ *
+ * simulates the traffic of a city centre car park, and with a trace path also records the arrivals there and replays
+ * them.
+ *
+ * Not a ThreadSafe class, every run uses its own instance.
+ */
+public final class TrafficSimulator {
+
+    private static final Size[] SIZES = Size.values();
+    private static final int SIZE_SHIFT = 28;
+    private static final int VEHICLE_MASK = (1 << SIZE_SHIFT) - 1;
+
+    private final LotManager lotManager;
+    private final double speedup;
+
+    /**
+     * Departures as a binary heap ordered by time, in parallel arrays.
+     */
+    private long[] departureMillis = new long[1024];
+    private long[] departureTickets = new long[1024];
+    private int[] departureVehicles = new int[1024];
+    private int departures;
+
+    /**
+     * Vehicles by size ordinal, reused once they left; free ones are stacked in {@link #free}.
+     */
+    private final Vehicle[][] vehicles = new Vehicle[SIZES.length][16];
+    private final int[] created = new int[SIZES.length];
+    private final int[][] free = new int[SIZES.length][16];
+    private final int[] freeCount = new int[SIZES.length];
+
+    private final long[] arrivals = new long[SIZES.length];
+    private final long[] rejections = new long[SIZES.length];
+    private final long[] overflows = new long[SIZES.length];
+    private final int[] occupied = new int[SIZES.length];
+    private final int[] peakOccupancy = new int[SIZES.length];
+    private final long[] occupancyMillis = new long[SIZES.length];
+    private final LatencyHistogram parkLatency = new LatencyHistogram();
+    private final LatencyHistogram unParkLatency = new LatencyHistogram();
+    private long events;
+    private long nowMillis;
+    private long startNanos;
+
+    private TrafficSimulator(LotManager lotManager, double speedup) {
+        if (lotManager == null || !(speedup >= 0)) {
+            throw new IllegalArgumentException("lotManager must not be null and speedup must not be negative");
+        }
+        this.lotManager = lotManager;
+        this.speedup = speedup;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int lotsPerSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        Duration duration = Duration.ofDays(args.length > 1 ? Long.parseLong(args[1]) : 100);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        TrafficModel model = cityCentre(lotsPerSize);
+        // lets the JIT compile the simulator and the lot manager before anything is measured
+        simulate(lotManager(lotsPerSize), model, seed + 1, Duration.ofDays(20));
+        System.out.println("Simulation:");
+        System.out.println(simulate(lotManager(lotsPerSize), model, seed, duration));
+        if (args.length > 3) {
+            Path trace = Paths.get(args[3]);
+            System.out.println("Recorded " + TrafficTrace.write(trace, model, seed, duration) + " arrivals to "
+                    + trace);
+            System.out.println("Replay:");
+            System.out.println(replay(lotManager(lotsPerSize), trace, 0));
+        }
+    }
+
+    private static LotManager lotManager(int lotsPerSize) {
+        return new LotManager(lotsPerSize, lotsPerSize, lotsPerSize, ConcurrentLotTracker.Factory.INSTANCE);
+    }
+
+    /**
+     * @return Traffic of a city centre car park with the given lots per size: quiet nights, a morning and a smaller
+     * evening peak, short bike stays, cars mostly for a few hours and trucks for half a day
+     */
+    static TrafficModel cityCentre(int lotsPerSize) {
+        return TrafficModel.builder()
+                .traffic(Size.SMALL, lotsPerSize * 0.3, Duration.ofHours(1), 0.7)
+                .traffic(Size.MEDIUM, lotsPerSize * 0.25, Duration.ofHours(2), 0.9)
+                .traffic(Size.LARGE, lotsPerSize * 0.05, Duration.ofHours(4), 0.5)
+                .hourlyProfile(0.2, 0.2, 0.2, 0.2, 0.2, 0.4, 1, 2.5, 2.5, 2.5, 1.2, 1.2,
+                        1.2, 1.2, 1.2, 1.2, 2, 2, 2, 0.8, 0.8, 0.8, 0.3, 0.3)
+                .build();
+    }
+
+    /**
+     * Simulates the traffic of a model from midnight on. Vehicles still parked at the end stay parked.
+     *
+     * @param seed     of the arrivals, the same seed gives the same arrivals
+     * @param duration of simulated time
+     */
+    public static SimulationReport simulate(LotManager lotManager, TrafficModel model, long seed, Duration duration) {
+        if (model == null || duration == null || duration.isNegative()) {
+            throw new IllegalArgumentException("model must not be null and duration must not be negative");
+        }
+        TrafficSimulator simulator = new TrafficSimulator(lotManager, 0);
+        try {
+            return simulator.run(model.arrivals(seed), duration.toMillis());
+        } catch (IOException e) {
+            throw new IllegalStateException("Generated arrivals cannot fail", e);
+        }
+    }
+
+    /**
+     * Replays the arrivals of a trace until every vehicle has left.
+     *
+     * @param speedup 0 to replay as fast as possible, otherwise how many times faster than real time, e.g. 3600 to
+     *                replay an hour in a second
+     * @throws IOException if the trace cannot be read or is corrupt
+     */
+    public static SimulationReport replay(LotManager lotManager, Path trace, double speedup) throws IOException {
+        TrafficSimulator simulator = new TrafficSimulator(lotManager, speedup);
+        try (ArrivalSource source = TrafficTrace.open(trace)) {
+            return simulator.run(source, Long.MAX_VALUE);
+        }
+    }
+
+    private SimulationReport run(ArrivalSource source, long endMillis) throws IOException {
+        int[] lots = new int[SIZES.length];
+        for (Size size : SIZES) {
+            lots[size.ordinal()] = lotManager.getNumberOfLots(size);
+        }
+        startNanos = System.nanoTime();
+        while (source.next() && source.arrivalMillis() < endMillis) {
+            long arrival = source.arrivalMillis();
+            departUntil(arrival);
+            advanceTo(arrival);
+            arrive(source.size(), arrival + source.dwellMillis());
+        }
+        departUntil(endMillis - 1);
+        if (endMillis != Long.MAX_VALUE) {
+            advanceTo(endMillis);
+        }
+        long wallNanos = System.nanoTime() - startNanos;
+        double[] occupancy = new double[SIZES.length];
+        for (int i = 0; i < occupancy.length; i++) {
+            occupancy[i] = occupancyMillis[i];
+        }
+        return new SimulationReport(events, nowMillis, wallNanos, arrivals, rejections, overflows, lots, occupancy,
+                peakOccupancy, occupied.clone(), parkLatency.snapshot(), unParkLatency.snapshot());
+    }
+
+    /**
+     * Moves simulated time forward, adding up the occupancy since the last event and, when replaying at a given
+     * speed, waiting for the wall clock to catch up.
+     */
+    private void advanceTo(long millis) {
+        for (int i = 0; i < SIZES.length; i++) {
+            occupancyMillis[i] += occupied[i] * (millis - nowMillis);
+        }
+        nowMillis = millis;
+        if (speedup > 0) {
+            long wait = startNanos + (long) (millis * 1e6 / speedup) - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    private void arrive(Size size, long departure) {
+        int s = size.ordinal();
+        int vehicle = takeVehicle(s);
+        long start = System.nanoTime();
+        long ticket = lotManager.parkPacked(vehicles[s][vehicle]);
+        parkLatency.record(System.nanoTime() - start);
+        events++;
+        arrivals[s]++;
+        if (!PackedTicket.isValid(ticket)) {
+            rejections[s]++;
+            free[s][freeCount[s]++] = vehicle;
+            return;
+        }
+        int lotSize = PackedTicket.size(ticket).ordinal();
+        if (lotSize != s) {
+            overflows[s]++;
+        }
+        peakOccupancy[lotSize] = Math.max(peakOccupancy[lotSize], ++occupied[lotSize]);
+        push(departure, ticket, s << SIZE_SHIFT | vehicle);
+    }
+
+    /**
+     * Lets every vehicle due to leave by the given time leave, in order of departure.
+     */
+    private void departUntil(long millis) {
+        while (departures > 0 && departureMillis[0] <= millis) {
+            long departure = departureMillis[0];
+            long ticket = departureTickets[0];
+            int vehicle = departureVehicles[0];
+            pop();
+            advanceTo(departure);
+            long start = System.nanoTime();
+            boolean released = lotManager.unParkPacked(ticket);
+            unParkLatency.record(System.nanoTime() - start);
+            if (!released) {
+                throw new IllegalStateException("Ticket " + ticket + " was rejected, does anything else use the lot"
+                        + " manager?");
+            }
+            events++;
+            occupied[PackedTicket.size(ticket).ordinal()]--;
+            int s = vehicle >>> SIZE_SHIFT;
+            free[s][freeCount[s]++] = vehicle & VEHICLE_MASK;
+        }
+    }
+
+    /**
+     * @return Index of a vehicle of the size which is not parked, created if all are
+     */
+    private int takeVehicle(int s) {
+        if (freeCount[s] > 0) {
+            return free[s][--freeCount[s]];
+        }
+        int vehicle = created[s]++;
+        if (vehicle > VEHICLE_MASK) {
+            throw new IllegalStateException("More than " + VEHICLE_MASK + " vehicles parked at once");
+        }
+        if (vehicle == vehicles[s].length) {
+            vehicles[s] = Arrays.copyOf(vehicles[s], vehicle * 2);
+            free[s] = Arrays.copyOf(free[s], vehicle * 2);
+        }
+        vehicles[s][vehicle] = Vehicles.of(SIZES[s], "sim-" + SIZES[s].name().toLowerCase(Locale.ROOT) + "-"
+                + vehicle);
+        return vehicle;
+    }
+
+    private void push(long millis, long ticket, int vehicle) {
+        if (departures == departureMillis.length) {
+            departureMillis = Arrays.copyOf(departureMillis, departures * 2);
+            departureTickets = Arrays.copyOf(departureTickets, departures * 2);
+            departureVehicles = Arrays.copyOf(departureVehicles, departures * 2);
+        }
+        int child = departures++;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (departureMillis[parent] <= millis) {
+                break;
+            }
+            move(parent, child);
+            child = parent;
+        }
+        departureMillis[child] = millis;
+        departureTickets[child] = ticket;
+        departureVehicles[child] = vehicle;
+    }
+
+    private void pop() {
+        int last = --departures;
+        long millis = departureMillis[last];
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= departures) {
+                break;
+            }
+            if (child + 1 < departures && departureMillis[child + 1] < departureMillis[child]) {
+                child++;
+            }
+            if (millis <= departureMillis[child]) {
+                break;
+            }
+            move(child, parent);
+            parent = child;
+        }
+        move(last, parent);
+    }
+
+    private void move(int from, int to) {
+        departureMillis[to] = departureMillis[from];
+        departureTickets[to] = departureTickets[from];
+        departureVehicles[to] = departureVehicles[from];
+    }
+}
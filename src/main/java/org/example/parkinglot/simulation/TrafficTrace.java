@@ -0,0 +1,198 @@
+package org.example.parkinglot.simulation;
+
+import org.example.parkinglot.models.Size;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+/**
+ * Recorded arrivals replayed by {@link TrafficSimulator#replay(org.example.parkinglot.LotManager, Path, double)}.
+ *
+ * A trace file is an 8 byte header ({@link #MAGIC}) followed by one 17 byte record per arrival, in order of arrival
+ * time: the arrival time in milliseconds since the start of the trace (long), the vehicle size ordinal (byte) and
+ * the dwell time in milliseconds (long), all big-endian. Traces are written by {@link #write(Path, TrafficModel, long,
+ * Duration)} to replay a simulation, or by a {@link Writer} from arrivals reconstructed elsewhere, e.g. from gate
+ * logs.
+ */
+public final class TrafficTrace {
+
+    /**
+     * "PKTRACE" and a format version of 1.
+     */
+    public static final long MAGIC = 0x504B545241434501L;
+
+    static final int RECORD_BYTES = 17;
+
+    private static final Size[] SIZES = Size.values();
+    private static final int BUFFER_BYTES = RECORD_BYTES << 12;
+
+    private TrafficTrace() {}
+
+    /**
+     * Records the arrivals of a model.
+     *
+     * @param seed     of the arrivals, see {@link TrafficSimulator#simulate}
+     * @param duration arrivals up to this long after midnight are recorded
+     * @return Number of arrivals recorded
+     */
+    public static long write(Path path, TrafficModel model, long seed, Duration duration) throws IOException {
+        long end = duration.toMillis();
+        long arrivals = 0;
+        try (ArrivalSource source = model.arrivals(seed); Writer writer = create(path)) {
+            while (source.next() && source.arrivalMillis() < end) {
+                writer.append(source.arrivalMillis(), source.size(), source.dwellMillis());
+                arrivals++;
+            }
+        }
+        return arrivals;
+    }
+
+    /**
+     * Creates a trace, replacing any file at the path.
+     */
+    public static Writer create(Path path) throws IOException {
+        return new Writer(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * @throws IOException if the file is not a trace
+     */
+    static ArrivalSource open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+            if (header.hasRemaining() || header.getLong(0) != MAGIC) {
+                throw new IOException("Not a traffic trace: " + path);
+            }
+            return new Reader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends arrivals to a trace.
+     *
+     * Not a ThreadSafe class.
+     */
+    public static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private long lastArrivalMillis;
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+            buffer.putLong(MAGIC);
+        }
+
+        /**
+         * @param arrivalMillis arrival time in milliseconds since the start of the trace, not before the last one
+         * @param size          of the arriving vehicle
+         * @param dwellMillis   how long the vehicle stays, at least 1 millisecond
+         */
+        public void append(long arrivalMillis, Size size, long dwellMillis) throws IOException {
+            if (size == null || arrivalMillis < lastArrivalMillis || dwellMillis < 1) {
+                throw new IllegalArgumentException("Arrivals must be in order, with a size and a positive dwell"
+                        + " time");
+            }
+            if (buffer.remaining() < RECORD_BYTES) {
+                flush();
+            }
+            buffer.putLong(arrivalMillis).put((byte) size.ordinal()).putLong(dwellMillis);
+            lastArrivalMillis = arrivalMillis;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the arrivals of a trace in chunks, allocating nothing per arrival.
+     */
+    private static final class Reader implements ArrivalSource {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private long arrivalMillis;
+        private Size size;
+        private long dwellMillis;
+
+        private Reader(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            if (buffer.remaining() < RECORD_BYTES) {
+                buffer.compact();
+                int read = 0;
+                while (buffer.hasRemaining() && (read = channel.read(buffer)) >= 0) {
+                    // keep reading
+                }
+                buffer.flip();
+                if (read < 0 && buffer.remaining() < RECORD_BYTES) {
+                    if (buffer.hasRemaining()) {
+                        throw new IOException("Traffic trace ends within a record");
+                    }
+                    return false;
+                }
+            }
+            long arrival = buffer.getLong();
+            int ordinal = buffer.get();
+            long dwell = buffer.getLong();
+            if (arrival < arrivalMillis || ordinal < 0 || ordinal >= SIZES.length || dwell < 1) {
+                throw new IOException("Corrupt traffic trace record at arrival " + arrival);
+            }
+            arrivalMillis = arrival;
+            size = SIZES[ordinal];
+            dwellMillis = dwell;
+            return true;
+        }
+
+        @Override
+        public long arrivalMillis() {
+            return arrivalMillis;
+        }
+
+        @Override
+        public Size size() {
+            return size;
+        }
+
+        @Override
+        public long dwellMillis() {
+            return dwellMillis;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
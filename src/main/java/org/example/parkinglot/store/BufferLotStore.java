@@ -0,0 +1,170 @@
+package org.example.parkinglot.store;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.lot.TicketAccess;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.example.parkinglot.models.vehicle.VehicleKey;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays {@link LotStore} keeping the state of every lot in {@link ByteBuffer}s, either on the heap or
+ * off-heap, instead of one {@link Lot} object per lot.
+ *
+ * Each lot takes {@link #BYTES_PER_LOT} bytes: the {@link VehicleKey} of the occupant, followed by an int holding the
+ * generation in the upper 31 bits and the occupied flag in the lowest bit. Vehicles themselves are not retained, so
+ * tickets are validated against the vehicle key and the generation, and {@link #getLot(int)} builds a snapshot
+ * without occupant.
+ *
+ * The buffer is split into chunks, so growing the store allocates new chunks and copies only the array of chunks.
+ * Chunks are as large as the initial capacity rounded up to a power of two, at least 4096 lots and at most 2^20, so
+ * that a store which never grows keeps its lots in a single buffer.
+ */
+public class BufferLotStore implements LotStore {
+
+    public static final LotStore.Factory HEAP = (numberOfLots, size) -> new BufferLotStore(numberOfLots, size, false);
+    public static final LotStore.Factory OFF_HEAP = (numberOfLots, size) -> new BufferLotStore(numberOfLots, size, true);
+
+    public static final int BYTES_PER_LOT = 16;
+    public static final int MAX_LOTS = Integer.MAX_VALUE / BYTES_PER_LOT;
+
+    private static final int MIN_CHUNK_SHIFT = 12;
+    private static final int MAX_CHUNK_SHIFT = 20;
+    private static final int KEY_OFFSET = 0;
+    private static final int STATE_OFFSET = 8;
+    private static final int OCCUPIED = 1;
+
+    private final Size size;
+    private final boolean offHeap;
+    private final int chunkShift;
+    private final int chunkMask;
+    /**
+     * The first chunk, which holds all the lots the store is created with, so that they are reached through a final
+     * field.
+     */
+    private final ByteBuffer first;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile int capacity;
+
+    public BufferLotStore(int numberOfLots, Size size, boolean offHeap) {
+        if (numberOfLots < 0 || numberOfLots > MAX_LOTS || size == null) {
+            throw new IllegalArgumentException("numberOfLots must be within [0, " + MAX_LOTS
+                    + "] and size must not be null");
+        }
+        this.size = size;
+        this.offHeap = offHeap;
+        int shift = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(0, numberOfLots - 1));
+        this.chunkShift = Math.max(MIN_CHUNK_SHIFT, Math.min(MAX_CHUNK_SHIFT, shift));
+        this.chunkMask = (1 << chunkShift) - 1;
+        ensureCapacity(Math.max(1, numberOfLots));
+        this.first = chunks[0];
+        this.capacity = numberOfLots;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * New chunks are zeroed, which is an available lot in generation 0.
+     *
+     * @throws IllegalArgumentException if more than {@link #MAX_LOTS} lots are wanted
+     */
+    @Override
+    public synchronized void ensureCapacity(int numberOfLots) {
+        if (numberOfLots > MAX_LOTS) {
+            throw new IllegalArgumentException("At most " + MAX_LOTS + " lots are supported");
+        }
+        if (numberOfLots <= capacity) {
+            return;
+        }
+        int chunkCount = (numberOfLots + chunkMask) >>> chunkShift;
+        if (chunkCount > chunks.length) {
+            ByteBuffer[] grown = Arrays.copyOf(chunks, chunkCount);
+            for (int chunk = chunks.length; chunk < chunkCount; chunk++) {
+                int bytes = (chunkMask + 1) * BYTES_PER_LOT;
+                grown[chunk] = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+            }
+            chunks = grown;
+        }
+        capacity = numberOfLots;
+    }
+
+    @Override
+    public boolean reserve(int lotId, Vehicle vehicle) {
+        ByteBuffer chunk = chunk(lotId);
+        int offset = offset(lotId);
+        int state = chunk.getInt(offset + STATE_OFFSET);
+        if (vehicle == null || (state & OCCUPIED) != 0 || !size.canHold(vehicle.getSize())) {
+            return false;
+        }
+        chunk.putLong(offset + KEY_OFFSET, VehicleKey.of(vehicle.id()));
+        chunk.putInt(offset + STATE_OFFSET, state | OCCUPIED);
+        return true;
+    }
+
+    @Override
+    public boolean release(int lotId, Ticket ticket) {
+        if (ticket == null || ticket.getLotId() != lotId || ticket.getLotSize() != size
+                || ticket.getVehicleId() == null
+                || chunk(lotId).getLong(offset(lotId) + KEY_OFFSET) != VehicleKey.of(ticket.getVehicleId())
+                || !release(lotId, ticket.getGeneration())) {
+            return false;
+        }
+        return TicketAccess.invalidateReleased(ticket, lotId, ticket.getGeneration());
+    }
+
+    @Override
+    public boolean release(int lotId, int generation) {
+        ByteBuffer chunk = chunk(lotId);
+        int offset = offset(lotId);
+        int state = chunk.getInt(offset + STATE_OFFSET);
+        if ((state & OCCUPIED) == 0 || (state >>> 1) != (generation & Integer.MAX_VALUE)) {
+            return false;
+        }
+        chunk.putLong(offset + KEY_OFFSET, 0L);
+        chunk.putInt(offset + STATE_OFFSET, (state & ~OCCUPIED) + 2);
+        return true;
+    }
+
+    @Override
+    public void restore(int lotId, Vehicle vehicle, int generation) {
+        ByteBuffer chunk = chunk(lotId);
+        chunk.putLong(offset(lotId) + KEY_OFFSET, vehicle == null ? 0L : VehicleKey.of(vehicle.id()));
+        chunk.putInt(offset(lotId) + STATE_OFFSET, (generation << 1) | (vehicle == null ? 0 : OCCUPIED));
+    }
+
+    @Override
+    public int getGeneration(int lotId) {
+        return state(lotId) >>> 1;
+    }
+
+    @Override
+    public boolean isAvailable(int lotId) {
+        return (state(lotId) & OCCUPIED) == 0;
+    }
+
+    @Override
+    public Lot getLot(int lotId) {
+        return Lot.snapshot(lotId, size, !isAvailable(lotId), getGeneration(lotId));
+    }
+
+    private int state(int lotId) {
+        return chunk(lotId).getInt(offset(lotId) + STATE_OFFSET);
+    }
+
+    private ByteBuffer chunk(int lotId) {
+        return lotId <= chunkMask ? first : chunks[lotId >>> chunkShift];
+    }
+
+    /**
+     * @return Offset of the lot within its chunk
+     */
+    private int offset(int lotId) {
+        return (lotId & chunkMask) * BYTES_PER_LOT;
+    }
+}
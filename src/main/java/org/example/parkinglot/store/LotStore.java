@@ -0,0 +1,72 @@
+package org.example.parkinglot.store;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+/**
+ * Storage backend for the state of the lots of a {@link org.example.parkinglot.LotTracker}: whether each lot is
+ * occupied, by which vehicle and in which generation. All lots of a store have the same {@link Size}.
+ *
+ * Lots are identified by their ID, numbered from 0 to capacity - 1. Callers are responsible for range checks and,
+ * when shared between threads, for holding the lot lock around reserve and release.
+ *
+ * Stores which support {@link #ensureCapacity(int)} keep the lots in fixed size chunks, so lots are added while the
+ * existing ones are being reserved and released, without copying them.
+ */
+public interface LotStore {
+
+    int capacity();
+
+    /**
+     * Adds available lots in generation 0 up to the given capacity, while other threads may go on reserving and
+     * releasing the existing lots. The new lots may only be used once this method returned.
+     *
+     * @param numberOfLots capacity wanted, nothing is done if the store is as large already
+     * @throws UnsupportedOperationException if the store has a fixed capacity
+     */
+    default void ensureCapacity(int numberOfLots) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has a fixed capacity");
+    }
+
+    /**
+     * @return true if the lot was available and is large enough for the vehicle, and is now reserved for it
+     */
+    boolean reserve(int lotId, Vehicle vehicle);
+
+    /**
+     * @return true if the lot was occupied by the vehicle and generation of the ticket, and is now available.
+     * The ticket is invalidated in that case.
+     */
+    boolean release(int lotId, Ticket ticket);
+
+    /**
+     * @return true if the lot was occupied in the given generation, and is now available
+     */
+    boolean release(int lotId, int generation);
+
+    /**
+     * Overwrites the state of a lot, e.g. when restoring it from a log or a snapshot.
+     *
+     * @param vehicle    occupying the lot, or null if the lot is available
+     * @param generation of the lot
+     */
+    void restore(int lotId, Vehicle vehicle, int generation);
+
+    /**
+     * @return Generation of the current or, if available, the next occupancy of the lot, see {@link Lot#getGeneration()}
+     */
+    int getGeneration(int lotId);
+
+    boolean isAvailable(int lotId);
+
+    /**
+     * @return The lot as a {@link Lot}. Stores which do not keep {@link Lot} objects build a read-only snapshot.
+     */
+    Lot getLot(int lotId);
+
+    interface Factory {
+        LotStore create(int numberOfLots, Size size);
+    }
+}
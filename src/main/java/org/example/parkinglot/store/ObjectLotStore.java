@@ -0,0 +1,114 @@
+package org.example.parkinglot.store;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Vehicle;
+
+import java.util.Arrays;
+
+/**
+ * {@link LotStore} keeping one {@link Lot} object per lot, indexed by its ID.
+ *
+ * The lots are kept in chunks, so growing the store only copies the array of chunks. Chunks are as large as the
+ * initial capacity rounded up to a power of two, at least 4096 lots and at most 2^20, and the first one is reached
+ * through a final field, so a store which never grows costs the same as a single array.
+ */
+public class ObjectLotStore implements LotStore {
+
+    public static final LotStore.Factory FACTORY = ObjectLotStore::new;
+
+    private static final int MIN_CHUNK_SHIFT = 12;
+    private static final int MAX_CHUNK_SHIFT = 20;
+
+    private final Size size;
+    private final int chunkShift;
+    private final int chunkMask;
+    private final Lot[] first;
+    private volatile Lot[][] chunks;
+    private volatile int capacity;
+
+    /**
+     * Initializes the {@link Lot}'s with monotonically increasing IDs starting with 0 to numberOfLots - 1
+     */
+    public ObjectLotStore(int numberOfLots, Size size) {
+        if (numberOfLots < 0) {
+            throw new IllegalArgumentException("numberOfLots must not be negative");
+        }
+        this.size = size;
+        int shift = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(0, numberOfLots - 1));
+        this.chunkShift = Math.max(MIN_CHUNK_SHIFT, Math.min(MAX_CHUNK_SHIFT, shift));
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.chunks = new Lot[][]{new Lot[chunkMask + 1]};
+        this.first = chunks[0];
+        ensureCapacity(numberOfLots);
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Only the array of chunks is copied, lots of the existing chunks stay where they are.
+     */
+    @Override
+    public synchronized void ensureCapacity(int numberOfLots) {
+        int capacity = this.capacity;
+        if (numberOfLots <= capacity) {
+            return;
+        }
+        Lot[][] chunks = this.chunks;
+        int chunkCount = (int) (((long) numberOfLots + chunkMask) >>> chunkShift);
+        if (chunkCount > chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount);
+            for (int chunk = this.chunks.length; chunk < chunkCount; chunk++) {
+                chunks[chunk] = new Lot[chunkMask + 1];
+            }
+        }
+        for (int i = capacity; i < numberOfLots; i++) {
+            chunks[i >>> chunkShift][i & chunkMask] = new Lot(i, size);
+        }
+        this.chunks = chunks;
+        this.capacity = numberOfLots;
+    }
+
+    @Override
+    public boolean reserve(int lotId, Vehicle vehicle) {
+        return lot(lotId).reserve(vehicle);
+    }
+
+    @Override
+    public boolean release(int lotId, Ticket ticket) {
+        return lot(lotId).release(ticket);
+    }
+
+    @Override
+    public boolean release(int lotId, int generation) {
+        return lot(lotId).release(generation);
+    }
+
+    @Override
+    public void restore(int lotId, Vehicle vehicle, int generation) {
+        lot(lotId).restore(vehicle, generation);
+    }
+
+    @Override
+    public int getGeneration(int lotId) {
+        return lot(lotId).getGeneration();
+    }
+
+    @Override
+    public boolean isAvailable(int lotId) {
+        return lot(lotId).isAvailable();
+    }
+
+    @Override
+    public Lot getLot(int lotId) {
+        return lot(lotId);
+    }
+
+    private Lot lot(int lotId) {
+        return lotId <= chunkMask ? first[lotId] : chunks[lotId >>> chunkShift][lotId & chunkMask];
+    }
+}
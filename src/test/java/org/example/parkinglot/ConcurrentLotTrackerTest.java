@@ -0,0 +1,262 @@
+package org.example.parkinglot;
+
+import org.example.parkinglot.models.LotTrackerFactory;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests hammering a single tracker from many threads, checking that no lot is ever handed out twice.
+ */
+public class ConcurrentLotTrackerTest {
+
+    private static final int THREADS = 16;
+
+    static void runConcurrently(int threads, Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Stream<Arguments> factoriesAndLotCounts() {
+        return factories().flatMap(factory -> Stream.of(1, 7, 64, 1000).map(lots -> Arguments.of(factory, lots)));
+    }
+
+    private static Stream<LotTrackerFactory> factories() {
+        return Stream.of(
+                ConcurrentLotTracker.Factory.INSTANCE,
+                ShardedLotTracker.Factory.withStripes(4),
+                ShardedLotTracker.Factory.withStripes(32)
+        );
+    }
+
+    @Test
+    public void testShardedTrackerKnowsWhenFullOrEmpty() {
+        LotTracker tracker = ShardedLotTracker.Factory.withStripes(4).createLotTracker(300, Size.MEDIUM);
+        assertTrue(tracker.isEmpty());
+        assertFalse(tracker.isFull());
+        List<Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            tickets.add(tracker.reserveLot(new Car("car-" + i)).get());
+        }
+        assertTrue(tracker.isFull());
+        assertFalse(tracker.isEmpty());
+        assertTrue(tracker.releaseLot(tickets.get(299)));
+        assertFalse(tracker.isFull());
+        for (Ticket ticket : tickets.subList(0, 299)) {
+            assertTrue(tracker.releaseLot(ticket));
+        }
+        assertTrue(tracker.isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "factoriesAndLotCounts")
+    public void testLotIsNeverHandedOutTwice(LotTrackerFactory factory, int numberOfLots) throws Exception {
+        LotTracker tracker = factory.createLotTracker(numberOfLots, Size.MEDIUM);
+        AtomicIntegerArray holders = new AtomicIntegerArray(numberOfLots);
+        AtomicInteger doubleIssues = new AtomicInteger();
+        AtomicInteger vehicleIds = new AtomicInteger();
+
+        runConcurrently(THREADS, () -> {
+            List<Ticket> held = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                if (held.size() < 4) {
+                    Optional<Ticket> ticket = tracker.reserveLot(new Car("car-" + vehicleIds.incrementAndGet()));
+                    if (ticket.isPresent()) {
+                        if (!holders.compareAndSet(ticket.get().getLotId(), 0, 1)) {
+                            doubleIssues.incrementAndGet();
+                        }
+                        held.add(ticket.get());
+                    }
+                } else {
+                    Ticket ticket = held.remove(i % held.size());
+                    holders.set(ticket.getLotId(), 0);
+                    assertTrue(tracker.releaseLot(ticket));
+                }
+            }
+            for (Ticket ticket : held) {
+                holders.set(ticket.getLotId(), 0);
+                assertTrue(tracker.releaseLot(ticket));
+            }
+            return null;
+        });
+
+        assertEquals(0, doubleIssues.get());
+        assertEquals(0, tracker.getNumberOfLotsOccupied());
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "factories")
+    public void testTrackerIssuesExactlyAsManyTicketsAsLots(LotTrackerFactory factory) throws Exception {
+        int numberOfLots = 5_000;
+        LotTracker tracker = factory.createLotTracker(numberOfLots, Size.SMALL);
+        AtomicIntegerArray issued = new AtomicIntegerArray(numberOfLots);
+        AtomicInteger tickets = new AtomicInteger();
+        AtomicInteger vehicleIds = new AtomicInteger();
+
+        runConcurrently(THREADS, () -> {
+            for (int i = 0; i < numberOfLots; i++) {
+                Optional<Ticket> ticket = tracker.reserveLot(new Bike("bike-" + vehicleIds.incrementAndGet()));
+                if (ticket.isPresent()) {
+                    assertEquals(0, issued.getAndIncrement(ticket.get().getLotId()));
+                    tickets.incrementAndGet();
+                }
+            }
+            return null;
+        });
+
+        assertEquals(numberOfLots, tickets.get());
+        assertEquals(numberOfLots, tracker.getNumberOfLotsOccupied());
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "factories")
+    public void testSameTicketIsReleasedOnlyOnceWhenPresentedAtManyGates(LotTrackerFactory factory) throws Exception {
+        LotTracker tracker = factory.createLotTracker(10, Size.MEDIUM);
+        for (int round = 0; round < 200; round++) {
+            Ticket ticket = tracker.reserveLot(new Car("car-" + round)).get();
+            AtomicInteger released = new AtomicInteger();
+            runConcurrently(8, () -> {
+                if (tracker.releaseLot(ticket)) {
+                    released.incrementAndGet();
+                }
+                return null;
+            });
+            assertEquals(1, released.get());
+            assertEquals(0, tracker.getNumberOfLotsOccupied());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "factories")
+    public void testBatchesMixedWithSingleCallsKeepCountExact(LotTrackerFactory factory) throws Exception {
+        int numberOfLots = 1_000;
+        LotTracker tracker = factory.createLotTracker(numberOfLots, Size.MEDIUM);
+        AtomicIntegerArray holders = new AtomicIntegerArray(numberOfLots);
+        AtomicInteger doubleIssues = new AtomicInteger();
+        AtomicInteger vehicleIds = new AtomicInteger();
+
+        runConcurrently(THREADS, () -> {
+            for (int round = 0; round < 500; round++) {
+                Vehicle[] vehicles = new Vehicle[1 + round % 40];
+                for (int i = 0; i < vehicles.length; i++) {
+                    vehicles[i] = new Car("car-" + vehicleIds.incrementAndGet());
+                }
+                Ticket[] tickets = tracker.reserveLots(vehicles, vehicles.length);
+                Optional<Ticket> single = tracker.reserveLot(new Car("car-" + vehicleIds.incrementAndGet()));
+                for (Ticket ticket : tickets) {
+                    if (ticket != null && !holders.compareAndSet(ticket.getLotId(), 0, 1)) {
+                        doubleIssues.incrementAndGet();
+                    }
+                }
+                for (Ticket ticket : tickets) {
+                    if (ticket != null) {
+                        holders.set(ticket.getLotId(), 0);
+                    }
+                }
+                boolean[] released = tracker.releaseLots(tickets, tickets.length);
+                for (int i = 0; i < tickets.length; i++) {
+                    assertEquals(tickets[i] != null, released[i]);
+                }
+                single.ifPresent(ticket -> assertTrue(tracker.releaseLot(ticket)));
+            }
+            return null;
+        });
+
+        assertEquals(0, doubleIssues.get());
+        assertEquals(0, tracker.getNumberOfLotsOccupied());
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "factories")
+    public void testLotsAreAddedAndRetiredWhileVehiclesPark(LotTrackerFactory factory) throws Exception {
+        int initialLots = 64;
+        int added = 10 * 1000;
+        LotTracker tracker = factory.createLotTracker(initialLots, Size.MEDIUM);
+        AtomicIntegerArray holders = new AtomicIntegerArray(initialLots + added);
+        AtomicInteger doubleIssues = new AtomicInteger();
+        AtomicInteger vehicleIds = new AtomicInteger();
+        AtomicInteger threads = new AtomicInteger();
+
+        runConcurrently(THREADS, () -> {
+            if (threads.getAndIncrement() == 0) {
+                for (int i = 0; i < 10; i++) {
+                    tracker.addLots(1000);
+                    tracker.retireLots(0, 32);
+                    Thread.yield();
+                    tracker.reopenLots(0, 32);
+                }
+                return null;
+            }
+            List<Ticket> held = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                if (held.size() < 4) {
+                    Optional<Ticket> ticket = tracker.reserveLot(new Car("car-" + vehicleIds.incrementAndGet()));
+                    if (ticket.isPresent()) {
+                        if (!holders.compareAndSet(ticket.get().getLotId(), 0, 1)) {
+                            doubleIssues.incrementAndGet();
+                        }
+                        held.add(ticket.get());
+                    }
+                } else {
+                    Ticket ticket = held.remove(i % held.size());
+                    holders.set(ticket.getLotId(), 0);
+                    assertTrue(tracker.releaseLot(ticket));
+                }
+            }
+            for (Ticket ticket : held) {
+                holders.set(ticket.getLotId(), 0);
+                assertTrue(tracker.releaseLot(ticket));
+            }
+            return null;
+        });
+
+        assertEquals(0, doubleIssues.get());
+        assertEquals(0, tracker.getNumberOfLotsOccupied());
+        assertEquals(initialLots + added, tracker.getNumberOfLots());
+        assertEquals(32, tracker.retireLots(0, 32));
+        int parked = 0;
+        Optional<Ticket> ticket;
+        while ((ticket = tracker.reserveLot(new Car("car-" + vehicleIds.incrementAndGet()))).isPresent()) {
+            assertTrue(ticket.get().getLotId() >= 32);
+            assertEquals(0, holders.getAndIncrement(ticket.get().getLotId()));
+            parked++;
+        }
+        assertEquals(initialLots + added - 32, parked);
+    }
+}
@@ -2,11 +2,36 @@ package org.example.parkinglot;
 
 import org.example.parkinglot.LotManager;
 import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.allocation.AllocationPolicy;
+import org.example.parkinglot.allocation.HeadroomAllocationPolicy;
+import org.example.parkinglot.allocation.OverflowAllocationPolicy;
+import org.example.parkinglot.billing.Tariff;
+import org.example.parkinglot.booking.Booking;
+import org.example.parkinglot.index.NearestBayLotIndex;
+import org.example.parkinglot.layout.BayLayout;
 import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.PackedTicket;
 import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.vehicle.Bike;
 import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Truck;
+import org.example.parkinglot.models.vehicle.Vehicle;
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -69,17 +94,425 @@ public class LotManagerTest {
 
         Ticket ticket = mock(Ticket.class);
 
-        when(ticket.getVehicleSize()).thenReturn(Size.SMALL);
+        when(ticket.getLotSize()).thenReturn(Size.SMALL);
         lotManager.unPark(ticket);
         verify(smallLotTracker).releaseLot(ticket);
 
-        when(ticket.getVehicleSize()).thenReturn(Size.MEDIUM);
+        when(ticket.getLotSize()).thenReturn(Size.MEDIUM);
         lotManager.unPark(ticket);
         verify(mediumLotTracker).releaseLot(ticket);
 
-        when(ticket.getVehicleSize()).thenReturn(Size.LARGE);
+        when(ticket.getLotSize()).thenReturn(Size.LARGE);
         lotManager.unPark(ticket);
         verify(largeLotTracker).releaseLot(ticket);
     }
 
+    @Test
+    public void testPackedParkAndUnPark() {
+        LotManager lotManager = new LotManager(2, 1, 1, LotTracker.Factory.INSTANCE);
+
+        long first = lotManager.parkPacked(new Car("1"));
+        long second = lotManager.parkPacked(new Car("2"));
+        assertEquals(Size.MEDIUM, PackedTicket.size(first));
+        assertNotEquals(PackedTicket.lotId(first), PackedTicket.lotId(second));
+        assertEquals(PackedTicket.NONE, lotManager.parkPacked(new Car("3")));
+
+        assertTrue(lotManager.unParkPacked(first));
+        assertFalse(lotManager.unParkPacked(first));
+        assertNotEquals(PackedTicket.NONE, lotManager.parkPacked(new Car("3")));
+        // the lot was reused in a new generation, the old ticket must not release it
+        assertFalse(lotManager.unParkPacked(first));
+        assertTrue(lotManager.unParkPacked(second));
+    }
+
+    @Test
+    public void testPackedUnParkRejectsGarbage() {
+        LotManager lotManager = new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE);
+        lotManager.parkPacked(new Car("1"));
+
+        assertFalse(lotManager.unParkPacked(PackedTicket.NONE));
+        assertFalse(lotManager.unParkPacked(Long.MIN_VALUE));
+        assertFalse(lotManager.unParkPacked(PackedTicket.pack(Size.MEDIUM, 5, 0)));
+        assertFalse(lotManager.unParkPacked(PackedTicket.pack(Size.SMALL, 0, 0)));
+        assertFalse(lotManager.unParkPacked(PackedTicket.pack(Size.MEDIUM, 0, 1)));
+        assertTrue(lotManager.unParkPacked(PackedTicket.pack(Size.MEDIUM, 0, 0)));
+    }
+
+    @Test
+    public void testSameVehicleCannotBeParkedTwice() {
+        LotManager lotManager = new LotManager(2, 1, 1, LotTracker.Factory.INSTANCE);
+        Ticket ticket = lotManager.park(new Car("1"));
+        assertNotNull(ticket);
+        assertNull(lotManager.park(new Car("1")));
+        assertEquals(PackedTicket.NONE, lotManager.parkPacked(new Car("1")));
+        assertEquals(1, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+
+        assertTrue(lotManager.unPark(ticket));
+        assertNotNull(lotManager.park(new Car("1")));
+    }
+
+    @Test
+    public void testLocateFindsParkedVehicle() {
+        LotManager lotManager = new LotManager(2, 2, 1, LotTracker.Factory.INSTANCE);
+        lotManager.park(new Bike("bike"));
+        long packed = lotManager.parkPacked(new Bike("other-bike"));
+
+        Lot lot = lotManager.locate("other-bike").get();
+        assertEquals(Size.SMALL, lot.getSize());
+        assertEquals(PackedTicket.lotId(packed), lot.getId());
+        assertEquals("other-bike", lot.getVehicle().get().id());
+
+        assertTrue(lotManager.unParkPacked(packed));
+        assertFalse(lotManager.locate("other-bike").isPresent());
+        assertFalse(lotManager.locate("unknown").isPresent());
+        assertTrue(lotManager.locate("bike").isPresent());
+    }
+
+    @Test
+    public void testVehicleWithoutFreeLotCanBeParkedLater() {
+        LotManager lotManager = new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE);
+        Ticket ticket = lotManager.park(new Car("1"));
+        assertNull(lotManager.park(new Car("2")));
+        assertFalse(lotManager.locate("2").isPresent());
+
+        lotManager.unPark(ticket);
+        assertNotNull(lotManager.park(new Car("2")));
+    }
+
+    @Test
+    public void testConcurrentParksOfSameVehicleIssueOneTicket() throws Exception {
+        LotManager lotManager = new LotManager(64, 64, 64, ConcurrentLotTracker.Factory.INSTANCE);
+        AtomicInteger tickets = new AtomicInteger();
+        ConcurrentLotTrackerTest.runConcurrently(8, () -> {
+            for (int i = 0; i < 32; i++) {
+                if (lotManager.park(new Car("car-" + i)) != null) {
+                    tickets.incrementAndGet();
+                }
+            }
+            return null;
+        });
+        assertEquals(32, tickets.get());
+        assertEquals(32, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+    }
+
+    @Test
+    public void testParkAllReturnsTicketPerVehicle() {
+        LotManager lotManager = new LotManager(2, 1, 0, LotTracker.Factory.INSTANCE);
+        List<Vehicle> vehicles = Arrays.asList(new Car("car-1"), new Bike("bike-1"), null, new Car("car-2"),
+                new Truck("truck-1"), new Car("car-3"), new Bike("bike-1"));
+
+        List<Ticket> tickets = lotManager.parkAll(vehicles);
+        assertEquals(vehicles.size(), tickets.size());
+        assertEquals("car-1", tickets.get(0).getVehicleId());
+        assertEquals(Size.SMALL, tickets.get(1).getVehicleSize());
+        assertNull(tickets.get(2));
+        assertNotEquals(tickets.get(0).getLotId(), tickets.get(3).getLotId());
+        assertNull(tickets.get(4));
+        assertNull(tickets.get(5));
+        // same vehicle twice in one batch
+        assertNull(tickets.get(6));
+        assertEquals(2, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertTrue(lotManager.locate("car-2").isPresent());
+        assertFalse(lotManager.locate("car-3").isPresent());
+    }
+
+    @Test
+    public void testParkAllLargeBatchThenSmallBatch() {
+        LotManager lotManager = new LotManager(200, 0, 0, LotTracker.Factory.INSTANCE);
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            vehicles.add(new Car("car-" + i));
+        }
+        vehicles.add(new Car("car-7"));
+
+        List<Ticket> tickets = lotManager.parkAll(vehicles);
+        for (int i = 0; i < 150; i++) {
+            assertEquals("car-" + i, tickets.get(i).getVehicleId());
+        }
+        assertNull(tickets.get(150));
+        assertEquals(150, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+
+        List<Ticket> more = lotManager.parkAll(Arrays.asList(new Car("car-150"), new Car("car-3")));
+        assertEquals("car-150", more.get(0).getVehicleId());
+        assertNull(more.get(1));
+        assertArrayEquals(new boolean[]{true, false}, lotManager.unParkAll(Arrays.asList(more.get(0), more.get(1))));
+        boolean[] released = lotManager.unParkAll(tickets.subList(0, 150));
+        for (boolean r : released) {
+            assertTrue(r);
+        }
+        assertEquals(0, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+    }
+
+    @Test
+    public void testUnParkAllReturnsResultPerTicket() {
+        LotManager lotManager = new LotManager(3, 3, 3, LotTracker.Factory.INSTANCE);
+        List<Ticket> tickets = lotManager.parkAll(Arrays.asList(new Car("car-1"), new Bike("bike-1"),
+                new Car("car-2")));
+        assertTrue(lotManager.unPark(tickets.get(2)));
+
+        List<Ticket> exits = new ArrayList<>(tickets);
+        exits.add(null);
+        exits.add(tickets.get(0));
+        boolean[] released = lotManager.unParkAll(exits);
+        assertArrayEquals(new boolean[]{true, true, false, false, false}, released);
+        for (Size size : Size.values()) {
+            assertEquals(0, lotManager.getNumberOfLotsOccupied(size));
+        }
+    }
+
+    @Test
+    public void testStrictPolicyDoesNotOverflow() {
+        LotManager lotManager = new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE);
+        assertNotNull(lotManager.park(new Bike("Bike1")));
+        assertNull(lotManager.park(new Bike("Bike2")));
+        assertEquals(PackedTicket.NONE, lotManager.parkPacked(new Bike("Bike3")));
+        assertEquals(0, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+    }
+
+    @Test
+    public void testOverflowPolicyParksInNextLargerSizeAndUnParksFromThere() {
+        LotManager lotManager = new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE, OverflowAllocationPolicy.INSTANCE);
+        assertEquals(Size.SMALL, lotManager.park(new Bike("Bike1")).getLotSize());
+        Ticket medium = lotManager.park(new Bike("Bike2"));
+        assertEquals(Size.MEDIUM, medium.getLotSize());
+        assertEquals(Size.SMALL, medium.getVehicleSize());
+        assertEquals(Size.LARGE, PackedTicket.size(lotManager.parkPacked(new Bike("Bike3"))));
+        assertNull(lotManager.park(new Bike("Bike4")));
+        assertNull(lotManager.park(new Car("Car1")));
+        assertEquals(Size.MEDIUM, lotManager.locate("Bike2").get().getSize());
+
+        assertTrue(lotManager.unPark(medium));
+        assertEquals(0, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertEquals(Size.MEDIUM, lotManager.park(new Car("Car1")).getLotSize());
+    }
+
+    @Test
+    public void testOverflowPolicyNeverParksInSmallerSize() {
+        LotManager lotManager = new LotManager(0, 5, 1, LotTracker.Factory.INSTANCE, OverflowAllocationPolicy.INSTANCE);
+        assertEquals(Size.LARGE, lotManager.park(new Car("Car1")).getLotSize());
+        assertNull(lotManager.park(new Car("Car2")));
+        assertEquals(0, lotManager.getNumberOfLotsOccupied(Size.SMALL));
+    }
+
+    @Test
+    public void testHeadroomPolicyKeepsLargerLotsForTheirOwnSize() {
+        LotManager lotManager = new LotManager(10, 0, 0, LotTracker.Factory.INSTANCE,
+                new HeadroomAllocationPolicy(30));
+        for (int i = 0; i < 7; i++) {
+            assertEquals(Size.MEDIUM, lotManager.park(new Bike("Bike" + i)).getLotSize());
+        }
+        assertNull(lotManager.park(new Bike("Bike7")));
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(lotManager.park(new Car("Car" + i)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new HeadroomAllocationPolicy(101));
+    }
+
+    @Test
+    public void testBatchOverflowsOnceOwnSizeIsFull() {
+        LotManager lotManager = new LotManager(2, 1, 0, LotTracker.Factory.INSTANCE, OverflowAllocationPolicy.INSTANCE);
+        List<Ticket> tickets = lotManager.parkAll(Arrays.asList(new Bike("Bike1"), new Bike("Bike2"),
+                new Car("Car1"), new Bike("Bike3")));
+        assertEquals(Size.SMALL, tickets.get(0).getLotSize());
+        assertEquals(Size.MEDIUM, tickets.get(1).getLotSize());
+        assertEquals(Size.MEDIUM, tickets.get(2).getLotSize());
+        assertNull(tickets.get(3));
+        assertFalse(lotManager.locate("Bike3").isPresent());
+
+        assertArrayEquals(new boolean[]{true, true, true}, lotManager.unParkAll(tickets.subList(0, 3)));
+        assertEquals(0, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+    }
+
+    @Test
+    public void testPolicyMustOfferOwnSizeFirst() {
+        AllocationPolicy largeFirst = new AllocationPolicy() {
+            @Override
+            public List<Size> lotSizesFor(Size vehicleSize) {
+                return Arrays.asList(Size.LARGE, vehicleSize);
+            }
+
+            @Override
+            public boolean admits(Size vehicleSize, Size lotSize, LotManager lotManager) {
+                return true;
+            }
+        };
+        assertThrows(IllegalArgumentException.class,
+                () -> new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE, largeFirst));
+    }
+
+    @Test
+    public void testParkAtGateTakesNearestBay() {
+        BayLayout.Builder builder = BayLayout.builder(100);
+        int west = builder.addGate(0, 0, 0);
+        int east = builder.addGate(0, 90, 0);
+        for (int x = 0; x < 10; x++) {
+            builder.addBay(Size.MEDIUM, 0, 0, x * 10, 5);
+        }
+        LotManager lotManager = new LotManager(10, 0, 0,
+                ConcurrentLotTracker.Factory.INSTANCE.withIndex(NearestBayLotIndex.factory(builder.build())));
+
+        assertEquals(9, lotManager.park(new Car("Car1"), east).getLotId());
+        assertEquals(0, lotManager.park(new Car("Car2"), west).getLotId());
+        assertEquals(8, lotManager.park(new Car("Car3"), east).getLotId());
+        assertEquals(1, PackedTicket.lotId(lotManager.parkPacked(new Car("Car4"), west)));
+        assertNotNull(lotManager.park(new Car("Car5")));
+
+        // the layout has no place for more bays
+        assertThrows(UnsupportedOperationException.class, () -> lotManager.addLots(Size.MEDIUM, 1));
+        assertEquals(10, lotManager.getNumberOfLots(Size.MEDIUM));
+        assertEquals(10, lotManager.getLotCapacity(Size.MEDIUM));
+    }
+
+    @Test
+    public void testParkWhenAvailableWaitsForUnPark() throws Exception {
+        LotManager lotManager = new LotManager(1, 0, 0, LotTracker.Factory.INSTANCE);
+        Ticket first = lotManager.parkWhenAvailable(new Car("car-1"), Duration.ofSeconds(1)).get();
+        CompletableFuture<Ticket> second = lotManager.parkWhenAvailable(new Car("car-2"), Duration.ofMinutes(1));
+        assertFalse(second.isDone());
+        assertNull(lotManager.park(new Car("car-2")));
+        assertNull(lotManager.parkWhenAvailable(new Car("car-1"), Duration.ZERO).get());
+        assertNull(lotManager.parkWhenAvailable(null, Duration.ZERO).get());
+        assertThrows(IllegalArgumentException.class, () -> lotManager.parkWhenAvailable(new Car("car-3"), null));
+
+        assertTrue(lotManager.unPark(first));
+        assertEquals(first.getLotId(), second.get().getLotId());
+        assertEquals(first.getLotId(), lotManager.locate("car-2").get().getId());
+    }
+
+    @Test
+    public void testParkWhenAvailableTimesOut() {
+        LotManager lotManager = new LotManager(1, 0, 0, LotTracker.Factory.INSTANCE);
+        Ticket first = lotManager.park(new Car("car-1"));
+        CompletableFuture<Ticket> waiting = lotManager.parkWhenAvailable(new Car("car-2"), Duration.ofMillis(20));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> waiting.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, failure.getCause());
+
+        // the vehicle left the waitlist and may park again
+        assertTrue(lotManager.unPark(first));
+        assertEquals(0, lotManager.getNumberOfVehiclesWaiting(Size.MEDIUM));
+        assertEquals(first.getLotId(), lotManager.park(new Car("car-2")).getLotId());
+    }
+
+    @Test
+    public void testConcurrentWaitersAllParkWithoutOverbooking() throws Exception {
+        LotManager lotManager = new LotManager(4, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        AtomicInteger parked = new AtomicInteger();
+        ConcurrentLotTrackerTest.runConcurrently(8, () -> {
+            for (int i = 0; i < 50; i++) {
+                String id = "car-" + Thread.currentThread().getId() + "-" + i;
+                Ticket ticket = lotManager.parkWhenAvailable(new Car(id), Duration.ofSeconds(30)).get();
+                assertTrue(lotManager.getNumberOfLotsOccupied(Size.MEDIUM) <= 4);
+                parked.incrementAndGet();
+                assertTrue(lotManager.unPark(ticket));
+            }
+            return null;
+        });
+        assertEquals(400, parked.get());
+        assertEquals(0, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertEquals(0, lotManager.getNumberOfVehiclesWaiting(Size.MEDIUM));
+    }
+
+    @Test
+    public void testParkBookedAndCancel() {
+        Clock clock = mock(Clock.class);
+        LotManager lotManager = new LotManager(2, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        lotManager.enableBookings(clock, Duration.ofMinutes(30));
+        Instant start = Instant.ofEpochSecond(3600);
+        Booking first = lotManager.book(Size.MEDIUM, start, start.plusSeconds(3600));
+        Booking second = lotManager.book(Size.MEDIUM, start, start.plusSeconds(3600));
+        assertNull(lotManager.book(Size.MEDIUM, start, start.plusSeconds(60)));
+        assertFalse(lotManager.isAvailable(Size.MEDIUM, start.plusSeconds(60), start.plusSeconds(120)));
+        assertTrue(lotManager.isAvailable(Size.MEDIUM, start.plusSeconds(3600), start.plusSeconds(7200)));
+
+        when(clock.millis()).thenReturn(start.toEpochMilli());
+        assertNull(lotManager.park(new Car("walk-in")));
+        assertNull(lotManager.parkBooked(first, new Truck("truck-1")));
+        Ticket ticket = lotManager.parkBooked(first, new Car("car-1"));
+        assertEquals(first.getLotId(), ticket.getLotId());
+        assertNull(lotManager.parkBooked(second, new Car("car-1")));
+        assertEquals(first.getLotId(), lotManager.locate("car-1").get().getId());
+
+        assertTrue(lotManager.cancel(second));
+        assertEquals(second.getLotId(), lotManager.park(new Car("walk-in")).getLotId());
+        assertTrue(lotManager.unPark(ticket));
+    }
+
+    @Test
+    public void testLotsAddedAndRetiredWhileParking() {
+        LotManager lotManager = new LotManager(1, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        Ticket first = lotManager.park(new Car("car-1"));
+        assertNull(lotManager.park(new Car("car-2")));
+
+        assertEquals(1, lotManager.addLots(Size.MEDIUM, 5000));
+        Ticket added = lotManager.park(new Car("car-2"));
+        assertEquals(added.getLotId(), lotManager.locate("car-2").get().getId());
+        assertEquals(5001, lotManager.getNumberOfLots(Size.MEDIUM));
+
+        assertEquals(1, lotManager.retireLots(Size.MEDIUM, 0, 1));
+        assertEquals(5000, lotManager.getNumberOfLots(Size.MEDIUM));
+        assertEquals(5001, lotManager.getLotCapacity(Size.MEDIUM));
+        assertTrue(lotManager.unPark(first));
+        assertTrue(lotManager.unPark(added));
+        assertFalse(lotManager.locate("car-2").isPresent());
+        assertNotEquals(0, lotManager.park(new Car("car-1")).getLotId());
+        assertEquals(1, lotManager.reopenLots(Size.MEDIUM, 0, 1));
+    }
+
+    @Test
+    public void testUnParkForFeePricesStayFromTicketIssueTime() {
+        LotManager lotManager = new LotManager(0, 1, 1, LotTracker.Factory.INSTANCE, OverflowAllocationPolicy.INSTANCE);
+        Tariff tariff = Tariff.builder(Duration.ofHours(1), ZoneOffset.UTC)
+                .rate(Size.SMALL, 50)
+                .rate(Size.MEDIUM, 200)
+                .rate(Size.LARGE, 500)
+                .dailyCap(Size.MEDIUM, 1000)
+                .gracePeriod(Duration.ofMinutes(5))
+                .build();
+        assertThrows(IllegalStateException.class, () -> lotManager.unParkForFee(null));
+        assertThrows(IllegalStateException.class, () -> lotManager.setTariff(tariff));
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1_000_000L);
+        lotManager.enableBilling(tariff, clock);
+        assertThrows(IllegalStateException.class, () -> lotManager.enableBilling(tariff, clock));
+
+        Ticket car = lotManager.park(new Car("car-1"));
+        Ticket bike = lotManager.park(new Bike("bike-1"));
+        assertEquals(Size.LARGE, car.getLotSize());
+        assertEquals(1_000_000L, car.getIssuedAtMillis());
+        when(clock.millis()).thenReturn(1_000_000L + Duration.ofMinutes(90).toMillis());
+        assertEquals(400, lotManager.quote(car));
+        // overflowed into a large lot, still pays the medium rate
+        assertEquals(400, lotManager.unParkForFee(car));
+        assertEquals(LotManager.NOT_UNPARKED, lotManager.unParkForFee(car));
+        assertEquals(LotManager.NOT_UNPARKED, lotManager.unParkForFee(null));
+
+        lotManager.setTariff(Tariff.builder(Duration.ofMinutes(30), ZoneOffset.UTC).rate(Size.SMALL, 10)
+                .rate(Size.MEDIUM, 20).rate(Size.LARGE, 30).build());
+        // the clock went back, the stay does not come out shorter
+        when(clock.millis()).thenReturn(0L);
+        assertEquals(30, lotManager.unParkForFee(bike));
+        assertEquals(0, lotManager.unParkForFee(lotManager.park(new Car("car-2"))));
+    }
+
+    @Test
+    public void testTicketIssuedBeforeBillingIsNotBillable() {
+        LotManager lotManager = new LotManager(2, 0, 0, LotTracker.Factory.INSTANCE);
+        Ticket early = lotManager.park(new Car("car-1"));
+        assertEquals(Ticket.NOT_STAMPED, early.getIssuedAtMillis());
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1_000_000L);
+        lotManager.enableBilling(Tariff.builder(Duration.ofHours(1), ZoneOffset.UTC).rate(Size.SMALL, 50)
+                .rate(Size.MEDIUM, 200).rate(Size.LARGE, 500).build(), clock);
+
+        assertThrows(IllegalArgumentException.class, () -> lotManager.quote(early));
+        assertThrows(IllegalArgumentException.class, () -> lotManager.unParkForFee(early));
+        assertEquals(1, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertThrows(IllegalArgumentException.class, () -> lotManager.unParkForFee(
+                new Ticket(1, "car-2", Size.MEDIUM, Size.MEDIUM, 0)));
+        assertTrue(lotManager.unPark(early));
+
+        Ticket late = lotManager.park(new Car("car-1"));
+        when(clock.millis()).thenReturn(1_000_000L + Duration.ofMinutes(30).toMillis());
+        assertEquals(200, lotManager.unParkForFee(late));
+    }
 }
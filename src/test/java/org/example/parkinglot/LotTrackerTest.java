@@ -1,19 +1,33 @@
 package org.example.parkinglot;
 
+import org.example.parkinglot.booking.Booking;
+import org.example.parkinglot.index.FreeListLotIndex;
+import org.example.parkinglot.models.LotTrackerFactory;
 import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.PackedTicket;
 import org.example.parkinglot.models.lot.Ticket;
 import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Truck;
 import org.example.parkinglot.models.vehicle.Vehicle;
+import org.example.parkinglot.store.BufferLotStore;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InOrder;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -62,8 +76,28 @@ public class LotTrackerTest {
         return Stream.of(
                 Arguments.of(Size.SMALL, Size.MEDIUM),
                 Arguments.of(Size.SMALL, Size.LARGE),
+                Arguments.of(Size.MEDIUM, Size.LARGE)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "smallerSizes")
+    public void testLotTrackerIssuesTicketOfItsLotSizeToSmallerVehicle(Size lotSize, Size vehicleSize) {
+        Vehicle vehicle = mock(Vehicle.class);
+        LotTracker tracker = LotTracker.Factory.INSTANCE.createLotTracker(10, lotSize);
+        when(vehicle.getSize()).thenReturn(vehicleSize);
+        when(vehicle.id()).thenReturn("Vehicle1");
+
+        Ticket ticket = tracker.reserveLot(vehicle).get();
+        assertEquals(vehicleSize, ticket.getVehicleSize());
+        assertEquals(lotSize, ticket.getLotSize());
+        assertEquals(1, tracker.getNumberOfLotsOccupied());
+        assertTrue(tracker.releaseLot(ticket));
+    }
+
+    private static Stream<Arguments> smallerSizes() {
+        return Stream.of(
                 Arguments.of(Size.MEDIUM, Size.SMALL),
-                Arguments.of(Size.MEDIUM, Size.LARGE),
                 Arguments.of(Size.LARGE, Size.SMALL),
                 Arguments.of(Size.LARGE, Size.MEDIUM)
         );
@@ -205,4 +239,287 @@ public class LotTrackerTest {
         assertFalse(tracker.releaseLot(ticket));
     }
 
+    @ParameterizedTest
+    @EnumSource(Size.class)
+    public void testLotTrackerWithBufferStoreParksAndUnParks(Size size) {
+        LotTracker lotTracker = LotTracker.Factory.INSTANCE.withStore(BufferLotStore.OFF_HEAP).createLotTracker(3, size);
+        List<Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Vehicle vehicle = mock(Vehicle.class);
+            when(vehicle.getSize()).thenReturn(size);
+            when(vehicle.id()).thenReturn(String.valueOf(i));
+            tickets.add(lotTracker.reserveLot(vehicle).get());
+        }
+        assertEquals(3, lotTracker.getNumberOfLotsOccupied());
+        assertFalse(lotTracker.findLot(1).get().isAvailable());
+
+        for (Ticket ticket : tickets) {
+            assertTrue(lotTracker.releaseLot(ticket));
+            assertFalse(lotTracker.releaseLot(ticket));
+        }
+        assertEquals(0, lotTracker.getNumberOfLotsOccupied());
+        assertTrue(lotTracker.findLot(1).get().isAvailable());
+        assertFalse(lotTracker.findLot(3).isPresent());
+    }
+
+
+    @Test
+    public void testReleasedLotIsHandedToWaitingVehiclesInOrder() {
+        LotTracker tracker = ConcurrentLotTracker.Factory.INSTANCE.createLotTracker(1, Size.MEDIUM);
+        Ticket first = tracker.reserveLotWhenAvailable(new Car("car-1")).join();
+        CompletableFuture<Ticket> second = tracker.reserveLotWhenAvailable(new Car("car-2"));
+        CompletableFuture<Ticket> third = tracker.reserveLotWhenAvailable(new Car("car-3"));
+        assertFalse(second.isDone());
+        assertEquals(2, tracker.getNumberOfVehiclesWaiting());
+
+        assertTrue(tracker.releaseLot(first));
+        assertEquals("car-2", second.getNow(null).getVehicleId());
+        assertEquals(first.getLotId(), second.getNow(null).getLotId());
+        assertFalse(third.isDone());
+        // the lot never went back to the index, so a vehicle arriving meanwhile could not take it
+        assertFalse(tracker.reserveLot(new Car("car-4")).isPresent());
+        assertEquals(1, tracker.getNumberOfLotsOccupied());
+
+        assertTrue(tracker.releaseLotPacked(PackedTicket.pack(Size.MEDIUM, second.join().getLotId(),
+                second.join().getGeneration())));
+        assertEquals("car-3", third.getNow(null).getVehicleId());
+        assertEquals(0, tracker.getNumberOfVehiclesWaiting());
+    }
+
+    @Test
+    public void testCancelledWaiterIsSkipped() {
+        LotTracker tracker = LotTracker.Factory.INSTANCE.createLotTracker(1, Size.MEDIUM);
+        Ticket first = tracker.reserveLotWhenAvailable(new Car("car-1")).join();
+        CompletableFuture<Ticket> cancelled = tracker.reserveLotWhenAvailable(new Car("car-2"));
+        CompletableFuture<Ticket> waiting = tracker.reserveLotWhenAvailable(new Car("car-3"));
+        assertTrue(cancelled.cancel(false));
+
+        assertTrue(tracker.releaseLot(first));
+        assertEquals("car-3", waiting.getNow(null).getVehicleId());
+        assertEquals(1, tracker.getNumberOfLotsOccupied());
+        assertNull(tracker.reserveLotWhenAvailable(new Truck("truck-1")).join());
+    }
+
+    @Test
+    public void testBatchReleaseHandsLotsToWaitersFirst() {
+        LotTracker tracker = LotTracker.Factory.INSTANCE.createLotTracker(3, Size.MEDIUM);
+        Ticket[] tickets = tracker.reserveLots(new Vehicle[]{new Car("car-1"), new Car("car-2"), new Car("car-3")}, 3);
+        CompletableFuture<Ticket> waiting = tracker.reserveLotWhenAvailable(new Car("car-4"));
+
+        assertArrayEquals(new boolean[]{true, true}, tracker.releaseLots(tickets, 2));
+        assertEquals(tickets[0].getLotId(), waiting.getNow(null).getLotId());
+        assertEquals(2, tracker.getNumberOfLotsOccupied());
+        assertTrue(tracker.reserveLot(new Car("car-5")).isPresent());
+    }
+
+    private static Stream<LotTrackerFactory> elasticFactories() {
+        return Stream.of(
+                LotTracker.Factory.INSTANCE,
+                LotTracker.Factory.INSTANCE.withIndex(FreeListLotIndex.FACTORY).withStore(BufferLotStore.HEAP),
+                ConcurrentLotTracker.Factory.INSTANCE.withStore(BufferLotStore.OFF_HEAP),
+                ShardedLotTracker.Factory.withStripes(4)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "elasticFactories")
+    public void testAddedLotsAreHandedToWaitingVehiclesFirst(LotTrackerFactory factory) {
+        LotTracker tracker = factory.createLotTracker(2, Size.MEDIUM);
+        Ticket ticket = tracker.reserveLot(new Car("car-1")).get();
+        tracker.reserveLot(new Car("car-2")).get();
+        CompletableFuture<Ticket> waiting = tracker.reserveLotWhenAvailable(new Car("car-3"));
+
+        assertEquals(2, tracker.addLots(5000));
+        assertEquals(2, waiting.join().getLotId());
+        assertEquals(5002, tracker.getNumberOfLots());
+        Set<Integer> lotIds = new HashSet<>();
+        for (int i = 0; i < 4999; i++) {
+            int lotId = tracker.reserveLot(new Car("car-" + (i + 4))).get().getLotId();
+            assertTrue(lotId >= 3 && lotId < 5002 && lotIds.add(lotId));
+        }
+        assertFalse(tracker.reserveLot(new Car("car-0")).isPresent());
+        assertTrue(tracker.releaseLot(ticket));
+        assertEquals(5001, tracker.getNumberOfLotsOccupied());
+        assertThrows(IllegalArgumentException.class, () -> tracker.addLots(0));
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "elasticFactories")
+    public void testRetiredLotsDrainAndReopen(LotTrackerFactory factory) {
+        LotTracker tracker = factory.createLotTracker(10, Size.MEDIUM);
+        List<Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            tickets.add(tracker.reserveLot(new Car("car-" + i)).get());
+        }
+        assertEquals(5, tracker.retireLots(0, 5));
+        assertEquals(0, tracker.retireLots(2, 4));
+        assertEquals(5, tracker.getNumberOfLots());
+        assertEquals(5, tracker.getNumberOfLotsRetired());
+        assertTrue(tracker.isRetired(4));
+        assertFalse(tracker.isRetired(5));
+
+        for (Ticket ticket : tickets) {
+            assertTrue(tracker.releaseLot(ticket));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(tracker.reserveLot(new Car("car-" + i)).get().getLotId() >= 5);
+        }
+        assertFalse(tracker.reserveLot(new Car("car-5")).isPresent());
+
+        assertEquals(3, tracker.reopenLots(1, 4));
+        assertEquals(0, tracker.reopenLots(5, 10));
+        Set<Integer> reopened = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            reopened.add(tracker.reserveLot(new Car("car-" + (i + 5))).get().getLotId());
+        }
+        assertEquals(Set.of(1, 2, 3), reopened);
+        assertFalse(tracker.reserveLot(new Car("car-8")).isPresent());
+        assertEquals(2, tracker.getNumberOfLotsRetired());
+        assertThrows(IllegalArgumentException.class, () -> tracker.retireLots(5, 11));
+    }
+
+    @Test
+    public void testRetiredLotsAreReportedToListenersAndVisitors() {
+        LotTracker tracker = ConcurrentLotTracker.Factory.INSTANCE.createLotTracker(6, Size.MEDIUM);
+        LotTrackerListener listener = mock(LotTrackerListener.class);
+        tracker.addListener(listener);
+        tracker.reserveLot(new Car("car-0"));
+
+        assertEquals(4, tracker.retireLots(0, 4));
+        assertEquals(0, tracker.retireLots(1, 3));
+        assertEquals(2, tracker.reopenLots(1, 3));
+        assertEquals(1, tracker.retireLots(5, 6));
+        verify(listener).onLotsRetired(Size.MEDIUM, 0, 4);
+        verify(listener).onLotsReopened(Size.MEDIUM, 1, 3);
+        verify(listener).onLotsRetired(Size.MEDIUM, 5, 6);
+        verify(listener, never()).onLotsRetired(Size.MEDIUM, 1, 3);
+
+        LotTrackerListener visitor = mock(LotTrackerListener.class);
+        tracker.forEachLot(visitor);
+        InOrder inOrder = inOrder(visitor);
+        inOrder.verify(visitor).onLotsAdded(Size.MEDIUM, 6);
+        inOrder.verify(visitor).onReserved(eq(Size.MEDIUM), eq(0), eq(0), any());
+        inOrder.verify(visitor).onLotsRetired(Size.MEDIUM, 0, 1);
+        inOrder.verify(visitor).onLotsRetired(Size.MEDIUM, 3, 4);
+        inOrder.verify(visitor).onLotsRetired(Size.MEDIUM, 5, 6);
+        verifyNoMoreInteractions(visitor);
+    }
+
+    @Test
+    public void testRefusedLotsLeaveTrackerUnchanged() {
+        LotTracker tracker = LotTracker.Factory.INSTANCE.createLotTracker(1, Size.SMALL);
+        LotTrackerListener listener = mock(LotTrackerListener.class);
+        doThrow(new IllegalStateException()).when(listener).onLotsAdded(Size.SMALL, 3);
+        tracker.addListener(listener);
+
+        assertThrows(IllegalStateException.class, () -> tracker.addLots(2));
+        assertEquals(1, tracker.getNumberOfLots());
+        assertEquals(1, tracker.addLots(3));
+        verify(listener).onLotsAdded(Size.SMALL, 4);
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "elasticFactories")
+    public void testFailingListenerUndoesReservation(LotTrackerFactory factory) {
+        LotTracker tracker = factory.createLotTracker(2, Size.MEDIUM);
+        LotTrackerListener first = mock(LotTrackerListener.class);
+        LotTrackerListener failing = mock(LotTrackerListener.class);
+        doThrow(new IllegalStateException()).when(failing).onReserved(eq(Size.MEDIUM), anyInt(), anyInt(), any());
+        tracker.addListener(first);
+        tracker.addListener(failing);
+
+        assertThrows(IllegalStateException.class, () -> tracker.reserveLot(new Car("car-0")));
+        assertThrows(IllegalStateException.class, () -> tracker.reserveLotPacked(new Car("car-1")));
+        assertThrows(IllegalStateException.class,
+                () -> tracker.reserveLots(new Vehicle[]{new Car("car-2"), new Car("car-3")}, 2));
+        // the listener notified before the failing one is told the lot was released again
+        verify(first, times(3)).onReserved(eq(Size.MEDIUM), anyInt(), anyInt(), any());
+        verify(first, times(3)).onReleased(eq(Size.MEDIUM), anyInt(), anyInt());
+        assertEquals(0, tracker.getNumberOfLotsOccupied());
+        assertTrue(tracker.findLot(0).get().isAvailable());
+        assertTrue(tracker.findLot(1).get().isAvailable());
+
+        doNothing().when(failing).onReserved(eq(Size.MEDIUM), anyInt(), anyInt(), any());
+        Ticket[] tickets = tracker.reserveLots(new Vehicle[]{new Car("car-4"), new Car("car-5")}, 2);
+        assertNotNull(tickets[0]);
+        assertNotNull(tickets[1]);
+        assertEquals(2, tracker.getNumberOfLotsOccupied());
+
+        // a release completes and every listener hears of it before the failure is passed on
+        doThrow(new IllegalStateException()).when(first).onReleased(eq(Size.MEDIUM), anyInt(), anyInt());
+        assertThrows(IllegalStateException.class, () -> tracker.releaseLot(tickets[0]));
+        verify(failing).onReleased(Size.MEDIUM, tickets[0].getLotId(), tickets[0].getGeneration());
+        assertEquals(1, tracker.getNumberOfLotsOccupied());
+        assertFalse(tracker.releaseLot(tickets[0]));
+        assertTrue(tracker.reserveLot(new Car("car-6")).isPresent());
+    }
+
+    @Test
+    public void testRetiredBayGetsNoNewBookings() {
+        Clock clock = mock(Clock.class);
+        LotTracker tracker = LotTracker.Factory.INSTANCE.createLotTracker(2, Size.MEDIUM);
+        tracker.retireLots(0, 1);
+        tracker.enableBookings(clock, Duration.ofSeconds(10));
+        Instant start = Instant.ofEpochSecond(20);
+        assertEquals(1, tracker.book(start, start.plusSeconds(10)).get().getLotId());
+        assertFalse(tracker.book(start, start.plusSeconds(10)).isPresent());
+
+        tracker.addLots(1);
+        assertEquals(2, tracker.book(start, start.plusSeconds(10)).get().getLotId());
+        tracker.reopenLots(0, 1);
+        assertEquals(0, tracker.book(start, start.plusSeconds(10)).get().getLotId());
+    }
+
+    @Test
+    public void testManyCancelledWaitersAreCompacted() {
+        LotTracker tracker = LotTracker.Factory.INSTANCE.createLotTracker(0, Size.SMALL);
+        List<CompletableFuture<Ticket>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(tracker.reserveLotWhenAvailable(new Bike("bike-" + i)));
+        }
+        futures.forEach(future -> future.cancel(false));
+        assertTrue(tracker.getNumberOfVehiclesWaiting() < 64);
+    }
+
+    @Test
+    public void testWalkInsRespectUpcomingBookings() {
+        Clock clock = mock(Clock.class);
+        LotTracker tracker = LotTracker.Factory.INSTANCE.createLotTracker(2, Size.MEDIUM);
+        assertThrows(IllegalStateException.class, () -> tracker.book(Instant.ofEpochMilli(0), Instant.ofEpochMilli(1)));
+        tracker.enableBookings(clock, Duration.ofHours(1));
+        assertThrows(IllegalStateException.class, () -> tracker.enableBookings(clock, Duration.ofHours(1)));
+
+        Instant start = Instant.ofEpochSecond(7200);
+        Booking booking = tracker.book(start, start.plus(Duration.ofHours(1))).get();
+        assertEquals(0, booking.getLotId());
+
+        when(clock.millis()).thenReturn(3600_000L);
+        Ticket walkIn = tracker.reserveLot(new Car("walk-in-1")).get();
+        assertEquals(1, walkIn.getLotId());
+        assertFalse(tracker.reserveLot(new Car("walk-in-2")).isPresent());
+        // walk-ins are expected to leave within the lead time, lot 1 can still be booked
+        assertTrue(tracker.isAvailable(start, start.plusSeconds(1)));
+
+        Ticket booked = tracker.reserveBookedLot(booking, new Car("booked")).get();
+        assertEquals(0, booked.getLotId());
+        assertFalse(tracker.reserveBookedLot(booking, new Car("booked")).isPresent());
+        assertEquals(2, tracker.getNumberOfLotsOccupied());
+        assertEquals(1, tracker.getNumberOfBookings());
+    }
+
+    @Test
+    public void testLotOfNoShowGoesBackToWalkInsWhenBookingEnds() {
+        Clock clock = mock(Clock.class);
+        LotTracker tracker = ConcurrentLotTracker.Factory.INSTANCE.createLotTracker(1, Size.LARGE);
+        tracker.enableBookings(clock, Duration.ofSeconds(10));
+        Booking booking = tracker.book(Instant.ofEpochSecond(20), Instant.ofEpochSecond(30)).get();
+
+        when(clock.millis()).thenReturn(10_000L);
+        assertFalse(tracker.reserveLot(new Truck("truck-1")).isPresent());
+        when(clock.millis()).thenReturn(30_000L);
+        assertTrue(tracker.reserveLot(new Truck("truck-1")).isPresent());
+        assertEquals(0, tracker.getNumberOfBookings());
+        assertFalse(tracker.reserveBookedLot(booking, new Truck("truck-2")).isPresent());
+        assertFalse(tracker.cancelBooking(booking));
+    }
 }
@@ -0,0 +1,191 @@
+package org.example.parkinglot.analytics;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OccupancyAnalyticsTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    public void testWindowAggregatesArrivalsDeparturesOccupancyAndDwellTimes() {
+        Clock clock = mock(Clock.class);
+        LotManager lotManager = new LotManager(10, 10, 10, LotTracker.Factory.INSTANCE);
+        Ticket before = lotManager.park(new Car("before"));
+        OccupancyAnalytics analytics = OccupancyAnalytics.attach(lotManager, clock, Duration.ofMinutes(10), 6);
+
+        at(clock, 0);
+        Ticket first = lotManager.park(new Car("car-1"));
+        at(clock, 5 * MINUTE);
+        Ticket second = lotManager.park(new Car("car-2"));
+        at(clock, 15 * MINUTE);
+        assertTrue(lotManager.unPark(first));
+        assertTrue(lotManager.unPark(before));
+        at(clock, 20 * MINUTE);
+        lotManager.park(new Bike("bike-1"));
+        at(clock, 25 * MINUTE);
+        assertTrue(lotManager.unPark(second));
+
+        OccupancyWindow window = analytics.window(Size.MEDIUM, Instant.ofEpochMilli(0),
+                Instant.ofEpochMilli(30 * MINUTE));
+        assertEquals(Instant.ofEpochMilli(0), window.getFrom());
+        assertEquals(Instant.ofEpochMilli(25 * MINUTE), window.getTo());
+        assertEquals(2, window.getArrivals());
+        assertEquals(3, window.getDepartures());
+        assertEquals(7.2, window.getDeparturesPerHour(), 1e-9);
+        assertEquals(3, window.getPeakOccupancy());
+        // 2 cars for 5 minutes, 3 for 10 and 1 for 10, the second car left just now
+        assertEquals(2, window.getAverageOccupancy(), 1e-9);
+        assertEquals(window.getAverageOccupancy() / 10, window.getUtilisation(), 1e-9);
+        assertArrayEquals(new double[]{0.25, 0.2, 0.1}, window.getUtilisationCurve(), 1e-9);
+        // the car parked before the analytics were attached has no dwell time
+        assertEquals(2, window.getNumberOfDwells());
+        assertEquals(Duration.ofMinutes(17).plusSeconds(30), window.getMeanDwellTime());
+        assertEquals(Duration.ofMinutes(16), window.getDwellTimeAtPercentile(50));
+        assertEquals(Duration.ofMinutes(22), window.getDwellTimeAtPercentile(100));
+
+        OccupancyWindow lastTen = analytics.lastWindow(Size.MEDIUM, Duration.ofMinutes(10));
+        assertEquals(Instant.ofEpochMilli(10 * MINUTE), lastTen.getFrom());
+        assertEquals(0, lastTen.getArrivals());
+        assertEquals(1, analytics.lastWindow(Size.SMALL, Duration.ofMinutes(10)).getArrivals());
+        assertEquals(1, analytics.getNumberOfLotsOccupied(Size.SMALL));
+        assertEquals(0, analytics.getNumberOfLotsOccupied(Size.MEDIUM));
+    }
+
+    @Test
+    public void testOldBucketsAreReusedAndWindowsNarrowedToThoseKept() {
+        Clock clock = mock(Clock.class);
+        LotManager lotManager = new LotManager(10, 10, 10, LotTracker.Factory.INSTANCE);
+        OccupancyAnalytics analytics = OccupancyAnalytics.attach(lotManager, clock, Duration.ofMinutes(1), 4);
+        List<Ticket> tickets = new ArrayList<>();
+        for (int minute = 0; minute < 10; minute++) {
+            at(clock, minute * MINUTE);
+            tickets.add(lotManager.park(new Car("car-" + minute)));
+        }
+        OccupancyWindow window = analytics.window(Size.MEDIUM, Instant.EPOCH, Instant.ofEpochMilli(20 * MINUTE));
+        assertEquals(Instant.ofEpochMilli(6 * MINUTE), window.getFrom());
+        assertEquals(Instant.ofEpochMilli(9 * MINUTE), window.getTo());
+        // the current bucket has just started, its arrival is counted but adds nothing to the average
+        assertEquals(4, window.getArrivals());
+        assertEquals(10, window.getPeakOccupancy());
+        assertEquals(8, window.getAverageOccupancy(), 1e-9);
+        assertEquals(0, analytics.window(Size.MEDIUM, Instant.EPOCH, Instant.ofEpochMilli(MINUTE)).getArrivals());
+        assertEquals(Duration.ZERO, window.getDwellTimeAtPercentile(99));
+
+        at(clock, 9 * MINUTE + 30_000);
+        assertTrue(lotManager.unPark(tickets.get(0)));
+        window = analytics.lastWindow(Size.MEDIUM, Duration.ZERO);
+        assertEquals(Duration.ofSeconds(30), window.getDuration());
+        assertEquals(1, window.getArrivals());
+        assertEquals(1, window.getDepartures());
+        // dwell times are kept by the minute, 9.5 minutes are counted between 9 and 10
+        assertEquals(Duration.ofMinutes(10), window.getDwellTimeAtPercentile(50));
+        assertThrows(IllegalArgumentException.class,
+                () -> analytics.window(Size.MEDIUM, Instant.ofEpochMilli(1), Instant.EPOCH));
+    }
+
+    @Test
+    public void testForecastFollowsTheTrend() {
+        Clock clock = mock(Clock.class);
+        LotManager lotManager = new LotManager(100, 0, 0, LotTracker.Factory.INSTANCE);
+        OccupancyAnalytics analytics = OccupancyAnalytics.attach(lotManager, clock, Duration.ofMinutes(5), 288);
+        List<Ticket> tickets = new ArrayList<>();
+        // 10 cars more every 5 minutes
+        for (int car = 0; car < 60; car++) {
+            at(clock, car * 30_000L);
+            tickets.add(lotManager.park(new Car("car-" + car)));
+        }
+        at(clock, 30 * MINUTE);
+        assertEquals(60, analytics.getNumberOfLotsOccupied(Size.MEDIUM));
+        int inFifteenMinutes = analytics.forecastOccupancy(Size.MEDIUM, Duration.ofMinutes(15));
+        assertTrue(inFifteenMinutes > 80 && inFifteenMinutes <= 90, "forecast " + inFifteenMinutes);
+        assertFalse(analytics.willBeFull(Size.MEDIUM, Duration.ofMinutes(15)));
+        assertTrue(analytics.willBeFull(Size.MEDIUM, Duration.ofMinutes(30)));
+        assertEquals(100, analytics.forecastOccupancy(Size.MEDIUM, Duration.ofHours(2)));
+        assertEquals(60, analytics.forecastOccupancy(Size.MEDIUM, Duration.ZERO));
+
+        // now leaving faster than they came
+        for (int car = 0; car < 60; car++) {
+            at(clock, 30 * MINUTE + car * 10_000L);
+            assertTrue(lotManager.unPark(tickets.get(car)));
+        }
+        at(clock, 45 * MINUTE);
+        assertEquals(0, analytics.forecastOccupancy(Size.MEDIUM, Duration.ofMinutes(30)));
+        assertTrue(analytics.willBeFull(Size.SMALL, Duration.ofMinutes(30)));
+        assertThrows(IllegalArgumentException.class,
+                () -> analytics.forecastOccupancy(Size.MEDIUM, Duration.ofMinutes(-1)));
+    }
+
+    @Test
+    public void testLotsAddedAndRetiredAreFollowed() {
+        Clock clock = mock(Clock.class);
+        LotManager lotManager = new LotManager(1, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        OccupancyAnalytics analytics = OccupancyAnalytics.attach(lotManager, clock, Duration.ofMinutes(1), 60);
+        lotManager.addLots(Size.MEDIUM, 10_000);
+        List<Ticket> tickets = new ArrayList<>();
+        for (int car = 0; car < 10_001; car++) {
+            tickets.add(lotManager.park(new Car("car-" + car)));
+        }
+        at(clock, 2 * MINUTE);
+        for (Ticket ticket : tickets) {
+            assertTrue(lotManager.unPark(ticket));
+        }
+        OccupancyWindow window = analytics.lastWindow(Size.MEDIUM, Duration.ofMinutes(5));
+        assertEquals(10_001, window.getNumberOfLots());
+        assertEquals(10_001, window.getPeakOccupancy());
+        assertEquals(Duration.ofMinutes(2), window.getMeanDwellTime());
+        lotManager.retireLots(Size.MEDIUM, 0, 1);
+        assertEquals(10_000, analytics.lastWindow(Size.MEDIUM, Duration.ofMinutes(5)).getNumberOfLots());
+    }
+
+    @Test
+    public void testConcurrentGatesAreAllCounted() throws Exception {
+        LotManager lotManager = new LotManager(1000, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        OccupancyAnalytics analytics = OccupancyAnalytics.attach(lotManager, Clock.systemUTC(),
+                Duration.ofMillis(1), 10_000);
+        ExecutorService gates = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int gate = 0; gate < 4; gate++) {
+                int id = gate;
+                futures.add(gates.submit(() -> {
+                    for (int car = 0; car < 2000; car++) {
+                        Ticket ticket = lotManager.park(new Car("gate-" + id + "-" + car));
+                        assertTrue(lotManager.unPark(ticket));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            gates.shutdown();
+        }
+        OccupancyWindow window = analytics.lastWindow(Size.MEDIUM, Duration.ofSeconds(9));
+        assertEquals(0, analytics.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertEquals(window.getArrivals(), window.getDepartures());
+        assertTrue(window.getPeakOccupancy() <= 4);
+    }
+
+    private static void at(Clock clock, long millis) {
+        when(clock.millis()).thenReturn(millis);
+    }
+}
@@ -0,0 +1,131 @@
+package org.example.parkinglot.billing;
+
+import org.example.parkinglot.models.Size;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TariffTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private static Tariff.Builder cityCentre() {
+        return Tariff.builder(Duration.ofMinutes(15), ZoneOffset.ofHours(1))
+                .rate(Size.MEDIUM, LocalTime.of(7, 0), 100)
+                .rate(Size.MEDIUM, LocalTime.of(19, 30), 40)
+                .rate(Size.SMALL, 25)
+                .rate(Size.LARGE, LocalTime.of(22, 0), 0)
+                .rate(Size.LARGE, LocalTime.of(6, 0), 300)
+                .dailyCap(Size.MEDIUM, 2500)
+                .gracePeriod(Duration.ofMinutes(10));
+    }
+
+    @Test
+    public void testBandsCapsAndGrace() {
+        Tariff tariff = cityCentre().build();
+        // 07:00 local time is 06:00 UTC
+        long seven = 6 * HOUR;
+        assertEquals(0, tariff.fee(Size.MEDIUM, seven, seven + 10 * MINUTE));
+        assertEquals(100, tariff.fee(Size.MEDIUM, seven, seven + 10 * MINUTE + 1));
+        assertEquals(400, tariff.fee(Size.MEDIUM, seven, seven + HOUR));
+        // two units from 19:00, then the evening band from 19:30
+        assertEquals(2 * 100 + 2 * 40, tariff.fee(Size.MEDIUM, seven + 12 * HOUR, seven + 13 * HOUR));
+        // the evening band runs through midnight until 07:00
+        assertEquals(4 * 40, tariff.fee(Size.MEDIUM, seven - 2 * HOUR, seven - HOUR));
+        assertEquals(2500, tariff.fee(Size.MEDIUM, seven, seven + 20 * HOUR));
+        assertEquals(2 * 2500 + 40, tariff.fee(Size.MEDIUM, seven + 13 * HOUR, seven + 2 * DAY + 13 * HOUR + 1));
+        assertEquals(4 * 25, tariff.fee(Size.SMALL, 12345, 12345 + HOUR));
+        assertEquals(0, tariff.fee(Size.MEDIUM, seven, seven - HOUR));
+    }
+
+    @Test
+    public void testFeeMatchesUnitByUnitPricing() {
+        Tariff tariff = cityCentre().build();
+        Random random = new Random(23);
+        for (int i = 0; i < 20000; i++) {
+            Size size = Size.values()[random.nextInt(3)];
+            long entry = 1_700_000_000_000L + (long) random.nextInt(Integer.MAX_VALUE) * 10;
+            long stay = random.nextInt(4) == 0 ? (long) random.nextInt(20 * 24 * 60) * MINUTE + random.nextInt(60000)
+                    : random.nextInt((int) (3 * HOUR));
+            assertEquals(unitByUnit(size, entry, entry + stay), tariff.fee(size, entry, entry + stay));
+        }
+    }
+
+    /**
+     * Prices every unit on its own with the rates and rules of {@link #cityCentre()}.
+     */
+    private static long unitByUnit(Size size, long entry, long exit) {
+        if (exit - entry <= 10 * MINUTE) {
+            return 0;
+        }
+        long total = 0;
+        long day = 0;
+        long dayStart = entry;
+        for (long unit = entry; unit < exit; unit += 15 * MINUTE) {
+            if (unit - dayStart >= DAY) {
+                total += Math.min(day, size == Size.MEDIUM ? 2500 : Long.MAX_VALUE);
+                day = 0;
+                dayStart += DAY;
+            }
+            int minute = (int) Math.floorMod((unit + HOUR) / MINUTE, 24 * 60L);
+            if (size == Size.SMALL) {
+                day += 25;
+            } else if (size == Size.MEDIUM) {
+                day += minute >= 7 * 60 && minute < 19 * 60 + 30 ? 100 : 40;
+            } else {
+                day += minute >= 6 * 60 && minute < 22 * 60 ? 300 : 0;
+            }
+        }
+        return total + Math.min(day, size == Size.MEDIUM ? 2500 : Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testRejectsBadTariffs() {
+        assertThrows(IllegalArgumentException.class, () -> Tariff.builder(Duration.ofMinutes(7), ZoneOffset.UTC));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.builder(Duration.ofSeconds(90), ZoneOffset.UTC));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.builder(Duration.ofDays(2), ZoneOffset.UTC));
+        Tariff.Builder builder = Tariff.builder(Duration.ofHours(1), ZoneOffset.UTC).rate(Size.SMALL, 1);
+        assertThrows(IllegalArgumentException.class, builder::build);
+        assertThrows(IllegalArgumentException.class, () -> builder.rate(Size.MEDIUM, LocalTime.of(7, 0, 30), 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.rate(Size.MEDIUM, -1));
+        assertThrows(IllegalArgumentException.class, () -> builder.dailyCap(Size.MEDIUM, -1));
+        assertThrows(IllegalArgumentException.class, () -> builder.gracePeriod(Duration.ofMinutes(-1)));
+        assertEquals(48, builder.rate(Size.MEDIUM, 2).rate(Size.LARGE, 3).build().fee(Size.MEDIUM, 0, DAY));
+    }
+
+    @Test
+    public void testMonotonicClockNeverGoesBack() {
+        long[] now = {1000};
+        MonotonicClock clock = new MonotonicClock(new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now[0]);
+            }
+        });
+        assertEquals(1000, clock.millis());
+        now[0] = 400;
+        assertEquals(1000, clock.millis());
+        now[0] = 1001;
+        assertEquals(1001, clock.millis());
+    }
+}
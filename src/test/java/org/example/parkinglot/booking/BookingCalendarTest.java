@@ -0,0 +1,202 @@
+package org.example.parkinglot.booking;
+
+import org.example.parkinglot.index.FreeLotIndex;
+import org.example.parkinglot.index.HierarchicalFreeLotIndex;
+import org.example.parkinglot.models.Size;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookingCalendarTest {
+
+    private static final long LEAD = 1000;
+
+    private final MutableClock clock = new MutableClock();
+    private final List<Integer> released = new ArrayList<>();
+
+    private BookingCalendar calendar(FreeLotIndex index) {
+        return new BookingCalendar(Size.MEDIUM, index.capacity(), index, released::add, clock,
+                Duration.ofMillis(LEAD));
+    }
+
+    @Test
+    public void testAvailabilityMatchesBruteForce() {
+        int lots = 7;
+        BookingCalendar calendar = calendar(new HierarchicalFreeLotIndex(lots));
+        List<Booking> bookings = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            long start = LEAD + random.nextInt(2000);
+            long end = start + 1 + random.nextInt(200);
+            assertEquals(isFree(bookings, lots, start, end), calendar.isAvailable(start, end));
+            if (random.nextInt(3) == 0 && !bookings.isEmpty()) {
+                assertTrue(calendar.cancel(bookings.remove(random.nextInt(bookings.size()))));
+                continue;
+            }
+            Booking booking = calendar.book(start, end);
+            assertEquals(isFree(bookings, lots, start, end), booking != null);
+            if (booking != null) {
+                for (Booking other : bookings) {
+                    assertFalse(other.lotId == booking.lotId && other.start < end && start < other.end);
+                }
+                bookings.add(booking);
+            }
+            assertEquals(bookings.size(), calendar.getNumberOfBookings());
+        }
+    }
+
+    private static boolean isFree(List<Booking> bookings, int lots, long start, long end) {
+        boolean[] taken = new boolean[lots];
+        for (Booking booking : bookings) {
+            if (booking.start < end && start < booking.end) {
+                taken[booking.lotId] = true;
+            }
+        }
+        for (boolean lotTaken : taken) {
+            if (!lotTaken) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testBestFitKeepsBookingsOfABayTogether() {
+        BookingCalendar calendar = calendar(new HierarchicalFreeLotIndex(3));
+        Booking first = calendar.book(2000, 3000);
+        assertEquals(0, first.getLotId());
+        assertEquals(0, calendar.book(3000, 4000).getLotId());
+        assertEquals(1, calendar.book(2500, 3500).getLotId());
+        // the gap of lot 1 from 3500 on starts the latest of those covering the window
+        assertEquals(1, calendar.book(3600, 3900).getLotId());
+        assertEquals(0, calendar.book(1500, 2000).getLotId());
+
+        assertTrue(calendar.cancel(first));
+        assertFalse(calendar.cancel(first));
+        assertEquals(0, calendar.book(2000, 3000).getLotId());
+        assertEquals(2, calendar.book(1800, 3000).getLotId());
+        assertNull(calendar.book(1800, 3000));
+        assertThrows(IllegalArgumentException.class, () -> calendar.book(3000, 3000));
+        assertThrows(IllegalArgumentException.class,
+                () -> calendar(new HierarchicalFreeLotIndex(1)).cancel(calendar.book(5000, 6000)));
+    }
+
+    @Test
+    public void testBaysAreHeldFromLeadTimeAndFreedWhenNobodyShowsUp() {
+        FreeLotIndex index = new HierarchicalFreeLotIndex(2);
+        BookingCalendar calendar = calendar(index);
+        assertNull(calendar.book(999, 2000));
+        Booking booking = calendar.book(5000, 6000);
+        assertEquals(BookingCalendar.NOT_BOOKED, calendar.arrive(booking));
+
+        clock.millis = 3999;
+        calendar.advanceIfDue();
+        assertTrue(index.isFree(0));
+        clock.millis = 4000;
+        calendar.advanceIfDue();
+        assertFalse(index.isFree(0));
+        assertEquals(1, index.acquire());
+
+        clock.millis = 6000;
+        calendar.advanceIfDue();
+        assertEquals(List.of(0), released);
+        assertEquals(0, calendar.getNumberOfBookings());
+        assertEquals(BookingCalendar.NOT_BOOKED, calendar.arrive(booking));
+        assertFalse(calendar.cancel(booking));
+    }
+
+    @Test
+    public void testOccupiedBayIsHeldOnceReleased() {
+        FreeLotIndex index = new HierarchicalFreeLotIndex(1);
+        BookingCalendar calendar = calendar(index);
+        Booking first = calendar.book(5000, 6000);
+        Booking second = calendar.book(6000, 7000);
+        assertEquals(0, index.acquire());
+
+        clock.millis = 5000;
+        calendar.advanceIfDue();
+        assertTrue(calendar.cancel(first));
+        assertTrue(released.isEmpty());
+
+        clock.millis = 5500;
+        calendar.advanceIfDue();
+        // the walk-in leaves, the bay is held for the second booking instead of going back to the index
+        assertTrue(calendar.holdReleased(0));
+        assertFalse(calendar.holdReleased(0));
+        assertEquals(0, calendar.arrive(second));
+        assertEquals(BookingCalendar.NOT_BOOKED, calendar.arrive(second));
+    }
+
+    @Test
+    public void testArrivalAtOccupiedBayGetsAnyLotAndReclaimHoldsFreedBay() {
+        FreeLotIndex index = new HierarchicalFreeLotIndex(1);
+        BookingCalendar calendar = calendar(index);
+        Booking first = calendar.book(5000, 6000);
+        Booking second = calendar.book(6000, 7000);
+        assertEquals(0, index.acquire());
+
+        clock.millis = 5000;
+        calendar.advanceIfDue();
+        assertEquals(BookingCalendar.ANY_LOT, calendar.arrive(first));
+
+        clock.millis = 6000;
+        calendar.advanceIfDue();
+        index.release(0);
+        calendar.reclaim(0);
+        assertFalse(index.isFree(0));
+        assertEquals(0, calendar.arrive(second));
+        assertEquals(1, calendar.getNumberOfBookings());
+    }
+
+    @Test
+    public void testRetiredBayKeepsItsBookingsButGetsNoNewOnes() {
+        BookingCalendar calendar = calendar(new HierarchicalFreeLotIndex(2));
+        Booking kept = calendar.book(2000, 3000);
+        assertEquals(0, kept.getLotId());
+        calendar.retire(0);
+        assertEquals(1, calendar.book(2000, 3000).getLotId());
+        assertNull(calendar.book(2500, 2600));
+        assertEquals(1, calendar.book(5000, 6000).getLotId());
+
+        assertTrue(calendar.cancel(kept));
+        assertNull(calendar.book(2000, 3000));
+        calendar.reopen(0);
+        assertEquals(0, calendar.book(2000, 3000).getLotId());
+        calendar.addLots(5000);
+        assertEquals(2, calendar.book(2000, 3000).getLotId());
+        assertEquals(3, calendar.book(2000, 3000).getLotId());
+    }
+
+    private static final class MutableClock extends Clock {
+        private long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
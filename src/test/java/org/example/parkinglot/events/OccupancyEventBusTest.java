@@ -0,0 +1,176 @@
+package org.example.parkinglot.events;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OccupancyEventBusTest {
+
+    @Test
+    public void testSubscriberReadsEveryChangeInOrder() {
+        LotManager lotManager = new LotManager(2, 2, 2, LotTracker.Factory.INSTANCE);
+        lotManager.park(new Car("before"));
+        OccupancyEventBus bus = OccupancyEventBus.attach(lotManager, 8);
+        OccupancyEventBus.Subscription subscription = bus.subscribe(Backpressure.DROP);
+
+        long before = System.currentTimeMillis();
+        Ticket car = lotManager.park(new Car("car-1"));
+        lotManager.park(new Bike("bike-1"));
+        lotManager.unPark(car);
+        assertNull(lotManager.park(new Car("before")));
+
+        List<String> events = new ArrayList<>();
+        assertEquals(2, subscription.poll((sequence, parked, size, lotId, timestamp, occupied) -> {
+            assertTrue(timestamp >= before);
+            events.add(sequence + " " + parked + " " + size + " " + lotId + " " + occupied);
+        }, 2));
+        assertEquals(1, subscription.poll((sequence, parked, size, lotId, timestamp, occupied) ->
+                events.add(sequence + " " + parked + " " + size + " " + lotId + " " + occupied), 10));
+        assertEquals(0, subscription.poll((sequence, parked, size, lotId, timestamp, occupied) -> fail(), 10));
+
+        assertEquals(3, events.size());
+        assertEquals("0 true MEDIUM " + car.getLotId() + " 2", events.get(0));
+        assertTrue(events.get(1).startsWith("1 true SMALL "));
+        assertTrue(events.get(1).endsWith(" 1"));
+        assertEquals("2 false MEDIUM " + car.getLotId() + " 1", events.get(2));
+        assertEquals(0, subscription.getDropped());
+        assertEquals(1, bus.getNumberOfLotsOccupied(Size.MEDIUM));
+    }
+
+    @Test
+    public void testDropSkipsOverwrittenEvents() {
+        LotManager lotManager = new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE);
+        OccupancyEventBus bus = OccupancyEventBus.attach(lotManager, 4);
+        OccupancyEventBus.Subscription subscription = bus.subscribe(Backpressure.DROP);
+        for (int i = 0; i < 5; i++) {
+            lotManager.unParkPacked(lotManager.parkPacked(new Car("car-" + i)));
+        }
+
+        List<Long> sequences = new ArrayList<>();
+        assertEquals(4, subscription.poll((sequence, parked, size, lotId, timestamp, occupied) -> {
+            assertEquals(sequence % 2 == 0, parked);
+            assertEquals(parked ? 1 : 0, occupied);
+            sequences.add(sequence);
+        }, 10));
+        assertEquals(List.of(6L, 7L, 8L, 9L), sequences);
+        assertEquals(6, subscription.getDropped());
+    }
+
+    @Test
+    public void testCoalesceHandsOverLatestCountPerSize() {
+        LotManager lotManager = new LotManager(8, 8, 8, LotTracker.Factory.INSTANCE);
+        OccupancyEventBus bus = OccupancyEventBus.attach(lotManager, 4);
+        OccupancyEventBus.Subscription subscription = bus.subscribe(Backpressure.COALESCE);
+        for (int i = 0; i < 6; i++) {
+            lotManager.park(new Car("car-" + i));
+        }
+        lotManager.park(new Bike("bike-1"));
+
+        int[] occupied = new int[Size.values().length];
+        assertEquals(2, subscription.poll((sequence, parked, size, lotId, timestamp, count) ->
+                occupied[size.ordinal()] = count, 10));
+        assertArrayEquals(new int[]{0, 6, 1}, occupied);
+        assertEquals(0, subscription.poll((sequence, parked, size, lotId, timestamp, count) -> fail(), 10));
+        assertEquals(0, subscription.getDropped());
+    }
+
+    @Test
+    public void testBlockHoldsBackParkingUntilRead() throws Exception {
+        LotManager lotManager = new LotManager(16, 16, 16, LotTracker.Factory.INSTANCE);
+        OccupancyEventBus bus = OccupancyEventBus.attach(lotManager, 4);
+        OccupancyEventBus.Subscription subscription = bus.subscribe(Backpressure.BLOCK);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Void> parking = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 6; i++) {
+                    lotManager.park(new Car("car-" + i));
+                }
+            }, executor);
+            assertThrows(TimeoutException.class, () -> parking.get(200, TimeUnit.MILLISECONDS));
+            assertEquals(4, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+
+            List<Integer> counts = new ArrayList<>();
+            while (counts.size() < 6) {
+                subscription.poll((sequence, parked, size, lotId, timestamp, occupied) -> counts.add(occupied), 1);
+            }
+            parking.get(10, TimeUnit.SECONDS);
+            assertEquals(List.of(1, 2, 3, 4, 5, 6), counts);
+            assertEquals(0, subscription.getDropped());
+
+            // a closed subscription no longer holds back parking
+            subscription.close();
+            for (int i = 6; i < 16; i++) {
+                assertNotNull(lotManager.park(new Car("car-" + i)));
+            }
+            assertThrows(IllegalStateException.class, () -> subscription.poll((s, p, size, l, t, o) -> { }, 1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentParksReachSubscribersAndConverge() throws Exception {
+        int threads = 4;
+        int rounds = 2_000;
+        LotManager lotManager = new LotManager(64, 64, 64, ConcurrentLotTracker.Factory.INSTANCE);
+        OccupancyEventBus bus = OccupancyEventBus.attach(lotManager, 64);
+        OccupancyEventBus.Subscription blocking = bus.subscribe(Backpressure.BLOCK);
+        OccupancyEventBus.Subscription coalescing = bus.subscribe(Backpressure.COALESCE);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<CompletableFuture<Void>> parking = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                parking.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < rounds; i++) {
+                        long ticket = lotManager.parkPacked(new Car("car-" + thread + "-" + i));
+                        // keeps a few lots occupied
+                        if (i % 500 != 0) {
+                            assertTrue(lotManager.unParkPacked(ticket));
+                        }
+                    }
+                }, executor));
+            }
+
+            long[] expected = {0};
+            int[] occupied = {-1};
+            CompletableFuture<Void> all = CompletableFuture.allOf(parking.toArray(new CompletableFuture[0]));
+            while (!all.isDone() || expected[0] < bus.getCursor()) {
+                blocking.poll((sequence, parked, size, lotId, timestamp, count) ->
+                        assertEquals(expected[0]++, sequence), 256);
+                coalescing.poll((sequence, parked, size, lotId, timestamp, count) -> occupied[0] = count, 3);
+            }
+            all.get(60, TimeUnit.SECONDS);
+            coalescing.poll((sequence, parked, size, lotId, timestamp, count) -> occupied[0] = count, 3);
+
+            assertEquals(0, blocking.getDropped());
+            assertEquals(bus.getCursor(), expected[0]);
+            assertEquals(lotManager.getNumberOfLotsOccupied(Size.MEDIUM), bus.getNumberOfLotsOccupied(Size.MEDIUM));
+            assertEquals(lotManager.getNumberOfLotsOccupied(Size.MEDIUM), occupied[0]);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCapacityMustBePowerOfTwo() {
+        LotManager lotManager = new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE);
+        assertThrows(IllegalArgumentException.class, () -> OccupancyEventBus.attach(lotManager, 6));
+        assertThrows(IllegalArgumentException.class, () -> OccupancyEventBus.attach(lotManager, 1));
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.parkinglot.facility;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 20000;
+
+    @Test
+    public void testKeysAreSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(8, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        int[] keysByPartition = new int[8];
+        for (int key = 0; key < KEYS; key++) {
+            keysByPartition[ring.partitionOf("facility-" + key)]++;
+        }
+        for (int keys : keysByPartition) {
+            assertTrue(Math.abs(keys - KEYS / 8) < KEYS / 8 / 5, "partition holds " + keys + " keys");
+        }
+    }
+
+    @Test
+    public void testAddingAPartitionOnlyMovesKeysToIt() {
+        ConsistentHashRing four = new ConsistentHashRing(4, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        ConsistentHashRing five = new ConsistentHashRing(5, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            String facilityId = "facility-" + key;
+            int before = four.partitionOf(facilityId);
+            int after = five.partitionOf(facilityId);
+            if (before != after) {
+                assertEquals(4, after);
+                moved++;
+            }
+            // rings of the same size agree, whichever process built them
+            assertEquals(before, new ConsistentHashRing(4, ConsistentHashRing.DEFAULT_VIRTUAL_NODES)
+                    .partitionOf(facilityId));
+        }
+        assertTrue(Math.abs(moved - KEYS / 5) < KEYS / 5 / 5, moved + " keys moved");
+    }
+
+    @Test
+    public void testRejectsBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ConsistentHashRing(ConsistentHashRing.MAX_PARTITIONS + 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(1, 1).partitionOf(null));
+        assertEquals(0, new ConsistentHashRing(1, 1).partitionOf("any"));
+    }
+}
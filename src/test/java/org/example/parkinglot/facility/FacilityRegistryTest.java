@@ -0,0 +1,109 @@
+package org.example.parkinglot.facility;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FacilityRegistryTest {
+
+    private final FacilityRegistry registry = new FacilityRegistry(4);
+
+    @AfterEach
+    public void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    public void testWorkOnAFacilityRunsOnTheWorkerOfItsPartition() throws Exception {
+        Map<Integer, String> threadByPartition = new HashMap<>();
+        for (int facility = 0; facility < 40; facility++) {
+            String facilityId = "site-" + facility;
+            int partition = registry.register(facilityId, facility, 0,
+                    new LotManager(2, 2, 2, LotTracker.Factory.INSTANCE));
+            assertEquals(registry.partitionOf(facilityId), partition);
+            String thread = registry.execute(facilityId, lotManager -> Thread.currentThread().getName()).get();
+            assertEquals(thread, threadByPartition.computeIfAbsent(partition, p -> thread));
+        }
+        assertEquals(4, threadByPartition.size());
+        assertEquals(4, registry.getNumberOfPartitions());
+        assertEquals(40, registry.getNumberOfFacilities());
+
+        ExecutionException unknown = assertThrows(ExecutionException.class,
+                () -> registry.park("nowhere", new Car("c")).get());
+        assertTrue(unknown.getCause() instanceof IllegalArgumentException);
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.register("site-0", 0, 0, new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE)));
+        assertThrows(IllegalArgumentException.class, () -> registry.getNumberOfFreeLots("nowhere", Size.MEDIUM));
+    }
+
+    @Test
+    public void testAggregateFollowsParkingAndCapacity() throws Exception {
+        LotManager north = new LotManager(2, 1, 1, LotTracker.Factory.INSTANCE);
+        Ticket before = north.park(new Car("parked-before"));
+        registry.register("north", 0, 100, north);
+        registry.register("south", 0, -10, new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE));
+        assertEquals(1, registry.getNumberOfFreeLots("north", Size.MEDIUM));
+        assertEquals(2, registry.getNumberOfFreeLots(Size.MEDIUM));
+
+        Ticket ticket = registry.park("south", new Car("c1")).get();
+        assertNotNull(ticket);
+        assertEquals(0, registry.getNumberOfFreeLots("south", Size.MEDIUM));
+        assertEquals(1, registry.getNumberOfFreeLots(Size.MEDIUM));
+        assertEquals(1, registry.getNumberOfFreeLots("south", Size.SMALL));
+
+        assertEquals(1, (int) registry.execute("north", lotManager -> {
+            lotManager.addLots(Size.MEDIUM, 2);
+            return lotManager.retireLots(Size.MEDIUM, 0, 1);
+        }).get());
+        // lot 0 is retired with its vehicle still parked, it counts as taken until it drains
+        assertEquals(2, registry.getNumberOfFreeLots("north", Size.MEDIUM));
+        assertTrue(registry.unPark("north", before).get());
+        assertEquals(3, registry.getNumberOfFreeLots("north", Size.MEDIUM));
+
+        assertTrue(registry.unPark("south", ticket).get());
+        assertEquals(1, registry.getNumberOfFreeLots("south", Size.MEDIUM));
+        assertEquals(4, registry.getNumberOfFreeLots(Size.MEDIUM));
+    }
+
+    @Test
+    public void testFindsNearestFacilityWithAFreeLot() throws Exception {
+        registry.register("near", 1, 1, new LotManager(1, 0, 1, LotTracker.Factory.INSTANCE));
+        registry.register("far", 50, -50, new LotManager(1, 1, 1, ConcurrentLotTracker.Factory.INSTANCE));
+        registry.register("farther", -100, 0, new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE));
+
+        assertEquals(Optional.of("near"), registry.findNearestAvailable(Size.MEDIUM, 0, 0));
+        assertEquals(Optional.of("far"), registry.findNearestAvailable(Size.SMALL, 0, 0));
+        assertEquals(Optional.of("farther"), registry.findNearestAvailable(Size.MEDIUM, -60, 0));
+
+        assertNotNull(registry.park("near", new Car("c1")).get());
+        assertEquals(Optional.of("far"), registry.findNearestAvailable(Size.MEDIUM, 0, 0));
+        assertNotNull(registry.park("far", new Car("c2")).get());
+        assertNotNull(registry.park("farther", new Car("c3")).get());
+        assertEquals(Optional.empty(), registry.findNearestAvailable(Size.MEDIUM, 0, 0));
+        assertNull(registry.park("far", new Car("c4")).get());
+        assertNotNull(registry.park("farther", new Bike("b1")).get());
+        assertEquals(Optional.of("far"), registry.findNearestAvailable(Size.SMALL, -100, 0));
+    }
+
+    @Test
+    public void testPartitionProcessParksInItsFacilities() throws Exception {
+        long[] result = FacilityLoadGenerator.runPartition(0, 2, 6, Duration.ZERO);
+        assertEquals(2, result.length);
+        assertTrue(result[0] >= 0 && result[1] >= 0);
+        assertThrows(IllegalArgumentException.class, () -> FacilityLoadGenerator.run(0, 1, Duration.ZERO));
+    }
+}
@@ -0,0 +1,204 @@
+package org.example.parkinglot.index;
+
+import org.example.parkinglot.layout.BayLayout;
+import org.example.parkinglot.models.Size;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FreeLotIndexTest {
+
+    private static Stream<Arguments> indexes() {
+        return Stream.of(0, 1, 63, 64, 65, 4096, 4097, 300_000).flatMap(capacity -> Stream.of(
+                Arguments.of(HierarchicalFreeLotIndex.FACTORY, capacity),
+                Arguments.of(FreeListLotIndex.FACTORY, capacity),
+                Arguments.of(AtomicFreeLotIndex.FACTORY, capacity),
+                Arguments.of(StripedFreeLotIndex.factory(4), capacity),
+                Arguments.of(NEAREST_BAY, capacity)
+        ));
+    }
+
+    /**
+     * Lays the lots out on a 3 level grid with a single gate, sized to whatever capacity is asked for.
+     */
+    private static final FreeLotIndex.Factory NEAREST_BAY = (numberOfLots, size) -> {
+        BayLayout.Builder builder = BayLayout.builder(50);
+        builder.addGate(0, 0, 0);
+        for (int lotId = 0; lotId < numberOfLots; lotId++) {
+            builder.addBay(size, 0, lotId % 3, (lotId / 3) % 40, lotId / 120);
+        }
+        return new NearestBayLotIndex(builder.build(), size);
+    };
+
+    @ParameterizedTest
+    @MethodSource(value = "indexes")
+    public void testIndexHandsOutEveryLotExactlyOnce(FreeLotIndex.Factory factory, int capacity) {
+        FreeLotIndex index = factory.create(capacity, Size.SMALL);
+        Set<Integer> acquired = new HashSet<>();
+        for (int i = 0; i < capacity; i++) {
+            int lotId = index.acquire();
+            assertTrue(lotId >= 0 && lotId < capacity);
+            assertTrue(acquired.add(lotId));
+            assertFalse(index.isFree(lotId));
+        }
+        assertEquals(-1, index.acquire());
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "indexes")
+    public void testReleasedLotIsHandedOutAgain(FreeLotIndex.Factory factory, int capacity) {
+        FreeLotIndex index = factory.create(capacity, Size.SMALL);
+        for (int i = 0; i < capacity; i++) {
+            index.acquire();
+        }
+        for (int lotId = capacity - 1; lotId >= 0; lotId -= 7) {
+            index.release(lotId);
+            assertTrue(index.isFree(lotId));
+            assertEquals(lotId, index.acquire());
+            assertEquals(-1, index.acquire());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "indexes")
+    public void testReleasingFreeLotDoesNotDuplicateIt(FreeLotIndex.Factory factory, int capacity) {
+        FreeLotIndex index = factory.create(capacity, Size.SMALL);
+        for (int lotId = 0; lotId < capacity; lotId++) {
+            index.release(lotId);
+        }
+        for (int i = 0; i < capacity; i++) {
+            assertTrue(index.acquire() >= 0);
+        }
+        assertEquals(-1, index.acquire());
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "indexes")
+    public void testClaimedLotIsNotHandedOut(FreeLotIndex.Factory factory, int capacity) {
+        FreeLotIndex index = factory.create(capacity, Size.SMALL);
+        for (int lotId = 0; lotId < capacity; lotId += 2) {
+            assertTrue(index.claim(lotId));
+            assertFalse(index.claim(lotId));
+        }
+        for (int i = 1; i < capacity; i += 2) {
+            assertEquals(1, index.acquire() % 2);
+        }
+        assertEquals(-1, index.acquire());
+        if (capacity > 0) {
+            index.release(0);
+            assertTrue(index.claim(0));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "indexes")
+    public void testBulkAcquireHandsOutEveryLotExactlyOnce(FreeLotIndex.Factory factory, int capacity) {
+        FreeLotIndex index = factory.create(capacity, Size.SMALL);
+        int[] lotIds = new int[capacity + 10];
+        Set<Integer> acquired = new HashSet<>();
+        int total = 0;
+        for (int batch = 1; total < capacity; batch = batch * 3 + 1) {
+            int taken = index.acquire(lotIds, total, Math.min(batch, lotIds.length - total));
+            assertTrue(taken > 0);
+            total += taken;
+        }
+        assertEquals(capacity, total);
+        assertEquals(0, index.acquire(lotIds, 0, 10));
+        for (int i = 0; i < capacity; i++) {
+            assertTrue(acquired.add(lotIds[i]));
+            assertFalse(index.isFree(lotIds[i]));
+        }
+
+        index.release(lotIds, 0, capacity / 2);
+        assertEquals(capacity / 2, index.acquire(lotIds, 0, capacity));
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "indexes")
+    public void testAddedLotsAreTakenUntilReleased(FreeLotIndex.Factory factory, int capacity) {
+        FreeLotIndex index = factory.create(capacity, Size.SMALL);
+        if (index instanceof NearestBayLotIndex) {
+            assertThrows(UnsupportedOperationException.class, () -> index.ensureCapacity(capacity + 1));
+            return;
+        }
+        int kept = index.acquire();
+        int grown = capacity + 5000;
+        index.ensureCapacity(grown);
+        index.ensureCapacity(capacity);
+        assertEquals(grown, index.capacity());
+        for (int lotId = capacity; lotId < grown; lotId++) {
+            assertFalse(index.isFree(lotId));
+        }
+        for (int lotId = capacity; lotId < grown; lotId += 7) {
+            index.release(lotId);
+        }
+
+        Set<Integer> acquired = new HashSet<>();
+        int lotId;
+        while ((lotId = index.acquire()) >= 0) {
+            assertTrue(lotId < capacity ? lotId != kept : (lotId - capacity) % 7 == 0);
+            assertTrue(acquired.add(lotId));
+        }
+        assertEquals(Math.max(0, capacity - 1) + (5000 + 6) / 7, acquired.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> index.release(grown));
+    }
+
+    @Test
+    public void testHierarchicalIndexHandsOutLowestFreeLot() {
+        FreeLotIndex index = new HierarchicalFreeLotIndex(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, index.acquire());
+        }
+        index.release(9_000);
+        index.release(70);
+        index.release(5_000);
+        assertEquals(70, index.acquire());
+        assertEquals(5_000, index.acquire());
+        assertEquals(9_000, index.acquire());
+    }
+
+    @Test
+    public void testStripedIndexSpreadsAddedLotsOverEveryStripe() {
+        StripedFreeLotIndex index = new StripedFreeLotIndex(100, 4);
+        index.ensureCapacity(100 + 4 * 256);
+        int[] addedByStripe = new int[4];
+        for (int lotId = 100; lotId < index.capacity(); lotId++) {
+            addedByStripe[index.stripeOf(lotId)]++;
+            index.release(lotId);
+        }
+        for (int added : addedByStripe) {
+            assertTrue(added >= 192 && added <= 320);
+        }
+        Set<Integer> acquired = new HashSet<>();
+        int lotId;
+        while ((lotId = index.acquire()) >= 0) {
+            assertTrue(acquired.add(lotId));
+        }
+        assertEquals(index.capacity(), acquired.size());
+    }
+
+    @Test
+    public void testStripedIndexGivesThreadsDifferentHomeStripes() throws InterruptedException {
+        StripedFreeLotIndex index = new StripedFreeLotIndex(1024, 4);
+        Set<Integer> homeStripes = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> homeStripes.add(index.homeStripe()));
+            thread.start();
+            thread.join();
+        }
+        assertEquals(4, homeStripes.size());
+    }
+
+    @Test
+    public void testIndexRejectsLotIdOutOfRange() {
+        assertThrows(IndexOutOfBoundsException.class, () -> new HierarchicalFreeLotIndex(10).release(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> new FreeListLotIndex(10).isFree(-1));
+    }
+}
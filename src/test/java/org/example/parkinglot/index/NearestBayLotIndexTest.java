@@ -0,0 +1,168 @@
+package org.example.parkinglot.index;
+
+import org.example.parkinglot.layout.BayLayout;
+import org.example.parkinglot.models.Size;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NearestBayLotIndexTest {
+
+    /**
+     * Builds a site of the given number of levels, each a grid of width x depth bays, with gates spread over the
+     * levels and edges.
+     */
+    private static BayLayout site(int levels, int width, int depth, int gates, Random random) {
+        BayLayout.Builder builder = BayLayout.builder(100);
+        for (int gate = 0; gate < gates; gate++) {
+            builder.addGate(random.nextInt(levels), random.nextInt(width * 3), random.nextInt(depth * 3));
+        }
+        for (int level = 0; level < levels; level++) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < depth; y++) {
+                    builder.addBay(Size.MEDIUM, x * 4 / width, level, x * 3, y * 3);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3})
+    public void testAcquireNearestMatchesBruteForce(long seed) {
+        Random random = new Random(seed);
+        BayLayout layout = site(4, 30, 20, 6, random);
+        NearestBayLotIndex index = new NearestBayLotIndex(layout, Size.MEDIUM);
+        int capacity = index.capacity();
+        boolean[] taken = new boolean[capacity];
+        int numberTaken = 0;
+
+        for (int step = 0; step < 5000; step++) {
+            if (numberTaken > 0 && (numberTaken == capacity || random.nextInt(3) == 0)) {
+                int lotId = random.nextInt(capacity);
+                while (!taken[lotId]) {
+                    lotId = (lotId + 1) % capacity;
+                }
+                index.release(lotId);
+                taken[lotId] = false;
+                numberTaken--;
+                continue;
+            }
+            int gate = random.nextInt(layout.getNumberOfGates());
+            long nearest = Long.MAX_VALUE;
+            for (int lotId = 0; lotId < capacity; lotId++) {
+                if (!taken[lotId]) {
+                    nearest = Math.min(nearest, layout.distance(gate, Size.MEDIUM, lotId));
+                }
+            }
+            int lotId = index.acquireNearest(gate);
+            assertFalse(taken[lotId]);
+            assertEquals(nearest, layout.distance(gate, Size.MEDIUM, lotId));
+            assertFalse(index.isFree(lotId));
+            taken[lotId] = true;
+            numberTaken++;
+        }
+    }
+
+    @Test
+    public void testNearbyLevelFillsBeforeFarLevel() {
+        BayLayout.Builder builder = BayLayout.builder(1000);
+        int upstairs = builder.addGate(3, 0, 0);
+        for (int level = 0; level < 4; level++) {
+            for (int x = 0; x < 10; x++) {
+                builder.addBay(Size.SMALL, level, level, x, 0);
+            }
+        }
+        BayLayout layout = builder.build();
+        NearestBayLotIndex index = new NearestBayLotIndex(layout, Size.SMALL);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(3, layout.getLevel(Size.SMALL, index.acquireNearest(upstairs)));
+        }
+        assertEquals(2, layout.getLevel(Size.SMALL, index.acquireNearest(upstairs)));
+        assertTrue(index.acquire() >= 0);
+    }
+
+    @Test
+    public void testFullIndexAndUnknownGate() {
+        BayLayout.Builder builder = BayLayout.builder(10);
+        int gate = builder.addGate(0, 0, 0);
+        builder.addBay(Size.LARGE, 0, 0, 5, 5);
+        NearestBayLotIndex index = new NearestBayLotIndex(builder.build(), Size.LARGE);
+
+        assertEquals(0, index.acquireNearest(gate));
+        assertEquals(-1, index.acquireNearest(gate));
+        assertEquals(-1, index.acquire());
+        assertThrows(IndexOutOfBoundsException.class, () -> index.acquireNearest(1));
+    }
+
+    @Test
+    public void testFactoryRejectsLayoutOfOtherSize() {
+        BayLayout.Builder builder = BayLayout.builder(10);
+        builder.addBay(Size.LARGE, 0, 0, 5, 5);
+        FreeLotIndex.Factory factory = NearestBayLotIndex.factory(builder.build());
+        assertEquals(1, factory.create(1, Size.LARGE).capacity());
+        assertThrows(IllegalArgumentException.class, () -> factory.create(2, Size.LARGE));
+        assertThrows(IllegalArgumentException.class, () -> factory.create(1, Size.SMALL));
+    }
+
+    @Test
+    public void testConcurrentGatesNeverShareALot() throws Exception {
+        Random random = new Random(7);
+        BayLayout layout = site(3, 20, 20, 8, random);
+        NearestBayLotIndex index = new NearestBayLotIndex(layout, Size.MEDIUM);
+        int threads = 4;
+        int[][] acquired = new int[threads][];
+        Thread[] gates = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            gates[t] = new Thread(() -> {
+                int[] lotIds = new int[index.capacity()];
+                int count = 0;
+                for (int i = 0; ; i++) {
+                    int lotId = index.acquireNearest((thread + i) % layout.getNumberOfGates());
+                    if (lotId < 0) {
+                        break;
+                    }
+                    lotIds[count++] = lotId;
+                    // give some back to keep searches and updates overlapping
+                    if (i % 3 == 0) {
+                        index.release(lotIds[--count]);
+                    }
+                }
+                acquired[thread] = Arrays.copyOf(lotIds, count);
+            });
+            gates[t].start();
+        }
+        boolean[] taken = new boolean[index.capacity()];
+        int total = 0;
+        for (int t = 0; t < threads; t++) {
+            gates[t].join();
+            for (int lotId : acquired[t]) {
+                assertFalse(taken[lotId]);
+                assertFalse(index.isFree(lotId));
+                taken[lotId] = true;
+                total++;
+            }
+        }
+        assertEquals(index.capacity(), total);
+        assertEquals(-1, index.acquire());
+    }
+
+    @Test
+    public void testIndexCannotGrowPastItsLayout() {
+        BayLayout.Builder builder = BayLayout.builder(10);
+        builder.addBay(Size.LARGE, 0, 0, 5, 5);
+        builder.addBay(Size.LARGE, 0, 0, 8, 5);
+        NearestBayLotIndex index = new NearestBayLotIndex(builder.build(), Size.LARGE);
+        index.ensureCapacity(2);
+        UnsupportedOperationException e = assertThrows(UnsupportedOperationException.class,
+                () -> index.ensureCapacity(3));
+        assertTrue(e.getMessage().contains("cannot grow"));
+        assertEquals(2, index.capacity());
+    }
+}
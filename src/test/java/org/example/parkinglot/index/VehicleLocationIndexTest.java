@@ -0,0 +1,76 @@
+package org.example.parkinglot.index;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Truck;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehicleLocationIndexTest {
+
+    private static VehicleLocationIndex index(int lotsPerSize) {
+        EnumMap<Size, Integer> numberOfLots = new EnumMap<>(Size.class);
+        for (Size size : Size.values()) {
+            numberOfLots.put(size, lotsPerSize);
+        }
+        return new VehicleLocationIndex(numberOfLots);
+    }
+
+    @Test
+    public void testClaimedVehicleCannotBeClaimedAgainUntilAbandoned() {
+        VehicleLocationIndex index = index(4);
+        assertTrue(index.claim("a"));
+        assertFalse(index.claim("a"));
+        assertEquals(VehicleLocationIndex.PENDING, index.locate("a"));
+        index.abandon("a");
+        assertEquals(VehicleLocationIndex.NOT_FOUND, index.locate("a"));
+        assertTrue(index.claim("a"));
+    }
+
+    @Test
+    public void testParkedVehicleIsLocatedUntilReleased() {
+        VehicleLocationIndex index = index(4);
+        assertTrue(index.claim("truck"));
+        index.onReserved(Size.LARGE, 3, 0, new Truck("truck"));
+        long location = index.locate("truck");
+        assertEquals(Size.LARGE, VehicleLocationIndex.sizeOf(location));
+        assertEquals(3, VehicleLocationIndex.lotIdOf(location));
+
+        index.abandon("truck");
+        assertEquals(location, index.locate("truck"));
+        assertFalse(index.claim("truck"));
+
+        index.onReleased(Size.LARGE, 3, 0);
+        assertEquals(VehicleLocationIndex.NOT_FOUND, index.locate("truck"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testManyVehiclesSurviveGrowthAndDeletion() {
+        int lots = 20_000;
+        VehicleLocationIndex index = index(1);
+        for (int lotId = 0; lotId < lots; lotId++) {
+            assertTrue(index.claim("car-" + lotId));
+        }
+        for (int lotId = 0; lotId < lots; lotId += 2) {
+            index.abandon("car-" + lotId);
+        }
+        assertEquals(lots / 2, index.size());
+        for (int lotId = 0; lotId < lots; lotId++) {
+            long expected = lotId % 2 == 0 ? VehicleLocationIndex.NOT_FOUND : VehicleLocationIndex.PENDING;
+            assertEquals(expected, index.locate("car-" + lotId));
+        }
+        assertEquals(VehicleLocationIndex.NOT_FOUND, index.locate(null));
+    }
+
+    @Test
+    public void testReleaseOfOtherLotDoesNotRemoveVehicle() {
+        VehicleLocationIndex index = index(4);
+        index.onReserved(Size.MEDIUM, 0, 0, new Car("car"));
+        index.onReleased(Size.MEDIUM, 1, 0);
+        assertEquals(VehicleLocationIndex.location(Size.MEDIUM, 0), index.locate("car"));
+    }
+}
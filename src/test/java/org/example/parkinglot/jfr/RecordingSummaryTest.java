@@ -0,0 +1,72 @@
+package org.example.parkinglot.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.models.lot.PackedTicket;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordingSummaryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testParkingEmitsEventsWhileRecording() throws Exception {
+        LotManager lotManager = new LotManager(1, 2, 1, ConcurrentLotTracker.Factory.INSTANCE);
+        // not recording yet, nothing is emitted
+        lotManager.unPark(lotManager.park(new Car("car-0")));
+
+        Path file = directory.resolve("parking.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ParkEvent.class);
+            recording.enable(UnParkEvent.class);
+            recording.enable(ReserveLotEvent.class);
+            recording.start();
+            Ticket ticket = lotManager.park(new Car("car-1"));
+            assertNull(lotManager.park(new Car("car-2")));
+            assertNull(lotManager.park(new Car("car-1")));
+            assertTrue(lotManager.unPark(ticket));
+            assertFalse(lotManager.unParkPacked(PackedTicket.pack(ticket.getLotSize(), 5, 0)));
+            lotManager.parkPacked(new Bike("bike-1"));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(4, count(events, ParkEvent.NAME));
+        assertEquals(2, count(events, UnParkEvent.NAME));
+        assertEquals(3, count(events, ReserveLotEvent.NAME));
+        RecordedEvent parked = events.stream()
+                .filter(event -> event.getEventType().getName().equals(ParkEvent.NAME))
+                .filter(event -> "SUCCESS".equals(event.getString("outcome")))
+                .filter(event -> "MEDIUM".equals(event.getString("vehicleSize")))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals("MEDIUM", parked.getString("lotSize"));
+        // a single medium lot, so every car gets lot 0
+        assertEquals(0, parked.getInt("lotId"));
+        assertEquals(-1, parked.getInt("gate"));
+
+        String summary = RecordingSummary.summarize(file);
+        assertTrue(summary.matches("(?s).*\\nPark +MEDIUM +3 .*"), summary);
+        assertTrue(summary.contains("UnPark MEDIUM UNKNOWN_LOT"), summary);
+        assertTrue(summary.contains("Park MEDIUM ALREADY_PARKED"), summary);
+        assertTrue(summary.contains("Reserve Lot MEDIUM FULL"), summary);
+        assertTrue(summary.contains("Lock retry hotspots:"), summary);
+    }
+
+    private static long count(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).count();
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.parkinglot.metrics;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.allocation.OverflowAllocationPolicy;
+import org.example.parkinglot.allocation.StrictAllocationPolicy;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.PackedTicket;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LotMetricsTest {
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, 31, 32, 33, 63, 64, 1000, 123_456_789, LatencyHistogram.MAX_VALUE})
+    public void testBucketHoldsValueWithinSixPercent(long value) {
+        int bucket = LatencyHistogram.bucketOf(value);
+        assertTrue(LatencyHistogram.lowestValueOf(bucket) <= value);
+        assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+        assertTrue(LatencyHistogram.highestValueOf(bucket) - LatencyHistogram.lowestValueOf(bucket) <= value / 16);
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_001, snapshot.getCount());
+        assertEquals(10_000L * 10_001 / 2, snapshot.getSum());
+        assertEquals(5_000, snapshot.getValueAtPercentile(50), 5_000 / 16.0);
+        assertEquals(9_900, snapshot.getValueAtPercentile(99), 9_900 / 16.0);
+        assertEquals(10_000, snapshot.getMax(), 10_000 / 16.0);
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testLotManagerRecordsEveryOutcome() {
+        LotMetrics metrics = new LotMetrics(1);
+        LotManager lotManager = new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE,
+                StrictAllocationPolicy.INSTANCE, metrics);
+
+        Ticket ticket = lotManager.park(new Car("car-1"));
+        assertNotNull(ticket);
+        assertNull(lotManager.park(new Car("car-1")));
+        assertNull(lotManager.park(new Car("car-2")));
+        assertNull(lotManager.park(null));
+        assertTrue(lotManager.unPark(ticket));
+        assertFalse(lotManager.unPark(ticket));
+        assertFalse(lotManager.unParkPacked(PackedTicket.pack(Size.MEDIUM, 7, 0)));
+        assertFalse(lotManager.unParkPacked(PackedTicket.NONE));
+        long bike = lotManager.parkPacked(new Bike("bike-1"));
+        assertArrayEquals(new boolean[]{false, false}, lotManager.unParkAll(Arrays.asList(null, ticket)));
+
+        assertEquals(1, metrics.getCount(Operation.PARK, Size.MEDIUM, Outcome.SUCCESS));
+        assertEquals(1, metrics.getCount(Operation.PARK, Size.MEDIUM, Outcome.ALREADY_PARKED));
+        assertEquals(1, metrics.getCount(Operation.PARK, Size.MEDIUM, Outcome.FULL));
+        assertEquals(1, metrics.getCount(Operation.PARK, null, Outcome.SIZE_MISMATCH));
+        assertEquals(1, metrics.getCount(Operation.PARK, Size.SMALL, Outcome.SUCCESS));
+        assertEquals(1, metrics.getCount(Operation.UNPARK, Size.MEDIUM, Outcome.SUCCESS));
+        assertEquals(2, metrics.getCount(Operation.UNPARK, Size.MEDIUM, Outcome.INVALID_TICKET));
+        assertEquals(1, metrics.getCount(Operation.UNPARK, Size.MEDIUM, Outcome.UNKNOWN_LOT));
+        assertEquals(2, metrics.getCount(Operation.UNPARK, null, Outcome.INVALID_TICKET));
+        assertEquals(3, metrics.getLatency(Operation.PARK, Size.MEDIUM).getCount());
+        // batches are counted but not timed
+        assertEquals(3, metrics.getLatency(Operation.UNPARK, Size.MEDIUM).getCount());
+
+        MetricsSnapshot snapshot = metrics.snapshot(lotManager);
+        assertEquals(1, snapshot.getNumberOfLotsOccupied(Size.SMALL));
+        assertEquals(0, snapshot.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertEquals(1, snapshot.getNumberOfLots(Size.LARGE));
+        assertEquals(1, snapshot.getCount(Operation.UNPARK, Size.MEDIUM, Outcome.UNKNOWN_LOT));
+        assertTrue(lotManager.unParkPacked(bike));
+        assertEquals(1, snapshot.getNumberOfLotsOccupied(Size.SMALL));
+    }
+
+    @Test
+    public void testOverflowedParkAndUnParkAreCountedUnderTheLotSize() {
+        LotMetrics metrics = new LotMetrics(1);
+        LotManager lotManager = new LotManager(1, 0, 0, LotTracker.Factory.INSTANCE,
+                OverflowAllocationPolicy.INSTANCE, metrics);
+
+        Ticket ticket = lotManager.park(new Bike("bike-1"));
+        assertEquals(Size.MEDIUM, ticket.getLotSize());
+        assertNull(lotManager.park(new Bike("bike-2")));
+        assertTrue(lotManager.unPark(ticket));
+
+        assertEquals(1, metrics.getCount(Operation.PARK, Size.MEDIUM, Outcome.SUCCESS));
+        assertEquals(1, metrics.getCount(Operation.UNPARK, Size.MEDIUM, Outcome.SUCCESS));
+        assertEquals(0, metrics.getCount(Operation.PARK, Size.SMALL, Outcome.SUCCESS));
+        assertEquals(1, metrics.getCount(Operation.PARK, Size.SMALL, Outcome.FULL));
+    }
+
+    @Test
+    public void testSampledMetricsCountEveryCallButTimeSome() {
+        LotMetrics metrics = new LotMetrics(4);
+        LotManager lotManager = new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE,
+                StrictAllocationPolicy.INSTANCE, metrics);
+        for (int i = 0; i < 10_000; i++) {
+            lotManager.unParkPacked(lotManager.parkPacked(new Car("car")));
+        }
+        assertEquals(10_000, metrics.getCount(Operation.PARK, Size.MEDIUM, Outcome.SUCCESS));
+        assertEquals(10_000, metrics.getCount(Operation.UNPARK, Size.MEDIUM, Outcome.SUCCESS));
+        assertEquals(2_500, metrics.getLatency(Operation.PARK, Size.MEDIUM).getCount(), 500);
+        assertThrows(IllegalArgumentException.class, () -> new LotMetrics(3));
+    }
+
+    @Test
+    public void testCountsOfEndedThreadsAreKept() throws InterruptedException {
+        LotMetrics metrics = new LotMetrics(16);
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    metrics.record(Operation.PARK, Size.MEDIUM, Outcome.SUCCESS, metrics.start());
+                }
+            });
+            thread.start();
+            thread.join();
+            assertEquals((t + 1) * 1_000, metrics.getCount(Operation.PARK, Size.MEDIUM, Outcome.SUCCESS));
+        }
+        metrics.count(Operation.PARK, Size.MEDIUM, Outcome.SUCCESS);
+        assertEquals(8_001, metrics.getCount(Operation.PARK, Size.MEDIUM, Outcome.SUCCESS));
+        assertEquals(16, metrics.getSampleInterval());
+        assertEquals(500, metrics.getLatency(Operation.PARK, Size.MEDIUM).getCount(), 150);
+    }
+
+    @Test
+    public void testSnapshotRendersPrometheusText() {
+        LotMetrics metrics = new LotMetrics(1);
+        LotManager lotManager = new LotManager(2, 3, 4, LotTracker.Factory.INSTANCE,
+                StrictAllocationPolicy.INSTANCE, metrics);
+        lotManager.park(new Car("car-1"));
+
+        String text = metrics.snapshot(lotManager).toText();
+        assertTrue(text.contains("# TYPE parkinglot_operations_total counter\n"));
+        assertTrue(text.contains(
+                "parkinglot_operations_total{operation=\"park\",size=\"medium\",outcome=\"success\"} 1\n"));
+        assertTrue(text.contains(
+                "parkinglot_operations_total{operation=\"unpark\",size=\"none\",outcome=\"invalid_ticket\"} 0\n"));
+        assertTrue(text.contains(
+                "parkinglot_operation_latency_nanoseconds_count{operation=\"park\",size=\"medium\"} 1\n"));
+        assertTrue(text.contains(
+                "parkinglot_operation_latency_nanoseconds{operation=\"park\",size=\"medium\",quantile=\"0.99\"} "));
+        assertTrue(text.contains("parkinglot_operation_latency_sample_interval 1\n"));
+        assertTrue(text.contains("parkinglot_lots_occupied{size=\"medium\"} 1\n"));
+        assertTrue(text.contains("parkinglot_lots{size=\"large\"} 4\n"));
+        for (String line : text.split("\n")) {
+            assertTrue(line.startsWith("# ") || line.matches("parkinglot_[a-z_]+(\\{[^}]*})? \\d+"), line);
+        }
+    }
+}
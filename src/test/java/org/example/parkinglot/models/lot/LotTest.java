@@ -133,4 +133,39 @@ public class LotTest {
 
         assertTrue(lot.release(ticket));
     }
+
+    @ParameterizedTest
+    @EnumSource(Size.class)
+    public void testLotCannotBeReleasedWithTicketOfPreviousGeneration(Size size) {
+        Vehicle vehicle = mock(Vehicle.class);
+        when(vehicle.getSize()).thenReturn(size);
+        when(vehicle.id()).thenReturn("Vehicle1");
+        Lot lot = new Lot(0, size);
+
+        assertTrue(lot.reserve(vehicle));
+        Ticket first = new Ticket(0, "Vehicle1", size, lot.getGeneration());
+        assertTrue(lot.release(first));
+
+        assertTrue(lot.reserve(vehicle));
+        Ticket stale = new Ticket(0, "Vehicle1", size, first.getGeneration());
+        assertFalse(lot.release(stale));
+        assertTrue(lot.release(new Ticket(0, "Vehicle1", size, lot.getGeneration())));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Size.class)
+    public void testLotReleaseByGeneration(Size size) {
+        Vehicle vehicle = mock(Vehicle.class);
+        when(vehicle.getSize()).thenReturn(size);
+        Lot lot = new Lot(0, size);
+
+        assertFalse(lot.release(lot.getGeneration()));
+        assertTrue(lot.reserve(vehicle));
+        int generation = lot.getGeneration();
+        assertFalse(lot.release(generation + 1));
+        assertTrue(lot.release(generation));
+        assertTrue(lot.isAvailable());
+        assertFalse(lot.getVehicle().isPresent());
+        assertFalse(lot.release(generation));
+    }
 }
@@ -0,0 +1,89 @@
+package org.example.parkinglot.models.lot;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.vehicle.Car;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SignedTicketCodecTest {
+
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final long ISSUED_AT = 1_700_000_000_000L;
+
+    @Test
+    public void testEncodedTicketVerifies() {
+        SignedTicketCodec codec = new SignedTicketCodec(KEY);
+        long packedTicket = PackedTicket.pack(Size.LARGE, 1234, 56);
+        byte[] buffer = new byte[SignedTicketCodec.ENCODED_BYTES + 3];
+
+        assertEquals(SignedTicketCodec.ENCODED_BYTES, codec.encode(packedTicket, "truck-1", ISSUED_AT, buffer, 3));
+        assertEquals(packedTicket, codec.verify(buffer, 3));
+        assertEquals(ISSUED_AT, SignedTicketCodec.issuedAtMillis(buffer, 3));
+        assertTrue(SignedTicketCodec.isIssuedFor(buffer, 3, "truck-1"));
+        assertFalse(SignedTicketCodec.isIssuedFor(buffer, 3, "truck-2"));
+    }
+
+    @Test
+    public void testTamperedOrForgedTicketIsRejected() {
+        SignedTicketCodec codec = new SignedTicketCodec(KEY);
+        byte[] ticket = new byte[SignedTicketCodec.ENCODED_BYTES];
+        codec.encode(PackedTicket.pack(Size.MEDIUM, 7, 3), "car-1", ISSUED_AT, ticket, 0);
+
+        for (int i = 0; i < ticket.length; i++) {
+            byte[] tampered = ticket.clone();
+            tampered[i] ^= 1;
+            assertEquals(PackedTicket.NONE, codec.verify(tampered, 0));
+        }
+        byte[] otherKey = KEY.clone();
+        otherKey[0] ^= 1;
+        assertEquals(PackedTicket.NONE, new SignedTicketCodec(otherKey).verify(ticket, 0));
+        assertEquals(PackedTicket.NONE, codec.verify(Arrays.copyOf(ticket, ticket.length - 1), 0));
+        assertThrows(IllegalArgumentException.class, () -> new SignedTicketCodec(new byte[16]));
+    }
+
+    @Test
+    public void testBase64FormIsUrlSafeBase64() {
+        SignedTicketCodec codec = new SignedTicketCodec(KEY);
+        long packedTicket = PackedTicket.pack(Size.SMALL, 0, 0);
+        byte[] binary = new byte[SignedTicketCodec.ENCODED_BYTES];
+        byte[] text = new byte[SignedTicketCodec.BASE64_CHARS];
+        codec.encode(packedTicket, "bike", ISSUED_AT, binary, 0);
+        assertEquals(SignedTicketCodec.BASE64_CHARS, codec.encodeBase64(packedTicket, "bike", ISSUED_AT, text, 0));
+
+        assertArrayEquals(Base64.getUrlEncoder().withoutPadding().encode(binary), text);
+        assertEquals(packedTicket, codec.verifyBase64(text, 0));
+        text[10] = '=';
+        assertEquals(PackedTicket.NONE, codec.verifyBase64(text, 0));
+    }
+
+    @Test
+    public void testExpiredTicketIsRejected() {
+        SignedTicketCodec codec = new SignedTicketCodec(KEY);
+        long packedTicket = PackedTicket.pack(Size.MEDIUM, 1, 0);
+        byte[] ticket = new byte[SignedTicketCodec.ENCODED_BYTES];
+        codec.encode(packedTicket, "car", ISSUED_AT, ticket, 0);
+
+        assertEquals(packedTicket, codec.verify(ticket, 0, ISSUED_AT + 1_000, 1_000));
+        assertEquals(PackedTicket.NONE, codec.verify(ticket, 0, ISSUED_AT + 1_001, 1_000));
+        assertEquals(PackedTicket.NONE, codec.verify(ticket, 0, ISSUED_AT - 1, 1_000));
+    }
+
+    @Test
+    public void testReplayedTicketOfEarlierOccupancyIsRejected() {
+        SignedTicketCodec codec = new SignedTicketCodec(KEY);
+        LotManager lotManager = new LotManager(1, 1, 1, LotTracker.Factory.INSTANCE);
+        byte[] ticket = new byte[SignedTicketCodec.ENCODED_BYTES];
+        codec.encode(lotManager.parkPacked(new Car("car")), "car", ISSUED_AT, ticket, 0);
+
+        assertTrue(lotManager.unParkPacked(codec.verify(ticket, 0)));
+        lotManager.parkPacked(new Car("car"));
+        assertFalse(lotManager.unParkPacked(codec.verify(ticket, 0)));
+    }
+}
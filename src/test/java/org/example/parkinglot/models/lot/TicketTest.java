@@ -44,4 +44,14 @@ public class TicketTest {
         assertTrue(ticket.invalidateTicket());
         assertFalse(ticket.isValid());
     }
+
+    @Test
+    public void testTicketAccessOnlyInvalidatesTicketOfReleasedOccupancy() {
+        Ticket ticket = new Ticket(1, "Vehicle1", Size.LARGE, 3);
+        assertFalse(TicketAccess.invalidateReleased(ticket, 1, 2));
+        assertFalse(TicketAccess.invalidateReleased(ticket, 2, 3));
+        assertTrue(ticket.isValid());
+        assertTrue(TicketAccess.invalidateReleased(ticket, 1, 3));
+        assertFalse(ticket.isValid());
+    }
 }
@@ -0,0 +1,215 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.allocation.OverflowAllocationPolicy;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Truck;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LotSnapshotTest {
+
+    private static final Duration SYNC_INTERVAL = Duration.ofMillis(5);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testStartupFromSnapshotAndLogTail() throws IOException {
+        Path snapshot = directory.resolve("lots.snapshot");
+        Path wal = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(8, 8, 8, ConcurrentLotTracker.Factory.INSTANCE);
+        List<Ticket> tickets = new ArrayList<>();
+        long position;
+        try (WriteAheadLog log = LotSnapshot.recover(snapshot, wal, lotManager, FsyncPolicy.EVERY_COMMIT,
+                SYNC_INTERVAL)) {
+            for (int i = 0; i < 6; i++) {
+                tickets.add(lotManager.park(new Car("car-" + i)));
+            }
+            lotManager.park(new Bike("bike-0"));
+            lotManager.unPark(tickets.get(1));
+            position = LotSnapshot.write(snapshot, lotManager, log);
+            assertEquals(log.getPosition(), position);
+
+            // log tail after the snapshot
+            lotManager.unPark(tickets.get(2));
+            tickets.add(lotManager.park(new Truck("truck-0")));
+            tickets.add(lotManager.park(new Car("car-6")));
+        }
+
+        LotManager recovered = new LotManager(8, 8, 8, ConcurrentLotTracker.Factory.INSTANCE);
+        assertEquals(position, LotSnapshot.load(snapshot, recovered));
+        assertEquals(5, recovered.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertEquals(1, recovered.getNumberOfLotsOccupied(Size.SMALL));
+        assertEquals(0, recovered.getNumberOfLotsOccupied(Size.LARGE));
+
+        LotManager started = new LotManager(8, 8, 8, ConcurrentLotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = LotSnapshot.recover(snapshot, wal, started, FsyncPolicy.EVERY_COMMIT,
+                SYNC_INTERVAL)) {
+            for (Size size : Size.values()) {
+                assertEquals(lotManager.getNumberOfLotsOccupied(size), started.getNumberOfLotsOccupied(size));
+            }
+            assertFalse(started.unPark(tickets.get(1)));
+            assertFalse(started.unPark(tickets.get(2)));
+            for (Ticket ticket : tickets.subList(3, tickets.size())) {
+                assertTrue(started.unPark(ticket));
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotReplayedWithWholeLogIsIdempotent() throws IOException {
+        Path snapshot = directory.resolve("lots.snapshot");
+        Path wal = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = WriteAheadLog.recover(wal, lotManager, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            Ticket ticket = lotManager.park(new Car("a"));
+            lotManager.park(new Car("b"));
+            LotSnapshot.write(snapshot, lotManager, log);
+            lotManager.unPark(ticket);
+            lotManager.park(new Car("c"));
+        }
+
+        LotManager recovered = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        LotSnapshot.load(snapshot, recovered);
+        WriteAheadLog.restore(wal, 0, recovered);
+        assertEquals(2, recovered.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertEquals("c", recovered.findLot(Size.MEDIUM, 0).get().getVehicle().get().id());
+        assertEquals(1, recovered.findLot(Size.MEDIUM, 0).get().getGeneration());
+    }
+
+    @Test
+    public void testSnapshotKeepsSizeOfOverflowedVehicle() throws IOException {
+        Path snapshot = directory.resolve("lots.snapshot");
+        Path wal = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(2, 1, 1, LotTracker.Factory.INSTANCE, OverflowAllocationPolicy.INSTANCE);
+        Ticket ticket;
+        try (WriteAheadLog log = WriteAheadLog.recover(wal, lotManager, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            lotManager.park(new Bike("bike-0"));
+            ticket = lotManager.park(new Bike("bike-1"));
+            lotManager.park(new Car("car-0"));
+            LotSnapshot.write(snapshot, lotManager, log);
+        }
+
+        LotManager recovered = new LotManager(2, 1, 1, LotTracker.Factory.INSTANCE, OverflowAllocationPolicy.INSTANCE);
+        LotSnapshot.load(snapshot, recovered);
+        assertEquals(Size.SMALL, recovered.locate("bike-1").get().getVehicle().get().getSize());
+        assertEquals(Size.MEDIUM, recovered.locate("car-0").get().getVehicle().get().getSize());
+        assertTrue(recovered.unPark(ticket));
+    }
+
+    @Test
+    public void testSnapshotKeepsAddedAndRetiredLots() throws IOException {
+        Path snapshot = directory.resolve("lots.snapshot");
+        Path wal = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(2, 2, 2, ConcurrentLotTracker.Factory.INSTANCE);
+        List<Ticket> tickets = new ArrayList<>();
+        try (WriteAheadLog log = LotSnapshot.recover(snapshot, wal, lotManager, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            assertEquals(2, lotManager.addLots(Size.MEDIUM, 3));
+            for (int i = 0; i < 4; i++) {
+                tickets.add(lotManager.park(new Car("car-" + i)));
+            }
+            lotManager.unPark(tickets.get(2));
+            // lot 1 drains, lot 2 is out of service right away
+            assertEquals(2, lotManager.retireLots(Size.MEDIUM, 1, 3));
+            LotSnapshot.write(snapshot, lotManager, log);
+
+            // log tail after the snapshot
+            assertEquals(5, lotManager.addLots(Size.MEDIUM, 1));
+            assertEquals(1, lotManager.retireLots(Size.MEDIUM, 4, 5));
+            tickets.add(lotManager.park(new Car("car-4")));
+            assertEquals(5, tickets.get(4).getLotId());
+        }
+
+        LotManager loaded = new LotManager(2, 2, 2, ConcurrentLotTracker.Factory.INSTANCE);
+        LotSnapshot.load(snapshot, loaded);
+        assertEquals(5, loaded.getLotCapacity(Size.MEDIUM));
+        assertEquals(3, loaded.getNumberOfLots(Size.MEDIUM));
+        assertEquals(3, loaded.getNumberOfLotsOccupied(Size.MEDIUM));
+
+        LotManager started = new LotManager(2, 2, 2, ConcurrentLotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = LotSnapshot.recover(snapshot, wal, started, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            assertEquals(6, started.getLotCapacity(Size.MEDIUM));
+            assertEquals(3, started.getNumberOfLots(Size.MEDIUM));
+            assertEquals(4, started.getNumberOfLotsOccupied(Size.MEDIUM));
+            assertTrue(started.unPark(tickets.get(1)));
+            // the retired lots are not handed out again
+            assertNull(started.park(new Car("car-5")));
+            assertTrue(started.unPark(tickets.get(4)));
+            assertEquals(5, started.park(new Car("car-6")).getLotId());
+        }
+    }
+
+    @Test
+    public void testSnapshotWrittenWhileLotsAreAddedIsComplete() throws Exception {
+        Path snapshot = directory.resolve("lots.snapshot");
+        Path wal = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(1, 1, 1, ConcurrentLotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = WriteAheadLog.recover(wal, lotManager, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            Thread adding = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    lotManager.addLots(Size.MEDIUM, 1);
+                    lotManager.park(new Car("car-" + i));
+                }
+            });
+            adding.start();
+            long position;
+            do {
+                position = LotSnapshot.write(snapshot, lotManager, log);
+            } while (adding.isAlive());
+            adding.join();
+
+            LotManager recovered = new LotManager(1, 1, 1, ConcurrentLotTracker.Factory.INSTANCE);
+            WriteAheadLog.restore(wal, LotSnapshot.load(snapshot, recovered), recovered);
+            assertTrue(position <= log.getPosition());
+            assertEquals(501, recovered.getLotCapacity(Size.MEDIUM));
+            assertEquals(500, recovered.getNumberOfLotsOccupied(Size.MEDIUM));
+        }
+    }
+
+    @Test
+    public void testManagerWithMoreLotsThanSnapshotIsRefused() throws IOException {
+        Path snapshot = directory.resolve("lots.snapshot");
+        LotManager lotManager = new LotManager(2, 2, 2, LotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = WriteAheadLog.recover(directory.resolve("lots.wal"), lotManager,
+                FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            LotSnapshot.write(snapshot, lotManager, log);
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> LotSnapshot.load(snapshot, new LotManager(3, 2, 2, LotTracker.Factory.INSTANCE)));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRejected() throws IOException {
+        Path snapshot = directory.resolve("lots.snapshot");
+        LotManager lotManager = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = WriteAheadLog.recover(directory.resolve("lots.wal"), lotManager,
+                FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            lotManager.park(new Car("a"));
+            LotSnapshot.write(snapshot, lotManager, log);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            file.write('x');
+        }
+
+        LotManager recovered = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        assertThrows(IOException.class, () -> LotSnapshot.load(snapshot, recovered));
+        assertEquals(0, recovered.getNumberOfLotsOccupied(Size.MEDIUM));
+    }
+}
@@ -0,0 +1,282 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicationTest {
+
+    private static final InetSocketAddress ANY_PORT = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    @Test
+    public void testStandbyFollowsParksAndUnParks() throws Exception {
+        LotManager lotManager = new LotManager(10, 10, 10, ConcurrentLotTracker.Factory.INSTANCE);
+        Ticket before = lotManager.park(new Car("before"));
+        assertTrue(lotManager.unPark(before));
+        lotManager.park(new Car("parked-before"));
+        LotManager follower = new LotManager(10, 10, 10, ConcurrentLotTracker.Factory.INSTANCE);
+        try (ReplicationPrimary primary = ReplicationPrimary.start(lotManager, ANY_PORT, 0);
+             ReplicationStandby standby = ReplicationStandby.connect(primary.getAddress(), follower)) {
+            await(() -> primary.getNumberOfStandbys() == 1);
+            // the primary counts the standby once the backlog is sent, which may not be applied yet
+            await(standby::isUpToDate);
+            assertEquals("parked-before", follower.findLot(Size.MEDIUM, 0).get().getVehicle().get().id());
+
+            List<Ticket> tickets = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tickets.add(lotManager.park(new Car("car-" + i)));
+                tickets.add(lotManager.park(new Bike("bike-" + i)));
+            }
+            assertTrue(lotManager.unPark(tickets.get(3)));
+            // every park and unPark returned once the standby applied it
+            assertEquals(primary.getSequence(), standby.getAppliedSequence());
+            assertEquals(0, primary.getLag());
+            for (Size size : Size.values()) {
+                assertEquals(lotManager.getNumberOfLotsOccupied(size), follower.getNumberOfLotsOccupied(size));
+            }
+            assertEquals(Optional.empty(), follower.locate("bike-1"));
+            assertEquals(tickets.get(2).getLotId(), follower.locate("car-1").get().getId());
+        }
+    }
+
+    @Test
+    public void testStandbyJoiningLateCatchesUpAndPrimaryCloses() throws Exception {
+        LotManager lotManager = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        LotManager follower = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        ReplicationPrimary primary = ReplicationPrimary.start(lotManager, ANY_PORT, Long.MAX_VALUE);
+        Ticket first = lotManager.park(new Car("first"));
+        lotManager.park(new Car("second"));
+        assertEquals(0, primary.getLag());
+        ReplicationStandby standby = ReplicationStandby.connect(primary.getAddress(), follower);
+        await(() -> primary.getNumberOfStandbys() == 1);
+        assertTrue(lotManager.unPark(first));
+        await(() -> standby.getAppliedSequence() == 3);
+        assertEquals(1, follower.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertEquals(1, follower.locate("second").get().getId());
+
+        primary.close();
+        await(() -> !standby.isConnected());
+        assertNull(standby.getFailure());
+        assertThrows(IllegalStateException.class, () -> lotManager.park(new Car("after-close")));
+        // the reservation which could not be replicated was undone
+        assertEquals(1, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertTrue(lotManager.findLot(Size.MEDIUM, 0).get().isAvailable());
+        assertEquals(Optional.empty(), lotManager.locate("after-close"));
+        LotManager promoted = standby.promote();
+        assertSame(follower, promoted);
+        assertEquals(0, promoted.park(new Car("third")).getLotId());
+        assertThrows(IllegalArgumentException.class, () -> ReplicationPrimary.start(lotManager, ANY_PORT, -1));
+    }
+
+    @Test
+    public void testStandbyFollowsAddedAndRetiredLots() throws Exception {
+        LotManager lotManager = new LotManager(2, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        lotManager.addLots(Size.MEDIUM, 2);
+        lotManager.park(new Car("car-0"));
+        lotManager.retireLots(Size.MEDIUM, 0, 2);
+        LotManager follower = new LotManager(2, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        try (ReplicationPrimary primary = ReplicationPrimary.start(lotManager, ANY_PORT, 0);
+             ReplicationStandby standby = ReplicationStandby.connect(primary.getAddress(), follower)) {
+            await(standby::isUpToDate);
+            assertEquals(4, follower.getLotCapacity(Size.MEDIUM));
+            assertEquals(2, follower.getNumberOfLots(Size.MEDIUM));
+            assertEquals(0, follower.locate("car-0").get().getId());
+
+            lotManager.addLots(Size.MEDIUM, 1);
+            lotManager.reopenLots(Size.MEDIUM, 1, 2);
+            lotManager.retireLots(Size.MEDIUM, 3, 4);
+            lotManager.park(new Car("car-1"));
+            assertEquals(primary.getSequence(), standby.getAppliedSequence());
+            assertEquals(5, follower.getLotCapacity(Size.MEDIUM));
+            assertEquals(3, follower.getNumberOfLots(Size.MEDIUM));
+            assertEquals(1, follower.locate("car-1").get().getId());
+        }
+    }
+
+    @Test
+    public void testStalledStandbyIsDroppedWithoutBlockingParking() throws Exception {
+        LotManager lotManager = new LotManager(10, 10, 10, ConcurrentLotTracker.Factory.INSTANCE);
+        LotManager follower = new LotManager(10, 10, 10, ConcurrentLotTracker.Factory.INSTANCE);
+        try (ReplicationPrimary primary = ReplicationPrimary.start(lotManager, ANY_PORT, 0, Duration.ofMillis(200));
+             ReplicationStandby standby = ReplicationStandby.connect(primary.getAddress(), follower);
+             SocketChannel stalled = SocketChannel.open(primary.getAddress())) {
+            // connected, but never reads nor acknowledges a record
+            await(() -> primary.getNumberOfStandbys() == 2);
+            Ticket ticket = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> lotManager.park(new Car("car-0")));
+            assertEquals(1, primary.getNumberOfStandbys());
+            assertTrue(lotManager.unPark(ticket));
+            lotManager.park(new Car("car-1"));
+            // the standby which kept up still has every park and unPark which returned
+            assertEquals(primary.getSequence(), standby.getAppliedSequence());
+            assertEquals(0, primary.getLag());
+            assertEquals(0, follower.locate("car-1").get().getId());
+        }
+    }
+
+    @Test
+    public void testStandbyFallingTooFarBehindIsDropped() throws Exception {
+        LotManager lotManager = new LotManager(10, 10, 10, ConcurrentLotTracker.Factory.INSTANCE);
+        try (ReplicationPrimary primary = ReplicationPrimary.start(lotManager, ANY_PORT, Long.MAX_VALUE);
+             SocketChannel stalled = SocketChannel.open()) {
+            stalled.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+            stalled.connect(primary.getAddress());
+            await(() -> primary.getNumberOfStandbys() == 1);
+            assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                Car car = new Car("car");
+                // records of about 16 bytes, four times what the queue of the standby holds
+                long records = 0;
+                while (records < 4L * ReplicationPrimary.MAX_QUEUED_BYTES / 16) {
+                    assertTrue(lotManager.unParkPacked(lotManager.parkPacked(car)));
+                    records += 2;
+                }
+            });
+            await(() -> primary.getNumberOfStandbys() == 0);
+            assertEquals(0, primary.getLag());
+        }
+    }
+
+    /**
+     * Kills a primary process while its gates keep parking and unParking, then checks that every vehicle the primary
+     * admitted is in the bay the promoted standby has for it, so the standby cannot hand that bay out again.
+     */
+    @Test
+    public void testPromotedStandbyNeverHandsOutABayTwiceAfterPrimaryIsKilled() throws Exception {
+        int lots = 200;
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                PrimaryProcess.class.getName(), String.valueOf(lots))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        LotManager follower = new LotManager(lots, lots, lots, ConcurrentLotTracker.Factory.INSTANCE);
+        Map<String, int[]> admitted = new HashMap<>();
+        ReplicationStandby standby;
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            int port = Integer.parseInt(out.readLine());
+            standby = ReplicationStandby.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                    follower);
+            for (int line = 0; line < 3000; line++) {
+                String[] operation = out.readLine().split(" ");
+                if (operation[0].equals("P")) {
+                    admitted.put(operation[1],
+                            new int[]{Integer.parseInt(operation[2]), Integer.parseInt(operation[3])});
+                } else {
+                    admitted.remove(operation[1]);
+                }
+            }
+            process.destroyForcibly();
+            assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        } finally {
+            process.destroyForcibly();
+        }
+
+        LotManager promoted = standby.promote();
+        Set<Integer> taken = new HashSet<>();
+        for (Map.Entry<String, int[]> vehicle : admitted.entrySet()) {
+            int lotId = vehicle.getValue()[0];
+            int generation = vehicle.getValue()[1];
+            Optional<Lot> lot = promoted.locate(vehicle.getKey());
+            if (lot.isPresent()) {
+                assertEquals(lotId, lot.get().getId());
+                assertTrue(taken.add(lotId));
+            } else {
+                // unParked by the primary after its last report, the standby saw that
+                assertTrue(promoted.findLot(Size.MEDIUM, lotId).get().getGeneration() > generation);
+            }
+        }
+        int occupied = promoted.getNumberOfLotsOccupied(Size.MEDIUM);
+        assertTrue(occupied >= taken.size());
+        int parked = 0;
+        Ticket ticket;
+        while ((ticket = promoted.park(new Car("after-failover-" + parked))) != null) {
+            assertFalse(taken.contains(ticket.getLotId()));
+            parked++;
+        }
+        assertEquals(lots - occupied, parked);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Primary run in its own process: prints its port, waits for a standby, then parks and unParks cars from a few
+     * gate threads until killed, reporting every park and unPark once it returned.
+     */
+    public static final class PrimaryProcess {
+
+        public static void main(String[] args) throws Exception {
+            int lots = Integer.parseInt(args[0]);
+            LotManager lotManager = new LotManager(lots, lots, lots, ConcurrentLotTracker.Factory.INSTANCE);
+            ReplicationPrimary primary = ReplicationPrimary.start(lotManager, ANY_PORT, 0, Duration.ofSeconds(30));
+            PrintStream out = System.out;
+            out.println(primary.getAddress().getPort());
+            out.flush();
+            while (primary.getNumberOfStandbys() == 0) {
+                Thread.sleep(1);
+            }
+            for (int gate = 0; gate < 4; gate++) {
+                int id = gate;
+                new Thread(() -> {
+                    Random random = new Random(id);
+                    List<Ticket> tickets = new ArrayList<>();
+                    for (int vehicle = 0; ; vehicle++) {
+                        Ticket ticket = lotManager.park(new Car("gate-" + id + "-" + vehicle));
+                        if (ticket != null) {
+                            tickets.add(ticket);
+                            report(out, "P " + ticket.getVehicleId() + " " + ticket.getLotId() + " "
+                                    + ticket.getGeneration());
+                        }
+                        if (!tickets.isEmpty() && (ticket == null || random.nextInt(3) == 0)) {
+                            Ticket leaving = tickets.remove(random.nextInt(tickets.size()));
+                            if (lotManager.unPark(leaving)) {
+                                report(out, "U " + leaving.getVehicleId());
+                            }
+                        }
+                    }
+                }).start();
+            }
+        }
+
+        private static void report(PrintStream out, String operation) {
+            synchronized (out) {
+                out.println(operation);
+                out.flush();
+            }
+        }
+    }
+}
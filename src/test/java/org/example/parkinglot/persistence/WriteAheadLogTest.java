@@ -0,0 +1,212 @@
+package org.example.parkinglot.persistence;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.allocation.OverflowAllocationPolicy;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Truck;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogTest {
+
+    private static final Duration SYNC_INTERVAL = Duration.ofMillis(5);
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    public void testRecoveredManagerHasSameOccupancy(FsyncPolicy fsyncPolicy) throws IOException {
+        Path path = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(10, 10, 10, LotTracker.Factory.INSTANCE);
+        List<Ticket> tickets = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.recover(path, lotManager, fsyncPolicy, SYNC_INTERVAL)) {
+            for (int i = 0; i < 10; i++) {
+                tickets.add(lotManager.park(new Car("car-" + i)));
+                tickets.add(lotManager.park(new Bike("bike-" + i)));
+            }
+            lotManager.park(new Truck("truck-0"));
+            for (int i = 0; i < tickets.size(); i += 3) {
+                assertTrue(lotManager.unPark(tickets.get(i)));
+            }
+            // reuses a released lot in a new generation
+            tickets.add(lotManager.park(new Car("car-again")));
+        }
+
+        LotManager recovered = new LotManager(10, 10, 10, LotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = WriteAheadLog.recover(path, recovered, fsyncPolicy, SYNC_INTERVAL)) {
+            for (Size size : Size.values()) {
+                assertEquals(lotManager.getNumberOfLotsOccupied(size), recovered.getNumberOfLotsOccupied(size));
+            }
+            Ticket last = tickets.get(tickets.size() - 1);
+            assertTrue(recovered.unPark(last));
+            assertFalse(recovered.unPark(tickets.get(0)));
+        }
+    }
+
+    @Test
+    public void testOverflowedVehicleKeepsItsSizeAcrossRecovery() throws IOException {
+        Path path = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(1, 1, 0, LotTracker.Factory.INSTANCE, OverflowAllocationPolicy.INSTANCE);
+        Ticket ticket;
+        try (WriteAheadLog log = WriteAheadLog.recover(path, lotManager, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            lotManager.park(new Bike("bike-0"));
+            ticket = lotManager.park(new Bike("bike-1"));
+        }
+
+        LotManager recovered = new LotManager(1, 1, 0, LotTracker.Factory.INSTANCE, OverflowAllocationPolicy.INSTANCE);
+        WriteAheadLog.restore(path, 0, recovered);
+        Lot lot = recovered.locate("bike-1").get();
+        assertEquals(Size.MEDIUM, lot.getSize());
+        assertEquals(Size.SMALL, lot.getVehicle().get().getSize());
+        assertTrue(recovered.unPark(ticket));
+    }
+
+    @Test
+    public void testRecoveryReplaysAddedRetiredAndReopenedLots() throws IOException {
+        Path path = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(1, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        List<Ticket> tickets = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.recover(path, lotManager, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            lotManager.addLots(Size.MEDIUM, 3);
+            for (int i = 0; i < 3; i++) {
+                tickets.add(lotManager.park(new Car("car-" + i)));
+            }
+            lotManager.retireLots(Size.MEDIUM, 0, 4);
+            lotManager.reopenLots(Size.MEDIUM, 2, 4);
+        }
+
+        LotManager recovered = new LotManager(1, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = WriteAheadLog.recover(path, recovered, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            assertEquals(4, recovered.getLotCapacity(Size.MEDIUM));
+            assertEquals(2, recovered.getNumberOfLots(Size.MEDIUM));
+            assertEquals(3, recovered.getNumberOfLotsOccupied(Size.MEDIUM));
+            assertEquals(3, recovered.park(new Car("car-3")).getLotId());
+            // lot 0 drains
+            assertTrue(recovered.unPark(tickets.get(0)));
+            assertNull(recovered.park(new Car("car-4")));
+        }
+    }
+
+    @Test
+    public void testReplayingTwiceIsIdempotent() throws IOException {
+        Path path = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(4, 4, 4, ConcurrentLotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = WriteAheadLog.recover(path, lotManager, FsyncPolicy.EVERY_COMMIT, SYNC_INTERVAL)) {
+            Ticket ticket = lotManager.park(new Car("a"));
+            lotManager.park(new Car("b"));
+            lotManager.unPark(ticket);
+            lotManager.park(new Car("c"));
+        }
+
+        LotManager recovered = new LotManager(4, 4, 4, ConcurrentLotTracker.Factory.INSTANCE);
+        RestoringListener restorer = new RestoringListener(recovered);
+        long end = WriteAheadLog.replay(path, 0, restorer);
+        assertEquals(end, WriteAheadLog.replay(path, 0, restorer));
+        assertEquals(Files.size(path), end);
+        assertEquals(2, recovered.getNumberOfLotsOccupied(Size.MEDIUM));
+    }
+
+    @Test
+    public void testTornTailIsIgnoredAndTruncated() throws IOException {
+        Path path = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        long intact;
+        try (WriteAheadLog log = WriteAheadLog.recover(path, lotManager, FsyncPolicy.EVERY_COMMIT, SYNC_INTERVAL)) {
+            lotManager.park(new Car("a"));
+            intact = log.getPosition();
+            lotManager.park(new Car("b"));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        LotManager recovered = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        try (WriteAheadLog log = WriteAheadLog.recover(path, recovered, FsyncPolicy.EVERY_COMMIT, SYNC_INTERVAL)) {
+            assertEquals(1, recovered.getNumberOfLotsOccupied(Size.MEDIUM));
+            assertEquals(intact, Files.size(path));
+            recovered.park(new Car("c"));
+        }
+
+        LotManager again = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        WriteAheadLog.replay(path, 0, new RestoringListener(again));
+        assertEquals(2, again.getNumberOfLotsOccupied(Size.MEDIUM));
+        Lot lot = again.findLot(Size.MEDIUM, 1).get();
+        assertEquals("c", lot.getVehicle().get().id());
+    }
+
+    @Test
+    public void testCorruptRecordEndsReplay() throws IOException {
+        Path path = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        long intact;
+        try (WriteAheadLog log = WriteAheadLog.recover(path, lotManager, FsyncPolicy.NEVER, SYNC_INTERVAL)) {
+            lotManager.park(new Truck("a"));
+            intact = log.getPosition();
+            lotManager.park(new Truck("b"));
+            lotManager.park(new Truck("c"));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(intact + LogRecord.HEADER_BYTES);
+            file.write('x');
+        }
+
+        LotManager recovered = new LotManager(4, 4, 4, LotTracker.Factory.INSTANCE);
+        assertEquals(intact, WriteAheadLog.replay(path, 0, new RestoringListener(recovered)));
+        assertEquals(1, recovered.getNumberOfLotsOccupied(Size.LARGE));
+    }
+
+    @Test
+    public void testFailedAppendLeavesTheLotFree() throws IOException {
+        Path path = directory.resolve("lots.wal");
+        LotManager lotManager = new LotManager(2, 0, 0, ConcurrentLotTracker.Factory.INSTANCE);
+        WriteAheadLog log = WriteAheadLog.recover(path, lotManager, FsyncPolicy.NEVER, SYNC_INTERVAL);
+        Ticket ticket = lotManager.park(new Car("car-0"));
+        // too long to be logged
+        char[] longId = new char[LogRecord.MAX_VEHICLE_ID_BYTES + 1];
+        Arrays.fill(longId, 'x');
+        assertThrows(IllegalArgumentException.class, () -> lotManager.park(new Car(new String(longId))));
+        log.close();
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalStateException.class, () -> lotManager.park(new Car("car-1")));
+            assertThrows(IllegalStateException.class, () -> lotManager.parkPacked(new Car("car-1")));
+            assertThrows(IllegalStateException.class,
+                    () -> lotManager.parkAll(Arrays.asList(new Car("car-1"), new Car("car-2"))));
+        }
+        assertTrue(lotManager.findLot(Size.MEDIUM, 1).get().isAvailable());
+        assertEquals(1, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertFalse(lotManager.locate("car-1").isPresent());
+        assertFalse(lotManager.locate("car-2").isPresent());
+
+        // a release cannot be undone, it completes before the failure is reported
+        assertThrows(IllegalStateException.class, () -> lotManager.unPark(ticket));
+        assertEquals(0, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertFalse(lotManager.locate("car-0").isPresent());
+        assertFalse(lotManager.unPark(ticket));
+
+        LotManager recovered = new LotManager(2, 0, 0, LotTracker.Factory.INSTANCE);
+        WriteAheadLog.restore(path, 0, recovered);
+        assertEquals(1, recovered.getNumberOfLotsOccupied(Size.MEDIUM));
+        assertEquals("car-0", recovered.findLot(Size.MEDIUM, 0).get().getVehicle().get().id());
+    }
+}
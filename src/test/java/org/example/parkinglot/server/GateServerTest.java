@@ -0,0 +1,192 @@
+package org.example.parkinglot.server;
+
+import org.example.parkinglot.ConcurrentLotTracker;
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.index.FreeLotIndex;
+import org.example.parkinglot.index.VehicleLocationIndex;
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.PackedTicket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class GateServerTest {
+
+    private LotManager lotManager;
+    private GateServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        lotManager = new LotManager(4, 2, 1, ConcurrentLotTracker.Factory.INSTANCE);
+        server = GateServer.start(lotManager, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testParkLocateOccupancyAndUnPark() throws IOException {
+        try (GateClient client = GateClient.connect(server.getAddress())) {
+            long ticket = client.park(new Car("car-1"), FreeLotIndex.ANY_GATE);
+            assertTrue(PackedTicket.isValid(ticket));
+            assertEquals(Size.MEDIUM, PackedTicket.size(ticket));
+            assertEquals(PackedTicket.NONE, client.park(new Car("car-1"), FreeLotIndex.ANY_GATE));
+            assertTrue(PackedTicket.isValid(client.park(new Bike("bike-1"), FreeLotIndex.ANY_GATE)));
+
+            assertEquals(VehicleLocationIndex.location(Size.MEDIUM, PackedTicket.lotId(ticket)),
+                    client.locate("car-1"));
+            assertEquals(VehicleLocationIndex.NOT_FOUND, client.locate("car-2"));
+            assertArrayEquals(new int[]{0, 1, 1, 4, 1, 2}, client.occupancy());
+
+            assertTrue(client.unPark(ticket));
+            assertFalse(client.unPark(ticket));
+            assertEquals(0, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+        }
+    }
+
+    @Test
+    public void testPipelinedRequestsAreAnsweredInOrder() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+            ByteBuffer out = ByteBuffer.allocate(4096);
+            for (int i = 0; i < 6; i++) {
+                GateProtocol.writePark(out, i, Size.MEDIUM, FreeLotIndex.ANY_GATE, "car-" + i);
+            }
+            GateProtocol.writeOccupancy(out, 6);
+            write(channel, out);
+
+            ByteBuffer in = read(channel, 7);
+            for (int i = 0; i < 7; i++) {
+                int length = GateProtocol.frameLength(in);
+                assertTrue(length > 0);
+                assertEquals(i, in.getInt(in.position() + GateProtocol.LENGTH_BYTES + 1));
+                byte status = in.get(in.position() + GateProtocol.HEADER_BYTES);
+                assertEquals(i < 4 || i == 6 ? GateProtocol.OK : GateProtocol.REJECTED, status);
+                in.position(in.position() + length);
+            }
+        }
+    }
+
+    @Test
+    public void testBadRequestsAreAnsweredAndMalformedFramesClose() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+            ByteBuffer out = ByteBuffer.allocate(256);
+            out.putInt(5).put((byte) 42).putInt(1);
+            GateProtocol.writePark(out, 2, Size.LARGE, FreeLotIndex.ANY_GATE, "truck-1");
+            out.put(out.position() - "truck-1".length() - 7, (byte) 9);
+            write(channel, out);
+            ByteBuffer in = read(channel, 2);
+            assertEquals(GateProtocol.BAD_REQUEST, in.get(GateProtocol.HEADER_BYTES));
+            in.position(GateProtocol.frameLength(in));
+            assertEquals(GateProtocol.BAD_REQUEST, in.get(in.position() + GateProtocol.HEADER_BYTES));
+
+            out.putInt(1 << 20);
+            write(channel, out);
+            assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+        }
+        assertEquals(0, lotManager.getNumberOfLotsOccupied(Size.LARGE));
+    }
+
+    @Test
+    public void testBadPipelinedParkIsAnsweredAfterTheGoodOne() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+            ByteBuffer out = ByteBuffer.allocate(256);
+            GateProtocol.writePark(out, 1, Size.MEDIUM, FreeLotIndex.ANY_GATE, "car-1");
+            GateProtocol.writePark(out, 2, Size.MEDIUM, FreeLotIndex.ANY_GATE, "   ");
+            GateProtocol.writeOccupancy(out, 3);
+            write(channel, out);
+
+            ByteBuffer in = read(channel, 3);
+            assertEquals(GateProtocol.OK, in.get(GateProtocol.HEADER_BYTES));
+            in.position(GateProtocol.frameLength(in));
+            assertEquals(2, in.getInt(in.position() + GateProtocol.LENGTH_BYTES + 1));
+            assertEquals(GateProtocol.BAD_REQUEST, in.get(in.position() + GateProtocol.HEADER_BYTES));
+            in.position(in.position() + GateProtocol.frameLength(in));
+            assertEquals(GateProtocol.OK, in.get(in.position() + GateProtocol.HEADER_BYTES));
+        }
+        assertEquals(1, lotManager.getNumberOfLotsOccupied(Size.MEDIUM));
+    }
+
+    @Test
+    public void testParkTheLotManagerThrowsOnIsAnsweredAndTheConnectionLivesOn() throws IOException {
+        LotManager failing = mock(LotManager.class);
+        when(failing.parkPacked(any(), eq(FreeLotIndex.ANY_GATE))).thenThrow(new IllegalStateException("closed"));
+        when(failing.parkPacked(any(), eq(99))).thenThrow(new IndexOutOfBoundsException("no gate 99"));
+        when(failing.unParkPacked(anyLong())).thenReturn(true);
+        try (GateServer failingServer = GateServer.start(failing,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             SocketChannel channel = SocketChannel.open(failingServer.getAddress())) {
+            ByteBuffer out = ByteBuffer.allocate(256);
+            GateProtocol.writePark(out, 1, Size.MEDIUM, FreeLotIndex.ANY_GATE, "car-1");
+            GateProtocol.writePark(out, 2, Size.MEDIUM, 99, "car-2");
+            GateProtocol.writeUnPark(out, 3, PackedTicket.pack(Size.MEDIUM, 0, 0));
+            write(channel, out);
+
+            ByteBuffer in = read(channel, 3);
+            assertEquals(GateProtocol.FAILED, in.get(GateProtocol.HEADER_BYTES));
+            in.position(GateProtocol.frameLength(in));
+            assertEquals(GateProtocol.BAD_REQUEST, in.get(in.position() + GateProtocol.HEADER_BYTES));
+            in.position(in.position() + GateProtocol.frameLength(in));
+            assertEquals(3, in.getInt(in.position() + GateProtocol.LENGTH_BYTES + 1));
+            assertEquals(GateProtocol.OK, in.get(in.position() + GateProtocol.HEADER_BYTES));
+        }
+    }
+
+    @Test
+    public void testLoadGeneratorDrivesManyGates() throws Exception {
+        LoadGenerator.Result result = LoadGenerator.run(server.getAddress(), 7, 3, Duration.ofMillis(200));
+        assertTrue(result.getOperations() > 0);
+        assertEquals(result.getOperations(), result.getLatency().getCount());
+        // every gate leaves at most one vehicle behind
+        int occupied = 0;
+        for (Size size : Size.values()) {
+            occupied += lotManager.getNumberOfLotsOccupied(size);
+        }
+        assertTrue(occupied <= 7);
+        assertThrows(IllegalArgumentException.class,
+                () -> LoadGenerator.run(server.getAddress(), 2, 3, Duration.ZERO));
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Reads until the given number of complete frames has arrived.
+     */
+    private static ByteBuffer read(SocketChannel channel, int frames) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(4096);
+        while (true) {
+            assertTrue(channel.read(in) > 0);
+            ByteBuffer view = in.duplicate();
+            view.flip();
+            int complete = 0;
+            int length;
+            while ((length = GateProtocol.frameLength(view)) > 0) {
+                view.position(view.position() + length);
+                complete++;
+            }
+            if (complete == frames) {
+                in.flip();
+                return in;
+            }
+        }
+    }
+}
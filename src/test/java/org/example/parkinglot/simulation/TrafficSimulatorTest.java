@@ -0,0 +1,174 @@
+package org.example.parkinglot.simulation;
+
+import org.example.parkinglot.LotManager;
+import org.example.parkinglot.LotTracker;
+import org.example.parkinglot.allocation.OverflowAllocationPolicy;
+import org.example.parkinglot.models.Size;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrafficSimulatorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSameSeedGivesSameReport() {
+        TrafficModel model = TrafficSimulator.cityCentre(50);
+        SimulationReport first = TrafficSimulator.simulate(lotManager(50), model, 7, Duration.ofDays(3));
+        SimulationReport second = TrafficSimulator.simulate(lotManager(50), model, 7, Duration.ofDays(3));
+        SimulationReport other = TrafficSimulator.simulate(lotManager(50), model, 8, Duration.ofDays(3));
+        assertEquals(first.getEvents(), second.getEvents());
+        assertEquals(Duration.ofDays(3), first.getSimulatedTime());
+        for (Size size : Size.values()) {
+            assertEquals(first.getArrivals(size), second.getArrivals(size));
+            assertEquals(first.getRejections(size), second.getRejections(size));
+            assertEquals(first.getAverageOccupancy(size), second.getAverageOccupancy(size));
+            assertEquals(first.getPeakOccupancy(size), second.getPeakOccupancy(size));
+            assertEquals(first.getOccupiedAtEnd(size), second.getOccupiedAtEnd(size));
+        }
+        assertNotEquals(first.getArrivals(Size.MEDIUM), other.getArrivals(Size.MEDIUM));
+        // the morning peak fills the car lots
+        assertTrue(first.getRejections(Size.MEDIUM) > 0);
+        assertEquals(50, first.getPeakOccupancy(Size.MEDIUM));
+        assertEquals(first.getArrivals(Size.MEDIUM) * 2 + first.getArrivals(Size.SMALL) * 2
+                        + first.getArrivals(Size.LARGE) * 2 - totalRejectedOrParked(first),
+                first.getEvents());
+    }
+
+    private static long totalRejectedOrParked(SimulationReport report) {
+        long total = 0;
+        for (Size size : Size.values()) {
+            total += report.getRejections(size) + report.getOccupiedAtEnd(size);
+        }
+        return total;
+    }
+
+    @Test
+    public void testOccupancyFollowsLittlesLawWithoutRejections() {
+        TrafficModel model = TrafficModel.builder()
+                .traffic(Size.MEDIUM, 100, Duration.ofHours(1), 0.5)
+                .build();
+        SimulationReport report = TrafficSimulator.simulate(lotManager(1000), model, 1, Duration.ofDays(30));
+        assertEquals(0, report.getRejections(Size.MEDIUM));
+        assertEquals(0, report.getArrivals(Size.SMALL));
+        assertEquals(100 * 24 * 30, report.getArrivals(Size.MEDIUM), 100 * 24 * 30 * 0.02);
+        // average occupancy = arrival rate x mean dwell time
+        double expected = 100 * model.getMeanDwellTime(Size.MEDIUM).toMillis() / 3_600_000.0;
+        assertEquals(expected, report.getAverageOccupancy(Size.MEDIUM), expected * 0.03);
+        assertEquals(expected / 1000, report.getUtilisation(Size.MEDIUM), expected / 1000 * 0.03);
+        assertEquals(report.getArrivals(Size.MEDIUM), report.getParkLatency().getCount());
+    }
+
+    @Test
+    public void testAllocationPolicyDecidesOverflowsAndRejections() {
+        TrafficModel model = TrafficModel.builder()
+                .traffic(Size.MEDIUM, 20, Duration.ofHours(1), 0.5)
+                .build();
+        SimulationReport strict = TrafficSimulator.simulate(
+                new LotManager(10, 0, 10, LotTracker.Factory.INSTANCE), model, 3, Duration.ofDays(2));
+        SimulationReport overflow = TrafficSimulator.simulate(
+                new LotManager(10, 0, 10, LotTracker.Factory.INSTANCE, OverflowAllocationPolicy.INSTANCE), model, 3,
+                Duration.ofDays(2));
+        assertEquals(strict.getArrivals(Size.MEDIUM), overflow.getArrivals(Size.MEDIUM));
+        assertTrue(overflow.getRejections(Size.MEDIUM) < strict.getRejections(Size.MEDIUM));
+        assertEquals(0, strict.getOverflows(Size.MEDIUM));
+        assertTrue(overflow.getOverflows(Size.MEDIUM) > 0);
+        assertEquals(0, strict.getPeakOccupancy(Size.LARGE));
+        assertTrue(overflow.getUtilisation(Size.LARGE) > 0);
+    }
+
+    @Test
+    public void testHourlyProfileShapesArrivals() throws IOException {
+        double[] profile = new double[24];
+        profile[8] = 1;
+        TrafficModel model = TrafficModel.builder()
+                .traffic(Size.SMALL, 10, Duration.ofMinutes(30), 0)
+                .hourlyProfile(profile)
+                .build();
+        ArrivalSource arrivals = model.arrivals(5);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(arrivals.next());
+            assertEquals(8, arrivals.arrivalMillis() / 3_600_000 % 24);
+            assertEquals(Size.SMALL, arrivals.size());
+            assertEquals(Duration.ofMinutes(30).toMillis(), arrivals.dwellMillis());
+        }
+        // 10 an hour on average, so 240 a day, all of them between 8 and 9
+        long day = arrivals.arrivalMillis() / 86_400_000;
+        assertTrue(day >= 3 && day <= 4, "day " + day);
+        assertThrows(IllegalArgumentException.class, () -> TrafficModel.builder().hourlyProfile(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> TrafficModel.builder().hourlyProfile(new double[24]));
+        assertThrows(IllegalArgumentException.class, () -> TrafficModel.builder().build());
+        assertThrows(IllegalArgumentException.class,
+                () -> TrafficModel.builder().traffic(Size.SMALL, -1, Duration.ofHours(1), 0));
+    }
+
+    @Test
+    public void testRecordedTraceReplaysTheSimulation() throws IOException {
+        TrafficModel model = TrafficSimulator.cityCentre(20);
+        Path trace = directory.resolve("city.trace");
+        long recorded = TrafficTrace.write(trace, model, 11, Duration.ofDays(2));
+        SimulationReport simulated = TrafficSimulator.simulate(lotManager(20), model, 11, Duration.ofDays(2));
+        SimulationReport replayed = TrafficSimulator.replay(lotManager(20), trace, 0);
+        long arrivals = 0;
+        for (Size size : Size.values()) {
+            arrivals += replayed.getArrivals(size);
+            assertEquals(simulated.getArrivals(size), replayed.getArrivals(size));
+            assertEquals(simulated.getRejections(size), replayed.getRejections(size));
+            assertEquals(simulated.getPeakOccupancy(size), replayed.getPeakOccupancy(size));
+            // every vehicle leaves before a replay ends
+            assertEquals(0, replayed.getOccupiedAtEnd(size));
+        }
+        assertEquals(recorded, arrivals);
+        assertEquals(8 + recorded * TrafficTrace.RECORD_BYTES, Files.size(trace));
+        assertTrue(replayed.getSimulatedTime().compareTo(Duration.ofDays(2)) > 0);
+    }
+
+    @Test
+    public void testReplayAtSpeedKeepsPace() throws IOException {
+        Path trace = directory.resolve("paced.trace");
+        try (TrafficTrace.Writer writer = TrafficTrace.create(trace)) {
+            for (int i = 0; i < 10; i++) {
+                writer.append(i * 1000L, Size.MEDIUM, 500);
+            }
+            assertThrows(IllegalArgumentException.class, () -> writer.append(0, Size.MEDIUM, 500));
+            assertThrows(IllegalArgumentException.class, () -> writer.append(10_000, Size.MEDIUM, 0));
+        }
+        // 9.5 seconds replayed 50 times faster
+        SimulationReport report = TrafficSimulator.replay(lotManager(1), trace, 50);
+        assertEquals(20, report.getEvents());
+        assertEquals(0, report.getRejections(Size.MEDIUM));
+        assertEquals(Duration.ofMillis(9500), report.getSimulatedTime());
+        assertTrue(report.getWallTime().toMillis() >= 180, "replayed in " + report.getWallTime());
+        assertEquals(5000 / 9500.0, report.getUtilisation(Size.MEDIUM), 1e-9);
+    }
+
+    @Test
+    public void testReplayRejectsBrokenTraces() throws IOException {
+        Path notATrace = directory.resolve("not.trace");
+        Files.write(notATrace, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertThrows(IOException.class, () -> TrafficSimulator.replay(lotManager(1), notATrace, 0));
+
+        Path torn = directory.resolve("torn.trace");
+        try (TrafficTrace.Writer writer = TrafficTrace.create(torn)) {
+            writer.append(0, Size.LARGE, 1000);
+        }
+        Files.write(torn, new byte[]{0, 0, 0}, StandardOpenOption.APPEND);
+        LotManager lotManager = lotManager(1);
+        assertThrows(IOException.class, () -> TrafficSimulator.replay(lotManager, torn, 0));
+        // the arrival before the torn record was replayed
+        assertEquals(1, lotManager.getNumberOfLotsOccupied(Size.LARGE));
+    }
+
+    private static LotManager lotManager(int lotsPerSize) {
+        return new LotManager(lotsPerSize, lotsPerSize, lotsPerSize, LotTracker.Factory.INSTANCE);
+    }
+}
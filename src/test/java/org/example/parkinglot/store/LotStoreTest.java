@@ -0,0 +1,122 @@
+package org.example.parkinglot.store;
+
+import org.example.parkinglot.models.Size;
+import org.example.parkinglot.models.lot.Lot;
+import org.example.parkinglot.models.lot.Ticket;
+import org.example.parkinglot.models.vehicle.Bike;
+import org.example.parkinglot.models.vehicle.Car;
+import org.example.parkinglot.models.vehicle.Truck;
+import org.example.parkinglot.models.vehicle.Vehicle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LotStoreTest {
+
+    private static Stream<LotStore.Factory> stores() {
+        return Stream.of(ObjectLotStore.FACTORY, BufferLotStore.HEAP, BufferLotStore.OFF_HEAP);
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "stores")
+    public void testNewStoreHasOnlyAvailableLots(LotStore.Factory factory) {
+        LotStore store = factory.create(100, Size.MEDIUM);
+        assertEquals(100, store.capacity());
+        for (int lotId = 0; lotId < 100; lotId++) {
+            assertTrue(store.isAvailable(lotId));
+            assertEquals(0, store.getGeneration(lotId));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "stores")
+    public void testStoreRejectsVehicleTooLargeForItsLots(LotStore.Factory factory) {
+        LotStore store = factory.create(10, Size.MEDIUM);
+        assertFalse(store.reserve(3, new Truck("1")));
+        assertFalse(store.reserve(3, null));
+        assertTrue(store.isAvailable(3));
+
+        assertTrue(store.reserve(3, new Bike("2")));
+        assertTrue(store.release(3, new Ticket(3, "2", Size.SMALL, Size.MEDIUM, 0)));
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "stores")
+    public void testStoreReleasesOnlyWithTicketOfCurrentOccupant(LotStore.Factory factory) {
+        LotStore store = factory.create(10, Size.MEDIUM);
+        Vehicle vehicle = new Car("Vehicle1");
+
+        assertTrue(store.reserve(3, vehicle));
+        assertFalse(store.reserve(3, new Car("Vehicle2")));
+        assertFalse(store.isAvailable(3));
+
+        int generation = store.getGeneration(3);
+        assertFalse(store.release(3, new Ticket(3, "Vehicle2", Size.MEDIUM, generation)));
+        assertFalse(store.release(3, new Ticket(4, "Vehicle1", Size.MEDIUM, generation)));
+        assertFalse(store.release(3, new Ticket(3, "Vehicle1", Size.MEDIUM, generation + 1)));
+
+        Ticket ticket = new Ticket(3, "Vehicle1", Size.MEDIUM, generation);
+        assertTrue(store.release(3, ticket));
+        assertFalse(ticket.isValid());
+        assertTrue(store.isAvailable(3));
+        assertEquals(generation + 1, store.getGeneration(3));
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "stores")
+    public void testStoreReleasesByGeneration(LotStore.Factory factory) {
+        LotStore store = factory.create(10, Size.SMALL);
+        assertFalse(store.release(0, 0));
+        assertTrue(store.reserve(0, new Bike("1")));
+        assertFalse(store.release(0, 1));
+        assertTrue(store.release(0, 0));
+        assertFalse(store.release(0, 0));
+        assertTrue(store.reserve(0, new Bike("1")));
+        assertTrue(store.release(0, 1));
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "stores")
+    public void testStoreMaterialisesLots(LotStore.Factory factory) {
+        LotStore store = factory.create(10, Size.LARGE);
+        store.reserve(7, new Truck("1"));
+
+        Lot lot = store.getLot(7);
+        assertEquals(7, lot.getId());
+        assertFalse(lot.isAvailable());
+        assertEquals(store.getGeneration(7), lot.getGeneration());
+        assertTrue(store.getLot(6).isAvailable());
+    }
+
+    @ParameterizedTest
+    @MethodSource(value = "stores")
+    public void testStoreGrowsKeepingItsLots(LotStore.Factory factory) {
+        LotStore store = factory.create(10, Size.MEDIUM);
+        assertTrue(store.reserve(7, new Car("1")));
+        store.ensureCapacity(10_000);
+        store.ensureCapacity(20);
+        assertEquals(10_000, store.capacity());
+
+        assertFalse(store.isAvailable(7));
+        assertTrue(store.release(7, 0));
+        for (int lotId = 10; lotId < 10_000; lotId++) {
+            assertTrue(store.isAvailable(lotId));
+            assertEquals(0, store.getGeneration(lotId));
+        }
+        assertTrue(store.reserve(9_999, new Car("2")));
+        assertEquals(9_999, store.getLot(9_999).getId());
+        assertFalse(store.getLot(9_999).isAvailable());
+    }
+
+    @Test
+    public void testBufferStoreRejectsTooManyLots() {
+        assertThrows(IllegalArgumentException.class, () -> new BufferLotStore(Integer.MAX_VALUE, Size.SMALL, false));
+        assertThrows(IllegalArgumentException.class, () -> new BufferLotStore(-1, Size.SMALL, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BufferLotStore(1, Size.SMALL, false).ensureCapacity(BufferLotStore.MAX_LOTS + 1));
+    }
+}